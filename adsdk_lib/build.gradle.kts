@@ -27,6 +27,13 @@ android {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
     }
+    testOptions {
+        unitTests.isReturnDefaultValues = true
+        // Opt-in benchmarks: ./gradlew :adsdk_lib:testDebugUnitTest -Padsdk.benchmarks=true
+        unitTests.all {
+            it.systemProperty("adsdk.benchmarks", providers.gradleProperty("adsdk.benchmarks").getOrElse("false"))
+        }
+    }
 }
 
 afterEvaluate {
@@ -77,11 +84,19 @@ dependencies {
     implementation(libs.activity)
     implementation(libs.constraintlayout)
     testImplementation(libs.junit)
+    testImplementation(libs.mockwebserver)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
+    androidTestImplementation(libs.mockwebserver)
 
     // Rest API calls
     api(libs.gson)
     api(libs.retrofit)
     api(libs.converter.gson)
+    api(libs.okhttp)
+
+    // Video playback
+    implementation(libs.media3.exoplayer)
+    implementation(libs.media3.exoplayer.hls)
+    implementation(libs.media3.exoplayer.dash)
 }
\ No newline at end of file
@@ -0,0 +1,230 @@
+package dev.nimrod.adsdk_lib.player;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import dev.nimrod.adsdk_lib.config.AdSdkConfig;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.Okio;
+
+import static org.junit.Assert.*;
+
+/**
+ * Plays generated clips through Media3 from a local file and from a local HTTP server.
+ */
+@RunWith(AndroidJUnit4.class)
+public class Media3PlayerEngineTest {
+    private Context context;
+    private File video;
+    private MockWebServer server;
+    private AdPlayerEngine engine;
+    private final CountDownLatch prepared = new CountDownLatch(1);
+    private final CountDownLatch completed = new CountDownLatch(1);
+    private final CountDownLatch failed = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws Exception {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        video = TestVideos.createMp4(new File(context.getCacheDir(), "test_ad.mp4"), 30);
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (engine != null) {
+            onMainThread(() -> engine.release());
+        }
+        server.shutdown();
+        video.delete();
+    }
+
+    private static void onMainThread(Runnable action) {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(action);
+    }
+
+    private void play(Uri uri) {
+        onMainThread(() -> {
+            engine = new Media3PlayerEngine(context, AdSdkConfig.defaults());
+            engine.setListener(new AdPlayerEngine.Listener() {
+                @Override
+                public void onPrepared() {
+                    prepared.countDown();
+                    engine.play();
+                }
+
+                @Override
+                public void onVideoSizeChanged(int width, int height) {
+                }
+
+                @Override
+                public void onFirstFrameRendered() {
+                }
+
+                @Override
+                public void onBufferingStarted() {
+                }
+
+                @Override
+                public void onBufferingEnded() {
+                }
+
+                @Override
+                public void onPlayingChanged(boolean playing) {
+                }
+
+                @Override
+                public void onCompleted() {
+                    completed.countDown();
+                }
+
+                @Override
+                public void onError(String message) {
+                    failed.countDown();
+                }
+            });
+            engine.prepare(uri);
+        });
+    }
+
+    private Buffer videoBytes() throws Exception {
+        Buffer buffer = new Buffer();
+        try (FileInputStream in = new FileInputStream(video)) {
+            buffer.writeAll(Okio.source(in));
+        }
+        return buffer;
+    }
+
+    @Test
+    public void playsLocalFile() throws Exception {
+        play(Uri.fromFile(video));
+
+        assertTrue("not prepared", prepared.await(10, TimeUnit.SECONDS));
+        long[] duration = new long[1];
+        onMainThread(() -> duration[0] = engine.getDuration());
+        assertTrue("duration " + duration[0], duration[0] > 500 && duration[0] < 2000);
+        assertTrue("not completed", completed.await(10, TimeUnit.SECONDS));
+        assertEquals(1, failed.getCount());
+    }
+
+    @Test
+    public void streamsFromHttpServer() throws Exception {
+        // The muxer writes the index at the end, so the player may request the file more than once
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                try {
+                    return new MockResponse()
+                            .setHeader("Content-Type", "video/mp4")
+                            .setBody(videoBytes());
+                } catch (Exception e) {
+                    return new MockResponse().setResponseCode(500);
+                }
+            }
+        });
+
+        play(Uri.parse(server.url("/ad.mp4").toString()));
+
+        assertTrue("not prepared", prepared.await(10, TimeUnit.SECONDS));
+        assertTrue("not completed", completed.await(10, TimeUnit.SECONDS));
+        assertTrue(server.getRequestCount() >= 1);
+    }
+
+    /**
+     * Compares how long the ad player waits for the video with and without pre-warming, from the
+     * moment it sets its listener; the times are logged for comparison across devices.
+     */
+    @Test
+    public void prewarmedPlayer_isReadyWhenTheListenerIsSet() throws Exception {
+        long coldStart = System.nanoTime();
+        play(Uri.fromFile(video));
+        assertTrue("not prepared", prepared.await(10, TimeUnit.SECONDS));
+        long coldMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - coldStart);
+
+        AdPlayerEngine[] warm = new AdPlayerEngine[1];
+        CountDownLatch warmPrepared = new CountDownLatch(1);
+        onMainThread(() -> {
+            warm[0] = new Media3PlayerEngine(context, AdSdkConfig.defaults());
+            warm[0].prepare(Uri.fromFile(video));
+        });
+        // The pre-warmed player prepares while nobody listens
+        Thread.sleep(Math.max(1000, coldMs * 2));
+        long warmStart = System.nanoTime();
+        onMainThread(() -> warm[0].setListener(new AdPlayerEngine.Listener() {
+            @Override
+            public void onPrepared() {
+                warmPrepared.countDown();
+            }
+
+            @Override
+            public void onVideoSizeChanged(int width, int height) {
+            }
+
+            @Override
+            public void onFirstFrameRendered() {
+            }
+
+            @Override
+            public void onBufferingStarted() {
+            }
+
+            @Override
+            public void onBufferingEnded() {
+            }
+
+            @Override
+            public void onPlayingChanged(boolean playing) {
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+
+            @Override
+            public void onError(String message) {
+            }
+        }));
+        try {
+            assertEquals("not told of earlier preparation", 0, warmPrepared.getCount());
+            long warmMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - warmStart);
+            Log.d("Media3PlayerEngineTest", "Time to prepared: cold " + coldMs + " ms, pre-warmed " + warmMs + " ms");
+            assertTrue(warmMs <= coldMs);
+        } finally {
+            onMainThread(() -> warm[0].release());
+        }
+    }
+
+    @Test
+    public void reportsMissingStreamAsError() throws Exception {
+        // Media3 retries failed loads a few times before it gives up
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setResponseCode(404);
+            }
+        });
+
+        play(Uri.parse(server.url("/ad/master.m3u8").toString()));
+
+        assertTrue("no error", failed.await(30, TimeUnit.SECONDS));
+        assertEquals(1, prepared.getCount());
+    }
+}
@@ -0,0 +1,101 @@
+package dev.nimrod.adsdk_lib.player;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.os.SystemClock;
+import android.view.Surface;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes short H.264 clips on the device, so the player tests need no bundled media.
+ */
+final class TestVideos {
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+    private static final int FRAME_RATE = 30;
+    private static final long TIMEOUT_US = 10_000;
+
+    private TestVideos() {
+    }
+
+    /**
+     * Writes an MP4 of alternating colored frames.
+     *
+     * @param file   The file to write
+     * @param frames Number of frames, at 30 frames per second
+     */
+    static File createMp4(File file, int frames) throws IOException {
+        MediaFormat format = MediaFormat.createVideoFormat(MediaFormat.MIMETYPE_VIDEO_AVC, WIDTH, HEIGHT);
+        format.setInteger(MediaFormat.KEY_COLOR_FORMAT, MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
+        format.setInteger(MediaFormat.KEY_BIT_RATE, 500_000);
+        format.setInteger(MediaFormat.KEY_FRAME_RATE, FRAME_RATE);
+        format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, 1);
+
+        MediaCodec encoder = MediaCodec.createEncoderByType(MediaFormat.MIMETYPE_VIDEO_AVC);
+        encoder.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+        Surface input = encoder.createInputSurface();
+        encoder.start();
+        MediaMuxer muxer = new MediaMuxer(file.getPath(), MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+        MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+        int track = -1;
+        try {
+            for (int i = 0; i < frames; i++) {
+                Canvas canvas = input.lockHardwareCanvas();
+                canvas.drawColor(i % 2 == 0 ? Color.RED : Color.BLUE);
+                input.unlockCanvasAndPost(canvas);
+                track = drain(encoder, muxer, track, info, false);
+                // Frames are timestamped when posted, so pace them at the frame rate
+                SystemClock.sleep(1000 / FRAME_RATE);
+            }
+            encoder.signalEndOfInputStream();
+            drain(encoder, muxer, track, info, true);
+        } finally {
+            encoder.stop();
+            encoder.release();
+            input.release();
+            if (track >= 0) {
+                muxer.stop();
+            }
+            muxer.release();
+        }
+        return file;
+    }
+
+    private static int drain(MediaCodec encoder, MediaMuxer muxer, int track,
+                             MediaCodec.BufferInfo info, boolean endOfStream) {
+        long deadline = SystemClock.elapsedRealtime() + 5000;
+        while (SystemClock.elapsedRealtime() < deadline) {
+            int index = encoder.dequeueOutputBuffer(info, TIMEOUT_US);
+            if (index == MediaCodec.INFO_TRY_AGAIN_LATER) {
+                if (!endOfStream) {
+                    return track;
+                }
+                continue;
+            }
+            if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                track = muxer.addTrack(encoder.getOutputFormat());
+                muxer.start();
+                continue;
+            }
+            if (index < 0) {
+                continue;
+            }
+            ByteBuffer data = encoder.getOutputBuffer(index);
+            if ((info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) == 0 && info.size > 0 && track >= 0) {
+                muxer.writeSampleData(track, data, info);
+            }
+            encoder.releaseOutputBuffer(index, false);
+            if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                return track;
+            }
+        }
+        throw new IllegalStateException("Encoder did not finish in time");
+    }
+}
@@ -2,17 +2,50 @@ package dev.nimrod.adsdk_lib;
 
 import android.app.Activity;
 import android.content.Context;
+import android.util.Log;
 
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+
+import dev.nimrod.adsdk_lib.api.AdHttpClient;
 import dev.nimrod.adsdk_lib.callback.AdCallback;
+import dev.nimrod.adsdk_lib.callback.PlaybackMetricsListener;
+import dev.nimrod.adsdk_lib.config.AdSdkConfig;
+import dev.nimrod.adsdk_lib.controller.AdController;
 import dev.nimrod.adsdk_lib.manager.AdManager;
-import dev.nimrod.adsdk_lib.manager.AdPreloadManager;
+import dev.nimrod.adsdk_lib.manager.AdPlacementRegistry;
+import dev.nimrod.adsdk_lib.manager.AdState;
 import dev.nimrod.adsdk_lib.model.Ad;
+import dev.nimrod.adsdk_lib.player.PlayerPrewarmer;
+import dev.nimrod.adsdk_lib.util.AppForegroundTracker;
+import dev.nimrod.adsdk_lib.util.NetworkMonitor;
 
 /**
  * Main entry point for the AdSDK library.
  * Provides static methods for initializing the SDK, checking ad availability, and displaying ads.
  */
 public class AdSdk {
+    private static final String TAG = "AdSdk";
+
+    // In background: flushes buffered tracking events, pauses preloading and frees the pre-warmed
+    // player; resumes them in foreground
+    private static final AppForegroundTracker.Listener LIFECYCLE_LISTENER = new AppForegroundTracker.Listener() {
+        @Override
+        public void onAppForeground() {
+            AdPlacementRegistry.getInstance().resumeAll();
+        }
+
+        @Override
+        public void onAppBackground() {
+            AdController.getInstance().flushEvents();
+            AdPlacementRegistry.getInstance().pauseAll();
+            PlayerPrewarmer.getInstance().release();
+        }
+    };
+
+    // Replays events kept in the outbox once connectivity returns
+    private static final NetworkMonitor.Listener EVENT_REPLAY_LISTENER =
+            () -> AdController.getInstance().flushEvents();
 
     /**
      * Initializes the AdSDK with the provided context and callback.
@@ -22,9 +55,34 @@ public class AdSdk {
      * @param callback The callback interface to handle ad events
      */
     public static void init(Context context, AdCallback callback) {
-        AdManager.getInstance().setPackageName(context.getPackageName());
+        init(context, callback, AdSdkConfig.defaults());
+    }
+
+    /**
+     * Initializes the AdSDK with a custom configuration.
+     * The configuration is applied to the shared network client, which is built once
+     * and reused for every ad request and tracking event.
+     *
+     * @param context  The application or activity context
+     * @param callback The callback interface to handle ad events
+     * @param config   The SDK configuration (connection pool, timeouts, dispatcher limits)
+     */
+    public static void init(Context context, AdCallback callback, AdSdkConfig config) {
+        AdHttpClient.init(config, new File(context.getCacheDir(), AdHttpClient.HTTP_CACHE_DIRECTORY));
+        AdController.getInstance().init(context);
+        registerLifecycleTriggers(context);
+        AdPlacementRegistry.getInstance().setPackageName(context.getPackageName());
         AdManager.getInstance().initAd(context, callback);
+    }
+
+    private static void registerLifecycleTriggers(Context context) {
+        AppForegroundTracker tracker = AppForegroundTracker.getInstance();
+        tracker.register(context);
+        tracker.addListener(LIFECYCLE_LISTENER);
 
+        NetworkMonitor networkMonitor = NetworkMonitor.getInstance();
+        networkMonitor.register(context);
+        networkMonitor.addListener(EVENT_REPLAY_LISTENER);
     }
 
     /**
@@ -44,8 +102,91 @@ public class AdSdk {
      * @return true if an ad is ready, false otherwise
      */
     public static boolean isAdReady() {
-        return AdManager.getInstance().getCurrentAd() != null ||
-                AdPreloadManager.getInstance().hasPreloadedAd();
+        return AdManager.getInstance().isAdReady();
+    }
+
+    /**
+     * Loads an ad without a callback, for composing with other asynchronous work.
+     * Cancelling the future cancels the ad request in flight.
+     *
+     * @return Future completed with the loaded ad, see {@link AdManager#loadAdAsync(long)}
+     */
+    public static CompletableFuture<Ad> loadAdAsync() {
+        return loadAdAsync(0);
+    }
+
+    /**
+     * @param timeoutMs Time allowed for the load, or 0 to wait indefinitely
+     * @return Future completed with the loaded ad, see {@link AdManager#loadAdAsync(long)}
+     */
+    public static CompletableFuture<Ad> loadAdAsync(long timeoutMs) {
+        return AdManager.getInstance().loadAdAsync(timeoutMs);
+    }
+
+    /**
+     * Shows an ad, loading one first if none is ready.
+     *
+     * @param activity The activity to launch the ad player from
+     * @return Future completed with how the ad ended, see {@link AdManager#showAdAsync(Activity, long)}
+     */
+    public static CompletableFuture<AdState> showAdAsync(Activity activity) {
+        return showAdAsync(activity, 0);
+    }
+
+    /**
+     * @param activity  The activity to launch the ad player from
+     * @param timeoutMs Time allowed to load an ad if none is ready, or 0 to wait indefinitely
+     * @return Future completed with how the ad ended, see {@link AdManager#showAdAsync(Activity, long)}
+     */
+    public static CompletableFuture<AdState> showAdAsync(Activity activity, long timeoutMs) {
+        return AdManager.getInstance().showAdAsync(activity, timeoutMs);
+    }
+
+    /**
+     * Adds an ad placement with its own pool of ready ads, e.g. a rewarded and an interstitial
+     * slot kept warm at the same time. Can be called before or after {@link #init}.
+     *
+     * @param placementId  Identifier passed to {@link #showAd(Activity, String)}
+     * @param preloadDepth Number of ads kept ready for this placement, or 0 for the configured depth
+     * @param callback     Receives the ads and outcomes of this placement, or null
+     */
+    public static void registerPlacement(String placementId, int preloadDepth, AdCallback callback) {
+        AdPlacementRegistry.getInstance().register(placementId, preloadDepth, callback);
+    }
+
+    /**
+     * Displays an ad of the given placement if one is available.
+     *
+     * @param activity    The activity to launch the ad player from
+     * @param placementId A placement added with {@link #registerPlacement}
+     */
+    public static void showAd(Activity activity, String placementId) {
+        AdManager manager = AdPlacementRegistry.getInstance().get(placementId);
+        if (manager == null) {
+            Log.e(TAG, "Unknown placement: " + placementId);
+            return;
+        }
+        manager.checkAdDisplay(activity);
+    }
+
+    /**
+     * @param placementId A placement added with {@link #registerPlacement}
+     * @return true if an ad of the placement is ready, false if none is or the placement is unknown
+     */
+    public static boolean isAdReady(String placementId) {
+        AdManager manager = AdPlacementRegistry.getInstance().get(placementId);
+        return manager != null && manager.isAdReady();
+    }
+
+    /**
+     * Reports the startup latency and stalls of every ad impression, of all placements, once it
+     * ends. To also send them to the server with the tracking events, enable
+     * {@link AdSdkConfig.Builder#setPlaybackMetricsInEventsEnabled}.
+     *
+     * @param listener Receives the metrics, or null to stop receiving them
+     */
+    public static void setPlaybackMetricsListener(PlaybackMetricsListener listener) {
+        AdController.getInstance().setPlaybackMetricsListener(listener);
     }
 
     /**
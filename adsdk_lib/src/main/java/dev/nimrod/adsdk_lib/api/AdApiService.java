@@ -1,10 +1,14 @@
 package dev.nimrod.adsdk_lib.api;
 
+import java.util.List;
+
 import dev.nimrod.adsdk_lib.model.Ad;
 import dev.nimrod.adsdk_lib.model.Event;
+import okhttp3.RequestBody;
 import retrofit2.Call;
 import retrofit2.http.Body;
 import retrofit2.http.GET;
+import retrofit2.http.Header;
 import retrofit2.http.POST;
 import retrofit2.http.Query;
 
@@ -23,6 +27,17 @@ public interface AdApiService {
     @GET("ads/random")
     Call<Ad> loadRandomAd(@Query("packageName") String packageName);
 
+    /**
+     * Loads up to {@code count} ads in a single request, used to fill the preload pool.
+     * Servers without bulk support answer 404/405; callers fall back to {@link #loadRandomAd(String)}.
+     *
+     * @param packageName The package name of the requesting application
+     * @param count       Maximum number of ads to return
+     * @return A Retrofit Call object containing the ads, possibly fewer than requested
+     */
+    @GET("ads/batch")
+    Call<List<Ad>> loadAds(@Query("packageName") String packageName, @Query("count") int count);
+
     /**
      * Sends an ad interaction event to the server for analytics tracking.
      *
@@ -31,4 +46,25 @@ public interface AdApiService {
      */
     @POST("ad_event")
     Call<Void> sendAdEvent(@Body Event event);
+
+    /**
+     * Sends several ad interaction events in a single request.
+     * Servers without batch support answer 404/405; callers fall back to {@link #sendAdEvent(Event)}.
+     *
+     * @param events The events to deliver, in the order they were created
+     * @return A Retrofit Call object with void response
+     */
+    @POST("ad_event/batch")
+    Call<Void> sendAdEvents(@Body List<Event> events);
+
+    /**
+     * Sends several ad interaction events in the compact binary encoding.
+     * Only used after the server advertised support, see {@link EventEncodingNegotiator}.
+     *
+     * @param body            Events encoded with {@link CompactEventCodec}
+     * @param contentEncoding "gzip" if the body is compressed, null otherwise
+     * @return A Retrofit Call object with void response
+     */
+    @POST("ad_event/batch")
+    Call<Void> sendCompactAdEvents(@Body RequestBody body, @Header("Content-Encoding") String contentEncoding);
 }
\ No newline at end of file
@@ -0,0 +1,88 @@
+package dev.nimrod.adsdk_lib.api;
+
+import java.util.Arrays;
+
+/**
+ * One ad server that answers the {@link AdApiService} API, with its measured latency.
+ * Keeps an exponentially weighted moving average of response times as the endpoint's score
+ * (lower is better) and a window of recent successful latencies for percentile lookups.
+ * Failures count as slow answers so a broken mirror sinks in the ranking.
+ */
+public class AdEndpoint {
+    private static final double SCORE_WEIGHT = 0.2;
+    private static final int WINDOW_SIZE = 64;
+    private static final int MIN_SAMPLES_FOR_PERCENTILE = 20;
+    private static final long FAILURE_PENALTY_MS = 1000;
+
+    private final String baseUrl;
+    private final AdApiService apiService;
+    private final long[] latencies = new long[WINDOW_SIZE];
+    private int latencyCount;
+    private int nextLatency;
+    private double scoreMs = -1;
+
+    public AdEndpoint(String baseUrl, AdApiService apiService) {
+        this.baseUrl = baseUrl;
+        this.apiService = apiService;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public AdApiService getApiService() {
+        return apiService;
+    }
+
+    public synchronized void recordSuccess(long latencyMs) {
+        latencies[nextLatency] = latencyMs;
+        nextLatency = (nextLatency + 1) % WINDOW_SIZE;
+        latencyCount = Math.min(latencyCount + 1, WINDOW_SIZE);
+        updateScore(latencyMs);
+    }
+
+    public synchronized void recordFailure(long elapsedMs) {
+        updateScore(elapsedMs + FAILURE_PENALTY_MS);
+    }
+
+    /**
+     * Records a request cancelled because another endpoint answered first.
+     * Its latency is unknown but at least {@code elapsedMs}, so it only ever worsens the score.
+     */
+    public synchronized void recordCancelled(long elapsedMs) {
+        if (elapsedMs > scoreMs) {
+            updateScore(elapsedMs);
+        }
+    }
+
+    private void updateScore(long latencyMs) {
+        scoreMs = scoreMs < 0 ? latencyMs : scoreMs + SCORE_WEIGHT * (latencyMs - scoreMs);
+    }
+
+    /**
+     * @return Moving average latency in milliseconds, 0 for an endpoint never measured
+     */
+    public synchronized double getScore() {
+        return Math.max(0, scoreMs);
+    }
+
+    /**
+     * @param percentile Value between 0 and 1, e.g. 0.95
+     * @return The latency below which that share of recent requests finished, or -1 while too
+     * few requests were measured
+     */
+    public synchronized long getLatencyPercentile(double percentile) {
+        if (latencyCount < MIN_SAMPLES_FOR_PERCENTILE) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * latencyCount) - 1;
+        return sorted[Math.max(0, Math.min(latencyCount - 1, index))];
+    }
+
+    @Override
+    public String toString() {
+        return "AdEndpoint{" + baseUrl + ", score=" + Math.round(getScore()) + "ms}";
+    }
+}
@@ -0,0 +1,294 @@
+package dev.nimrod.adsdk_lib.api;
+
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import dev.nimrod.adsdk_lib.config.AdSdkConfig;
+import dev.nimrod.adsdk_lib.model.ModelTypeAdapters;
+import dev.nimrod.adsdk_lib.util.Cancellable;
+import dev.nimrod.adsdk_lib.util.MainThreadExecutor;
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+/**
+ * Shared network client for the whole SDK.
+ * Builds the OkHttp client, Gson instance, Retrofit and {@link AdApiService} once so every
+ * ad load and tracking event reuses pooled connections instead of opening new ones.
+ */
+public class AdHttpClient {
+    private static final String TAG = "AdHttpClient";
+    public static final String HTTP_CACHE_DIRECTORY = "adsdk_http";
+    private static volatile AdHttpClient instance;
+    private static AdSdkConfig pendingConfig;
+    private static File pendingCacheDirectory;
+
+    private final AdSdkConfig config;
+    private final OkHttpClient okHttpClient;
+    private final Gson gson;
+    private final AdApiService apiService;
+    private final List<AdEndpoint> endpoints;
+    private final EventEncodingNegotiator eventEncodingNegotiator;
+    private final Executor callbackExecutor;
+    private final Cache httpCache;
+    private final CacheRevalidationCounter cacheCounter = new CacheRevalidationCounter();
+    // Runs hedges and timeouts of the async API
+    private ScheduledExecutorService timer;
+
+    /**
+     * Creates a standalone client without an HTTP cache. The SDK itself uses the shared {@link #getInstance()}.
+     *
+     * @param config The configuration to build the client from
+     */
+    public AdHttpClient(AdSdkConfig config) {
+        this(config, null);
+    }
+
+    /**
+     * Creates a standalone client. The SDK itself uses the shared {@link #getInstance()}.
+     *
+     * @param config         The configuration to build the client from
+     * @param cacheDirectory Directory for the HTTP cache, or null to run without one
+     */
+    public AdHttpClient(AdSdkConfig config, File cacheDirectory) {
+        this.config = config;
+        this.eventEncodingNegotiator = new EventEncodingNegotiator(config.isCompactEventEncodingEnabled());
+        Log.d(TAG, "Creating shared API client: " + config);
+
+        Dispatcher dispatcher = config.getNetworkExecutor() != null
+                ? new Dispatcher(config.getNetworkExecutor()) : new Dispatcher();
+        dispatcher.setMaxRequests(config.getMaxRequests());
+        dispatcher.setMaxRequestsPerHost(config.getMaxRequestsPerHost());
+
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(
+                        config.getMaxIdleConnections(),
+                        config.getKeepAliveDurationMs(),
+                        TimeUnit.MILLISECONDS))
+                .dispatcher(dispatcher)
+                .connectTimeout(config.getConnectTimeoutMs(), TimeUnit.MILLISECONDS)
+                .readTimeout(config.getReadTimeoutMs(), TimeUnit.MILLISECONDS)
+                .writeTimeout(config.getWriteTimeoutMs(), TimeUnit.MILLISECONDS)
+                .addInterceptor(eventEncodingNegotiator)
+                .addNetworkInterceptor(cacheCounter)
+                .retryOnConnectionFailure(true);
+
+        if (config.isHttpCacheEnabled() && cacheDirectory != null) {
+            this.httpCache = new Cache(cacheDirectory, config.getHttpCacheMaxBytes());
+            builder.cache(httpCache);
+        } else {
+            this.httpCache = null;
+        }
+
+        if (config.isHttp2Enabled()) {
+            builder.protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+        } else {
+            builder.protocols(Collections.singletonList(Protocol.HTTP_1_1));
+        }
+
+        this.okHttpClient = builder.build();
+        this.gson = ModelTypeAdapters.register(new GsonBuilder())
+                .setLenient()
+                .create();
+
+        // Responses are parsed on the network thread; only their handling moves to this executor
+        Executor responseExecutor = config.getResponseExecutor() != null ? config.getResponseExecutor() : Runnable::run;
+        this.callbackExecutor = config.getCallbackExecutor() != null
+                ? config.getCallbackExecutor() : MainThreadExecutor.getInstance();
+
+        // Mirrors share the OkHttp client, so they also share its pool and dispatcher
+        List<AdEndpoint> endpoints = new ArrayList<>();
+        for (String url : config.getEndpointUrls()) {
+            Retrofit retrofit = new Retrofit.Builder()
+                    .baseUrl(url)
+                    .client(okHttpClient)
+                    .callbackExecutor(responseExecutor)
+                    .addConverterFactory(GsonConverterFactory.create(gson))
+                    .build();
+            endpoints.add(new AdEndpoint(url, retrofit.create(AdApiService.class)));
+        }
+        this.endpoints = Collections.unmodifiableList(endpoints);
+        this.apiService = endpoints.get(0).getApiService();
+    }
+
+    /**
+     * Sets the configuration used when the shared client is first built.
+     * Has no effect once the client exists, since rebuilding would drop the connection pool.
+     *
+     * @param config The SDK configuration
+     */
+    public static synchronized void init(AdSdkConfig config) {
+        init(config, null);
+    }
+
+    /**
+     * Sets the configuration and HTTP cache directory used when the shared client is first built.
+     * Has no effect once the client exists, since rebuilding would drop the connection pool.
+     *
+     * @param config         The SDK configuration
+     * @param cacheDirectory Directory for the HTTP cache, or null to run without one
+     */
+    public static synchronized void init(AdSdkConfig config, File cacheDirectory) {
+        if (instance != null) {
+            Log.w(TAG, "Client already created, ignoring new configuration");
+            return;
+        }
+        pendingConfig = config;
+        pendingCacheDirectory = cacheDirectory;
+    }
+
+    public static AdHttpClient getInstance() {
+        AdHttpClient client = instance;
+        if (client == null) {
+            synchronized (AdHttpClient.class) {
+                client = instance;
+                if (client == null) {
+                    client = new AdHttpClient(pendingConfig != null ? pendingConfig : AdSdkConfig.defaults(),
+                            pendingCacheDirectory);
+                    instance = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    public AdSdkConfig getConfig() {
+        return config;
+    }
+
+    public OkHttpClient getOkHttpClient() {
+        return okHttpClient;
+    }
+
+    public Gson getGson() {
+        return gson;
+    }
+
+    public AdApiService getApiService() {
+        return apiService;
+    }
+
+    /**
+     * @return The base URL endpoint followed by the configured mirrors
+     */
+    public List<AdEndpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * @return Every endpoint, the lowest moving average latency first
+     */
+    public List<AdEndpoint> getRankedEndpoints() {
+        List<AdEndpoint> ranked = new ArrayList<>(endpoints);
+        // Stable sort: unmeasured endpoints keep their configured order
+        ranked.sort(Comparator.comparingDouble(AdEndpoint::getScore));
+        return ranked;
+    }
+
+    /**
+     * Sends a request to the fastest endpoint, hedging it to the next one if it is slow and
+     * failing over if it fails. See {@link HedgedCall}.
+     * The request is hedged after the endpoint's 95th percentile latency, or after
+     * {@link AdSdkConfig#getHedgeDelayMs()} while that is unknown.
+     *
+     * @param request  Builds the request against an endpoint's API
+     * @param callback Receives the first answer
+     * @return Handle that cancels every attempt
+     */
+    public <T> Cancellable enqueueHedged(Function<AdApiService, Call<T>> request, Callback<T> callback) {
+        List<AdEndpoint> ranked = getRankedEndpoints();
+        long hedgeDelayMs = -1;
+        if (config.isHedgingEnabled() && ranked.size() > 1) {
+            hedgeDelayMs = ranked.get(0).getLatencyPercentile(0.95);
+            if (hedgeDelayMs < 0) {
+                hedgeDelayMs = config.getHedgeDelayMs();
+            }
+        }
+        HedgedCall<T> call = new HedgedCall<>(ranked, request, callback);
+        call.start(hedgeDelayMs >= 0 ? getTimer() : null, hedgeDelayMs);
+        return call;
+    }
+
+    /**
+     * Runs a short task after a delay on the client's timer thread.
+     *
+     * @param task    The task, which must not block
+     * @param delayMs Delay in milliseconds
+     * @return Handle that cancels the task if it has not run yet
+     */
+    public Cancellable schedule(Runnable task, long delayMs) {
+        ScheduledFuture<?> scheduled = getTimer().schedule(task, delayMs, TimeUnit.MILLISECONDS);
+        return () -> scheduled.cancel(false);
+    }
+
+    private synchronized ScheduledExecutorService getTimer() {
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "AdSdk-timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return timer;
+    }
+
+    /**
+     * @return Number of requests queued or running on the shared client, tracking events included
+     */
+    public int getInFlightCallCount() {
+        return okHttpClient.dispatcher().queuedCallsCount() + okHttpClient.dispatcher().runningCallsCount();
+    }
+
+    /**
+     * @return Current HTTP cache counters, or null if the client runs without a cache
+     */
+    public HttpCacheStats getHttpCacheStats() {
+        if (httpCache == null) {
+            return null;
+        }
+        long notModified = cacheCounter.getNotModifiedCount();
+        long size;
+        try {
+            size = httpCache.size();
+        } catch (IOException e) {
+            Log.e(TAG, "Could not read HTTP cache size", e);
+            size = -1;
+        }
+        // OkHttp counts a 304 as a hit too; report it under revalidations only
+        return new HttpCacheStats(httpCache.hitCount() - notModified, cacheCounter.getMissCount(),
+                cacheCounter.getRevalidationCount(), notModified, size, httpCache.maxSize());
+    }
+
+    /**
+     * @return Executor delivering {@link dev.nimrod.adsdk_lib.callback.AdCallback} methods to the app
+     */
+    public Executor getCallbackExecutor() {
+        return callbackExecutor;
+    }
+
+    public EventEncodingNegotiator getEventEncodingNegotiator() {
+        return eventEncodingNegotiator;
+    }
+}
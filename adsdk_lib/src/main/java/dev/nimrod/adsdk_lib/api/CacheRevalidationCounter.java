@@ -0,0 +1,48 @@
+package dev.nimrod.adsdk_lib.api;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Network interceptor that counts the GET requests reaching the server, split into plain
+ * requests and cache revalidations. OkHttp's own counters lump 304 answers in with both
+ * hits and network requests, so they cannot tell the two apart.
+ */
+class CacheRevalidationCounter implements Interceptor {
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong revalidationCount = new AtomicLong();
+    private final AtomicLong notModifiedCount = new AtomicLong();
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        // Requests opting out of the cache, like video downloads, are not cache traffic
+        if (!"GET".equals(request.method()) || request.cacheControl().noStore()) {
+            return chain.proceed(request);
+        }
+        boolean conditional = request.header("If-None-Match") != null
+                || request.header("If-Modified-Since") != null;
+        (conditional ? revalidationCount : missCount).incrementAndGet();
+        Response response = chain.proceed(request);
+        if (conditional && response.code() == 304) {
+            notModifiedCount.incrementAndGet();
+        }
+        return response;
+    }
+
+    long getMissCount() {
+        return missCount.get();
+    }
+
+    long getRevalidationCount() {
+        return revalidationCount.get();
+    }
+
+    long getNotModifiedCount() {
+        return notModifiedCount.get();
+    }
+}
@@ -0,0 +1,389 @@
+package dev.nimrod.adsdk_lib.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import dev.nimrod.adsdk_lib.model.Event;
+import dev.nimrod.adsdk_lib.model.PlaybackMetrics;
+import dev.nimrod.adsdk_lib.util.EventEnum;
+import dev.nimrod.adsdk_lib.util.IsoTimestamp;
+
+/**
+ * Compact binary encoding for batches of tracking events.
+ *
+ * <p>Layout (all integers are unsigned LEB128 varints, signed values are zigzag encoded):
+ * <pre>
+ * version
+ * dictionarySize, entries: (length &lt;&lt; 1 | hexPacked), bytes
+ * eventCount, baseTimestampMillis
+ * per event: adIdRef, timestampDelta (signed), packageNameRef, eventTypeCode, watchDurationMillis
+ * version 2, per event also: bufferingMillis, pausedMillis,
+ *     hasMetrics (0 or 1), then if 1: activityCreated, prepared, firstFrame,
+ *     completed, ended (each milliseconds + 1, 0 = not reached), stallCount, stallDurationMillis
+ * </pre>
+ * String fields are references into the dictionary (0 = null, n = entry n - 1), so ad ids and the
+ * package name are written once per batch. Lowercase hex strings such as ad ids are stored packed,
+ * two characters per byte. Event types the decoders of a version know are written as their
+ * {@link EventEnum} ordinal: view, click, skip and exit in version 1, every progress type as well in
+ * version 2. Other types are written as {@code CUSTOM_TYPE_BASE + ref}. Timestamps are delta coded
+ * against the previous event.
+ *
+ * <p>The watch duration is the playing time of the event. Version 1 has no fields for buffering or
+ * paused time, nor for {@link PlaybackMetrics}; batches carrying them are rejected by
+ * {@link #encode(List, int)} and sent as JSON to servers that only support version 1.
+ */
+public final class CompactEventCodec {
+    public static final String MEDIA_TYPE = "application/x-adsdk-events";
+    public static final int VERSION_1 = 1;
+    public static final int VERSION_2 = 2;
+
+    private static final int CUSTOM_TYPE_BASE = 64;
+    private static final EventEnum[] EVENT_TYPES = EventEnum.values();
+    // Number of EventEnum types with a code, per version. A type code is only understood by decoders
+    // that knew the type when they were built, so types added to EventEnum go through the dictionary
+    // until the version is bumped
+    private static final int[] TYPE_CODES = {0, 4, 9};
+
+    private CompactEventCodec() {
+    }
+
+    /**
+     * Encodes a batch of events in the newest version.
+     *
+     * @param events The events to encode
+     * @return The encoded bytes
+     * @throws IllegalArgumentException if an event timestamp is not an ISO-8601 instant
+     */
+    public static byte[] encode(List<Event> events) {
+        return encode(events, VERSION_2);
+    }
+
+    /**
+     * Encodes a batch of events.
+     *
+     * @param events  The events to encode
+     * @param version The version the server decodes, {@link #VERSION_1} or {@link #VERSION_2}
+     * @return The encoded bytes
+     * @throws IllegalArgumentException if an event timestamp is not an ISO-8601 instant, or an event
+     *                                  carries data the version has no field for
+     */
+    public static byte[] encode(List<Event> events, int version) {
+        if (version != VERSION_1 && version != VERSION_2) {
+            throw new IllegalArgumentException("Unsupported encoding version " + version);
+        }
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> entries = new ArrayList<>();
+        long[] timestamps = new long[events.size()];
+
+        for (int i = 0; i < events.size(); i++) {
+            Event event = events.get(i);
+            timestamps[i] = parseTimestamp(event.getTimestamp());
+            intern(event.getAdId(), dictionary, entries);
+            Event.EventDetails details = event.getEventDetails();
+            if (version == VERSION_1 && details != null && details.getPlaybackMetrics() != null) {
+                throw new IllegalArgumentException("Playback metrics cannot be encoded in version 1");
+            }
+            if (version == VERSION_1 && details != null
+                    && (details.getBufferingMs() != 0 || details.getPausedMs() != 0)) {
+                throw new IllegalArgumentException("Buffering and paused time cannot be encoded in version 1");
+            }
+            if (details != null) {
+                intern(details.getPackageName(), dictionary, entries);
+                if (eventTypeOrdinal(details.getEventType(), version) < 0) {
+                    intern(details.getEventType(), dictionary, entries);
+                }
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + events.size() * 12);
+        writeVarint(out, version);
+        writeVarint(out, entries.size());
+        for (String entry : entries) {
+            writeString(out, entry);
+        }
+
+        writeVarint(out, events.size());
+        long previous = events.isEmpty() ? 0 : timestamps[0];
+        writeVarint(out, previous);
+        for (int i = 0; i < events.size(); i++) {
+            Event event = events.get(i);
+            Event.EventDetails details = event.getEventDetails();
+            writeVarint(out, ref(event.getAdId(), dictionary));
+            writeVarint(out, zigzag(timestamps[i] - previous));
+            previous = timestamps[i];
+            if (details == null) {
+                writeVarint(out, 0);
+                writeVarint(out, CUSTOM_TYPE_BASE);
+                writeVarint(out, 0);
+                if (version >= VERSION_2) {
+                    writeVarint(out, 0);
+                    writeVarint(out, 0);
+                    writeVarint(out, 0);
+                }
+                continue;
+            }
+            writeVarint(out, ref(details.getPackageName(), dictionary));
+            int ordinal = eventTypeOrdinal(details.getEventType(), version);
+            writeVarint(out, ordinal >= 0 ? ordinal : CUSTOM_TYPE_BASE + ref(details.getEventType(), dictionary));
+            // The exact playing time when known, rather than the float seconds derived from it
+            long watchMillis = details.getPlayingMs() > 0 ? details.getPlayingMs()
+                    : Math.round(details.getWatchDuration() * 1000f);
+            writeVarint(out, Math.max(0, watchMillis));
+            if (version >= VERSION_2) {
+                writeVarint(out, Math.max(0, details.getBufferingMs()));
+                writeVarint(out, Math.max(0, details.getPausedMs()));
+                writeMetrics(out, details.getPlaybackMetrics());
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a batch produced by {@link #encode(List, int)}. Used by servers and tests.
+     *
+     * @param data The encoded bytes
+     * @return The decoded events
+     * @throws IllegalArgumentException if the data is malformed or of an unknown version
+     */
+    public static List<Event> decode(byte[] data) {
+        int[] position = {0};
+        int version = (int) readVarint(data, position);
+        if (version != VERSION_1 && version != VERSION_2) {
+            throw new IllegalArgumentException("Unsupported encoding version " + version);
+        }
+        int dictionarySize = (int) readVarint(data, position);
+        String[] entries = new String[dictionarySize];
+        for (int i = 0; i < dictionarySize; i++) {
+            entries[i] = readString(data, position);
+        }
+
+        int count = (int) readVarint(data, position);
+        List<Event> events = new ArrayList<>(count);
+        long timestamp = readVarint(data, position);
+        for (int i = 0; i < count; i++) {
+            Event event = new Event();
+            event.setAdId(lookup(entries, readVarint(data, position)));
+            timestamp += unzigzag(readVarint(data, position));
+            event.setTimestamp(IsoTimestamp.format(timestamp));
+            event.setPackageName(lookup(entries, readVarint(data, position)));
+            long typeCode = readVarint(data, position);
+            if (typeCode < CUSTOM_TYPE_BASE) {
+                if (typeCode >= TYPE_CODES[version]) {
+                    throw new IllegalArgumentException("Unknown event type code " + typeCode);
+                }
+                event.setEventType(EVENT_TYPES[(int) typeCode].getValue());
+            } else {
+                event.setEventType(lookup(entries, typeCode - CUSTOM_TYPE_BASE));
+            }
+            long watchMillis = readVarint(data, position);
+            event.setWatchDuration(watchMillis / 1000f);
+            if (version >= VERSION_2) {
+                long bufferingMillis = readVarint(data, position);
+                long pausedMillis = readVarint(data, position);
+                event.setWatchTime(watchMillis, bufferingMillis, pausedMillis)
+                        .setPlaybackMetrics(readMetrics(data, position));
+            } else {
+                event.setWatchTime(watchMillis, 0, 0);
+            }
+            events.add(event);
+        }
+        return events;
+    }
+
+    public static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 32);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new IllegalStateException("gzip failed", e);
+        }
+        return out.toByteArray();
+    }
+
+    public static byte[] gunzip(byte[] data) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] chunk = new byte[4096];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                out.write(chunk, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static long parseTimestamp(String timestamp) {
+        if (timestamp == null) {
+            throw new IllegalArgumentException("Event has no timestamp");
+        }
+        try {
+            return Instant.parse(timestamp).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid timestamp: " + timestamp, e);
+        }
+    }
+
+    private static int eventTypeOrdinal(String eventType, int version) {
+        for (int i = 0; i < TYPE_CODES[version]; i++) {
+            if (EVENT_TYPES[i].getValue().equals(eventType)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void writeMetrics(ByteArrayOutputStream out, PlaybackMetrics metrics) {
+        if (metrics == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        writeVarint(out, 1);
+        writePhase(out, metrics.getActivityCreatedMs());
+        writePhase(out, metrics.getPreparedMs());
+        writePhase(out, metrics.getFirstFrameMs());
+        writePhase(out, metrics.getCompletedMs());
+        writePhase(out, metrics.getEndedMs());
+        writeVarint(out, Math.max(0, metrics.getStallCount()));
+        writeVarint(out, Math.max(0, metrics.getStallDurationMs()));
+    }
+
+    private static PlaybackMetrics readMetrics(byte[] data, int[] position) {
+        long present = readVarint(data, position);
+        if (present == 0) {
+            return null;
+        }
+        if (present != 1) {
+            throw new IllegalArgumentException("Malformed playback metrics flag " + present);
+        }
+        long activityCreatedMs = readPhase(data, position);
+        long preparedMs = readPhase(data, position);
+        long firstFrameMs = readPhase(data, position);
+        long completedMs = readPhase(data, position);
+        long endedMs = readPhase(data, position);
+        int stallCount = (int) readVarint(data, position);
+        long stallDurationMs = readVarint(data, position);
+        return new PlaybackMetrics(activityCreatedMs, preparedMs, firstFrameMs, completedMs, endedMs,
+                stallCount, stallDurationMs);
+    }
+
+    // Phase times are shifted by one so that NOT_REACHED fits an unsigned varint
+    private static void writePhase(ByteArrayOutputStream out, long phaseMs) {
+        writeVarint(out, Math.max(PlaybackMetrics.NOT_REACHED, phaseMs) + 1);
+    }
+
+    private static long readPhase(byte[] data, int[] position) {
+        return readVarint(data, position) - 1;
+    }
+
+    private static void intern(String value, Map<String, Integer> dictionary, List<String> entries) {
+        if (value != null && !dictionary.containsKey(value)) {
+            dictionary.put(value, entries.size());
+            entries.add(value);
+        }
+    }
+
+    private static long ref(String value, Map<String, Integer> dictionary) {
+        return value == null ? 0 : dictionary.get(value) + 1;
+    }
+
+    private static String lookup(String[] entries, long ref) {
+        if (ref == 0) {
+            return null;
+        }
+        if (ref > entries.length) {
+            throw new IllegalArgumentException("Dictionary reference out of range: " + ref);
+        }
+        return entries[(int) ref - 1];
+    }
+
+    private static boolean isPackableHex(String value) {
+        if (value.isEmpty() || value.length() % 2 != 0) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        if (isPackableHex(value)) {
+            int length = value.length() / 2;
+            writeVarint(out, ((long) length << 1) | 1);
+            for (int i = 0; i < length; i++) {
+                out.write(Character.digit(value.charAt(2 * i), 16) << 4 | Character.digit(value.charAt(2 * i + 1), 16));
+            }
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, (long) bytes.length << 1);
+            out.write(bytes, 0, bytes.length);
+        }
+    }
+
+    private static String readString(byte[] data, int[] position) {
+        long header = readVarint(data, position);
+        int length = (int) (header >>> 1);
+        if (length < 0 || position[0] + length > data.length) {
+            throw new IllegalArgumentException("String exceeds input");
+        }
+        String value;
+        if ((header & 1) == 1) {
+            char[] chars = new char[length * 2];
+            for (int i = 0; i < length; i++) {
+                int b = data[position[0] + i] & 0xFF;
+                chars[2 * i] = Character.forDigit(b >>> 4, 16);
+                chars[2 * i + 1] = Character.forDigit(b & 0xF, 16);
+            }
+            value = new String(chars);
+        } else {
+            value = new String(data, position[0], length, StandardCharsets.UTF_8);
+        }
+        position[0] += length;
+        return value;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(byte[] data, int[] position) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position[0] >= data.length) {
+                throw new IllegalArgumentException("Truncated varint");
+            }
+            byte b = data[position[0]++];
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
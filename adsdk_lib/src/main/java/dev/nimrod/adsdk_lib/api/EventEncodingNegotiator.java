@@ -0,0 +1,68 @@
+package dev.nimrod.adsdk_lib.api;
+
+import android.util.Log;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Learns from server responses whether the compact event encoding may be used, and in which version.
+ * The server opts in by sending {@value #HEADER} with a value listing {@value #COMPACT_V1} and/or
+ * {@value #COMPACT_V2}; until then, and after any rejection, events are sent as JSON.
+ */
+public class EventEncodingNegotiator implements Interceptor {
+    public static final String HEADER = "X-AdSdk-Event-Encoding";
+    public static final String COMPACT_V1 = "compact-v1";
+    public static final String COMPACT_V2 = "compact-v2";
+    private static final String TAG = "EventEncoding";
+
+    private final boolean enabled;
+    // Newest CompactEventCodec version the server advertised, 0 for none
+    private volatile int compactVersion = 0;
+    private volatile boolean compactRejected = false;
+
+    public EventEncodingNegotiator(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Response response = chain.proceed(chain.request());
+        if (enabled && compactVersion < CompactEventCodec.VERSION_2 && !compactRejected) {
+            String advertised = response.header(HEADER);
+            if (advertised != null) {
+                int version = advertised.contains(COMPACT_V2) ? CompactEventCodec.VERSION_2
+                        : advertised.contains(COMPACT_V1) ? CompactEventCodec.VERSION_1 : 0;
+                if (version > compactVersion) {
+                    Log.d(TAG, "Server supports compact event encoding version " + version);
+                    compactVersion = version;
+                }
+            }
+        }
+        return response;
+    }
+
+    /**
+     * @return true if batches should be sent in the compact encoding
+     */
+    public boolean useCompactEncoding() {
+        return enabled && compactVersion > 0 && !compactRejected;
+    }
+
+    /**
+     * @return The {@link CompactEventCodec} version to encode batches in, 0 if none is supported
+     */
+    public int getCompactVersion() {
+        return compactVersion;
+    }
+
+    /**
+     * Falls back to JSON for the rest of the session, e.g. after the server answered 415.
+     */
+    public void onCompactRejected() {
+        Log.w(TAG, "Compact event encoding rejected, falling back to JSON");
+        compactRejected = true;
+    }
+}
@@ -0,0 +1,226 @@
+package dev.nimrod.adsdk_lib.api;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import dev.nimrod.adsdk_lib.util.Cancellable;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Sends one request to a ranked list of endpoints, hedging and failing over between them.
+ * The request goes to the first endpoint; if it has not answered after the hedge delay the same
+ * request is sent to the next one. A failed attempt (network error or 5xx) starts the next
+ * endpoint right away. The first answer wins and every other attempt is cancelled; a failure is
+ * reported only once every endpoint tried has failed. Cancelling stops every attempt and reports
+ * the cancellation as a failure.
+ *
+ * @param <T> Response body type
+ */
+class HedgedCall<T> implements Cancellable {
+    private static final String TAG = "HedgedCall";
+
+    private final List<AdEndpoint> endpoints;
+    private final Function<AdApiService, Call<T>> request;
+    private final Callback<T> callback;
+
+    private final List<Attempt> attempts = new ArrayList<>(2);
+    private ScheduledFuture<?> hedgeTimer;
+    private int failedCount;
+    private boolean cancelRequested;
+    private boolean done;
+
+    /**
+     * @param endpoints Endpoints in order of preference
+     * @param request   Builds the request against an endpoint's API
+     * @param callback  Receives the winning answer, or the last failure
+     */
+    HedgedCall(List<AdEndpoint> endpoints, Function<AdApiService, Call<T>> request, Callback<T> callback) {
+        this.endpoints = endpoints;
+        this.request = request;
+        this.callback = callback;
+    }
+
+    /**
+     * Starts the request.
+     *
+     * @param timer        Timer for the hedge; unused with a single endpoint
+     * @param hedgeDelayMs Delay before the request is duplicated, or a negative value to only fail over
+     */
+    void start(ScheduledExecutorService timer, long hedgeDelayMs) {
+        launchNext();
+        if (hedgeDelayMs >= 0 && endpoints.size() > 1) {
+            ScheduledFuture<?> future = timer.schedule(this::hedge, hedgeDelayMs, TimeUnit.MILLISECONDS);
+            synchronized (this) {
+                hedgeTimer = future;
+            }
+        }
+    }
+
+    private void hedge() {
+        synchronized (this) {
+            if (done || attempts.size() >= endpoints.size()) {
+                return;
+            }
+        }
+        Log.d(TAG, "No answer from " + endpoints.get(0).getBaseUrl() + " yet, hedging");
+        launchNext();
+    }
+
+    private void launchNext() {
+        Attempt attempt;
+        synchronized (this) {
+            if (done || cancelRequested || attempts.size() >= endpoints.size()) {
+                return;
+            }
+            AdEndpoint endpoint = endpoints.get(attempts.size());
+            attempt = new Attempt(endpoint, request.apply(endpoint.getApiService()));
+            attempts.add(attempt);
+        }
+        AdEndpoint endpoint = attempt.endpoint;
+        attempt.call.enqueue(new Callback<T>() {
+            @Override
+            public void onResponse(Call<T> call, Response<T> response) {
+                long elapsedMs = attempt.elapsedMs();
+                if (response.code() >= 500) {
+                    endpoint.recordFailure(elapsedMs);
+                    onAttemptFailed(attempt, response, null);
+                } else {
+                    endpoint.recordSuccess(elapsedMs);
+                    onAnswer(attempt, response);
+                }
+            }
+
+            @Override
+            public void onFailure(Call<T> call, Throwable throwable) {
+                if (call.isCanceled()) {
+                    onCancelled(attempt, throwable);
+                    return;
+                }
+                endpoint.recordFailure(attempt.elapsedMs());
+                onAttemptFailed(attempt, null, throwable);
+            }
+        });
+    }
+
+    private void onAnswer(Attempt winner, Response<T> response) {
+        List<Attempt> losers = new ArrayList<>(1);
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            done = true;
+            cancelHedgeTimer();
+            for (Attempt attempt : attempts) {
+                if (attempt != winner && !attempt.failed) {
+                    losers.add(attempt);
+                }
+            }
+        }
+        // Score the losers before answering so the next request already ranks them lower
+        for (Attempt attempt : losers) {
+            attempt.call.cancel();
+            attempt.endpoint.recordCancelled(attempt.elapsedMs());
+        }
+        callback.onResponse(winner.call, response);
+    }
+
+    private void onAttemptFailed(Attempt attempt, Response<T> response, Throwable throwable) {
+        boolean failOver = false;
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            attempt.failed = true;
+            failedCount++;
+            if (attempts.size() < endpoints.size() && !cancelRequested) {
+                failOver = true;
+            } else if (failedCount < attempts.size()) {
+                // Another attempt is still running and may answer
+                return;
+            } else {
+                done = true;
+                cancelHedgeTimer();
+            }
+        }
+        if (failOver) {
+            Log.d(TAG, "Attempt failed, failing over to the next endpoint");
+            launchNext();
+        } else if (response != null) {
+            callback.onResponse(attempt.call, response);
+        } else {
+            callback.onFailure(attempt.call, throwable);
+        }
+    }
+
+    private void onCancelled(Attempt cancelled, Throwable throwable) {
+        List<Attempt> others = new ArrayList<>(1);
+        synchronized (this) {
+            if (done) {
+                // A loser cancelled by the winner, already scored
+                return;
+            }
+            done = true;
+            cancelHedgeTimer();
+            for (Attempt attempt : attempts) {
+                if (attempt != cancelled) {
+                    others.add(attempt);
+                }
+            }
+        }
+        for (Attempt attempt : others) {
+            attempt.call.cancel();
+        }
+        callback.onFailure(cancelled.call, throwable);
+    }
+
+    /**
+     * Cancels every attempt. The callback receives the cancellation through
+     * {@link Callback#onFailure(Call, Throwable)} unless an answer already arrived.
+     */
+    @Override
+    public void cancel() {
+        List<Attempt> running;
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            cancelRequested = true;
+            cancelHedgeTimer();
+            running = new ArrayList<>(attempts);
+        }
+        for (Attempt attempt : running) {
+            attempt.call.cancel();
+        }
+    }
+
+    private void cancelHedgeTimer() {
+        if (hedgeTimer != null) {
+            hedgeTimer.cancel(false);
+        }
+    }
+
+    private class Attempt {
+        final AdEndpoint endpoint;
+        final Call<T> call;
+        final long startNanos = System.nanoTime();
+        // Guarded by the enclosing HedgedCall
+        boolean failed;
+
+        Attempt(AdEndpoint endpoint, Call<T> call) {
+            this.endpoint = endpoint;
+            this.call = call;
+        }
+
+        long elapsedMs() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        }
+    }
+}
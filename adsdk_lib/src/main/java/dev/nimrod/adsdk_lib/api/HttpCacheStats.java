@@ -0,0 +1,73 @@
+package dev.nimrod.adsdk_lib.api;
+
+/**
+ * Snapshot of the HTTP cache counters, see {@link AdHttpClient#getHttpCacheStats()}.
+ * A hit was served from disk without contacting the server. A revalidation sent a conditional
+ * request ({@code If-None-Match} / {@code If-Modified-Since}); when the server answered
+ * 304 Not Modified the cached body was reused. A miss was a GET sent without a cached copy.
+ */
+public class HttpCacheStats {
+    private final long hitCount;
+    private final long missCount;
+    private final long revalidationCount;
+    private final long notModifiedCount;
+    private final long size;
+    private final long maxSize;
+
+    public HttpCacheStats(long hitCount, long missCount, long revalidationCount, long notModifiedCount,
+                          long size, long maxSize) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.revalidationCount = revalidationCount;
+        this.notModifiedCount = notModifiedCount;
+        this.size = size;
+        this.maxSize = maxSize;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getRevalidationCount() {
+        return revalidationCount;
+    }
+
+    /**
+     * @return Revalidations answered with 304, i.e. the cached body was still valid
+     */
+    public long getNotModifiedCount() {
+        return notModifiedCount;
+    }
+
+    /**
+     * @return Share of GET requests answered without downloading a body, hits and 304s alike
+     */
+    public double getHitRate() {
+        long total = hitCount + missCount + revalidationCount;
+        return total == 0 ? 0 : (double) (hitCount + notModifiedCount) / total;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public String toString() {
+        return "HttpCacheStats{" +
+                "hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", revalidationCount=" + revalidationCount +
+                ", notModifiedCount=" + notModifiedCount +
+                ", size=" + size +
+                ", maxSize=" + maxSize +
+                '}';
+    }
+}
@@ -0,0 +1,30 @@
+package dev.nimrod.adsdk_lib.callback;
+
+import java.util.List;
+
+import dev.nimrod.adsdk_lib.model.Ad;
+
+/**
+ * Callback interface for requests that load several ads at once.
+ */
+public interface AdListCallback {
+
+    /**
+     * Called when at least one ad has been loaded.
+     *
+     * @param ads The loaded ads, never empty and possibly fewer than requested
+     */
+    void onAdsAvailable(List<Ad> ads);
+
+    /**
+     * Called when the server has no ads to offer.
+     */
+    void onNoAvailable();
+
+    /**
+     * Called when the request failed.
+     *
+     * @param message Error description for debugging purposes
+     */
+    void onError(String message);
+}
@@ -0,0 +1,61 @@
+package dev.nimrod.adsdk_lib.callback;
+
+import java.util.concurrent.Executor;
+
+import dev.nimrod.adsdk_lib.model.Ad;
+
+/**
+ * {@link AdCallback} that forwards every call to another callback on a given executor.
+ * Used to deliver results to the app on its chosen thread, by default the main thread.
+ */
+public class DispatchingAdCallback implements AdCallback {
+    private final AdCallback delegate;
+    private final Executor executor;
+
+    private DispatchingAdCallback(AdCallback delegate, Executor executor) {
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    /**
+     * @param callback The app's callback, may be null
+     * @param executor Executor to deliver on
+     * @return A callback delivering on the executor, or null if {@code callback} is null
+     */
+    public static AdCallback wrap(AdCallback callback, Executor executor) {
+        if (callback == null || callback instanceof DispatchingAdCallback) {
+            return callback;
+        }
+        return new DispatchingAdCallback(callback, executor);
+    }
+
+    @Override
+    public void onAdAvailable(Ad ad) {
+        executor.execute(() -> delegate.onAdAvailable(ad));
+    }
+
+    @Override
+    public void onAdFinished() {
+        executor.execute(delegate::onAdFinished);
+    }
+
+    @Override
+    public void onAdSkipped() {
+        executor.execute(delegate::onAdSkipped);
+    }
+
+    @Override
+    public void onAdExited() {
+        executor.execute(delegate::onAdExited);
+    }
+
+    @Override
+    public void onNoAvailable(Ad ad) {
+        executor.execute(() -> delegate.onNoAvailable(ad));
+    }
+
+    @Override
+    public void onError(String message) {
+        executor.execute(() -> delegate.onError(message));
+    }
+}
@@ -0,0 +1,16 @@
+package dev.nimrod.adsdk_lib.callback;
+
+import dev.nimrod.adsdk_lib.model.Ad;
+import dev.nimrod.adsdk_lib.model.PlaybackMetrics;
+
+/**
+ * Receives the playback quality of every ad impression once it ends.
+ * Invoked on the configured callback executor, the main thread by default.
+ */
+public interface PlaybackMetricsListener {
+    /**
+     * @param ad      The ad that was shown
+     * @param metrics Startup latency, stalls and phase times of the impression
+     */
+    void onPlaybackMetrics(Ad ad, PlaybackMetrics metrics);
+}
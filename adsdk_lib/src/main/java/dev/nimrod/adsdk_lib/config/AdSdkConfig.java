@@ -0,0 +1,873 @@
+package dev.nimrod.adsdk_lib.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+import dev.nimrod.adsdk_lib.player.PlayerEngineType;
+
+/**
+ * Immutable configuration for the AdSDK.
+ * Controls how the shared network client is built and tuned.
+ * Create instances with {@link Builder}; {@link #defaults()} returns the stock configuration.
+ */
+public class AdSdkConfig {
+    public static final String DEFAULT_BASE_URL = "https://ad-server-kappa.vercel.app/";
+
+    private final String baseUrl;
+    private final int maxIdleConnections;
+    private final long keepAliveDurationMs;
+    private final boolean http2Enabled;
+    private final int maxRequests;
+    private final int maxRequestsPerHost;
+    private final long connectTimeoutMs;
+    private final long readTimeoutMs;
+    private final long writeTimeoutMs;
+    private final boolean eventBatchingEnabled;
+    private final int maxEventBatchSize;
+    private final long maxEventBatchAgeMs;
+    private final boolean eventOutboxEnabled;
+    private final int eventOutboxSegmentSize;
+    private final int eventOutboxMaxSegments;
+    private final boolean compactEventEncodingEnabled;
+    private final int preloadDepth;
+    private final long preloadTtlMs;
+    private final boolean mediaCacheEnabled;
+    private final long mediaCacheMaxBytes;
+    private final boolean partialPrefetchEnabled;
+    private final long prefetchBytesMetered;
+    private final long prefetchBytesUnmetered;
+    private final long retryInitialDelayMs;
+    private final long retryMaxDelayMs;
+    private final int retryMaxAttempts;
+    private final int circuitBreakerFailureThreshold;
+    private final long circuitBreakerOpenMs;
+    private final List<String> mirrorBaseUrls;
+    private final boolean hedgingEnabled;
+    private final long hedgeDelayMs;
+    private final boolean httpCacheEnabled;
+    private final long httpCacheMaxBytes;
+    private final ExecutorService networkExecutor;
+    private final Executor responseExecutor;
+    private final Executor callbackExecutor;
+    private final PlayerEngineType playerEngine;
+    private final int playerMinBufferMs;
+    private final int playerMaxBufferMs;
+    private final int playerBufferForPlaybackMs;
+    private final int playerBufferForPlaybackAfterRebufferMs;
+    private final int playerBackBufferMs;
+    private final boolean playerPrewarmEnabled;
+    private final boolean playbackMetricsInEventsEnabled;
+
+    private AdSdkConfig(Builder builder) {
+        this.baseUrl = builder.baseUrl;
+        this.maxIdleConnections = builder.maxIdleConnections;
+        this.keepAliveDurationMs = builder.keepAliveDurationMs;
+        this.http2Enabled = builder.http2Enabled;
+        this.maxRequests = builder.maxRequests;
+        this.maxRequestsPerHost = builder.maxRequestsPerHost;
+        this.connectTimeoutMs = builder.connectTimeoutMs;
+        this.readTimeoutMs = builder.readTimeoutMs;
+        this.writeTimeoutMs = builder.writeTimeoutMs;
+        this.eventBatchingEnabled = builder.eventBatchingEnabled;
+        this.maxEventBatchSize = builder.maxEventBatchSize;
+        this.maxEventBatchAgeMs = builder.maxEventBatchAgeMs;
+        this.eventOutboxEnabled = builder.eventOutboxEnabled;
+        this.eventOutboxSegmentSize = builder.eventOutboxSegmentSize;
+        this.eventOutboxMaxSegments = builder.eventOutboxMaxSegments;
+        this.compactEventEncodingEnabled = builder.compactEventEncodingEnabled;
+        this.preloadDepth = builder.preloadDepth;
+        this.preloadTtlMs = builder.preloadTtlMs;
+        this.mediaCacheEnabled = builder.mediaCacheEnabled;
+        this.mediaCacheMaxBytes = builder.mediaCacheMaxBytes;
+        this.partialPrefetchEnabled = builder.partialPrefetchEnabled;
+        this.prefetchBytesMetered = builder.prefetchBytesMetered;
+        this.prefetchBytesUnmetered = builder.prefetchBytesUnmetered;
+        this.retryInitialDelayMs = builder.retryInitialDelayMs;
+        this.retryMaxDelayMs = builder.retryMaxDelayMs;
+        this.retryMaxAttempts = builder.retryMaxAttempts;
+        this.circuitBreakerFailureThreshold = builder.circuitBreakerFailureThreshold;
+        this.circuitBreakerOpenMs = builder.circuitBreakerOpenMs;
+        this.mirrorBaseUrls = Collections.unmodifiableList(new ArrayList<>(builder.mirrorBaseUrls));
+        this.hedgingEnabled = builder.hedgingEnabled;
+        this.hedgeDelayMs = builder.hedgeDelayMs;
+        this.httpCacheEnabled = builder.httpCacheEnabled;
+        this.httpCacheMaxBytes = builder.httpCacheMaxBytes;
+        this.networkExecutor = builder.networkExecutor;
+        this.responseExecutor = builder.responseExecutor;
+        this.callbackExecutor = builder.callbackExecutor;
+        this.playerEngine = builder.playerEngine;
+        this.playerMinBufferMs = builder.playerMinBufferMs;
+        this.playerMaxBufferMs = builder.playerMaxBufferMs;
+        this.playerBufferForPlaybackMs = builder.playerBufferForPlaybackMs;
+        this.playerBufferForPlaybackAfterRebufferMs = builder.playerBufferForPlaybackAfterRebufferMs;
+        this.playerBackBufferMs = builder.playerBackBufferMs;
+        this.playerPrewarmEnabled = builder.playerPrewarmEnabled;
+        this.playbackMetricsInEventsEnabled = builder.playbackMetricsInEventsEnabled;
+    }
+
+    public static AdSdkConfig defaults() {
+        return new Builder().build();
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public int getMaxIdleConnections() {
+        return maxIdleConnections;
+    }
+
+    public long getKeepAliveDurationMs() {
+        return keepAliveDurationMs;
+    }
+
+    public boolean isHttp2Enabled() {
+        return http2Enabled;
+    }
+
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+    public int getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    public long getConnectTimeoutMs() {
+        return connectTimeoutMs;
+    }
+
+    public long getReadTimeoutMs() {
+        return readTimeoutMs;
+    }
+
+    public long getWriteTimeoutMs() {
+        return writeTimeoutMs;
+    }
+
+    public boolean isEventBatchingEnabled() {
+        return eventBatchingEnabled;
+    }
+
+    public int getMaxEventBatchSize() {
+        return maxEventBatchSize;
+    }
+
+    public long getMaxEventBatchAgeMs() {
+        return maxEventBatchAgeMs;
+    }
+
+    public boolean isEventOutboxEnabled() {
+        return eventOutboxEnabled;
+    }
+
+    public int getEventOutboxSegmentSize() {
+        return eventOutboxSegmentSize;
+    }
+
+    public int getEventOutboxMaxSegments() {
+        return eventOutboxMaxSegments;
+    }
+
+    public boolean isCompactEventEncodingEnabled() {
+        return compactEventEncodingEnabled;
+    }
+
+    public int getPreloadDepth() {
+        return preloadDepth;
+    }
+
+    public long getPreloadTtlMs() {
+        return preloadTtlMs;
+    }
+
+    public boolean isMediaCacheEnabled() {
+        return mediaCacheEnabled;
+    }
+
+    public long getMediaCacheMaxBytes() {
+        return mediaCacheMaxBytes;
+    }
+
+    public boolean isPartialPrefetchEnabled() {
+        return partialPrefetchEnabled;
+    }
+
+    public long getPrefetchBytesMetered() {
+        return prefetchBytesMetered;
+    }
+
+    public long getPrefetchBytesUnmetered() {
+        return prefetchBytesUnmetered;
+    }
+
+    public long getRetryInitialDelayMs() {
+        return retryInitialDelayMs;
+    }
+
+    public long getRetryMaxDelayMs() {
+        return retryMaxDelayMs;
+    }
+
+    public int getRetryMaxAttempts() {
+        return retryMaxAttempts;
+    }
+
+    public int getCircuitBreakerFailureThreshold() {
+        return circuitBreakerFailureThreshold;
+    }
+
+    public long getCircuitBreakerOpenMs() {
+        return circuitBreakerOpenMs;
+    }
+
+    public List<String> getMirrorBaseUrls() {
+        return mirrorBaseUrls;
+    }
+
+    /**
+     * @return The base URL followed by every mirror
+     */
+    public List<String> getEndpointUrls() {
+        List<String> urls = new ArrayList<>(1 + mirrorBaseUrls.size());
+        urls.add(baseUrl);
+        urls.addAll(mirrorBaseUrls);
+        return urls;
+    }
+
+    public boolean isHedgingEnabled() {
+        return hedgingEnabled;
+    }
+
+    public long getHedgeDelayMs() {
+        return hedgeDelayMs;
+    }
+
+    public boolean isHttpCacheEnabled() {
+        return httpCacheEnabled;
+    }
+
+    public long getHttpCacheMaxBytes() {
+        return httpCacheMaxBytes;
+    }
+
+    /**
+     * @return The configured executor, or null for the default
+     */
+    public ExecutorService getNetworkExecutor() {
+        return networkExecutor;
+    }
+
+    /**
+     * @return The configured executor, or null for the default
+     */
+    public Executor getResponseExecutor() {
+        return responseExecutor;
+    }
+
+    /**
+     * @return The configured executor, or null for the default
+     */
+    public Executor getCallbackExecutor() {
+        return callbackExecutor;
+    }
+
+    public PlayerEngineType getPlayerEngine() {
+        return playerEngine;
+    }
+
+    public int getPlayerMinBufferMs() {
+        return playerMinBufferMs;
+    }
+
+    public int getPlayerMaxBufferMs() {
+        return playerMaxBufferMs;
+    }
+
+    public int getPlayerBufferForPlaybackMs() {
+        return playerBufferForPlaybackMs;
+    }
+
+    public int getPlayerBufferForPlaybackAfterRebufferMs() {
+        return playerBufferForPlaybackAfterRebufferMs;
+    }
+
+    public int getPlayerBackBufferMs() {
+        return playerBackBufferMs;
+    }
+
+    public boolean isPlayerPrewarmEnabled() {
+        return playerPrewarmEnabled;
+    }
+
+    public boolean isPlaybackMetricsInEventsEnabled() {
+        return playbackMetricsInEventsEnabled;
+    }
+
+    @Override
+    public String toString() {
+        return "AdSdkConfig{" +
+                "baseUrl='" + baseUrl + '\'' +
+                ", maxIdleConnections=" + maxIdleConnections +
+                ", keepAliveDurationMs=" + keepAliveDurationMs +
+                ", http2Enabled=" + http2Enabled +
+                ", maxRequests=" + maxRequests +
+                ", maxRequestsPerHost=" + maxRequestsPerHost +
+                ", connectTimeoutMs=" + connectTimeoutMs +
+                ", readTimeoutMs=" + readTimeoutMs +
+                ", writeTimeoutMs=" + writeTimeoutMs +
+                ", eventBatchingEnabled=" + eventBatchingEnabled +
+                ", maxEventBatchSize=" + maxEventBatchSize +
+                ", maxEventBatchAgeMs=" + maxEventBatchAgeMs +
+                ", eventOutboxEnabled=" + eventOutboxEnabled +
+                ", eventOutboxSegmentSize=" + eventOutboxSegmentSize +
+                ", eventOutboxMaxSegments=" + eventOutboxMaxSegments +
+                ", compactEventEncodingEnabled=" + compactEventEncodingEnabled +
+                ", preloadDepth=" + preloadDepth +
+                ", preloadTtlMs=" + preloadTtlMs +
+                ", mediaCacheEnabled=" + mediaCacheEnabled +
+                ", mediaCacheMaxBytes=" + mediaCacheMaxBytes +
+                ", partialPrefetchEnabled=" + partialPrefetchEnabled +
+                ", prefetchBytesMetered=" + prefetchBytesMetered +
+                ", prefetchBytesUnmetered=" + prefetchBytesUnmetered +
+                ", retryInitialDelayMs=" + retryInitialDelayMs +
+                ", retryMaxDelayMs=" + retryMaxDelayMs +
+                ", retryMaxAttempts=" + retryMaxAttempts +
+                ", circuitBreakerFailureThreshold=" + circuitBreakerFailureThreshold +
+                ", circuitBreakerOpenMs=" + circuitBreakerOpenMs +
+                ", mirrorBaseUrls=" + mirrorBaseUrls +
+                ", hedgingEnabled=" + hedgingEnabled +
+                ", hedgeDelayMs=" + hedgeDelayMs +
+                ", httpCacheEnabled=" + httpCacheEnabled +
+                ", httpCacheMaxBytes=" + httpCacheMaxBytes +
+                ", networkExecutor=" + networkExecutor +
+                ", responseExecutor=" + responseExecutor +
+                ", callbackExecutor=" + callbackExecutor +
+                ", playerEngine=" + playerEngine +
+                ", playerMinBufferMs=" + playerMinBufferMs +
+                ", playerMaxBufferMs=" + playerMaxBufferMs +
+                ", playerBufferForPlaybackMs=" + playerBufferForPlaybackMs +
+                ", playerBufferForPlaybackAfterRebufferMs=" + playerBufferForPlaybackAfterRebufferMs +
+                ", playerBackBufferMs=" + playerBackBufferMs +
+                ", playerPrewarmEnabled=" + playerPrewarmEnabled +
+                ", playbackMetricsInEventsEnabled=" + playbackMetricsInEventsEnabled +
+                '}';
+    }
+
+    public static class Builder {
+        private String baseUrl = DEFAULT_BASE_URL;
+        private int maxIdleConnections = 5;
+        private long keepAliveDurationMs = 5 * 60 * 1000;
+        private boolean http2Enabled = true;
+        private int maxRequests = 16;
+        private int maxRequestsPerHost = 4;
+        private long connectTimeoutMs = 10_000;
+        private long readTimeoutMs = 15_000;
+        private long writeTimeoutMs = 15_000;
+        private boolean eventBatchingEnabled = true;
+        private int maxEventBatchSize = 10;
+        private long maxEventBatchAgeMs = 5_000;
+        private boolean eventOutboxEnabled = true;
+        private int eventOutboxSegmentSize = 64 * 1024;
+        private int eventOutboxMaxSegments = 16;
+        private boolean compactEventEncodingEnabled = true;
+        private int preloadDepth = 2;
+        private long preloadTtlMs = 30 * 60 * 1000;
+        private boolean mediaCacheEnabled = true;
+        private long mediaCacheMaxBytes = 100L * 1024 * 1024;
+        private boolean partialPrefetchEnabled = false;
+        private long prefetchBytesMetered = 512L * 1024;
+        private long prefetchBytesUnmetered = 2L * 1024 * 1024;
+        private long retryInitialDelayMs = 1000;
+        private long retryMaxDelayMs = 5 * 60 * 1000;
+        private int retryMaxAttempts = 8;
+        private int circuitBreakerFailureThreshold = 5;
+        private long circuitBreakerOpenMs = 60 * 1000;
+        private List<String> mirrorBaseUrls = Collections.emptyList();
+        private boolean hedgingEnabled = true;
+        private long hedgeDelayMs = 1000;
+        private boolean httpCacheEnabled = true;
+        private long httpCacheMaxBytes = 10L * 1024 * 1024;
+        private ExecutorService networkExecutor = null;
+        private Executor responseExecutor = null;
+        private Executor callbackExecutor = null;
+        private PlayerEngineType playerEngine = PlayerEngineType.MEDIA3;
+        private int playerMinBufferMs = 15000;
+        private int playerMaxBufferMs = 30000;
+        private int playerBufferForPlaybackMs = 1000;
+        private int playerBufferForPlaybackAfterRebufferMs = 2000;
+        private int playerBackBufferMs = 0;
+        private boolean playerPrewarmEnabled = false;
+        private boolean playbackMetricsInEventsEnabled = false;
+
+        /**
+         * Sets the ad server base URL. Must end with a slash.
+         */
+        public Builder setBaseUrl(String baseUrl) {
+            this.baseUrl = baseUrl;
+            return this;
+        }
+
+        /**
+         * Sets how many idle connections are kept in the shared pool.
+         */
+        public Builder setMaxIdleConnections(int maxIdleConnections) {
+            this.maxIdleConnections = maxIdleConnections;
+            return this;
+        }
+
+        /**
+         * Sets how long an idle pooled connection is kept alive before it is evicted.
+         */
+        public Builder setKeepAliveDurationMs(long keepAliveDurationMs) {
+            this.keepAliveDurationMs = keepAliveDurationMs;
+            return this;
+        }
+
+        /**
+         * Enables or disables HTTP/2 negotiation. When disabled only HTTP/1.1 is used.
+         */
+        public Builder setHttp2Enabled(boolean http2Enabled) {
+            this.http2Enabled = http2Enabled;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of requests the dispatcher executes concurrently.
+         */
+        public Builder setMaxRequests(int maxRequests) {
+            this.maxRequests = maxRequests;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of concurrent requests to a single host.
+         */
+        public Builder setMaxRequestsPerHost(int maxRequestsPerHost) {
+            this.maxRequestsPerHost = maxRequestsPerHost;
+            return this;
+        }
+
+        public Builder setConnectTimeoutMs(long connectTimeoutMs) {
+            this.connectTimeoutMs = connectTimeoutMs;
+            return this;
+        }
+
+        public Builder setReadTimeoutMs(long readTimeoutMs) {
+            this.readTimeoutMs = readTimeoutMs;
+            return this;
+        }
+
+        public Builder setWriteTimeoutMs(long writeTimeoutMs) {
+            this.writeTimeoutMs = writeTimeoutMs;
+            return this;
+        }
+
+        /**
+         * Enables buffering of tracking events into batches. When disabled every event
+         * is sent on its own as soon as it is created, still through the event outbox so
+         * failed events are retried.
+         */
+        public Builder setEventBatchingEnabled(boolean eventBatchingEnabled) {
+            this.eventBatchingEnabled = eventBatchingEnabled;
+            return this;
+        }
+
+        /**
+         * Sets how many events are buffered before a batch is flushed.
+         */
+        public Builder setMaxEventBatchSize(int maxEventBatchSize) {
+            this.maxEventBatchSize = maxEventBatchSize;
+            return this;
+        }
+
+        /**
+         * Sets the longest time an event may wait in the buffer before the batch is flushed.
+         */
+        public Builder setMaxEventBatchAgeMs(long maxEventBatchAgeMs) {
+            this.maxEventBatchAgeMs = maxEventBatchAgeMs;
+            return this;
+        }
+
+        /**
+         * Enables the durable event outbox. Events are persisted to disk before they are sent
+         * and replayed after connectivity returns or the app restarts.
+         */
+        public Builder setEventOutboxEnabled(boolean eventOutboxEnabled) {
+            this.eventOutboxEnabled = eventOutboxEnabled;
+            return this;
+        }
+
+        /**
+         * Sets the size in bytes of each outbox segment file.
+         */
+        public Builder setEventOutboxSegmentSize(int eventOutboxSegmentSize) {
+            this.eventOutboxSegmentSize = eventOutboxSegmentSize;
+            return this;
+        }
+
+        /**
+         * Sets how many outbox segments are kept. When exceeded the oldest undelivered events are dropped.
+         */
+        public Builder setEventOutboxMaxSegments(int eventOutboxMaxSegments) {
+            this.eventOutboxMaxSegments = eventOutboxMaxSegments;
+            return this;
+        }
+
+        /**
+         * Allows event batches to be sent in the compact binary encoding when the server
+         * advertises support for it. JSON is used otherwise.
+         */
+        public Builder setCompactEventEncodingEnabled(boolean compactEventEncodingEnabled) {
+            this.compactEventEncodingEnabled = compactEventEncodingEnabled;
+            return this;
+        }
+
+        /**
+         * Sets how many ads are kept preloaded and ready to show.
+         */
+        public Builder setPreloadDepth(int preloadDepth) {
+            this.preloadDepth = preloadDepth;
+            return this;
+        }
+
+        /**
+         * Sets how long a preloaded ad stays valid. Expired ads are evicted and replaced.
+         */
+        public Builder setPreloadTtlMs(long preloadTtlMs) {
+            this.preloadTtlMs = preloadTtlMs;
+            return this;
+        }
+
+        /**
+         * Enables downloading ad videos to a disk cache while preloading.
+         * When enabled an ad is only reported as ready once its video is stored locally.
+         */
+        public Builder setMediaCacheEnabled(boolean mediaCacheEnabled) {
+            this.mediaCacheEnabled = mediaCacheEnabled;
+            return this;
+        }
+
+        /**
+         * Sets the maximum disk space used by cached ad videos.
+         * The least recently used videos are deleted when the limit is exceeded.
+         */
+        public Builder setMediaCacheMaxBytes(long mediaCacheMaxBytes) {
+            this.mediaCacheMaxBytes = mediaCacheMaxBytes;
+            return this;
+        }
+
+        /**
+         * Preloads only the first bytes of each ad video using HTTP range requests.
+         * The rest is downloaded while the ad plays, through a local streaming proxy.
+         * Requires the media cache.
+         */
+        public Builder setPartialPrefetchEnabled(boolean partialPrefetchEnabled) {
+            this.partialPrefetchEnabled = partialPrefetchEnabled;
+            return this;
+        }
+
+        /**
+         * Sets how many bytes of each video are preloaded on metered networks such as cellular,
+         * when partial prefetching is enabled.
+         */
+        public Builder setPrefetchBytesMetered(long prefetchBytesMetered) {
+            this.prefetchBytesMetered = prefetchBytesMetered;
+            return this;
+        }
+
+        /**
+         * Sets how many bytes of each video are preloaded on unmetered networks such as Wi-Fi,
+         * when partial prefetching is enabled.
+         */
+        public Builder setPrefetchBytesUnmetered(long prefetchBytesUnmetered) {
+            this.prefetchBytesUnmetered = prefetchBytesUnmetered;
+            return this;
+        }
+
+        /**
+         * Sets the upper bound of the first retry delay after a failed preload.
+         * Later delays double up to the maximum and are randomized with full jitter.
+         */
+        public Builder setRetryInitialDelayMs(long retryInitialDelayMs) {
+            this.retryInitialDelayMs = retryInitialDelayMs;
+            return this;
+        }
+
+        /**
+         * Sets the upper bound of any retry delay.
+         */
+        public Builder setRetryMaxDelayMs(long retryMaxDelayMs) {
+            this.retryMaxDelayMs = retryMaxDelayMs;
+            return this;
+        }
+
+        /**
+         * Sets how many consecutive failed preloads are retried automatically.
+         * After that, loading resumes only when an ad is requested or shown.
+         */
+        public Builder setRetryMaxAttempts(int retryMaxAttempts) {
+            this.retryMaxAttempts = retryMaxAttempts;
+            return this;
+        }
+
+        /**
+         * Sets how many consecutive server failures open the circuit breaker,
+         * which pauses ad requests until a single probe request succeeds.
+         */
+        public Builder setCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold) {
+            this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+            return this;
+        }
+
+        /**
+         * Sets how long the circuit breaker stays open before a probe request is sent.
+         */
+        public Builder setCircuitBreakerOpenMs(long circuitBreakerOpenMs) {
+            this.circuitBreakerOpenMs = circuitBreakerOpenMs;
+            return this;
+        }
+
+        /**
+         * Sets mirror servers that serve the same API as the base URL. Each must end with a slash.
+         * Ad requests fail over to them and are hedged across them, see {@link #setHedgingEnabled(boolean)}.
+         */
+        public Builder setMirrorBaseUrls(List<String> mirrorBaseUrls) {
+            this.mirrorBaseUrls = mirrorBaseUrls;
+            return this;
+        }
+
+        /**
+         * Sets whether a slow ad request is duplicated to a mirror server, the first answer winning.
+         * Has no effect without mirror servers.
+         */
+        public Builder setHedgingEnabled(boolean hedgingEnabled) {
+            this.hedgingEnabled = hedgingEnabled;
+            return this;
+        }
+
+        /**
+         * Sets how long an ad request may take before it is hedged while too few latencies are known.
+         * Once enough have been measured the endpoint's 95th percentile latency is used instead.
+         */
+        public Builder setHedgeDelayMs(long hedgeDelayMs) {
+            this.hedgeDelayMs = hedgeDelayMs;
+            return this;
+        }
+
+        /**
+         * Sets whether API responses are kept in an on-disk HTTP cache.
+         * Cached responses follow the server's Cache-Control headers and are revalidated with ETag.
+         * Videos are not stored there; they have their own media cache.
+         */
+        public Builder setHttpCacheEnabled(boolean httpCacheEnabled) {
+            this.httpCacheEnabled = httpCacheEnabled;
+            return this;
+        }
+
+        /**
+         * Sets the maximum size of the HTTP cache in bytes.
+         */
+        public Builder setHttpCacheMaxBytes(long httpCacheMaxBytes) {
+            this.httpCacheMaxBytes = httpCacheMaxBytes;
+            return this;
+        }
+
+        /**
+         * Sets the executor that runs HTTP calls and parses their JSON responses.
+         * Defaults to OkHttp's own pool of background threads.
+         */
+        public Builder setNetworkExecutor(ExecutorService networkExecutor) {
+            this.networkExecutor = networkExecutor;
+            return this;
+        }
+
+        /**
+         * Sets where the SDK handles parsed responses: ad selection, pool and state updates.
+         * Defaults to the background thread that parsed the response, keeping that work off the main thread.
+         */
+        public Builder setResponseExecutor(Executor responseExecutor) {
+            this.responseExecutor = responseExecutor;
+            return this;
+        }
+
+        /**
+         * Sets where {@link dev.nimrod.adsdk_lib.callback.AdCallback} methods are delivered.
+         * Defaults to the main thread. Pass {@code Runnable::run} to receive them directly on the
+         * background thread that produced them, e.g. to hand them to a game loop.
+         */
+        public Builder setCallbackExecutor(Executor callbackExecutor) {
+            this.callbackExecutor = callbackExecutor;
+            return this;
+        }
+
+        /**
+         * Selects the video player. Media3 is the default; VideoView plays progressive videos only.
+         *
+         * @param playerEngine The engine to use
+         */
+        public Builder setPlayerEngine(PlayerEngineType playerEngine) {
+            this.playerEngine = playerEngine;
+            return this;
+        }
+
+        /**
+         * Sets how much video the Media3 player tries to keep buffered ahead of the playback position.
+         *
+         * @param playerMinBufferMs Minimum buffer in milliseconds
+         */
+        public Builder setPlayerMinBufferMs(int playerMinBufferMs) {
+            this.playerMinBufferMs = playerMinBufferMs;
+            return this;
+        }
+
+        /**
+         * Sets the most video the Media3 player buffers ahead of the playback position.
+         *
+         * @param playerMaxBufferMs Maximum buffer in milliseconds
+         */
+        public Builder setPlayerMaxBufferMs(int playerMaxBufferMs) {
+            this.playerMaxBufferMs = playerMaxBufferMs;
+            return this;
+        }
+
+        /**
+         * Sets how much video must be buffered before playback starts.
+         * Lower values start ads sooner at the risk of more stalls on slow networks.
+         *
+         * @param playerBufferForPlaybackMs Buffer in milliseconds
+         */
+        public Builder setPlayerBufferForPlaybackMs(int playerBufferForPlaybackMs) {
+            this.playerBufferForPlaybackMs = playerBufferForPlaybackMs;
+            return this;
+        }
+
+        /**
+         * Sets how much video must be buffered before playback resumes after a stall.
+         * Usually higher than the start threshold, so a slow network does not stall again right away.
+         *
+         * @param playerBufferForPlaybackAfterRebufferMs Buffer in milliseconds
+         */
+        public Builder setPlayerBufferForPlaybackAfterRebufferMs(int playerBufferForPlaybackAfterRebufferMs) {
+            this.playerBufferForPlaybackAfterRebufferMs = playerBufferForPlaybackAfterRebufferMs;
+            return this;
+        }
+
+        /**
+         * Sets how much already played video the Media3 player keeps for seeking back.
+         *
+         * @param playerBackBufferMs Back buffer in milliseconds, 0 to keep none
+         */
+        public Builder setPlayerBackBufferMs(int playerBackBufferMs) {
+            this.playerBackBufferMs = playerBackBufferMs;
+            return this;
+        }
+
+        /**
+         * Prepares the player of the next ad off-screen as soon as the ad is ready, so the ad player
+         * only attaches its surface and the video starts without waiting for the media source and decoder.
+         * Keeps one Media3 player and its decoder alive while an ad waits to be shown.
+         * Has no effect with the VideoView engine.
+         *
+         * @param playerPrewarmEnabled true to pre-warm the player
+         */
+        public Builder setPlayerPrewarmEnabled(boolean playerPrewarmEnabled) {
+            this.playerPrewarmEnabled = playerPrewarmEnabled;
+            return this;
+        }
+
+        /**
+         * Attaches the playback metrics of an impression (startup latency, stalls, phase times) to
+         * its final tracking event. The metrics are always available through
+         * {@link dev.nimrod.adsdk_lib.AdSdk#setPlaybackMetricsListener}.
+         * Events carrying metrics are sent as JSON to servers that only support compact-v1.
+         *
+         * @param playbackMetricsInEventsEnabled true to send the metrics to the server
+         */
+        public Builder setPlaybackMetricsInEventsEnabled(boolean playbackMetricsInEventsEnabled) {
+            this.playbackMetricsInEventsEnabled = playbackMetricsInEventsEnabled;
+            return this;
+        }
+
+        public AdSdkConfig build() {
+            if (baseUrl == null || !baseUrl.endsWith("/")) {
+                throw new IllegalArgumentException("baseUrl must end with '/': " + baseUrl);
+            }
+            if (maxIdleConnections < 0 || keepAliveDurationMs <= 0) {
+                throw new IllegalArgumentException("Invalid connection pool settings");
+            }
+            if (maxRequests < 1 || maxRequestsPerHost < 1) {
+                throw new IllegalArgumentException("Dispatcher limits must be at least 1");
+            }
+            if (maxEventBatchSize < 1 || maxEventBatchAgeMs <= 0) {
+                throw new IllegalArgumentException("Invalid event batch settings");
+            }
+            if (eventOutboxSegmentSize < 1024 || eventOutboxMaxSegments < 1) {
+                throw new IllegalArgumentException("Invalid event outbox settings");
+            }
+            if (preloadDepth < 1) {
+                throw new IllegalArgumentException("Preload depth must be at least 1");
+            }
+            if (preloadTtlMs <= 0) {
+                throw new IllegalArgumentException("Preload TTL must be positive");
+            }
+            if (mediaCacheMaxBytes <= 0) {
+                throw new IllegalArgumentException("Media cache size must be positive");
+            }
+            if (prefetchBytesMetered <= 0) {
+                throw new IllegalArgumentException("Metered prefetch size must be positive");
+            }
+            if (prefetchBytesUnmetered <= 0) {
+                throw new IllegalArgumentException("Unmetered prefetch size must be positive");
+            }
+            if (retryInitialDelayMs <= 0) {
+                throw new IllegalArgumentException("Initial retry delay must be positive");
+            }
+            if (retryMaxDelayMs < retryInitialDelayMs) {
+                throw new IllegalArgumentException("Maximum retry delay must not be below the initial delay");
+            }
+            if (retryMaxAttempts < 1) {
+                throw new IllegalArgumentException("Retry attempts must be at least 1");
+            }
+            if (circuitBreakerFailureThreshold < 1) {
+                throw new IllegalArgumentException("Circuit breaker threshold must be at least 1");
+            }
+            if (circuitBreakerOpenMs <= 0) {
+                throw new IllegalArgumentException("Circuit breaker open time must be positive");
+            }
+            if (mirrorBaseUrls == null) {
+                throw new IllegalArgumentException("Mirror list must not be null");
+            }
+            for (String mirror : mirrorBaseUrls) {
+                if (mirror == null || !mirror.endsWith("/")) {
+                    throw new IllegalArgumentException("Mirror URL must end with '/': " + mirror);
+                }
+            }
+            if (hedgeDelayMs <= 0) {
+                throw new IllegalArgumentException("Hedge delay must be positive");
+            }
+            if (httpCacheMaxBytes <= 0) {
+                throw new IllegalArgumentException("HTTP cache size must be positive");
+            }
+            if (playerEngine == null) {
+                throw new IllegalArgumentException("Player engine must not be null");
+            }
+            if (playerMinBufferMs < 0 || playerMaxBufferMs < playerMinBufferMs) {
+                throw new IllegalArgumentException("Player buffer must satisfy 0 <= min <= max");
+            }
+            if (playerBufferForPlaybackMs <= 0 || playerBufferForPlaybackMs > playerMinBufferMs) {
+                throw new IllegalArgumentException("Buffer for playback must be positive and at most the minimum buffer");
+            }
+            if (playerBufferForPlaybackAfterRebufferMs <= 0 || playerBufferForPlaybackAfterRebufferMs > playerMinBufferMs) {
+                throw new IllegalArgumentException("Buffer for playback after rebuffer must be positive and at most the minimum buffer");
+            }
+            if (playerBackBufferMs < 0) {
+                throw new IllegalArgumentException("Back buffer must not be negative");
+            }
+            return new AdSdkConfig(this);
+        }
+    }
+}
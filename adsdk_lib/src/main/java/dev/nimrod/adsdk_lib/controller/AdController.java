@@ -1,24 +1,37 @@
 package dev.nimrod.adsdk_lib.controller;
 
+import android.content.Context;
 import android.util.Log;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
-import java.util.TimeZone;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import dev.nimrod.adsdk_lib.api.AdApiService;
+import dev.nimrod.adsdk_lib.api.AdHttpClient;
 import dev.nimrod.adsdk_lib.callback.AdCallback;
+import dev.nimrod.adsdk_lib.callback.AdListCallback;
+import dev.nimrod.adsdk_lib.callback.PlaybackMetricsListener;
+import dev.nimrod.adsdk_lib.config.AdSdkConfig;
 import dev.nimrod.adsdk_lib.model.Ad;
 import dev.nimrod.adsdk_lib.model.Event;
+import dev.nimrod.adsdk_lib.model.PlaybackMetrics;
+import dev.nimrod.adsdk_lib.storage.EventLog;
+import dev.nimrod.adsdk_lib.storage.MediaCache;
+import dev.nimrod.adsdk_lib.storage.MediaStreamProxy;
+import dev.nimrod.adsdk_lib.util.Cancellable;
+import dev.nimrod.adsdk_lib.util.CancellationHandle;
+import dev.nimrod.adsdk_lib.util.NetworkMonitor;
+import dev.nimrod.adsdk_lib.util.SingleFlight;
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
-import retrofit2.Retrofit;
-import retrofit2.converter.gson.GsonConverterFactory;
 
 /**
  * Manages communication with the ad server API.
@@ -26,14 +39,35 @@ import retrofit2.converter.gson.GsonConverterFactory;
  */
 public class AdController {
     private static final String TAG = "AdController";
-    private static final String BASE_URL = "https://ad-server-kappa.vercel.app/";
-    private Ad currentAd;
+    private static final String EVENT_LOG_DIRECTORY = "adsdk_events";
+    private static final String MEDIA_CACHE_DIRECTORY = "adsdk_media";
+    private volatile Ad currentAd;
+    private Context appContext;
+    private EventBatcher eventBatcher;
+    private MediaCache mediaCache;
+    private MediaStreamProxy mediaStreamProxy;
+    private final AdHttpClient httpClient;
+    private final SingleFlight<String, AdCallback> adRequests = new SingleFlight<>();
+    // Cleared once the server answers the bulk endpoint with 404/405
+    private volatile boolean bulkLoadSupported = true;
+    private volatile PlaybackMetricsListener playbackMetricsListener;
     private static AdController instance;
 
     private AdController() {
+        this(null);
+    }
+
+    /**
+     * Creates a controller bound to a specific client instead of the shared one.
+     * The SDK itself always uses {@link #getInstance()}.
+     *
+     * @param httpClient The client to use, or null for {@link AdHttpClient#getInstance()}
+     */
+    public AdController(AdHttpClient httpClient) {
+        this.httpClient = httpClient;
     }
 
-    public static AdController getInstance() {
+    public static synchronized AdController getInstance() {
         if (instance == null) {
             instance = new AdController();
         }
@@ -44,40 +78,273 @@ public class AdController {
         return this.currentAd;
     }
 
+    private AdHttpClient getHttpClient() {
+        return httpClient != null ? httpClient : AdHttpClient.getInstance();
+    }
+
     private AdApiService getApiService() {
-        Log.d(TAG, "Creating API service with base URL: " + BASE_URL);
+        return getHttpClient().getApiService();
+    }
+
+    /**
+     * @return The application context, or null before {@link #init(Context)}
+     */
+    public synchronized Context getAppContext() {
+        return appContext;
+    }
+
+    public AdSdkConfig getConfig() {
+        return getHttpClient().getConfig();
+    }
+
+    public PlaybackMetricsListener getPlaybackMetricsListener() {
+        return playbackMetricsListener;
+    }
+
+    /**
+     * @param playbackMetricsListener Receives the playback quality of every impression, or null
+     */
+    public void setPlaybackMetricsListener(PlaybackMetricsListener playbackMetricsListener) {
+        this.playbackMetricsListener = playbackMetricsListener;
+    }
+
+    /**
+     * @return false once the server has shown it has no bulk ad endpoint
+     */
+    public boolean isBulkLoadSupported() {
+        return bulkLoadSupported;
+    }
+
+    /**
+     * Binds the controller to the host application.
+     * Opens the durable event outbox and starts replaying events left by a previous session.
+     *
+     * @param context Any context of the host application
+     */
+    public void init(Context context) {
+        synchronized (this) {
+            if (appContext == null) {
+                appContext = context.getApplicationContext();
+            }
+        }
+        getEventBatcher();
+    }
+
+    private synchronized EventBatcher getEventBatcher() {
+        if (eventBatcher == null) {
+            AdHttpClient client = getHttpClient();
+            AdSdkConfig config = client.getConfig();
+            ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "AdSdk-events");
+                thread.setDaemon(true);
+                return thread;
+            });
+            eventBatcher = new EventBatcher(client, scheduler, openEventLog(config));
+        }
+        return eventBatcher;
+    }
 
+    private EventLog openEventLog(AdSdkConfig config) {
+        if (!config.isEventOutboxEnabled() || appContext == null) {
+            return null;
+        }
         try {
-            Gson gson = new GsonBuilder()
-                    .setLenient()
-                    .create();
+            return new EventLog(new File(appContext.getFilesDir(), EVENT_LOG_DIRECTORY),
+                    config.getEventOutboxSegmentSize(), config.getEventOutboxMaxSegments());
+        } catch (IOException e) {
+            Log.e(TAG, "Could not open event outbox, events will not survive failures", e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the disk cache for ad videos, opening it on first use.
+     *
+     * @return The cache, or null if media caching is disabled or the SDK has no context yet
+     */
+    public synchronized MediaCache getMediaCache() {
+        if (mediaCache == null && appContext != null) {
+            AdHttpClient client = getHttpClient();
+            AdSdkConfig config = client.getConfig();
+            if (config.isMediaCacheEnabled()) {
+                try {
+                    mediaCache = new MediaCache(new File(appContext.getCacheDir(), MEDIA_CACHE_DIRECTORY),
+                            config.getMediaCacheMaxBytes(), client.getOkHttpClient());
+                } catch (IOException e) {
+                    Log.e(TAG, "Could not open media cache, videos will be streamed", e);
+                }
+            }
+        }
+        return mediaCache;
+    }
 
-            Retrofit retrofit = new Retrofit.Builder()
-                    .baseUrl(BASE_URL)
-                    .addConverterFactory(GsonConverterFactory.create(gson))
-                    .build();
+    /**
+     * Returns the local proxy that plays partially cached videos, starting it on first use.
+     *
+     * @return The proxy, or null if partial prefetching is disabled or unavailable
+     */
+    public synchronized MediaStreamProxy getMediaStreamProxy() {
+        if (mediaStreamProxy == null && getConfig().isPartialPrefetchEnabled()) {
+            MediaCache cache = getMediaCache();
+            if (cache != null) {
+                try {
+                    mediaStreamProxy = new MediaStreamProxy(cache, getHttpClient().getOkHttpClient());
+                } catch (IOException e) {
+                    Log.e(TAG, "Could not start media proxy, videos will be streamed", e);
+                }
+            }
+        }
+        return mediaStreamProxy;
+    }
 
-            return retrofit.create(AdApiService.class);
-        } catch (Exception e) {
-            Log.e(TAG, "Error creating API service", e);
-            throw e;
+    /**
+     * @return How many bytes of each video to preload for the current network,
+     * or 0 to preload whole videos
+     */
+    public long getMediaPrefetchBytes() {
+        AdSdkConfig config = getConfig();
+        if (!config.isPartialPrefetchEnabled()) {
+            return 0;
         }
+        return NetworkMonitor.getInstance().isMetered()
+                ? config.getPrefetchBytesMetered() : config.getPrefetchBytesUnmetered();
+    }
+
+    /**
+     * @return Executor delivering {@link AdCallback} methods to the app, see
+     * {@link AdSdkConfig#getCallbackExecutor()}
+     */
+    public Executor getCallbackExecutor() {
+        return getHttpClient().getCallbackExecutor();
+    }
+
+    /**
+     * Runs a short task after a delay, see {@link AdHttpClient#schedule(Runnable, long)}.
+     */
+    public Cancellable schedule(Runnable task, long delayMs) {
+        return getHttpClient().schedule(task, delayMs);
+    }
+
+    /**
+     * Sends any buffered tracking events immediately.
+     * Called when the host app goes to background so events are not held back.
+     */
+    public void flushEvents() {
+        getEventBatcher().flush();
     }
 
     /**
      * Requests a random ad from the server for the specified package.
+     * A caller asking for the same package while a request is in flight joins that request
+     * and receives the same result instead of sending a duplicate.
+     *
+     * @param packageName The package name of the requesting application
+     * @param adCallback  Callback to handle the ad response or errors
+     * @return Handle that withdraws this caller; the request is cancelled once every caller withdrew
+     */
+    public Cancellable initRandomAd(String packageName, AdCallback adCallback) {
+        return initRandomAd(packageName, packageName, adCallback);
+    }
+
+    /**
+     * Requests a random ad, coalescing only with requests made under the same key.
+     * Placements use their own key so that two placements never receive the same ad.
      *
      * @param packageName The package name of the requesting application
+     * @param requestKey  Requests in flight under this key are joined instead of duplicated
      * @param adCallback  Callback to handle the ad response or errors
+     * @return Handle that withdraws this caller, who then receives an error; the request is
+     * cancelled once every caller withdrew
      */
-    public void initRandomAd(String packageName, AdCallback adCallback) {
+    public Cancellable initRandomAd(String packageName, String requestKey, AdCallback adCallback) {
+        Cancellable withdraw = () -> {
+            if (adRequests.leave(requestKey, adCallback) && adCallback != null) {
+                adCallback.onError("Ad request cancelled");
+            }
+        };
+        if (!adRequests.join(requestKey, adCallback)) {
+            Log.d(TAG, "Joining in-flight ad request for: " + requestKey);
+            return withdraw;
+        }
+        CancellationHandle request = adRequests.getHandle(requestKey);
+        request.set(requestRandomAd(packageName, new AdCallback() {
+            @Override
+            public void onAdAvailable(Ad ad) {
+                for (AdCallback callback : completeAdRequest(requestKey, request)) {
+                    callback.onAdAvailable(ad);
+                }
+            }
+
+            @Override
+            public void onAdFinished() {
+            }
+
+            @Override
+            public void onAdSkipped() {
+            }
+
+            @Override
+            public void onAdExited() {
+            }
+
+            @Override
+            public void onNoAvailable(Ad ad) {
+                for (AdCallback callback : completeAdRequest(requestKey, request)) {
+                    callback.onNoAvailable(ad);
+                }
+            }
+
+            @Override
+            public void onError(String message) {
+                for (AdCallback callback : completeAdRequest(requestKey, request)) {
+                    callback.onError(message);
+                }
+            }
+        }));
+        return withdraw;
+    }
+
+    /**
+     * Cancels every ad request sent through {@link #initRandomAd(String, String, AdCallback)};
+     * their callers receive an error. Called when the host app goes to background.
+     */
+    public void cancelAdRequests() {
+        adRequests.cancelAll();
+    }
+
+    private List<AdCallback> completeAdRequest(String requestKey, Cancellable request) {
+        List<AdCallback> callbacks = new ArrayList<>(adRequests.complete(requestKey, request));
+        if (callbacks.isEmpty()) {
+            Log.d(TAG, "Ad request withdrawn by every caller: " + requestKey);
+            return callbacks;
+        }
+        callbacks.removeIf(Objects::isNull);
+        if (callbacks.isEmpty()) {
+            Log.e(TAG, "adCallback is null, ad response dropped");
+        }
+        return callbacks;
+    }
+
+    /**
+     * @return Number of {@code ads/random} requests sent through {@link #initRandomAd(String, AdCallback)}
+     */
+    public long getAdRequestCount() {
+        return adRequests.getStartedCount();
+    }
+
+    /**
+     * @return Number of {@link #initRandomAd(String, AdCallback)} calls that joined a request in flight
+     */
+    public long getCoalescedAdRequestCount() {
+        return adRequests.getCoalescedCount();
+    }
+
+    private Cancellable requestRandomAd(String packageName, AdCallback adCallback) {
         Log.d(TAG, "Requesting ad for package: " + packageName);
 
         try {
-            AdApiService apiService = getApiService();
-            Call<Ad> call = apiService.loadRandomAd(packageName);
-
-            call.enqueue(new Callback<Ad>() {
+            // Hedged across the configured mirrors; with none this is a plain request
+            return getHttpClient().enqueueHedged(api -> api.loadRandomAd(packageName), new Callback<Ad>() {
                 @Override
                 public void onResponse(Call<Ad> call, Response<Ad> response) {
                     Log.d(TAG, "Ad response received: " + response.code());
@@ -91,6 +358,8 @@ public class AdController {
                         currentAd = response.body();
                         Log.d(TAG, "Ad available: " + currentAd.getId());
                         adCallback.onAdAvailable(currentAd);
+                    } else if (response.code() >= 500) {
+                        adCallback.onError("Server error: " + response.code());
                     } else {
                         Log.d(TAG, "No ad available, response code: " + response.code());
                         adCallback.onNoAvailable(null);
@@ -112,59 +381,141 @@ public class AdController {
             if (adCallback != null) {
                 adCallback.onError("Error initializing ad request: " + e.getMessage());
             }
+            return Cancellable.NONE;
         }
     }
 
-    public void sendAdEvent(String adId, String packageName, String eventType, float watchDuration) {
-        if (adId == null) {
-            Log.e(TAG, "Cannot send event: ad ID is null");
-            return;
+    /**
+     * Requests up to {@code count} ads in a single round trip.
+     * If the server has no bulk endpoint this falls back to a single {@code ads/random} request
+     * and delivers a one-element list, so callers simply repeat the call until they have enough.
+     *
+     * @param packageName The package name of the requesting application
+     * @param count       Maximum number of ads wanted
+     * @param callback    Callback to handle the ads or errors
+     * @return Handle that cancels the request; the callback then receives an error
+     */
+    public Cancellable loadAds(String packageName, int count, AdListCallback callback) {
+        CancellationHandle handle = new CancellationHandle();
+        if (count <= 1 || !bulkLoadSupported) {
+            handle.set(loadSingleAd(packageName, callback));
+            return handle;
         }
+        Log.d(TAG, "Requesting " + count + " ads for package: " + packageName);
 
         try {
-            Event event = new Event();
-            event.setAdId(adId);
-            // Set timestamp for current time in ISO 8601 format
-            SimpleDateFormat isoFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
-            isoFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
-            event.setTimestamp(isoFormat.format(new Date()));
-
-            Event.EventDetails details = new Event.EventDetails();
-            details.setPackageName(packageName);
-            details.setEventType(eventType);
-            details.setWatchDuration(watchDuration);
-
-            event.setEventDetails(details);
-
-            Log.d(TAG, "Sending event: " + new Gson().toJson(event));
+            Call<List<Ad>> bulkCall = getApiService().loadAds(packageName, count);
+            handle.set(bulkCall::cancel);
+            bulkCall.enqueue(new Callback<List<Ad>>() {
+                @Override
+                public void onResponse(Call<List<Ad>> call, Response<List<Ad>> response) {
+                    Log.d(TAG, "Bulk ad response received: " + response.code());
 
-            AdApiService apiService = getApiService();
-            Call<Void> call = apiService.sendAdEvent(event);
+                    if (response.code() == 404 || response.code() == 405) {
+                        Log.d(TAG, "Server has no bulk ad endpoint, falling back to single requests");
+                        bulkLoadSupported = false;
+                        handle.set(loadSingleAd(packageName, callback));
+                        return;
+                    }
 
-            call.enqueue(new Callback<Void>() {
-                @Override
-                public void onResponse(Call<Void> call, Response<Void> response) {
-                    if (response.isSuccessful()) {
-                        Log.d(TAG, "Event sent successfully: " + eventType);
+                    List<Ad> ads = response.body();
+                    if (response.isSuccessful() && ads != null && !ads.isEmpty()) {
+                        currentAd = ads.get(ads.size() - 1);
+                        Log.d(TAG, ads.size() + " ads available");
+                        callback.onAdsAvailable(ads);
+                    } else if (response.code() >= 500) {
+                        callback.onError("Server error: " + response.code());
                     } else {
-                        Log.e(TAG, "Error sending event: " + response.code());
-                        if (response.errorBody() != null) {
-                            try {
-                                Log.e(TAG, "Error body: " + response.errorBody().string());
-                            } catch (Exception e) {
-                                Log.e(TAG, "Error reading error body", e);
-                            }
-                        }
+                        Log.d(TAG, "No ads available, response code: " + response.code());
+                        callback.onNoAvailable();
                     }
                 }
 
                 @Override
-                public void onFailure(Call<Void> call, Throwable t) {
-                    Log.e(TAG, "Failure sending event", t);
+                public void onFailure(Call<List<Ad>> call, Throwable throwable) {
+                    Log.e(TAG, "Bulk ad request failed", throwable);
+                    callback.onError(throwable.getMessage());
                 }
             });
+        } catch (Exception e) {
+            Log.e(TAG, "Error initializing bulk ad request", e);
+            callback.onError("Error initializing ad request: " + e.getMessage());
+        }
+        return handle;
+    }
+
+    private Cancellable loadSingleAd(String packageName, AdListCallback callback) {
+        // Not coalesced: an ad shared with a direct request would end up both shown and pooled
+        return requestRandomAd(packageName, new AdCallback() {
+            @Override
+            public void onAdAvailable(Ad ad) {
+                callback.onAdsAvailable(Collections.singletonList(ad));
+            }
+
+            @Override
+            public void onAdFinished() {
+            }
+
+            @Override
+            public void onAdSkipped() {
+            }
+
+            @Override
+            public void onAdExited() {
+            }
+
+            @Override
+            public void onNoAvailable(Ad ad) {
+                callback.onNoAvailable();
+            }
+
+            @Override
+            public void onError(String message) {
+                callback.onError(message);
+            }
+        });
+    }
+
+    public void sendAdEvent(String adId, String packageName, String eventType, float watchDuration) {
+        sendAdEvent(adId, packageName, eventType, Math.round(watchDuration * 1000), 0, 0, null);
+    }
+
+    /**
+     * Sends an event with the watch time split by what the player was doing.
+     *
+     * @param playingMs       Time the video was playing, reported as the watch duration
+     * @param bufferingMs     Time playback stalled waiting for data
+     * @param pausedMs        Time playback was paused
+     * @param playbackMetrics Playback quality of the impression, attached to the event if enabled
+     *                        in the configuration, or null
+     */
+    public void sendAdEvent(String adId, String packageName, String eventType, long playingMs,
+                            long bufferingMs, long pausedMs, PlaybackMetrics playbackMetrics) {
+        if (adId == null) {
+            Log.e(TAG, "Cannot send event: ad ID is null");
+            return;
+        }
+
+        try {
+            // The constructor stamps the current time and creates the details holder we fill in
+            Event event = new Event()
+                    .setAdId(adId)
+                    .setPackageName(packageName)
+                    .setEventType(eventType)
+                    .setWatchDuration(playingMs / 1000f)
+                    .setWatchTime(playingMs, bufferingMs, pausedMs);
+            if (playbackMetrics != null && getConfig().isPlaybackMetricsInEventsEnabled()) {
+                event.setPlaybackMetrics(playbackMetrics);
+            }
+
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "Sending event: " + getHttpClient().getGson().toJson(event));
+            }
+
+            // Goes through the durable outbox whether or not batching is enabled
+            getEventBatcher().enqueue(event);
         } catch (Exception e) {
             Log.e(TAG, "Error sending event", e);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,419 @@
+package dev.nimrod.adsdk_lib.controller;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dev.nimrod.adsdk_lib.api.AdApiService;
+import dev.nimrod.adsdk_lib.api.AdHttpClient;
+import dev.nimrod.adsdk_lib.api.CompactEventCodec;
+import dev.nimrod.adsdk_lib.api.EventEncodingNegotiator;
+import dev.nimrod.adsdk_lib.model.Event;
+import dev.nimrod.adsdk_lib.storage.EventLog;
+import dev.nimrod.adsdk_lib.util.RetryPolicy;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Buffers tracking events and delivers them as one request to the batch endpoint.
+ * A batch is flushed when it reaches the size limit, when its oldest event reaches the age limit,
+ * or when {@link #flush()} is called (e.g. the app goes to background).
+ * Falls back to the single-event endpoint when the server does not support batches.
+ *
+ * <p>When created with an {@link EventLog} the log is the buffer: every event is appended to it
+ * first and only acknowledged after the server accepted it, so events created offline or lost to
+ * a server error are replayed in order on the next flush, including after a process restart.
+ * Only one batch is in flight at a time in this mode to keep acknowledgements ordered, and a failed
+ * batch is retried with the backoff of a {@link RetryPolicy}.
+ *
+ * <p>With batching disabled in the configuration, events still go through the log, in batches of
+ * one sent to the single-event endpoint.
+ */
+public class EventBatcher {
+    private static final String TAG = "EventBatcher";
+
+    private static final MediaType COMPACT_MEDIA_TYPE = MediaType.get(CompactEventCodec.MEDIA_TYPE);
+    // Below this size gzip's header overhead outweighs what it saves
+    private static final int GZIP_MIN_BYTES = 128;
+
+    private final AdApiService apiService;
+    private final EventEncodingNegotiator encodingNegotiator;
+    private final boolean batchingEnabled;
+    private final int maxBatchSize;
+    private final long maxBatchAgeMs;
+    private final long maxRetryDelayMs;
+    private final RetryPolicy retryPolicy;
+    private final ScheduledExecutorService scheduler;
+    private final EventLog eventLog;
+    private final Gson gson;
+
+    private final Object lock = new Object();
+    private List<Event> buffer = new ArrayList<>();
+    // Flush scheduled by the age limit, or by the backoff after a failed durable batch
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean batchInFlight = false;
+    private volatile boolean batchEndpointSupported = true;
+
+    /**
+     * Creates a batcher that sends through the given client, using its batch size and age limits.
+     * When {@code eventLog} is not null, events left in it by a previous process are scheduled
+     * for delivery right away.
+     *
+     * @param client    The network client to send through
+     * @param scheduler Executor for age-based flushes
+     * @param eventLog  Durable outbox, or null to buffer in memory only
+     */
+    public EventBatcher(AdHttpClient client, ScheduledExecutorService scheduler, EventLog eventLog) {
+        this.apiService = client.getApiService();
+        this.encodingNegotiator = client.getEventEncodingNegotiator();
+        this.batchingEnabled = client.getConfig().isEventBatchingEnabled();
+        this.maxBatchSize = batchingEnabled ? client.getConfig().getMaxEventBatchSize() : 1;
+        this.maxBatchAgeMs = client.getConfig().getMaxEventBatchAgeMs();
+        this.maxRetryDelayMs = client.getConfig().getRetryMaxDelayMs();
+        this.retryPolicy = RetryPolicy.fromConfig(client.getConfig(), SystemClock::elapsedRealtime);
+        this.scheduler = scheduler;
+        this.eventLog = eventLog;
+        this.gson = client.getGson();
+
+        if (eventLog != null && eventLog.getPendingCount() > 0) {
+            Log.d(TAG, "Replaying " + eventLog.getPendingCount() + " events from previous session");
+            scheduler.execute(this::flush);
+        }
+    }
+
+    /**
+     * Adds an event to the current batch, flushing it if the size limit is reached.
+     *
+     * @param event The event to deliver
+     */
+    public void enqueue(Event event) {
+        if (eventLog != null) {
+            enqueueDurable(event);
+            return;
+        }
+        if (!batchingEnabled || !batchEndpointSupported) {
+            sendSingle(event);
+            return;
+        }
+
+        List<Event> ready = null;
+        synchronized (lock) {
+            buffer.add(event);
+            if (buffer.size() >= maxBatchSize) {
+                ready = drainLocked();
+            } else {
+                scheduleAgeFlushLocked();
+            }
+        }
+        if (ready != null) {
+            sendBatch(ready, null);
+        }
+    }
+
+    private void enqueueDurable(Event event) {
+        boolean full;
+        synchronized (lock) {
+            try {
+                eventLog.append(gson.toJson(event).getBytes(StandardCharsets.UTF_8));
+            } catch (IOException | IllegalArgumentException e) {
+                Log.e(TAG, "Could not persist event, sending directly", e);
+                sendSingle(event);
+                return;
+            }
+            full = eventLog.getPendingCount() >= maxBatchSize;
+            if (!full) {
+                scheduleAgeFlushLocked();
+            }
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    private void scheduleAgeFlushLocked() {
+        if (scheduledFlush == null) {
+            scheduledFlush = scheduler.schedule(this::flush, maxBatchAgeMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Sends all buffered events immediately. With a durable log this also retries
+     * events whose earlier delivery failed.
+     */
+    public void flush() {
+        if (eventLog != null) {
+            flushDurable();
+            return;
+        }
+        List<Event> ready;
+        synchronized (lock) {
+            ready = drainLocked();
+        }
+        if (ready != null) {
+            sendBatch(ready, null);
+        }
+    }
+
+    private void flushDurable() {
+        EventLog.Batch batch;
+        synchronized (lock) {
+            cancelScheduledFlushLocked();
+            if (batchInFlight) {
+                return;
+            }
+            batch = eventLog.readPending(maxBatchSize);
+            if (batch.isEmpty()) {
+                return;
+            }
+            batchInFlight = true;
+        }
+
+        List<Event> events = new ArrayList<>(batch.size());
+        for (byte[] record : batch.getRecords()) {
+            Event event = decode(record);
+            if (event != null) {
+                events.add(event);
+            }
+        }
+        if (events.isEmpty()) {
+            // Nothing left to send; acknowledging the records keeps them from blocking the log
+            onDurableBatchDone(batch, true);
+            return;
+        }
+        try {
+            sendBatch(events, batch);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Could not send batch", e);
+            synchronized (lock) {
+                batchInFlight = false;
+                scheduleRetryLocked();
+            }
+        }
+    }
+
+    /**
+     * @return The event stored in a log record, or null if the record cannot be decoded, e.g.
+     * after a schema change; such records are acknowledged with the rest of their batch
+     */
+    private Event decode(byte[] record) {
+        try {
+            Event event = gson.fromJson(new String(record, StandardCharsets.UTF_8), Event.class);
+            if (event == null) {
+                Log.e(TAG, "Dropping empty event record");
+            }
+            return event;
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Dropping event record that cannot be decoded", e);
+            return null;
+        }
+    }
+
+    /**
+     * Called when a durable batch finished, successfully or not.
+     * Acknowledges delivered records and continues draining the log after a success; after a
+     * failure the records are kept and retried after a backoff delay, or by an earlier flush.
+     */
+    private void onDurableBatchDone(EventLog.Batch batch, boolean delivered) {
+        boolean more;
+        synchronized (lock) {
+            batchInFlight = false;
+            if (!delivered) {
+                scheduleRetryLocked();
+                return;
+            }
+            retryPolicy.onSuccess();
+            eventLog.acknowledge(batch);
+            more = eventLog.getPendingCount() >= maxBatchSize;
+            if (!more && eventLog.getPendingCount() > 0) {
+                scheduleAgeFlushLocked();
+            }
+        }
+        if (more) {
+            flush();
+        }
+    }
+
+    public int getPendingCount() {
+        synchronized (lock) {
+            return eventLog != null ? eventLog.getPendingCount() : buffer.size();
+        }
+    }
+
+    private void scheduleRetryLocked() {
+        long delayMs = retryPolicy.onFailure();
+        if (delayMs == RetryPolicy.NO_RETRY) {
+            // Events must not be stranded until the next trigger, keep trying at the slowest pace
+            delayMs = maxRetryDelayMs;
+        }
+        Log.d(TAG, "Retrying " + eventLog.getPendingCount() + " events in " + delayMs + " ms");
+        cancelScheduledFlushLocked();
+        scheduledFlush = scheduler.schedule(this::flush, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelScheduledFlushLocked() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+    }
+
+    private List<Event> drainLocked() {
+        cancelScheduledFlushLocked();
+        if (buffer.isEmpty()) {
+            return null;
+        }
+        List<Event> ready = buffer;
+        buffer = new ArrayList<>();
+        return ready;
+    }
+
+    private void sendBatch(List<Event> batch, EventLog.Batch logBatch) {
+        if (!batchingEnabled || !batchEndpointSupported) {
+            sendEach(batch, logBatch);
+            return;
+        }
+
+        Call<Void> call = encodingNegotiator.useCompactEncoding() ? compactCall(batch) : null;
+        boolean compact = call != null;
+        if (call == null) {
+            call = apiService.sendAdEvents(batch);
+        }
+
+        Log.d(TAG, "Sending batch of " + batch.size() + " events" + (compact ? " (compact)" : ""));
+        call.enqueue(new Callback<Void>() {
+            @Override
+            public void onResponse(Call<Void> call, Response<Void> response) {
+                if (compact && (response.code() == 400 || response.code() == 415)) {
+                    encodingNegotiator.onCompactRejected();
+                    sendBatch(batch, logBatch);
+                } else if (response.isSuccessful()) {
+                    Log.d(TAG, "Batch sent successfully: " + batch.size() + " events");
+                    onBatchDone(logBatch, true);
+                } else if (response.code() == 404 || response.code() == 405) {
+                    Log.w(TAG, "Batch endpoint unsupported, falling back to single events");
+                    batchEndpointSupported = false;
+                    sendEach(batch, logBatch);
+                } else if (isPermanentFailure(response.code())) {
+                    Log.e(TAG, "Batch rejected, dropping " + batch.size() + " events: " + response.code());
+                    onBatchDone(logBatch, true);
+                } else {
+                    Log.e(TAG, "Error sending batch: " + response.code());
+                    onBatchDone(logBatch, false);
+                }
+            }
+
+            @Override
+            public void onFailure(Call<Void> call, Throwable t) {
+                Log.e(TAG, "Failure sending batch", t);
+                onBatchDone(logBatch, false);
+            }
+        });
+    }
+
+    private Call<Void> compactCall(List<Event> batch) {
+        byte[] encoded;
+        try {
+            encoded = CompactEventCodec.encode(batch, encodingNegotiator.getCompactVersion());
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Batch cannot be compact encoded, sending JSON", e);
+            return null;
+        }
+        String contentEncoding = null;
+        if (encoded.length >= GZIP_MIN_BYTES) {
+            encoded = CompactEventCodec.gzip(encoded);
+            contentEncoding = "gzip";
+        }
+        return apiService.sendCompactAdEvents(RequestBody.create(COMPACT_MEDIA_TYPE, encoded), contentEncoding);
+    }
+
+    /**
+     * Client errors other than timeouts and throttling will not succeed on retry,
+     * so those events are dropped instead of blocking the log.
+     */
+    private static boolean isPermanentFailure(int code) {
+        return code >= 400 && code < 500 && code != 408 && code != 429;
+    }
+
+    private void onBatchDone(EventLog.Batch logBatch, boolean delivered) {
+        if (logBatch != null) {
+            onDurableBatchDone(logBatch, delivered);
+        }
+    }
+
+    /**
+     * Sends a batch through the single-event endpoint. With a durable log the batch is
+     * acknowledged only if every event was accepted, so a partial failure may resend some events.
+     */
+    private void sendEach(List<Event> batch, EventLog.Batch logBatch) {
+        AtomicInteger remaining = new AtomicInteger(batch.size());
+        AtomicInteger failed = new AtomicInteger();
+        for (Event event : batch) {
+            sendSingle(event, delivered -> {
+                if (!delivered) {
+                    failed.incrementAndGet();
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    onBatchDone(logBatch, failed.get() == 0);
+                }
+            });
+        }
+    }
+
+    /**
+     * Sends one event through the single-event endpoint.
+     *
+     * @param event The event to deliver
+     */
+    public void sendSingle(Event event) {
+        sendSingle(event, null);
+    }
+
+    private interface DeliveryListener {
+        void onDelivered(boolean delivered);
+    }
+
+    private void sendSingle(Event event, DeliveryListener listener) {
+        String eventType = event.getEventDetails() != null ? event.getEventDetails().getEventType() : null;
+        apiService.sendAdEvent(event).enqueue(new Callback<Void>() {
+            @Override
+            public void onResponse(Call<Void> call, Response<Void> response) {
+                if (response.isSuccessful()) {
+                    Log.d(TAG, "Event sent successfully: " + eventType);
+                } else {
+                    Log.e(TAG, "Error sending event: " + response.code());
+                    if (response.errorBody() != null) {
+                        try {
+                            Log.e(TAG, "Error body: " + response.errorBody().string());
+                        } catch (Exception e) {
+                            Log.e(TAG, "Error reading error body", e);
+                        }
+                    }
+                }
+                if (listener != null) {
+                    listener.onDelivered(response.isSuccessful() || isPermanentFailure(response.code()));
+                }
+            }
+
+            @Override
+            public void onFailure(Call<Void> call, Throwable t) {
+                Log.e(TAG, "Failure sending event", t);
+                if (listener != null) {
+                    listener.onDelivered(false);
+                }
+            }
+        });
+    }
+}
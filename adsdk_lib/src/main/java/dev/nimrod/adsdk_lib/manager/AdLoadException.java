@@ -0,0 +1,11 @@
+package dev.nimrod.adsdk_lib.manager;
+
+/**
+ * Reason a future of the async API failed: no ad was available, the request failed,
+ * or the ad could not be shown.
+ */
+public class AdLoadException extends Exception {
+    public AdLoadException(String message) {
+        super(message);
+    }
+}
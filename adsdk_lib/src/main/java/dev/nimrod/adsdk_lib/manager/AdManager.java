@@ -5,36 +5,79 @@ import android.content.Context;
 import android.os.SystemClock;
 import android.util.Log;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
+
 import dev.nimrod.adsdk_lib.callback.AdCallback;
+import dev.nimrod.adsdk_lib.callback.DispatchingAdCallback;
+import dev.nimrod.adsdk_lib.callback.PlaybackMetricsListener;
 import dev.nimrod.adsdk_lib.controller.AdController;
 import dev.nimrod.adsdk_lib.model.Ad;
+import dev.nimrod.adsdk_lib.model.PlaybackMetrics;
+import dev.nimrod.adsdk_lib.player.PlaybackMetricsTracker;
+import dev.nimrod.adsdk_lib.player.PlaybackProgressTracker;
+import dev.nimrod.adsdk_lib.player.PlayerPrewarmer;
+import dev.nimrod.adsdk_lib.storage.MediaCache;
 import dev.nimrod.adsdk_lib.ui.AdPlayerActivity;
+import dev.nimrod.adsdk_lib.util.Cancellable;
 import dev.nimrod.adsdk_lib.util.EventEnum;
 
 /**
  * Central manager for ad lifecycle, preloading, and watch time tracking.
  * Coordinates between ad loading, display, and event reporting.
+ * The lifecycle is a state machine (see {@link AdState}) whose state, ad and watch time live in
+ * one immutable {@link AdSession} swapped with compare-and-set, so network callbacks, the player
+ * and the host app can drive it concurrently without locks. Illegal transitions are rejected and
+ * the terminal event of an ad is sent at most once.
+ * Each placement has its own manager, see {@link AdPlacementRegistry}; {@link #getInstance()}
+ * is the one of {@link AdPlacementRegistry#DEFAULT_PLACEMENT}.
  */
 public class AdManager {
     private static final String TAG = "AdManager";
     private static AdManager instance;
-    private String packageName;
-    private Ad currentAd;
-    private AdController adController;
-    private AdPreloadManager preloadManager;
-    private AdCallback userCallback;
+    private volatile String packageName;
+    private final String placementId;
+    private final AdController adController;
+    private final AdPreloadManager preloadManager;
+    private final LongSupplier nanoClock;
+    private volatile AdCallback userCallback;
 
-    private long lastWatchTimeStart;
-    private float totalWatchDuration;
-    private boolean isWatchTimeTrackingActive = false;
+    private final AtomicReference<AdSession> session = new AtomicReference<>(AdSession.IDLE);
 
     /**
      * Central manager for ad lifecycle, preloading, and watch time tracking.
      * Coordinates between ad loading, display, and event reporting.
      */
     private AdManager() {
-        adController = AdController.getInstance();
-        preloadManager = AdPreloadManager.getInstance();
+        this(AdPlacementRegistry.DEFAULT_PLACEMENT, AdController.getInstance(), AdPreloadManager.getInstance(),
+                SystemClock::elapsedRealtimeNanos, TimeUnit.NANOSECONDS);
+    }
+
+    AdManager(AdController adController, AdPreloadManager preloadManager, LongSupplier clock) {
+        this(AdPlacementRegistry.DEFAULT_PLACEMENT, adController, preloadManager, clock);
+    }
+
+    AdManager(String placementId, AdController adController, AdPreloadManager preloadManager, LongSupplier clock) {
+        this(placementId, adController, preloadManager, clock, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param clock     Monotonic clock for watch time and playback metrics
+     * @param clockUnit Unit of the clock's readings; nanoseconds keep long sessions exact
+     */
+    AdManager(String placementId, AdController adController, AdPreloadManager preloadManager,
+              LongSupplier clock, TimeUnit clockUnit) {
+        this.placementId = placementId;
+        this.adController = adController;
+        this.preloadManager = preloadManager;
+        this.nanoClock = clockUnit == TimeUnit.NANOSECONDS ? clock
+                : () -> clockUnit.toNanos(clock.getAsLong());
+        preloadManager.setPoolListener(this::prewarmNextAd);
     }
 
     public static synchronized AdManager getInstance() {
@@ -54,37 +97,101 @@ public class AdManager {
         return packageName;
     }
 
+    public String getPlacementId() {
+        return placementId;
+    }
+
+    AdPreloadManager getPreloadManager() {
+        return preloadManager;
+    }
+
+    /**
+     * @return true if an ad is loaded or preloaded for this placement
+     */
+    public boolean isAdReady() {
+        return getState() == AdState.LOADED || preloadManager.hasPreloadedAd();
+    }
+
     /**
      * Initializes ad loading, preferring preloaded ads when available.
      *
-     * @param context  The application context
-     * @param callback Callback to handle ad loading results
+     * @param context     The application context
+     * @param appCallback Callback to handle ad loading results, invoked on the configured callback executor
      */
-    public void initAd(Context context, AdCallback callback) {
+    public void initAd(Context context, AdCallback appCallback) {
         Log.d(TAG, "initAd called");
+        // Responses are handled off the main thread; only the app's callback is marshalled
+        AdCallback callback = DispatchingAdCallback.wrap(appCallback, adController.getCallbackExecutor());
         this.userCallback = callback;
         preloadManager.setNotificationCallback(callback);
 
         // Check if a preloaded ad is available
         if (preloadManager.hasPreloadedAd()) {
-            Log.d(TAG, "Using preloaded ad");
-            currentAd = preloadManager.getPreloadedAd();
-            if (callback != null) {
-                callback.onAdAvailable(currentAd);
+            Ad ad = preloadManager.getPreloadedAd();
+            if (ad != null) {
+                Log.d(TAG, "Using preloaded ad");
+                onDirectAdReady(ad, callback);
+                return;
+            }
+        }
+
+        // On a cold start the preload started by setPackageName is still running; join it
+        // instead of sending a second identical request
+        if (preloadManager.awaitPreloadedAd(new AdCallback() {
+            @Override
+            public void onAdAvailable(Ad ad) {
+                Log.d(TAG, "Ad delivered by preload in flight: " + ad.getId());
+                onDirectAdReady(ad, callback);
+            }
+
+            @Override
+            public void onAdFinished() {
             }
+
+            @Override
+            public void onAdSkipped() {
+            }
+
+            @Override
+            public void onAdExited() {
+            }
+
+            @Override
+            public void onNoAvailable(Ad ad) {
+                if (callback != null) {
+                    callback.onNoAvailable(ad);
+                }
+            }
+
+            @Override
+            public void onError(String message) {
+                if (callback != null) {
+                    callback.onError(message);
+                }
+            }
+        })) {
+            Log.d(TAG, "Waiting for preload in flight");
             return;
         }
 
         // No preloaded ad available, load one directly
         Log.d(TAG, "No preloaded ad available, loading directly");
-        adController.initRandomAd(packageName, new AdCallback() {
+        adController.initRandomAd(packageName, getRequestKey(), new AdCallback() {
             @Override
             public void onAdAvailable(Ad ad) {
                 Log.d(TAG, "Ad loaded directly: " + ad.getId());
-                currentAd = ad;
-                if (callback != null) {
-                    callback.onAdAvailable(ad);
+                MediaCache mediaCache = adController.getMediaCache();
+                if (mediaCache == null) {
+                    onDirectAdReady(ad, callback);
+                    return;
                 }
+                AdPreloadManager.cacheMedia(mediaCache, adController.getMediaPrefetchBytes(), ad, ready -> {
+                    if (ready) {
+                        onDirectAdReady(ad, callback);
+                    } else if (callback != null) {
+                        callback.onError("Could not download ad video");
+                    }
+                });
             }
 
             @Override
@@ -126,22 +233,177 @@ public class AdManager {
         });
     }
 
+    /**
+     * Direct requests are coalesced per placement, so two placements never share an ad.
+     */
+    private String getRequestKey() {
+        return AdPlacementRegistry.DEFAULT_PLACEMENT.equals(placementId)
+                ? packageName : packageName + "/" + placementId;
+    }
+
+    private void onDirectAdReady(Ad ad, AdCallback callback) {
+        if (!setLoadedAd(ad)) {
+            preloadManager.restoreAd(ad);
+            if (callback != null) {
+                callback.onError("Another ad is being shown");
+            }
+            return;
+        }
+        if (callback != null) {
+            callback.onAdAvailable(ad);
+        }
+    }
+
+    /**
+     * Sets the app callback without loading an ad, e.g. for a placement kept warm by preloading.
+     */
+    void setUserCallback(AdCallback userCallback) {
+        this.userCallback = userCallback;
+        preloadManager.setNotificationCallback(userCallback);
+    }
+
+    public AdState getState() {
+        return session.get().state;
+    }
+
+    /**
+     * @return The ad that is loaded or being shown, or null
+     */
     public Ad getCurrentAd() {
-        return currentAd;
+        AdSession current = session.get();
+        return current.state == AdState.LOADED || current.state == AdState.SHOWING ? current.ad : null;
+    }
+
+    /**
+     * Moves the session to {@code target} if that transition is legal from the current state.
+     *
+     * @return The new session, or null if the transition was rejected
+     */
+    private AdSession transition(AdState target, UnaryOperator<AdSession> update) {
+        while (true) {
+            AdSession current = session.get();
+            if (!current.state.canMoveTo(target)) {
+                Log.w(TAG, "Rejected transition " + current.state + " -> " + target);
+                return null;
+            }
+            AdSession next = update.apply(current);
+            if (session.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Updates the watch time of the ad being shown; ignored in any other state.
+     */
+    private void updateWatch(UnaryOperator<AdSession> update) {
+        while (true) {
+            AdSession current = session.get();
+            if (current.state != AdState.SHOWING) {
+                return;
+            }
+            AdSession next = update.apply(current);
+            if (next == current || session.compareAndSet(current, next)) {
+                return;
+            }
+        }
     }
 
-    public void notifyAdSkipped() {
-        if (userCallback != null) {
-            userCallback.onAdSkipped();
+    /**
+     * Makes the given ad the next one to show.
+     * A loaded ad it replaces goes back to the preload pool instead of being dropped.
+     *
+     * @return false if an ad is being shown
+     */
+    boolean setLoadedAd(Ad ad) {
+        while (true) {
+            AdSession current = session.get();
+            if (!current.state.canMoveTo(AdState.LOADED)) {
+                Log.w(TAG, "Rejected transition " + current.state + " -> " + AdState.LOADED);
+                return false;
+            }
+            if (session.compareAndSet(current, current.loaded(ad))) {
+                if (current.state == AdState.LOADED && current.ad != ad) {
+                    preloadManager.restoreAd(current.ad);
+                }
+                prewarmNextAd();
+                return true;
+            }
         }
-        currentAd = null;
     }
 
-    public void notifyAdExited() {
-        if (userCallback != null) {
-            userCallback.onAdExited();
+    /**
+     * Ends the ad being shown, sending its final event and notifying the app.
+     * Only the first call per ad takes effect; later ones, e.g. from a button and from
+     * {@code onDestroy} at once, are rejected.
+     *
+     * @param outcome   COMPLETED, SKIPPED or EXITED
+     * @param eventType The event reported to the server
+     * @return true if this call ended the ad
+     */
+    public boolean finishAd(AdState outcome, EventEnum eventType) {
+        if (!outcome.isTerminal()) {
+            throw new IllegalArgumentException("Not a terminal state: " + outcome);
+        }
+        long now = nanoClock.getAsLong();
+        AdSession ended = transition(outcome, current -> current.finished(outcome, now));
+        if (ended == null) {
+            return false;
+        }
+        PlaybackMetrics metrics = null;
+        if (ended.metrics != null) {
+            ended.metrics.onEnded();
+            metrics = ended.metrics.snapshot();
+        }
+        sendEvent(ended.ad, eventType, ended.watchTime, now, metrics);
+        notifyPlaybackMetrics(ended.ad, metrics);
+
+        if (ended.outcome != null) {
+            ended.outcome.complete(outcome);
+        }
+        AdCallback callback = userCallback;
+        if (callback != null) {
+            switch (outcome) {
+                case COMPLETED:
+                    callback.onAdFinished();
+                    break;
+                case SKIPPED:
+                    callback.onAdSkipped();
+                    break;
+                default:
+                    callback.onAdExited();
+                    break;
+            }
+        }
+        prewarmNextAd();
+        return true;
+    }
+
+    private void notifyPlaybackMetrics(Ad ad, PlaybackMetrics metrics) {
+        PlaybackMetricsListener listener = adController.getPlaybackMetricsListener();
+        if (listener == null || metrics == null) {
+            return;
+        }
+        Log.d(TAG, "Playback metrics of ad " + ad.getId() + ": " + metrics);
+        adController.getCallbackExecutor().execute(() -> listener.onPlaybackMetrics(ad, metrics));
+    }
+
+    /**
+     * Has the player of the ad that will be shown next prepared off-screen, when enabled.
+     * Skipped while an ad is showing, so the two players do not compete for the decoder.
+     */
+    void prewarmNextAd() {
+        if (!adController.getConfig().isPlayerPrewarmEnabled()) {
+            return;
+        }
+        AdSession current = session.get();
+        if (current.state == AdState.SHOWING) {
+            return;
+        }
+        Ad next = current.state == AdState.LOADED ? current.ad : preloadManager.peekPreloadedAd();
+        if (next != null) {
+            PlayerPrewarmer.getInstance().prewarm(next);
         }
-        currentAd = null;
     }
 
     /**
@@ -151,89 +413,290 @@ public class AdManager {
      * @param activity The activity to launch the ad player from
      */
     public void checkAdDisplay(Activity activity) {
-        if (currentAd != null) {
-            startAdDisplay(activity);
-        } else if (preloadManager.hasPreloadedAd()) {
-            currentAd = preloadManager.getPreloadedAd();
-            Log.d(TAG, "Using preloaded ad for display: " + (currentAd != null ? currentAd.getId() : "none"));
-            startAdDisplay(activity);
+        loadPreloadedAdIfNeeded();
+        if (startAdDisplay(activity)) {
             preloadManager.preloadNextAd();
-
         } else {
             Log.d(TAG, "No ad available, triggering preload");
             preloadManager.preloadNextAd();
         }
     }
 
-    private void startAdDisplay(Activity activity) {
-        Log.d(TAG, "Displaying ad: " + currentAd.getId());
+    /**
+     * Loads a preloaded ad unless one is already loaded.
+     */
+    private void loadPreloadedAdIfNeeded() {
+        if (getState() != AdState.LOADED && preloadManager.hasPreloadedAd()) {
+            Ad ad = preloadManager.getPreloadedAd();
+            if (ad != null) {
+                Log.d(TAG, "Using preloaded ad for display: " + ad.getId());
+                if (!setLoadedAd(ad)) {
+                    preloadManager.restoreAd(ad);
+                }
+            }
+        }
+    }
 
-        // Reset watch time tracking
-        totalWatchDuration = 0;
-        lastWatchTimeStart = 0;
+    /**
+     * Moves the loaded ad to SHOWING and launches the player.
+     *
+     * @return false if no ad was loaded or one is already being shown
+     */
+    boolean startAdDisplay(Activity activity) {
+        return startDisplay(activity) != null;
+    }
+
+    private AdSession startDisplay(Activity activity) {
+        // showAd is the first phase of the impression's playback metrics
+        AdSession showing = transition(AdState.SHOWING,
+                current -> current.showing(new PlaybackMetricsTracker(nanoClock),
+                        new PlaybackProgressTracker(this::createEvent)));
+        if (showing == null) {
+            return null;
+        }
+        Log.d(TAG, "Displaying ad: " + showing.ad.getId());
+        if (activity != null) {
+            AdPlayerActivity.start(activity, this);
+        }
+        return showing;
+    }
+
+    /**
+     * Loads an ad, preferring a preloaded one, and makes it the next one to show.
+     * Joins the preload or direct ad request in flight instead of sending a duplicate.
+     * Cancelling the future, or the timeout, withdraws this caller: a shared request is only
+     * cancelled once no caller waits for it, and a video download is left to finish for the pool.
+     * Dependent stages run on the thread that completes the future unless an executor is given.
+     *
+     * @param timeoutMs Time allowed for the load, or 0 to wait indefinitely
+     * @return Future completed with the ad, or failed with {@link AdLoadException} if no ad could be
+     * loaded and with {@link TimeoutException} if the timeout passed first
+     */
+    public CompletableFuture<Ad> loadAdAsync(long timeoutMs) {
+        CompletableFuture<Ad> result = new CompletableFuture<>();
+        if (packageName == null) {
+            result.completeExceptionally(new AdLoadException("SDK is not initialized"));
+            return result;
+        }
+        Ad preloaded = preloadManager.getPreloadedAd();
+        if (preloaded != null) {
+            completeLoad(result, preloaded);
+            return result;
+        }
 
-        // Launch the ad player activity
-        AdPlayerActivity.start(activity, this);
+        Cancellable release;
+        // Ads handed over by the preload already have their video cached
+        AdCallback preloadWaiter = completing(result, ad -> completeLoad(result, ad));
+        if (preloadManager.awaitPreloadedAd(preloadWaiter)) {
+            Log.d(TAG, "Waiting for preload in flight");
+            release = () -> preloadManager.stopAwaiting(preloadWaiter);
+        } else {
+            release = adController.initRandomAd(packageName, getRequestKey(), completing(result, ad -> {
+                MediaCache mediaCache = adController.getMediaCache();
+                if (mediaCache == null) {
+                    completeLoad(result, ad);
+                    return;
+                }
+                // Shared with other loads of the same video, so never cancelled on behalf of this caller
+                AdPreloadManager.cacheMedia(mediaCache, adController.getMediaPrefetchBytes(), ad, ready -> {
+                    if (ready) {
+                        completeLoad(result, ad);
+                    } else {
+                        result.completeExceptionally(new AdLoadException("Could not download ad video"));
+                    }
+                });
+            }));
+        }
+        if (timeoutMs > 0) {
+            Cancellable timeout = adController.schedule(() -> result.completeExceptionally(
+                    new TimeoutException("No ad loaded within " + timeoutMs + " ms")), timeoutMs);
+            result.whenComplete((ad, error) -> timeout.cancel());
+        }
+        // Cancelled or timed out: stop waiting instead of letting the request finish unobserved
+        result.whenComplete((ad, error) -> {
+            if (error != null) {
+                release.cancel();
+            }
+        });
+        return result;
     }
 
+    /**
+     * @return Callback completing the given future with the outcome of a load
+     */
+    private static AdCallback completing(CompletableFuture<Ad> result, Consumer<Ad> onAd) {
+        return new AdCallback() {
+            @Override
+            public void onAdAvailable(Ad ad) {
+                onAd.accept(ad);
+            }
+
+            @Override
+            public void onAdFinished() {
+            }
+
+            @Override
+            public void onAdSkipped() {
+            }
+
+            @Override
+            public void onAdExited() {
+            }
+
+            @Override
+            public void onNoAvailable(Ad ad) {
+                result.completeExceptionally(new AdLoadException("No ad available"));
+            }
+
+            @Override
+            public void onError(String message) {
+                result.completeExceptionally(new AdLoadException(message));
+            }
+        };
+    }
+
+    private void completeLoad(CompletableFuture<Ad> result, Ad ad) {
+        if (result.isDone()) {
+            // Too late for the caller; keep the ad for the next showAd
+            preloadManager.restoreAd(ad);
+            return;
+        }
+        if (!setLoadedAd(ad)) {
+            preloadManager.restoreAd(ad);
+            result.completeExceptionally(new AdLoadException("Another ad is being shown"));
+            return;
+        }
+        result.complete(ad);
+    }
+
+    /**
+     * Shows an ad, loading one first if none is ready.
+     * Cancelling the future while the ad is loading cancels the load; once the ad is shown,
+     * cancelling only stops waiting for its outcome.
+     *
+     * @param activity  The activity to launch the ad player from
+     * @param timeoutMs Time allowed to load an ad if none is ready, or 0 to wait indefinitely
+     * @return Future completed with COMPLETED, SKIPPED or EXITED when the ad ends, or failed with
+     * {@link AdLoadException} or {@link TimeoutException} if no ad could be shown
+     */
+    public CompletableFuture<AdState> showAdAsync(Activity activity, long timeoutMs) {
+        CompletableFuture<Ad> ready = isAdReady()
+                ? CompletableFuture.completedFuture(null) : loadAdAsync(timeoutMs);
+        // The player is launched from the callback executor, the main thread by default
+        CompletableFuture<AdState> outcome = ready.thenComposeAsync(ad -> {
+            loadPreloadedAdIfNeeded();
+            AdSession showing = startDisplay(activity);
+            if (showing == null) {
+                CompletableFuture<AdState> failed = new CompletableFuture<>();
+                failed.completeExceptionally(new AdLoadException("No ad available to show"));
+                return failed;
+            }
+            preloadManager.preloadNextAd();
+            return showing.outcome;
+        }, adController.getCallbackExecutor());
+        outcome.whenComplete((state, error) -> {
+            if (outcome.isCancelled()) {
+                ready.cancel(false);
+            }
+        });
+        return outcome;
+    }
+
+    /**
+     * @return The playback phase recorder of the ad being shown, or null if none is shown
+     */
+    public PlaybackMetricsTracker getPlaybackMetricsTracker() {
+        AdSession current = session.get();
+        return current.state == AdState.SHOWING ? current.metrics : null;
+    }
+
+    /**
+     * The tracker lives as long as the impression, so a player activity recreated after a
+     * configuration change continues it instead of reporting the milestones again.
+     *
+     * @return The progress milestone tracker of the ad being shown, or null if none is shown
+     */
+    public PlaybackProgressTracker getPlaybackProgressTracker() {
+        AdSession current = session.get();
+        return current.state == AdState.SHOWING ? current.progress : null;
+    }
+
+    /**
+     * Reports what the player of the ad being shown is doing. Only time spent in
+     * {@link PlaybackPhase#PLAYING} counts as watch time; buffering and paused time are reported
+     * separately with the events.
+     *
+     * @param phase The phase the player entered now
+     */
+    public void setPlaybackPhase(PlaybackPhase phase) {
+        long now = nanoClock.getAsLong();
+        updateWatch(current -> current.phaseChanged(phase, now));
+    }
+
+    /**
+     * Starts counting watch time from now, e.g. once the video is prepared.
+     * Same as {@link #setPlaybackPhase} with {@link PlaybackPhase#PLAYING}.
+     */
     public void startWatchTimeTracking() {
-        lastWatchTimeStart = SystemClock.elapsedRealtime();
-        isWatchTimeTrackingActive = true;
+        setPlaybackPhase(PlaybackPhase.PLAYING);
     }
 
+    /**
+     * Stops counting watch time, if it was counted, and counts paused time instead.
+     */
     public void pauseWatchTimeTracking() {
-        if (isWatchTimeTrackingActive && lastWatchTimeStart > 0) {
-            long currentTime = SystemClock.elapsedRealtime();
-            totalWatchDuration += (currentTime - lastWatchTimeStart) / 1000f;
-            lastWatchTimeStart = 0;
-            isWatchTimeTrackingActive = false;
-        }
+        long now = nanoClock.getAsLong();
+        updateWatch(current -> current.watchTime.getPhase() == PlaybackPhase.IDLE ? current
+                : current.phaseChanged(PlaybackPhase.PAUSED, now));
     }
 
+    /**
+     * Counts watch time again after {@link #pauseWatchTimeTracking()}.
+     */
     public void resumeWatchTimeTracking() {
-        if (!isWatchTimeTrackingActive) {
-            lastWatchTimeStart = SystemClock.elapsedRealtime();
-            isWatchTimeTrackingActive = true;
-        }
+        long now = nanoClock.getAsLong();
+        updateWatch(current -> current.watchTime.getPhase() != PlaybackPhase.PAUSED ? current
+                : current.phaseChanged(PlaybackPhase.PLAYING, now));
     }
 
     /**
-     * Calculates total watch duration including any currently active tracking session.
+     * Calculates the time the ad has been playing, without buffering and paused time.
      *
      * @return Total watch duration in seconds
      */
     public float getWatchDuration() {
-        if (isWatchTimeTrackingActive && lastWatchTimeStart > 0) {
-            long currentTime = SystemClock.elapsedRealtime();
-            return totalWatchDuration + ((currentTime - lastWatchTimeStart) / 1000f);
-        }
-        return totalWatchDuration;
+        return session.get().watchTime.getPlayingMs(nanoClock.getAsLong()) / 1000f;
     }
 
     /**
-     * Creates and sends an ad interaction event to the server.
+     * Creates and sends an interaction event for the ad being shown, e.g. a click.
+     * Final events are sent by {@link #finishAd(AdState, EventEnum)}.
      *
      * @param eventType The type of interaction (view, click, skip, exit)
      */
     public void createEvent(EventEnum eventType) {
-        if (currentAd == null || currentAd.getId() == null) {
-            Log.e(TAG, "Cannot create event: no current ad or invalid ad ID");
+        AdSession current = session.get();
+        if (current.state != AdState.SHOWING) {
+            Log.e(TAG, "Cannot create event: no ad is being shown (" + current.state + ")");
             return;
         }
+        sendEvent(current.ad, eventType, current.watchTime, nanoClock.getAsLong(), null);
+    }
 
-        float duration = getWatchDuration();
+    private void sendEvent(Ad ad, EventEnum eventType, WatchTimeAccountant watchTime, long nowNs,
+                           PlaybackMetrics metrics) {
+        if (ad == null || ad.getId() == null) {
+            Log.e(TAG, "Cannot create event: no current ad or invalid ad ID");
+            return;
+        }
         adController.sendAdEvent(
-                currentAd.getId(),
+                ad.getId(),
                 packageName,
                 eventType.getValue(),
-                duration
+                watchTime.getPlayingMs(nowNs),
+                watchTime.getBufferingMs(nowNs),
+                watchTime.getPausedMs(nowNs),
+                metrics
         );
     }
-
-    public void notifyAdFinished() {
-        if (userCallback != null) {
-            userCallback.onAdFinished();
-        }
-        currentAd = null;
-    }
 }
\ No newline at end of file
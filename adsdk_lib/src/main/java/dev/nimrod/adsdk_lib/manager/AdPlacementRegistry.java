@@ -0,0 +1,152 @@
+package dev.nimrod.adsdk_lib.manager;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import dev.nimrod.adsdk_lib.callback.AdCallback;
+import dev.nimrod.adsdk_lib.callback.DispatchingAdCallback;
+import dev.nimrod.adsdk_lib.config.AdSdkConfig;
+import dev.nimrod.adsdk_lib.controller.AdController;
+
+/**
+ * Keeps one {@link AdManager} per ad placement, e.g. a rewarded and an interstitial slot.
+ * Every placement has its own preload pool, retry policy and lifecycle state, while all of them
+ * share the network client and the media cache of the {@link AdController}. Placements add no
+ * threads; their retries and expiry checks run on the main thread like those of the default one.
+ */
+public class AdPlacementRegistry {
+    private static final String TAG = "AdPlacementRegistry";
+    public static final String DEFAULT_PLACEMENT = "default";
+    private static AdPlacementRegistry instance;
+
+    private final Map<String, AdManager> managers = new ConcurrentHashMap<>();
+    private final AdController adController;
+    private final LongSupplier clock;
+    private final LongSupplier nanoClock;
+    private volatile String packageName;
+
+    private AdPlacementRegistry() {
+        this(AdController.getInstance(), AdManager.getInstance(), SystemClock::elapsedRealtime,
+                SystemClock::elapsedRealtimeNanos);
+    }
+
+    AdPlacementRegistry(AdController adController, AdManager defaultManager, LongSupplier clock) {
+        this(adController, defaultManager, clock, () -> TimeUnit.MILLISECONDS.toNanos(clock.getAsLong()));
+    }
+
+    /**
+     * @param clock     Monotonic clock in milliseconds, for ad expiry
+     * @param nanoClock Monotonic clock in nanoseconds, for watch time and playback metrics
+     */
+    AdPlacementRegistry(AdController adController, AdManager defaultManager, LongSupplier clock,
+                        LongSupplier nanoClock) {
+        this.adController = adController;
+        this.clock = clock;
+        this.nanoClock = nanoClock;
+        managers.put(DEFAULT_PLACEMENT, defaultManager);
+    }
+
+    public static synchronized AdPlacementRegistry getInstance() {
+        if (instance == null) {
+            instance = new AdPlacementRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * Adds a placement and starts preloading its ads once the package name is known.
+     * Registering a placement again returns the existing manager unchanged.
+     *
+     * @param placementId  Identifier the app uses to show ads of this placement
+     * @param preloadDepth Number of ads kept ready for this placement, or 0 for the configured depth
+     * @param callback     Receives the ads and outcomes of this placement, or null
+     * @return The manager of the placement
+     */
+    public AdManager register(String placementId, int preloadDepth, AdCallback callback) {
+        if (placementId == null) {
+            throw new IllegalArgumentException("placementId must not be null");
+        }
+        if (preloadDepth < 0) {
+            throw new IllegalArgumentException("preloadDepth must not be negative");
+        }
+        boolean[] created = {false};
+        AdManager manager = managers.computeIfAbsent(placementId, id -> {
+            created[0] = true;
+            return newManager(id, preloadDepth);
+        });
+        if (!created[0]) {
+            Log.d(TAG, "Placement already registered: " + placementId);
+            return manager;
+        }
+        Log.d(TAG, "Registered placement " + placementId);
+        if (callback != null) {
+            // Resolved per call so that registering before AdSdk.init does not build the client early
+            manager.setUserCallback(DispatchingAdCallback.wrap(callback,
+                    command -> adController.getCallbackExecutor().execute(command)));
+        }
+        String currentPackage = packageName;
+        if (currentPackage != null) {
+            manager.setPackageName(currentPackage);
+        }
+        return manager;
+    }
+
+    private AdManager newManager(String placementId, int preloadDepth) {
+        // Sized from the SDK configuration once the placement is initialized
+        AdSdkConfig defaults = AdSdkConfig.defaults();
+        AdPreloadPool pool = new AdPreloadPool(preloadDepth > 0 ? preloadDepth : defaults.getPreloadDepth(),
+                defaults.getPreloadTtlMs(), clock);
+        return new AdManager(placementId, adController,
+                new AdPreloadManager(adController, pool, preloadDepth), nanoClock, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return The manager of the placement, or null if it was never registered
+     */
+    public AdManager get(String placementId) {
+        return placementId == null ? null : managers.get(placementId);
+    }
+
+    public int getPlacementCount() {
+        return managers.size();
+    }
+
+    /**
+     * Binds every placement, including ones registered later, to the host app and starts
+     * preloading their ads.
+     *
+     * @param packageName The package name of the host application
+     */
+    public void setPackageName(String packageName) {
+        this.packageName = packageName;
+        for (AdManager manager : managers.values()) {
+            manager.setPackageName(packageName);
+        }
+    }
+
+    /**
+     * Pauses the background loading of every placement, see {@link AdPreloadManager#pause()},
+     * and cancels the direct ad requests in flight.
+     */
+    public void pauseAll() {
+        for (AdManager manager : managers.values()) {
+            manager.getPreloadManager().pause();
+        }
+        adController.cancelAdRequests();
+    }
+
+    /**
+     * Resumes the background loading of every placement and pre-warms a player again if enabled.
+     */
+    public void resumeAll() {
+        for (AdManager manager : managers.values()) {
+            manager.getPreloadManager().resume();
+            manager.prewarmNextAd();
+        }
+    }
+}
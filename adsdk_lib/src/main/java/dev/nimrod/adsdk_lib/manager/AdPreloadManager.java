@@ -1,28 +1,88 @@
 package dev.nimrod.adsdk_lib.manager;
 
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
 import dev.nimrod.adsdk_lib.callback.AdCallback;
+import dev.nimrod.adsdk_lib.callback.AdListCallback;
+import dev.nimrod.adsdk_lib.config.AdSdkConfig;
 import dev.nimrod.adsdk_lib.controller.AdController;
 import dev.nimrod.adsdk_lib.model.Ad;
+import dev.nimrod.adsdk_lib.player.PlayerEngineFactory;
+import dev.nimrod.adsdk_lib.storage.MediaCache;
+import dev.nimrod.adsdk_lib.util.Cancellable;
+import dev.nimrod.adsdk_lib.util.RetryPolicy;
 
 /**
  * Manages background preloading of ads to ensure instant availability.
- * Automatically loads the next ad when the current preloaded ad is consumed.
+ * Keeps a bounded FIFO pool of ready ads, evicts ads whose TTL expired and
+ * refills the pool in the background whenever an ad is consumed or evicted.
+ * Refills request all missing ads in one round trip when the server supports it.
+ * With the media cache enabled an ad only enters the pool once its video, or the configured
+ * prefix of it, is stored locally.
+ * While the host app is in the background loading is paused: the request and video downloads in
+ * flight are cancelled and the pool is refilled once the app returns to the foreground. Ads the
+ * server already answered are kept aside and their videos downloaded first on resume.
  */
 public class AdPreloadManager {
     private static final String TAG = "AdPreloadManager";
-    private AdCallback notificationCallback;
+    private volatile AdCallback notificationCallback;
+    private volatile Runnable poolListener;
 
     private static AdPreloadManager instance;
     private final AdController adController;
+    private final AdPreloadPool pool;
+    // Pool size of this placement, or 0 to follow the SDK configuration
+    private final int preloadDepth;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable expiryCheck = this::checkExpiredAds;
+    private final Runnable retry = this::preloadNextAd;
+    private volatile RetryPolicy retryPolicy;
+
+    private final AtomicBoolean isLoading = new AtomicBoolean(false);
+    // Callers that joined the load in flight; guarded by waiterLock together with isLoading going false
+    private final Object waiterLock = new Object();
+    private final ArrayDeque<AdCallback> adWaiters = new ArrayDeque<>();
+    private volatile String packageName;
 
-    private Ad preloadedAd = null;
-    private boolean isLoading = false;
-    private String packageName;
+    private volatile boolean paused;
+    // Bumped on pause so callbacks of a cancelled load know they are stale
+    private volatile int loadGeneration;
+    private volatile Cancellable currentLoad = Cancellable.NONE;
+    private final Set<String> prefetchingUrls = ConcurrentHashMap.newKeySet();
+    // Ads answered while paused, not ready until their videos are downloaded; guarded by itself
+    private final List<Ad> pendingMedia = new ArrayList<>();
 
     private AdPreloadManager() {
-        adController = AdController.getInstance();
+        this(AdController.getInstance(), newDefaultPool());
+    }
+
+    AdPreloadManager(AdController adController, AdPreloadPool pool) {
+        this(adController, pool, 0);
+    }
+
+    AdPreloadManager(AdController adController, AdPreloadPool pool, int preloadDepth) {
+        this.adController = adController;
+        this.pool = pool;
+        this.preloadDepth = preloadDepth;
+        this.retryPolicy = RetryPolicy.fromConfig(AdSdkConfig.defaults(), SystemClock::elapsedRealtime);
+    }
+
+    private static AdPreloadPool newDefaultPool() {
+        AdSdkConfig defaults = AdSdkConfig.defaults();
+        return new AdPreloadPool(defaults.getPreloadDepth(), defaults.getPreloadTtlMs(), SystemClock::elapsedRealtime);
     }
 
     public static synchronized AdPreloadManager getInstance() {
@@ -35,6 +95,9 @@ public class AdPreloadManager {
 
     public void initialize(String packageName) {
         this.packageName = packageName;
+        AdSdkConfig config = adController.getConfig();
+        pool.configure(preloadDepth > 0 ? preloadDepth : config.getPreloadDepth(), config.getPreloadTtlMs());
+        retryPolicy = RetryPolicy.fromConfig(config, SystemClock::elapsedRealtime);
         preloadNextAd();
     }
 
@@ -42,81 +105,425 @@ public class AdPreloadManager {
         this.notificationCallback = notificationCallback;
     }
 
+    /**
+     * Runs the given hook whenever an ad enters the pool, on the thread that loaded it.
+     */
+    void setPoolListener(Runnable poolListener) {
+        this.poolListener = poolListener;
+    }
+
+    /**
+     * @return The ad {@link #getPreloadedAd()} would return next, still in the pool, or null
+     */
+    public Ad peekPreloadedAd() {
+        return pool.peek();
+    }
+
+    /**
+     * Lock-free check for a ready, unexpired ad.
+     */
     public boolean hasPreloadedAd() {
-        return preloadedAd != null;
+        return pool.hasReady();
+    }
+
+    public int getPreloadedAdCount() {
+        return pool.size();
     }
 
     /**
-     * Retrieves the preloaded ad and automatically starts loading the next one.
+     * Retrieves the oldest preloaded ad and automatically starts refilling the pool.
      *
      * @return The preloaded ad, or null if none available
      */
     public Ad getPreloadedAd() {
-        Ad ad = preloadedAd;
-        preloadedAd = null;
+        Ad ad = pool.poll();
         preloadNextAd();
         return ad;
     }
 
     /**
-     * Loads the next ad in the background with automatic retry on failure.
+     * Puts back an ad that was taken from the pool, or loaded directly, but could not be shown,
+     * e.g. because another ad was being shown at the same time.
+     *
+     * @param ad The unused ad
+     */
+    public void restoreAd(Ad ad) {
+        if (ad != null) {
+            pool.restore(ad);
+        }
+    }
+
+    /**
+     * Lets a caller that needs an ad now join the preload in flight instead of sending its own
+     * request. The first ad the preload produces is handed to the callback instead of the pool.
+     *
+     * @param callback Receives the ad, or the outcome of the load if it yields no ad
+     * @return false if no preload is running; the caller should then load the ad itself
+     */
+    public boolean awaitPreloadedAd(AdCallback callback) {
+        synchronized (waiterLock) {
+            if (!isLoading.get()) {
+                return false;
+            }
+            adWaiters.add(callback);
+            return true;
+        }
+    }
+
+    /**
+     * Withdraws a callback registered with {@link #awaitPreloadedAd(AdCallback)}; the preload
+     * itself keeps running and fills the pool.
+     */
+    public void stopAwaiting(AdCallback callback) {
+        synchronized (waiterLock) {
+            adWaiters.remove(callback);
+        }
+    }
+
+    /**
+     * Stops background loading, e.g. when the host app goes to background.
+     * Cancels the ad request and video downloads in flight and any scheduled retry.
+     * Ads already in the pool are kept.
+     */
+    public void pause() {
+        if (paused) {
+            return;
+        }
+        paused = true;
+        loadGeneration++;
+        handler.removeCallbacks(retry);
+        currentLoad.cancel();
+        MediaCache mediaCache = adController.getMediaCache();
+        if (mediaCache != null) {
+            for (String url : prefetchingUrls) {
+                mediaCache.cancel(url);
+            }
+        }
+        Log.d(TAG, "Preloading paused");
+    }
+
+    /**
+     * Resumes background loading after {@link #pause()} and refills the pool.
+     */
+    public void resume() {
+        if (!paused) {
+            return;
+        }
+        paused = false;
+        Log.d(TAG, "Preloading resumed");
+        preloadNextAd();
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public boolean isLoading() {
+        return isLoading.get();
+    }
+
+    /**
+     * Loads the missing ads in the background with automatic retry on failure.
+     * Keeps loading until the pool is full. Failures are retried with exponential backoff
+     * until the retry budget is spent; while the circuit breaker is open no request is sent.
+     * Does nothing while paused.
      */
     public void preloadNextAd() {
-        // Skip if already loading or package name not set
-        if (isLoading || packageName == null) {
-            Log.d(TAG, "Skip preloading because already loading or no package name");
+        // Skip if the pool is full, a load is running or package name not set
+        if (packageName == null || pool.isFull()) {
+            Log.d(TAG, "Skip preloading because pool is full or no package name");
+            return;
+        }
+        if (paused) {
+            Log.d(TAG, "Skip preloading because the app is in background");
+            return;
+        }
+        if (!isLoading.compareAndSet(false, true)) {
+            Log.d(TAG, "Skip preloading because already loading");
+            return;
+        }
+        List<Ad> pending = takePendingMedia();
+        if (!pending.isEmpty()) {
+            Log.d(TAG, "Downloading videos of " + pending.size() + " ads answered during pause");
+            cacheBatch(pending, loadGeneration);
+            return;
+        }
+        if (!retryPolicy.allowRequest()) {
+            finishLoad("Ad requests are paused after repeated server errors");
+            long wait = retryPolicy.getMillisUntilAllowed();
+            Log.d(TAG, "Skip preloading because the circuit breaker is open, probing in " + wait + " ms");
+            scheduleRetry(wait);
             return;
         }
 
-        isLoading = true;
-        Log.d(TAG, "Preloading next ad");
+        int missing = pool.getCapacity() - pool.size();
+        Log.d(TAG, "Preloading " + missing + " ads (" + pool.size() + "/" + pool.getCapacity() + " ready)");
 
-        adController.initRandomAd(packageName, new AdCallback() {
+        int generation = loadGeneration;
+        currentLoad = adController.loadAds(packageName, missing, new AdListCallback() {
             @Override
-            public void onAdAvailable(Ad ad) {
-                Log.d(TAG, "Ad successfully preloaded: " + ad.getId());
-                preloadedAd = ad;
-                isLoading = false;
-
-                if (notificationCallback != null) {
-                    notificationCallback.onAdAvailable(ad);
+            public void onAdsAvailable(List<Ad> ads) {
+                Log.d(TAG, ads.size() + " ads successfully preloaded");
+                if (adController.getMediaCache() != null && isStale(generation)) {
+                    // Answered after a pause, whose cancellation missed these downloads
+                    keepPending(ads);
+                    return;
                 }
+                cacheBatch(ads, generation);
             }
 
             @Override
-            public void onAdFinished() {
-                isLoading = false;
+            public void onNoAvailable() {
+                Log.d(TAG, "No ad available for preloading");
+                finishLoad(null);
+                scheduleRetry(retryPolicy.onEmptyResponse());
             }
 
             @Override
-            public void onAdSkipped() {
-                isLoading = false;
+            public void onError(String message) {
+                if (isStale(generation)) {
+                    Log.d(TAG, "Preload cancelled");
+                    retryPolicy.onCancelled();
+                    finishLoad(message);
+                    preloadNextAd();
+                    return;
+                }
+                Log.e(TAG, "Error preloading ad: " + message);
+                finishLoad(message);
+                scheduleRetry(retryPolicy.onFailure());
             }
+        });
+    }
 
-            @Override
-            public void onAdExited() {
-                isLoading = false;
+    /**
+     * Adds a batch of loaded ads to the pool once their videos are stored locally.
+     */
+    private void cacheBatch(List<Ad> ads, int generation) {
+        MediaCache mediaCache = adController.getMediaCache();
+        if (mediaCache == null) {
+            for (Ad ad : ads) {
+                addToPool(ad);
             }
+            onBatchReady(generation, false);
+            return;
+        }
 
-            @Override
-            public void onNoAvailable(Ad ad) {
-                Log.d(TAG, "No ad available for preloading");
-                isLoading = false;
+        // Registered before any download starts, so a pause from now on cancels them all
+        for (Ad ad : ads) {
+            if (ad.getVideoUrl() != null) {
+                prefetchingUrls.add(ad.getVideoUrl());
+            }
+        }
+        if (paused) {
+            for (Ad ad : ads) {
+                if (ad.getVideoUrl() != null) {
+                    prefetchingUrls.remove(ad.getVideoUrl());
+                }
+            }
+            keepPending(ads);
+            return;
+        }
 
-                new android.os.Handler().postDelayed(() -> {
-                    preloadNextAd();
-                }, 2000);
+        // Ads only count as ready once their video is on disk
+        long prefetchBytes = adController.getMediaPrefetchBytes();
+        AtomicInteger remaining = new AtomicInteger(ads.size());
+        AtomicBoolean failed = new AtomicBoolean(false);
+        for (Ad ad : ads) {
+            String videoUrl = ad.getVideoUrl();
+            cacheMedia(mediaCache, prefetchBytes, ad, ready -> {
+                if (videoUrl != null) {
+                    prefetchingUrls.remove(videoUrl);
+                }
+                if (ready) {
+                    addToPool(ad);
+                } else {
+                    failed.set(true);
+                    if (isStale(generation)) {
+                        // Cancelled by a pause, downloaded again on resume
+                        addPendingMedia(ad);
+                    }
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    onBatchReady(generation, failed.get());
+                }
+            });
+        }
+        if (paused) {
+            // A pause that ran before a download started could not cancel it
+            for (Ad ad : ads) {
+                if (ad.getVideoUrl() != null) {
+                    mediaCache.cancel(ad.getVideoUrl());
+                }
+            }
+        }
+    }
+
+    /**
+     * Ends a load answered while paused; its ads wait for their videos until the app resumes.
+     */
+    private void keepPending(List<Ad> ads) {
+        Log.d(TAG, "Keeping " + ads.size() + " ads loaded during pause until resume");
+        for (Ad ad : ads) {
+            addPendingMedia(ad);
+        }
+        retryPolicy.onSuccess();
+        finishLoad(null);
+        preloadNextAd();
+    }
+
+    private void addPendingMedia(Ad ad) {
+        synchronized (pendingMedia) {
+            if (pendingMedia.size() < pool.getCapacity()) {
+                pendingMedia.add(ad);
             }
+        }
+    }
+
+    private List<Ad> takePendingMedia() {
+        synchronized (pendingMedia) {
+            List<Ad> pending = new ArrayList<>(pendingMedia);
+            pendingMedia.clear();
+            return pending;
+        }
+    }
+
+    /**
+     * @return true if the load was started before the last pause; its outcome is not the
+     * backend's fault and must not feed the retry policy
+     */
+    private boolean isStale(int generation) {
+        return generation != loadGeneration;
+    }
+
+    private void addToPool(Ad ad) {
+        AdCallback waiter;
+        synchronized (waiterLock) {
+            waiter = adWaiters.poll();
+        }
+        if (waiter != null) {
+            waiter.onAdAvailable(ad);
+            return;
+        }
+        if (!pool.offer(ad)) {
+            // Ads put back while this load was running took the free slots; keep the ad anyway
+            pool.restore(ad);
+        }
+        Runnable listener = poolListener;
+        if (listener != null) {
+            listener.run();
+        }
+        AdCallback callback = notificationCallback;
+        if (callback != null) {
+            callback.onAdAvailable(ad);
+        }
+    }
 
+    /**
+     * Ends the current load and answers callers that joined it but received no ad.
+     *
+     * @param error The failure, or null if the load succeeded or found no ad
+     */
+    private void finishLoad(String error) {
+        List<AdCallback> unserved;
+        synchronized (waiterLock) {
+            unserved = new ArrayList<>(adWaiters);
+            adWaiters.clear();
+            isLoading.set(false);
+        }
+        for (AdCallback waiter : unserved) {
+            if (error != null) {
+                waiter.onError(error);
+            } else {
+                waiter.onNoAvailable(null);
+            }
+        }
+    }
+
+    private void onBatchReady(int generation, boolean failed) {
+        finishLoad(failed ? "Could not download ad video" : null);
+        scheduleExpiryCheck();
+        if (failed && isStale(generation)) {
+            // The server answered but downloads were cancelled by a pause; loading restarts on resume
+            retryPolicy.onSuccess();
+            preloadNextAd();
+        } else if (failed) {
+            // The ad server answered, but a video could not be downloaded
+            scheduleRetry(retryPolicy.onEmptyResponse());
+        } else {
+            retryPolicy.onSuccess();
+            preloadNextAd();
+        }
+    }
+
+    /**
+     * Schedules the next automatic attempt, replacing any pending one.
+     *
+     * @param delayMs Delay in milliseconds, or {@link RetryPolicy#NO_RETRY} to stop retrying
+     */
+    private void scheduleRetry(long delayMs) {
+        handler.removeCallbacks(retry);
+        if (paused) {
+            return;
+        }
+        if (delayMs == RetryPolicy.NO_RETRY) {
+            Log.w(TAG, "Retry budget exhausted, waiting for the next ad request");
+            return;
+        }
+        Log.d(TAG, "Retrying preload in " + delayMs + " ms");
+        handler.postDelayed(retry, delayMs);
+    }
+
+    /**
+     * Downloads the video of an ad, or its first bytes, into the media cache.
+     *
+     * @param mediaCache    The cache to fill
+     * @param prefetchBytes Number of bytes to download from the start of the video, or 0 for all
+     * @param ad            The ad whose video is needed
+     * @param onDone        Receives true once the video is local, or if the ad has no video to cache
+     */
+    static void cacheMedia(MediaCache mediaCache, long prefetchBytes, Ad ad, Consumer<Boolean> onDone) {
+        String videoUrl = ad.getVideoUrl();
+        // HLS and DASH manifests reference segments chosen at play time, the player buffers those
+        if (videoUrl == null || PlayerEngineFactory.isAdaptiveStream(videoUrl)) {
+            onDone.accept(true);
+            return;
+        }
+        MediaCache.Listener listener = new MediaCache.Listener() {
             @Override
-            public void onError(String message) {
-                Log.e(TAG, "Error preloading ad: " + message);
-                isLoading = false;
+            public void onMediaReady(File file) {
+                onDone.accept(true);
+            }
 
-                new android.os.Handler().postDelayed(() -> {
-                    preloadNextAd();
-                }, 5000);
+            @Override
+            public void onMediaFailed(String message) {
+                Log.e(TAG, "Could not cache video of ad " + ad.getId() + ": " + message);
+                onDone.accept(false);
             }
-        });
+        };
+        if (prefetchBytes > 0) {
+            mediaCache.fetchPrefix(videoUrl, prefetchBytes, listener);
+        } else {
+            mediaCache.fetch(videoUrl, listener);
+        }
+    }
+
+    /**
+     * Schedules an eviction pass for when the oldest pooled ad expires.
+     */
+    private void scheduleExpiryCheck() {
+        long delay = pool.getMillisUntilNextExpiry();
+        handler.removeCallbacks(expiryCheck);
+        if (delay >= 0) {
+            handler.postDelayed(expiryCheck, delay);
+        }
+    }
+
+    private void checkExpiredAds() {
+        int evicted = pool.evictExpired();
+        if (evicted > 0) {
+            Log.d(TAG, "Evicted " + evicted + " expired ads, refilling");
+            preloadNextAd();
+        }
+        scheduleExpiryCheck();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,152 @@
+package dev.nimrod.adsdk_lib.manager;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import dev.nimrod.adsdk_lib.model.Ad;
+
+/**
+ * Bounded, lock-free FIFO pool of preloaded ads.
+ * Every entry carries its own expiry time; expired entries are evicted lazily when they reach
+ * the head of the queue, or explicitly through {@link #evictExpired()}.
+ */
+public class AdPreloadPool {
+    private final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final LongSupplier clock;
+    private volatile int capacity;
+    private volatile long ttlMs;
+
+    private static final class Entry {
+        final Ad ad;
+        final long expiresAtMs;
+
+        Entry(Ad ad, long expiresAtMs) {
+            this.ad = ad;
+            this.expiresAtMs = expiresAtMs;
+        }
+    }
+
+    /**
+     * @param capacity Maximum number of ads held
+     * @param ttlMs    How long an ad stays valid after it was added
+     * @param clock    Monotonic clock in milliseconds
+     */
+    public AdPreloadPool(int capacity, long ttlMs, LongSupplier clock) {
+        this.capacity = capacity;
+        this.ttlMs = ttlMs;
+        this.clock = clock;
+    }
+
+    public void configure(int capacity, long ttlMs) {
+        this.capacity = capacity;
+        this.ttlMs = ttlMs;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Adds an ad at the tail of the pool.
+     *
+     * @param ad The ad to add
+     * @return false if the pool is already full
+     */
+    public boolean offer(Ad ad) {
+        int current;
+        do {
+            current = size.get();
+            if (current >= capacity) {
+                return false;
+            }
+        } while (!size.compareAndSet(current, current + 1));
+        queue.offer(new Entry(ad, clock.getAsLong() + ttlMs));
+        return true;
+    }
+
+    /**
+     * Adds an ad at the tail of the pool even if it is full.
+     * Used for ads that were taken out but not shown, and whose slot may already be refilled,
+     * so that they are not lost; the pool shrinks back to its capacity as ads are consumed.
+     *
+     * @param ad The ad to add
+     */
+    public void restore(Ad ad) {
+        size.incrementAndGet();
+        queue.offer(new Entry(ad, clock.getAsLong() + ttlMs));
+    }
+
+    /**
+     * Removes and returns the oldest ad that has not expired.
+     *
+     * @return The ad, or null if the pool holds no valid ad
+     */
+    public Ad poll() {
+        long now = clock.getAsLong();
+        Entry entry;
+        while ((entry = queue.poll()) != null) {
+            size.decrementAndGet();
+            if (entry.expiresAtMs > now) {
+                return entry.ad;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The ad {@link #poll()} would return next, without removing it, or null
+     */
+    public Ad peek() {
+        evictExpiredHead(clock.getAsLong());
+        Entry head = queue.peek();
+        return head == null ? null : head.ad;
+    }
+
+    /**
+     * @return true if the head of the pool holds an ad that has not expired
+     */
+    public boolean hasReady() {
+        evictExpiredHead(clock.getAsLong());
+        return queue.peek() != null;
+    }
+
+    /**
+     * Drops every expired ad at the head of the pool.
+     *
+     * @return The number of ads evicted
+     */
+    public int evictExpired() {
+        return evictExpiredHead(clock.getAsLong());
+    }
+
+    private int evictExpiredHead(long now) {
+        int evicted = 0;
+        Entry head;
+        while ((head = queue.peek()) != null && head.expiresAtMs <= now) {
+            // Only the thread that wins the removal counts the eviction
+            if (queue.remove(head)) {
+                size.decrementAndGet();
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * @return Milliseconds until the oldest ad expires, or -1 if the pool is empty
+     */
+    public long getMillisUntilNextExpiry() {
+        Entry head = queue.peek();
+        return head == null ? -1 : Math.max(0, head.expiresAtMs - clock.getAsLong());
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public boolean isFull() {
+        return size.get() >= capacity;
+    }
+}
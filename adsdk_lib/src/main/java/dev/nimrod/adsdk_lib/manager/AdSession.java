@@ -0,0 +1,63 @@
+package dev.nimrod.adsdk_lib.manager;
+
+import java.util.concurrent.CompletableFuture;
+
+import dev.nimrod.adsdk_lib.model.Ad;
+import dev.nimrod.adsdk_lib.player.PlaybackMetricsTracker;
+import dev.nimrod.adsdk_lib.player.PlaybackProgressTracker;
+
+/**
+ * Immutable snapshot of the ad lifecycle: the state, its ad and the watch time so far.
+ * {@link AdManager} swaps whole snapshots with compare-and-set, so the state and the watch
+ * time can never be observed half updated.
+ */
+final class AdSession {
+    static final AdSession IDLE = new AdSession(AdState.IDLE, null, WatchTimeAccountant.IDLE, null, null, null);
+
+    final AdState state;
+    final Ad ad;
+    // Playing, buffering and paused time of the ad shown in this session
+    final WatchTimeAccountant watchTime;
+    // Completed with the terminal state once the ad shown in this session ends, null before it is shown
+    final CompletableFuture<AdState> outcome;
+    // Playback phases of the ad shown in this session, null before it is shown
+    final PlaybackMetricsTracker metrics;
+    // Progress milestones of the ad shown in this session, outliving a recreated player activity;
+    // null before it is shown
+    final PlaybackProgressTracker progress;
+
+    private AdSession(AdState state, Ad ad, WatchTimeAccountant watchTime, CompletableFuture<AdState> outcome,
+                      PlaybackMetricsTracker metrics, PlaybackProgressTracker progress) {
+        this.state = state;
+        this.ad = ad;
+        this.watchTime = watchTime;
+        this.outcome = outcome;
+        this.metrics = metrics;
+        this.progress = progress;
+    }
+
+    AdSession loaded(Ad ad) {
+        return new AdSession(AdState.LOADED, ad, WatchTimeAccountant.IDLE, null, null, null);
+    }
+
+    AdSession showing(PlaybackMetricsTracker metrics, PlaybackProgressTracker progress) {
+        return new AdSession(AdState.SHOWING, ad, WatchTimeAccountant.IDLE, new CompletableFuture<>(),
+                metrics, progress);
+    }
+
+    /**
+     * Ends the session, closing the open watch segment.
+     */
+    AdSession finished(AdState outcome, long nowNs) {
+        return new AdSession(outcome, ad, watchTime.enter(PlaybackPhase.IDLE, nowNs), this.outcome, metrics,
+                progress);
+    }
+
+    /**
+     * @return This session if the player was already in the given phase
+     */
+    AdSession phaseChanged(PlaybackPhase phase, long nowNs) {
+        WatchTimeAccountant next = watchTime.enter(phase, nowNs);
+        return next == watchTime ? this : new AdSession(state, ad, next, outcome, metrics, progress);
+    }
+}
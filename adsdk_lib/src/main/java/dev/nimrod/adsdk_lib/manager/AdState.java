@@ -0,0 +1,32 @@
+package dev.nimrod.adsdk_lib.manager;
+
+/**
+ * Lifecycle states of the ad handled by {@link AdManager}.
+ * IDLE -> LOADED -> SHOWING -> COMPLETED / SKIPPED / EXITED. A loaded ad may be replaced by a newer
+ * one, and after a terminal state the next ad can be loaded. Every other transition is illegal.
+ */
+public enum AdState {
+    IDLE,
+    LOADED,
+    SHOWING,
+    COMPLETED,
+    SKIPPED,
+    EXITED;
+
+    public boolean isTerminal() {
+        return this == COMPLETED || this == SKIPPED || this == EXITED;
+    }
+
+    public boolean canMoveTo(AdState next) {
+        switch (this) {
+            case IDLE:
+                return next == LOADED;
+            case LOADED:
+                return next == LOADED || next == SHOWING;
+            case SHOWING:
+                return next.isTerminal();
+            default:
+                return next == LOADED;
+        }
+    }
+}
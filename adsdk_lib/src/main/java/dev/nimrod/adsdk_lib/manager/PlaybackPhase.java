@@ -0,0 +1,18 @@
+package dev.nimrod.adsdk_lib.manager;
+
+/**
+ * What the player of the ad being shown is doing, as reported to {@link AdManager#setPlaybackPhase}.
+ * Only {@link #PLAYING} counts as watch time.
+ */
+public enum PlaybackPhase {
+    /**
+     * Not counted: the video is not prepared yet, or has ended.
+     */
+    IDLE,
+    PLAYING,
+    /**
+     * The player wants to play but waits for data.
+     */
+    BUFFERING,
+    PAUSED
+}
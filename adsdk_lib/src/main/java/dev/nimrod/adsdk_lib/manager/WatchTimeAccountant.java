@@ -0,0 +1,63 @@
+package dev.nimrod.adsdk_lib.manager;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable split of the time an ad was shown into playing, buffering and paused time.
+ * Time is kept in nanoseconds of a monotonic clock, as closed totals per {@link PlaybackPhase}
+ * plus the open segment of the current phase, so long sessions lose no precision.
+ */
+final class WatchTimeAccountant {
+    static final WatchTimeAccountant IDLE = new WatchTimeAccountant(0, 0, 0, PlaybackPhase.IDLE, 0);
+
+    private final long playingNs;
+    private final long bufferingNs;
+    private final long pausedNs;
+    private final PlaybackPhase phase;
+    private final long phaseStartNs;
+
+    private WatchTimeAccountant(long playingNs, long bufferingNs, long pausedNs,
+                                PlaybackPhase phase, long phaseStartNs) {
+        this.playingNs = playingNs;
+        this.bufferingNs = bufferingNs;
+        this.pausedNs = pausedNs;
+        this.phase = phase;
+        this.phaseStartNs = phaseStartNs;
+    }
+
+    PlaybackPhase getPhase() {
+        return phase;
+    }
+
+    /**
+     * Closes the segment of the current phase and opens one of the given phase.
+     *
+     * @return This accountant if the phase does not change
+     */
+    WatchTimeAccountant enter(PlaybackPhase next, long nowNs) {
+        if (next == phase) {
+            return this;
+        }
+        return new WatchTimeAccountant(
+                playingNs + open(PlaybackPhase.PLAYING, nowNs),
+                bufferingNs + open(PlaybackPhase.BUFFERING, nowNs),
+                pausedNs + open(PlaybackPhase.PAUSED, nowNs),
+                next, nowNs);
+    }
+
+    long getPlayingMs(long nowNs) {
+        return TimeUnit.NANOSECONDS.toMillis(playingNs + open(PlaybackPhase.PLAYING, nowNs));
+    }
+
+    long getBufferingMs(long nowNs) {
+        return TimeUnit.NANOSECONDS.toMillis(bufferingNs + open(PlaybackPhase.BUFFERING, nowNs));
+    }
+
+    long getPausedMs(long nowNs) {
+        return TimeUnit.NANOSECONDS.toMillis(pausedNs + open(PlaybackPhase.PAUSED, nowNs));
+    }
+
+    private long open(PlaybackPhase counted, long nowNs) {
+        return phase == counted ? Math.max(0, nowNs - phaseStartNs) : 0;
+    }
+}
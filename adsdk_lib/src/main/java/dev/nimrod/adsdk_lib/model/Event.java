@@ -2,10 +2,7 @@ package dev.nimrod.adsdk_lib.model;
 
 import com.google.gson.annotations.SerializedName;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
-import java.util.TimeZone;
+import dev.nimrod.adsdk_lib.util.IsoTimestamp;
 
 public class Event {
     @SerializedName("adId")
@@ -19,10 +16,8 @@ public class Event {
     public Event() {
         this.eventDetails = new EventDetails();
 
-        // Initialize with defaults
-        SimpleDateFormat isoFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
-        isoFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
-        this.timestamp = isoFormat.format(new Date());
+        // Initialize with defaults: current time in ISO 8601 format
+        this.timestamp = IsoTimestamp.now();
     }
 
     public String getAdId() {
@@ -58,6 +53,18 @@ public class Event {
         return this;
     }
 
+    public Event setWatchTime(long playingMs, long bufferingMs, long pausedMs) {
+        this.eventDetails.playingMs = playingMs;
+        this.eventDetails.bufferingMs = bufferingMs;
+        this.eventDetails.pausedMs = pausedMs;
+        return this;
+    }
+
+    public Event setPlaybackMetrics(PlaybackMetrics playbackMetrics) {
+        this.eventDetails.playbackMetrics = playbackMetrics;
+        return this;
+    }
+
     public String getTimestamp() {
         return timestamp;
     }
@@ -85,6 +92,20 @@ public class Event {
         @SerializedName("watchDuration")
         private float watchDuration;
 
+        // Split of the time the ad was shown; watchDuration is the playing time in seconds
+        @SerializedName("playingMs")
+        private long playingMs;
+
+        @SerializedName("bufferingMs")
+        private long bufferingMs;
+
+        @SerializedName("pausedMs")
+        private long pausedMs;
+
+        // Only on final events, and only when enabled in the SDK configuration
+        @SerializedName("playbackMetrics")
+        private PlaybackMetrics playbackMetrics;
+
         public String getPackageName() {
             return packageName;
         }
@@ -109,12 +130,48 @@ public class Event {
             this.watchDuration = watchDuration;
         }
 
+        public long getPlayingMs() {
+            return playingMs;
+        }
+
+        public void setPlayingMs(long playingMs) {
+            this.playingMs = playingMs;
+        }
+
+        public long getBufferingMs() {
+            return bufferingMs;
+        }
+
+        public void setBufferingMs(long bufferingMs) {
+            this.bufferingMs = bufferingMs;
+        }
+
+        public long getPausedMs() {
+            return pausedMs;
+        }
+
+        public void setPausedMs(long pausedMs) {
+            this.pausedMs = pausedMs;
+        }
+
+        public PlaybackMetrics getPlaybackMetrics() {
+            return playbackMetrics;
+        }
+
+        public void setPlaybackMetrics(PlaybackMetrics playbackMetrics) {
+            this.playbackMetrics = playbackMetrics;
+        }
+
         @Override
         public String toString() {
             return "EventDetails{" +
                     "packageName='" + packageName + '\'' +
                     ", eventType='" + eventType + '\'' +
                     ", watchDuration=" + watchDuration +
+                    ", playingMs=" + playingMs +
+                    ", bufferingMs=" + bufferingMs +
+                    ", pausedMs=" + pausedMs +
+                    ", playbackMetrics=" + playbackMetrics +
                     '}';
         }
     }
@@ -0,0 +1,339 @@
+package dev.nimrod.adsdk_lib.model;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Hand-written streaming Gson adapters for the model classes.
+ * They produce the same JSON as Gson's reflective adapters (same names, field order and null
+ * handling) but go through getters and setters, so no reflection is needed at runtime and the
+ * models need no R8 keep rules.
+ */
+public final class ModelTypeAdapters {
+
+    private ModelTypeAdapters() {
+    }
+
+    /**
+     * Registers the adapters for {@link Ad}, {@link Ad.AdDetails}, {@link Event},
+     * {@link Event.EventDetails} and {@link PlaybackMetrics}.
+     *
+     * @param builder The builder to register on
+     * @return The same builder, for chaining
+     */
+    public static GsonBuilder register(GsonBuilder builder) {
+        return builder
+                .registerTypeAdapter(Ad.class, new AdAdapter())
+                .registerTypeAdapter(Ad.AdDetails.class, new AdDetailsAdapter())
+                .registerTypeAdapter(Event.class, new EventAdapter())
+                .registerTypeAdapter(Event.EventDetails.class, new EventDetailsAdapter())
+                .registerTypeAdapter(PlaybackMetrics.class, new PlaybackMetricsAdapter());
+    }
+
+    private static String nextStringOrNull(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    private static double nextDoubleOrZero(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return 0;
+        }
+        return in.nextDouble();
+    }
+
+    static final class AdAdapter extends TypeAdapter<Ad> {
+        private final AdDetailsAdapter detailsAdapter = new AdDetailsAdapter();
+
+        @Override
+        public void write(JsonWriter out, Ad ad) throws IOException {
+            if (ad == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("_id").value(ad.getId());
+            out.name("performerName").value(ad.getPerformerName());
+            out.name("name").value(ad.getAdName());
+            out.name("adDetails");
+            detailsAdapter.write(out, ad.getAdDetails());
+            out.name("performerEmail").value(ad.getPerformerEmail());
+            out.endObject();
+        }
+
+        @Override
+        public Ad read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Ad ad = new Ad();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "_id":
+                        ad.setId(nextStringOrNull(in));
+                        break;
+                    case "performerName":
+                        ad.setPerformerName(nextStringOrNull(in));
+                        break;
+                    case "name":
+                        ad.setAdName(nextStringOrNull(in));
+                        break;
+                    case "adDetails":
+                        ad.setAdDetails(detailsAdapter.read(in));
+                        break;
+                    case "performerEmail":
+                        ad.setPerformerEmail(nextStringOrNull(in));
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return ad;
+        }
+    }
+
+    static final class AdDetailsAdapter extends TypeAdapter<Ad.AdDetails> {
+
+        @Override
+        public void write(JsonWriter out, Ad.AdDetails details) throws IOException {
+            if (details == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("videoUrl").value(details.getVideoUrl());
+            out.name("targetUrl").value(details.getTargetUrl());
+            out.name("budget").value(details.getBudget());
+            out.name("skipTime").value(details.getSkipTime());
+            out.name("exitTime").value(details.getExitTime());
+            out.endObject();
+        }
+
+        @Override
+        public Ad.AdDetails read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Ad.AdDetails details = new Ad.AdDetails();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "videoUrl":
+                        details.setVideoUrl(nextStringOrNull(in));
+                        break;
+                    case "targetUrl":
+                        details.setTargetUrl(nextStringOrNull(in));
+                        break;
+                    case "budget":
+                        details.setBudget(nextStringOrNull(in));
+                        break;
+                    case "skipTime":
+                        details.setSkipTime(nextDoubleOrZero(in));
+                        break;
+                    case "exitTime":
+                        details.setExitTime(nextDoubleOrZero(in));
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return details;
+        }
+    }
+
+    static final class EventAdapter extends TypeAdapter<Event> {
+        private final EventDetailsAdapter detailsAdapter = new EventDetailsAdapter();
+
+        @Override
+        public void write(JsonWriter out, Event event) throws IOException {
+            if (event == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("adId").value(event.getAdId());
+            out.name("timestamp").value(event.getTimestamp());
+            out.name("eventDetails");
+            detailsAdapter.write(out, event.getEventDetails());
+            out.endObject();
+        }
+
+        @Override
+        public Event read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Event event = new Event();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "adId":
+                        event.setAdId(nextStringOrNull(in));
+                        break;
+                    case "timestamp":
+                        event.setTimestamp(nextStringOrNull(in));
+                        break;
+                    case "eventDetails":
+                        event.setEventDetails(detailsAdapter.read(in));
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return event;
+        }
+    }
+
+    static final class EventDetailsAdapter extends TypeAdapter<Event.EventDetails> {
+        private final PlaybackMetricsAdapter metricsAdapter = new PlaybackMetricsAdapter();
+
+        @Override
+        public void write(JsonWriter out, Event.EventDetails details) throws IOException {
+            if (details == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("packageName").value(details.getPackageName());
+            out.name("eventType").value(details.getEventType());
+            // Boxed so the value prints as a float ("12.5"), exactly like the reflective adapter
+            out.name("watchDuration").value(Float.valueOf(details.getWatchDuration()));
+            out.name("playingMs").value(details.getPlayingMs());
+            out.name("bufferingMs").value(details.getBufferingMs());
+            out.name("pausedMs").value(details.getPausedMs());
+            // Omitted when null, like every other null field
+            out.name("playbackMetrics");
+            metricsAdapter.write(out, details.getPlaybackMetrics());
+            out.endObject();
+        }
+
+        @Override
+        public Event.EventDetails read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Event.EventDetails details = new Event.EventDetails();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "packageName":
+                        details.setPackageName(nextStringOrNull(in));
+                        break;
+                    case "eventType":
+                        details.setEventType(nextStringOrNull(in));
+                        break;
+                    case "watchDuration":
+                        details.setWatchDuration((float) nextDoubleOrZero(in));
+                        break;
+                    case "playingMs":
+                        details.setPlayingMs((long) nextDoubleOrZero(in));
+                        break;
+                    case "bufferingMs":
+                        details.setBufferingMs((long) nextDoubleOrZero(in));
+                        break;
+                    case "pausedMs":
+                        details.setPausedMs((long) nextDoubleOrZero(in));
+                        break;
+                    case "playbackMetrics":
+                        details.setPlaybackMetrics(metricsAdapter.read(in));
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return details;
+        }
+    }
+
+    static final class PlaybackMetricsAdapter extends TypeAdapter<PlaybackMetrics> {
+
+        @Override
+        public void write(JsonWriter out, PlaybackMetrics metrics) throws IOException {
+            if (metrics == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("activityCreatedMs").value(metrics.getActivityCreatedMs());
+            out.name("preparedMs").value(metrics.getPreparedMs());
+            out.name("firstFrameMs").value(metrics.getFirstFrameMs());
+            out.name("completedMs").value(metrics.getCompletedMs());
+            out.name("endedMs").value(metrics.getEndedMs());
+            out.name("stallCount").value(metrics.getStallCount());
+            out.name("stallDurationMs").value(metrics.getStallDurationMs());
+            // Derived, written for the server's convenience and ignored when read
+            out.name("startupLatencyMs").value(metrics.getStartupLatencyMs());
+            out.name("stallRatio").value(Float.valueOf(metrics.getStallRatio()));
+            out.endObject();
+        }
+
+        @Override
+        public PlaybackMetrics read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            long activityCreatedMs = PlaybackMetrics.NOT_REACHED;
+            long preparedMs = PlaybackMetrics.NOT_REACHED;
+            long firstFrameMs = PlaybackMetrics.NOT_REACHED;
+            long completedMs = PlaybackMetrics.NOT_REACHED;
+            long endedMs = PlaybackMetrics.NOT_REACHED;
+            int stallCount = 0;
+            long stallDurationMs = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "activityCreatedMs":
+                        activityCreatedMs = in.nextLong();
+                        break;
+                    case "preparedMs":
+                        preparedMs = in.nextLong();
+                        break;
+                    case "firstFrameMs":
+                        firstFrameMs = in.nextLong();
+                        break;
+                    case "completedMs":
+                        completedMs = in.nextLong();
+                        break;
+                    case "endedMs":
+                        endedMs = in.nextLong();
+                        break;
+                    case "stallCount":
+                        stallCount = in.nextInt();
+                        break;
+                    case "stallDurationMs":
+                        stallDurationMs = in.nextLong();
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return new PlaybackMetrics(activityCreatedMs, preparedMs, firstFrameMs, completedMs,
+                    endedMs, stallCount, stallDurationMs);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package dev.nimrod.adsdk_lib.model;
+
+/**
+ * Quality of experience of one ad impression.
+ * Phase times are milliseconds since {@code showAd} on a monotonic clock, or -1 if the phase
+ * was not reached, e.g. {@link #getFirstFrameMs()} when the user left before the video started.
+ */
+public class PlaybackMetrics {
+    public static final long NOT_REACHED = -1;
+
+    private final long activityCreatedMs;
+    private final long preparedMs;
+    private final long firstFrameMs;
+    private final long completedMs;
+    private final long endedMs;
+    private final int stallCount;
+    private final long stallDurationMs;
+
+    /**
+     * @param activityCreatedMs When the ad player was created
+     * @param preparedMs        When the video was ready to play
+     * @param firstFrameMs      When the first frame was rendered
+     * @param completedMs       When the video played to its end
+     * @param endedMs           When the impression ended, however it ended
+     * @param stallCount        Number of times playback stalled to rebuffer
+     * @param stallDurationMs   Total time spent rebuffering
+     */
+    public PlaybackMetrics(long activityCreatedMs, long preparedMs, long firstFrameMs, long completedMs,
+                           long endedMs, int stallCount, long stallDurationMs) {
+        this.activityCreatedMs = activityCreatedMs;
+        this.preparedMs = preparedMs;
+        this.firstFrameMs = firstFrameMs;
+        this.completedMs = completedMs;
+        this.endedMs = endedMs;
+        this.stallCount = stallCount;
+        this.stallDurationMs = stallDurationMs;
+    }
+
+    public long getActivityCreatedMs() {
+        return activityCreatedMs;
+    }
+
+    public long getPreparedMs() {
+        return preparedMs;
+    }
+
+    public long getFirstFrameMs() {
+        return firstFrameMs;
+    }
+
+    public long getCompletedMs() {
+        return completedMs;
+    }
+
+    public long getEndedMs() {
+        return endedMs;
+    }
+
+    /**
+     * @return Time the user waited from {@code showAd} to the first frame, or -1 if none was shown
+     */
+    public long getStartupLatencyMs() {
+        return firstFrameMs;
+    }
+
+    public int getStallCount() {
+        return stallCount;
+    }
+
+    public long getStallDurationMs() {
+        return stallDurationMs;
+    }
+
+    /**
+     * @return Share of the time after the first frame spent rebuffering, from 0 to 1
+     */
+    public float getStallRatio() {
+        if (firstFrameMs == NOT_REACHED || endedMs <= firstFrameMs) {
+            return 0f;
+        }
+        return Math.min(1f, (float) stallDurationMs / (endedMs - firstFrameMs));
+    }
+
+    @Override
+    public String toString() {
+        return "PlaybackMetrics{" +
+                "activityCreatedMs=" + activityCreatedMs +
+                ", preparedMs=" + preparedMs +
+                ", firstFrameMs=" + firstFrameMs +
+                ", completedMs=" + completedMs +
+                ", endedMs=" + endedMs +
+                ", stallCount=" + stallCount +
+                ", stallDurationMs=" + stallDurationMs +
+                ", stallRatio=" + getStallRatio() +
+                '}';
+    }
+}
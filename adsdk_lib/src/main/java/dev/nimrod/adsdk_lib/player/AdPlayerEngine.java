@@ -0,0 +1,86 @@
+package dev.nimrod.adsdk_lib.player;
+
+import android.net.Uri;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Video player used by the ad player activity.
+ * Implementations wrap a concrete player and report its progress through a {@link Listener}.
+ * All methods must be called on the main thread, and listener callbacks arrive on it.
+ */
+public interface AdPlayerEngine {
+
+    interface Listener {
+        /**
+         * The video is ready to play. Called once per {@link #prepare(Uri)}.
+         */
+        void onPrepared();
+
+        void onVideoSizeChanged(int width, int height);
+
+        void onFirstFrameRendered();
+
+        /**
+         * Playback stalled because the buffer ran empty.
+         */
+        void onBufferingStarted();
+
+        void onBufferingEnded();
+
+        /**
+         * Playback started or stopped, whether by {@link #play()}, {@link #pause()}, a stall or
+         * the end of the video.
+         */
+        void onPlayingChanged(boolean playing);
+
+        void onCompleted();
+
+        void onError(String message);
+    }
+
+    /**
+     * Sets the listener, or clears it with null. If the video is already prepared, e.g. on a
+     * pre-warmed player, the new listener is told so right away.
+     */
+    void setListener(Listener listener);
+
+    /**
+     * Starts loading the video. May be called before {@link #attach(ViewGroup)}.
+     *
+     * @param uri The video to play: a local file, a progressive URL or an HLS/DASH manifest
+     */
+    void prepare(Uri uri);
+
+    /**
+     * Adds the view the video renders into to the given container.
+     *
+     * @param container The container to add the video view to
+     */
+    void attach(ViewGroup container);
+
+    /**
+     * @return The view the video renders into, or null before {@link #attach(ViewGroup)}
+     */
+    View getView();
+
+    void play();
+
+    void pause();
+
+    void seekTo(long positionMs);
+
+    long getCurrentPosition();
+
+    /**
+     * @return The duration of the video in milliseconds, or a negative value while unknown
+     */
+    long getDuration();
+
+    boolean isPlaying();
+
+    /**
+     * Stops playback and frees the player. The engine cannot be used afterwards.
+     */
+    void release();
+}
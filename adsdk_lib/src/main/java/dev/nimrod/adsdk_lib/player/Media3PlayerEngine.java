@@ -0,0 +1,202 @@
+package dev.nimrod.adsdk_lib.player;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+import android.view.Gravity;
+import android.view.SurfaceView;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import androidx.annotation.OptIn;
+import androidx.media3.common.MediaItem;
+import androidx.media3.common.PlaybackException;
+import androidx.media3.common.Player;
+import androidx.media3.common.VideoSize;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.exoplayer.DefaultLoadControl;
+import androidx.media3.exoplayer.ExoPlayer;
+import androidx.media3.exoplayer.trackselection.AdaptiveTrackSelection;
+import androidx.media3.exoplayer.trackselection.DefaultTrackSelector;
+import androidx.media3.exoplayer.upstream.DefaultBandwidthMeter;
+
+import dev.nimrod.adsdk_lib.config.AdSdkConfig;
+
+/**
+ * Engine backed by Media3 ExoPlayer.
+ * Plays progressive, HLS and DASH videos. Adaptive streams switch tracks based on the measured
+ * bandwidth, which is shared by all players of the app, and the buffer sizes come from
+ * {@link AdSdkConfig}.
+ */
+@OptIn(markerClass = UnstableApi.class)
+public class Media3PlayerEngine implements AdPlayerEngine {
+    private static final String TAG = "Media3PlayerEngine";
+
+    private final ExoPlayer player;
+    private SurfaceView surfaceView;
+    private Listener listener;
+    private boolean prepared = false;
+    private boolean buffering = false;
+
+    public Media3PlayerEngine(Context context, AdSdkConfig config) {
+        DefaultLoadControl loadControl = new DefaultLoadControl.Builder()
+                .setBufferDurationsMs(config.getPlayerMinBufferMs(), config.getPlayerMaxBufferMs(),
+                        config.getPlayerBufferForPlaybackMs(), config.getPlayerBufferForPlaybackAfterRebufferMs())
+                .setBackBuffer(config.getPlayerBackBufferMs(), false)
+                .build();
+        player = new ExoPlayer.Builder(context)
+                .setLoadControl(loadControl)
+                .setTrackSelector(new DefaultTrackSelector(context, new AdaptiveTrackSelection.Factory()))
+                .setBandwidthMeter(DefaultBandwidthMeter.getSingletonInstance(context))
+                .build();
+        player.addListener(new Player.Listener() {
+            @Override
+            public void onPlaybackStateChanged(int playbackState) {
+                Media3PlayerEngine.this.onPlaybackStateChanged(playbackState);
+            }
+
+            @Override
+            public void onIsPlayingChanged(boolean isPlaying) {
+                if (listener != null) {
+                    listener.onPlayingChanged(isPlaying);
+                }
+            }
+
+            @Override
+            public void onVideoSizeChanged(VideoSize videoSize) {
+                if (listener != null && videoSize.width > 0 && videoSize.height > 0) {
+                    listener.onVideoSizeChanged(videoSize.width, videoSize.height);
+                }
+            }
+
+            @Override
+            public void onRenderedFirstFrame() {
+                if (listener != null) {
+                    listener.onFirstFrameRendered();
+                }
+            }
+
+            @Override
+            public void onPlayerError(PlaybackException error) {
+                Log.e(TAG, "Video playback error: " + error.getErrorCodeName(), error);
+                if (listener != null) {
+                    listener.onError(error.getErrorCodeName() + ": " + error.getMessage());
+                }
+            }
+        });
+    }
+
+    private void onPlaybackStateChanged(int playbackState) {
+        // State is tracked without a listener too, so a later one can be told the player is ready
+        Listener current = listener;
+        switch (playbackState) {
+            case Player.STATE_READY:
+                if (!prepared) {
+                    prepared = true;
+                    if (current != null) {
+                        current.onPrepared();
+                    }
+                } else if (buffering) {
+                    buffering = false;
+                    if (current != null) {
+                        current.onBufferingEnded();
+                    }
+                }
+                break;
+            case Player.STATE_BUFFERING:
+                // The initial load is reported through onPrepared, only later stalls count
+                if (prepared && !buffering) {
+                    buffering = true;
+                    if (current != null) {
+                        current.onBufferingStarted();
+                    }
+                }
+                break;
+            case Player.STATE_ENDED:
+                if (current != null) {
+                    current.onCompleted();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+        if (listener != null && prepared) {
+            listener.onPrepared();
+            VideoSize videoSize = player.getVideoSize();
+            if (videoSize.width > 0 && videoSize.height > 0) {
+                listener.onVideoSizeChanged(videoSize.width, videoSize.height);
+            }
+        }
+    }
+
+    /**
+     * Starts buffering right away, a surface is only needed to render.
+     */
+    @Override
+    public void prepare(Uri uri) {
+        prepared = false;
+        buffering = false;
+        MediaItem.Builder item = new MediaItem.Builder().setUri(uri);
+        String mimeType = PlayerEngineFactory.inferMimeType(uri.toString());
+        if (mimeType != null) {
+            item.setMimeType(mimeType);
+        }
+        player.setMediaItem(item.build());
+        player.prepare();
+    }
+
+    @Override
+    public void attach(ViewGroup container) {
+        surfaceView = new SurfaceView(container.getContext());
+        container.addView(surfaceView, new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT, Gravity.CENTER));
+        player.setVideoSurfaceView(surfaceView);
+    }
+
+    @Override
+    public View getView() {
+        return surfaceView;
+    }
+
+    @Override
+    public void play() {
+        player.play();
+    }
+
+    @Override
+    public void pause() {
+        player.pause();
+    }
+
+    @Override
+    public void seekTo(long positionMs) {
+        player.seekTo(positionMs);
+    }
+
+    @Override
+    public long getCurrentPosition() {
+        return player.getCurrentPosition();
+    }
+
+    @Override
+    public long getDuration() {
+        return player.getDuration();
+    }
+
+    @Override
+    public boolean isPlaying() {
+        return player.isPlaying();
+    }
+
+    @Override
+    public void release() {
+        listener = null;
+        player.release();
+    }
+}
@@ -0,0 +1,106 @@
+package dev.nimrod.adsdk_lib.player;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import dev.nimrod.adsdk_lib.model.PlaybackMetrics;
+
+/**
+ * Timestamps the phases of one ad impression on a monotonic clock, from {@code showAd} to the end.
+ * The ad player reports the phases on the main thread; {@link #snapshot()} may be taken from any
+ * thread. Each phase counts once, the first time it is reached.
+ */
+public class PlaybackMetricsTracker {
+    private static final long NOT_REACHED = -1;
+
+    private final LongSupplier nanoClock;
+    private final long shownAtNs;
+    private long activityCreatedNs = NOT_REACHED;
+    private long preparedNs = NOT_REACHED;
+    private long firstFrameNs = NOT_REACHED;
+    private long completedNs = NOT_REACHED;
+    private long endedNs = NOT_REACHED;
+    private long stallStartNs = NOT_REACHED;
+    private long stallNs;
+    private int stallCount;
+
+    /**
+     * Starts tracking an impression now, as {@code showAd} is handled.
+     *
+     * @param nanoClock Monotonic clock in nanoseconds
+     */
+    public PlaybackMetricsTracker(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        this.shownAtNs = nanoClock.getAsLong();
+    }
+
+    public synchronized void onActivityCreated() {
+        if (activityCreatedNs == NOT_REACHED) {
+            activityCreatedNs = nanoClock.getAsLong();
+        }
+    }
+
+    public synchronized void onPrepared() {
+        if (preparedNs == NOT_REACHED) {
+            preparedNs = nanoClock.getAsLong();
+        }
+    }
+
+    public synchronized void onFirstFrame() {
+        if (firstFrameNs == NOT_REACHED) {
+            firstFrameNs = nanoClock.getAsLong();
+        }
+    }
+
+    public synchronized void onRebufferStarted() {
+        if (stallStartNs == NOT_REACHED && endedNs == NOT_REACHED) {
+            stallStartNs = nanoClock.getAsLong();
+            stallCount++;
+        }
+    }
+
+    public synchronized void onRebufferEnded() {
+        if (stallStartNs != NOT_REACHED) {
+            stallNs += nanoClock.getAsLong() - stallStartNs;
+            stallStartNs = NOT_REACHED;
+        }
+    }
+
+    public synchronized void onCompleted() {
+        if (completedNs == NOT_REACHED) {
+            onRebufferEnded();
+            completedNs = nanoClock.getAsLong();
+        }
+    }
+
+    /**
+     * Ends the impression now. Later phases are still recorded but do not move the end.
+     */
+    public synchronized void onEnded() {
+        if (endedNs == NOT_REACHED) {
+            onRebufferEnded();
+            endedNs = nanoClock.getAsLong();
+        }
+    }
+
+    /**
+     * @return The metrics so far; a stall still in progress counts up to now
+     */
+    public synchronized PlaybackMetrics snapshot() {
+        long endNs = endedNs != NOT_REACHED ? endedNs : nanoClock.getAsLong();
+        long openStallNs = stallStartNs != NOT_REACHED ? endNs - stallStartNs : 0;
+        return new PlaybackMetrics(
+                sinceShown(activityCreatedNs),
+                sinceShown(preparedNs),
+                sinceShown(firstFrameNs),
+                sinceShown(completedNs),
+                sinceShown(endNs),
+                stallCount,
+                TimeUnit.NANOSECONDS.toMillis(stallNs + openStallNs));
+    }
+
+    private long sinceShown(long timeNs) {
+        return timeNs == NOT_REACHED ? PlaybackMetrics.NOT_REACHED
+                : TimeUnit.NANOSECONDS.toMillis(timeNs - shownAtNs);
+    }
+}
@@ -0,0 +1,65 @@
+package dev.nimrod.adsdk_lib.player;
+
+import android.view.Choreographer;
+
+/**
+ * Samples the playback position of an engine on display frames and feeds it to a
+ * {@link PlaybackProgressTracker}. A single frame callback is reposted while running, so sampling
+ * allocates nothing per frame, and it stops with the display when the activity is not visible.
+ * Must be used on the main thread.
+ */
+public class PlaybackProgressSampler implements Choreographer.FrameCallback {
+    // Quartiles need no more than a few samples per second
+    private static final long SAMPLE_INTERVAL_NS = 100_000_000L;
+
+    private final AdPlayerEngine engine;
+    private final PlaybackProgressTracker tracker;
+    private final Choreographer choreographer;
+    private boolean running = false;
+    private long lastSampleNs = 0;
+
+    public PlaybackProgressSampler(AdPlayerEngine engine, PlaybackProgressTracker tracker) {
+        this.engine = engine;
+        this.tracker = tracker;
+        this.choreographer = Choreographer.getInstance();
+    }
+
+    /**
+     * Samples from the next frame on, e.g. once playback started. Does nothing if already running.
+     */
+    public void start() {
+        if (running || tracker.isFinished()) {
+            return;
+        }
+        running = true;
+        lastSampleNs = 0;
+        choreographer.postFrameCallback(this);
+    }
+
+    /**
+     * Stops sampling, e.g. when playback paused. A milestone passed since the last sample is
+     * reported by the first sample after {@link #start()}.
+     */
+    public void stop() {
+        if (running) {
+            running = false;
+            choreographer.removeFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!running) {
+            return;
+        }
+        if (frameTimeNanos - lastSampleNs >= SAMPLE_INTERVAL_NS) {
+            lastSampleNs = frameTimeNanos;
+            tracker.onPosition(engine.getCurrentPosition(), engine.getDuration());
+        }
+        if (tracker.isFinished()) {
+            running = false;
+        } else {
+            choreographer.postFrameCallback(this);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package dev.nimrod.adsdk_lib.player;
+
+import dev.nimrod.adsdk_lib.util.EventEnum;
+
+/**
+ * Turns samples of the playback position into the progress milestones of one impression:
+ * start, first quartile, midpoint, third quartile and complete, each reported once and in order.
+ * Milestones follow the position rather than elapsed time, so pauses do not advance them and
+ * seeking back does not repeat them. Not thread safe; sampled on the main thread.
+ */
+public class PlaybackProgressTracker {
+
+    public interface Listener {
+        void onMilestone(EventEnum milestone);
+    }
+
+    private static final EventEnum[] MILESTONES = {
+            EventEnum.START,
+            EventEnum.FIRST_QUARTILE,
+            EventEnum.MIDPOINT,
+            EventEnum.THIRD_QUARTILE,
+            EventEnum.COMPLETE
+    };
+
+    private final Listener listener;
+    // Number of milestones reported so far; milestone i is reached at i quarters of the duration
+    private int reached = 0;
+
+    public PlaybackProgressTracker(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @param positionMs Current playback position
+     * @param durationMs Duration of the video, or 0 or less while unknown
+     */
+    public void onPosition(long positionMs, long durationMs) {
+        if (reached == 0) {
+            report();
+        }
+        if (durationMs <= 0) {
+            return;
+        }
+        // Compared in quarters to avoid rounding the thresholds
+        while (reached < MILESTONES.length && positionMs * 4 >= durationMs * reached) {
+            report();
+        }
+    }
+
+    /**
+     * Reports the milestones not reached yet. The last position sample of a finished video may
+     * fall short of its duration.
+     */
+    public void onCompleted() {
+        while (reached < MILESTONES.length) {
+            report();
+        }
+    }
+
+    public boolean isFinished() {
+        return reached == MILESTONES.length;
+    }
+
+    private void report() {
+        listener.onMilestone(MILESTONES[reached++]);
+    }
+}
@@ -0,0 +1,100 @@
+package dev.nimrod.adsdk_lib.player;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.File;
+import java.util.Locale;
+
+import dev.nimrod.adsdk_lib.config.AdSdkConfig;
+import dev.nimrod.adsdk_lib.controller.AdController;
+import dev.nimrod.adsdk_lib.storage.MediaCache;
+import dev.nimrod.adsdk_lib.storage.MediaStreamProxy;
+
+/**
+ * Creates the player engine selected in {@link AdSdkConfig} and decides where videos play from.
+ */
+public final class PlayerEngineFactory {
+    private static final String TAG = "PlayerEngineFactory";
+    static final String MIME_TYPE_HLS = "application/x-mpegURL";
+    static final String MIME_TYPE_DASH = "application/dash+xml";
+
+    private PlayerEngineFactory() {
+    }
+
+    public static AdPlayerEngine create(Context context, AdSdkConfig config) {
+        return create(context, config, config.getPlayerEngine());
+    }
+
+    public static AdPlayerEngine create(Context context, AdSdkConfig config, PlayerEngineType type) {
+        if (type == PlayerEngineType.VIDEO_VIEW) {
+            return new VideoViewPlayerEngine(context);
+        }
+        return new Media3PlayerEngine(context, config);
+    }
+
+    /**
+     * Plays the preloaded copy of the video when it is cached, and streams it otherwise.
+     * A partially cached video goes through the local proxy, which plays the cached prefix
+     * and downloads the rest while the ad plays.
+     *
+     * @param adController The controller owning the media cache
+     * @param videoUrl     The video URL of the ad
+     * @return The URI to hand to {@link AdPlayerEngine#prepare(Uri)}
+     */
+    public static Uri resolveVideoUri(AdController adController, String videoUrl) {
+        MediaCache mediaCache = adController.getMediaCache();
+        if (mediaCache == null) {
+            return Uri.parse(videoUrl);
+        }
+        File cached = mediaCache.getCachedFile(videoUrl);
+        if (cached != null) {
+            Log.d(TAG, "Playing cached video " + cached.getName());
+            return Uri.fromFile(cached);
+        }
+        MediaStreamProxy proxy = adController.getMediaStreamProxy();
+        if (proxy != null && mediaCache.isCached(videoUrl)) {
+            Log.d(TAG, "Playing partially cached video through the local proxy");
+            return Uri.parse(proxy.getProxyUrl(videoUrl));
+        }
+        return Uri.parse(videoUrl);
+    }
+
+    /**
+     * Guesses the container of a video from its URL, ignoring query and fragment.
+     *
+     * @param url The video URL
+     * @return The HLS or DASH MIME type, or null for progressive videos
+     */
+    public static String inferMimeType(String url) {
+        if (url == null) {
+            return null;
+        }
+        String path = url;
+        int end = path.length();
+        int query = path.indexOf('?');
+        int fragment = path.indexOf('#');
+        if (query >= 0) {
+            end = query;
+        }
+        if (fragment >= 0 && fragment < end) {
+            end = fragment;
+        }
+        path = path.substring(0, end).toLowerCase(Locale.ROOT);
+        if (path.endsWith(".m3u8")) {
+            return MIME_TYPE_HLS;
+        }
+        if (path.endsWith(".mpd")) {
+            return MIME_TYPE_DASH;
+        }
+        return null;
+    }
+
+    /**
+     * @return True if the URL points to an HLS or DASH manifest rather than a single video file
+     */
+    public static boolean isAdaptiveStream(String url) {
+        return inferMimeType(url) != null;
+    }
+}
@@ -0,0 +1,15 @@
+package dev.nimrod.adsdk_lib.player;
+
+/**
+ * Video player implementations the ad player can use.
+ */
+public enum PlayerEngineType {
+    /**
+     * Media3 ExoPlayer: progressive, HLS and DASH videos with adaptive bitrate and tunable buffering.
+     */
+    MEDIA3,
+    /**
+     * The platform VideoView: progressive videos only. Also used when Media3 cannot play a video.
+     */
+    VIDEO_VIEW
+}
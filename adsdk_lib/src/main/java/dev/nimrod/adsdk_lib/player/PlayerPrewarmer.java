@@ -0,0 +1,141 @@
+package dev.nimrod.adsdk_lib.player;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.Objects;
+
+import dev.nimrod.adsdk_lib.config.AdSdkConfig;
+import dev.nimrod.adsdk_lib.controller.AdController;
+import dev.nimrod.adsdk_lib.model.Ad;
+
+/**
+ * Keeps one player prepared off-screen for the ad that will be shown next, so the ad player
+ * only attaches its surface to a player whose media source and decoder are already set up.
+ * Enabled with {@link AdSdkConfig.Builder#setPlayerPrewarmEnabled(boolean)}. Only Media3 can
+ * prepare without a surface, so nothing is pre-warmed with the VideoView engine.
+ * A single player is kept to bound decoder and memory use; the ad that became ready last wins.
+ */
+public class PlayerPrewarmer {
+    private static final String TAG = "PlayerPrewarmer";
+    private static PlayerPrewarmer instance;
+
+    private final AdController adController;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    // Main thread only
+    private AdPlayerEngine engine;
+    private String adId;
+    private String videoUrl;
+
+    private PlayerPrewarmer() {
+        this.adController = AdController.getInstance();
+    }
+
+    public static synchronized PlayerPrewarmer getInstance() {
+        if (instance == null) {
+            instance = new PlayerPrewarmer();
+        }
+        return instance;
+    }
+
+    /**
+     * Prepares a player for the given ad, replacing one prepared for another ad.
+     * May be called from any thread.
+     *
+     * @param ad The ad that will be shown next
+     */
+    public void prewarm(Ad ad) {
+        if (ad.getVideoUrl() != null) {
+            handler.post(() -> prepare(ad));
+        }
+    }
+
+    private void prepare(Ad ad) {
+        AdSdkConfig config = adController.getConfig();
+        Context context = adController.getAppContext();
+        if (context == null || config.getPlayerEngine() != PlayerEngineType.MEDIA3) {
+            return;
+        }
+        if (engine != null && Objects.equals(adId, ad.getId()) && Objects.equals(videoUrl, ad.getVideoUrl())) {
+            return;
+        }
+        release();
+        Log.d(TAG, "Pre-warming player for ad " + ad.getId());
+        AdPlayerEngine warm = PlayerEngineFactory.create(context, config);
+        warm.setListener(new AdPlayerEngine.Listener() {
+            @Override
+            public void onPrepared() {
+                Log.d(TAG, "Player ready for ad " + ad.getId());
+            }
+
+            @Override
+            public void onVideoSizeChanged(int width, int height) {
+            }
+
+            @Override
+            public void onFirstFrameRendered() {
+            }
+
+            @Override
+            public void onBufferingStarted() {
+            }
+
+            @Override
+            public void onBufferingEnded() {
+            }
+
+            @Override
+            public void onPlayingChanged(boolean playing) {
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+
+            @Override
+            public void onError(String message) {
+                // The ad player will prepare the video itself and handle the error there
+                Log.e(TAG, "Could not pre-warm player: " + message);
+                if (engine == warm) {
+                    release();
+                }
+            }
+        });
+        engine = warm;
+        adId = ad.getId();
+        videoUrl = ad.getVideoUrl();
+        warm.prepare(PlayerEngineFactory.resolveVideoUri(adController, videoUrl));
+    }
+
+    /**
+     * Hands over the player if it was pre-warmed for the given ad. Main thread only.
+     *
+     * @param ad The ad about to be shown
+     * @return The player, prepared or still preparing, or null if none was pre-warmed for the ad
+     */
+    public AdPlayerEngine take(Ad ad) {
+        if (engine == null || !Objects.equals(adId, ad.getId()) || !Objects.equals(videoUrl, ad.getVideoUrl())) {
+            return null;
+        }
+        AdPlayerEngine taken = engine;
+        engine = null;
+        adId = null;
+        videoUrl = null;
+        taken.setListener(null);
+        return taken;
+    }
+
+    /**
+     * Frees the pre-warmed player, e.g. when the app goes to the background. Main thread only.
+     */
+    public void release() {
+        if (engine != null) {
+            engine.release();
+            engine = null;
+            adId = null;
+            videoUrl = null;
+        }
+    }
+}
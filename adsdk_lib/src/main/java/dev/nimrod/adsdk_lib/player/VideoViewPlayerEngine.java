@@ -0,0 +1,163 @@
+package dev.nimrod.adsdk_lib.player;
+
+import android.content.Context;
+import android.media.MediaPlayer;
+import android.net.Uri;
+import android.util.Log;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.VideoView;
+
+/**
+ * Engine backed by the platform {@link VideoView}.
+ * Plays progressive videos only and offers no control over buffering, but has no dependencies.
+ * Used when configured, and as a fallback when Media3 cannot play a video.
+ */
+public class VideoViewPlayerEngine implements AdPlayerEngine {
+    private static final String TAG = "VideoViewPlayerEngine";
+
+    private final VideoView videoView;
+    private Listener listener;
+    private boolean prepared = false;
+    private boolean playing = false;
+    private int videoWidth;
+    private int videoHeight;
+
+    public VideoViewPlayerEngine(Context context) {
+        videoView = new VideoView(context);
+        videoView.setOnPreparedListener(this::onPrepared);
+        videoView.setOnInfoListener(this::onInfo);
+        videoView.setOnCompletionListener(mp -> {
+            setPlaying(false);
+            if (listener != null) {
+                listener.onCompleted();
+            }
+        });
+        videoView.setOnErrorListener((mp, what, extra) -> {
+            Log.e(TAG, "Video playback error: " + what + ", " + extra);
+            setPlaying(false);
+            if (listener != null) {
+                listener.onError("VideoView error " + what + ", " + extra);
+            }
+            return true;
+        });
+    }
+
+    private void onPrepared(MediaPlayer mp) {
+        prepared = true;
+        videoWidth = mp.getVideoWidth();
+        videoHeight = mp.getVideoHeight();
+        notifyPrepared();
+    }
+
+    private void notifyPrepared() {
+        if (listener == null) {
+            return;
+        }
+        listener.onPrepared();
+        if (videoWidth > 0 && videoHeight > 0) {
+            listener.onVideoSizeChanged(videoWidth, videoHeight);
+        }
+    }
+
+    /**
+     * VideoView has no playing state callback; it only changes through {@link #play()},
+     * {@link #pause()}, completion and errors.
+     */
+    private void setPlaying(boolean playing) {
+        if (this.playing != playing) {
+            this.playing = playing;
+            if (listener != null) {
+                listener.onPlayingChanged(playing);
+            }
+        }
+    }
+
+    private boolean onInfo(MediaPlayer mp, int what, int extra) {
+        if (listener == null) {
+            return false;
+        }
+        switch (what) {
+            case MediaPlayer.MEDIA_INFO_VIDEO_RENDERING_START:
+                listener.onFirstFrameRendered();
+                return true;
+            case MediaPlayer.MEDIA_INFO_BUFFERING_START:
+                listener.onBufferingStarted();
+                return true;
+            case MediaPlayer.MEDIA_INFO_BUFFERING_END:
+                listener.onBufferingEnded();
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+        if (prepared) {
+            notifyPrepared();
+        }
+    }
+
+    /**
+     * The VideoView opens the video once its surface exists, so loading starts on attach.
+     */
+    @Override
+    public void prepare(Uri uri) {
+        prepared = false;
+        videoView.setVideoURI(uri);
+    }
+
+    @Override
+    public void attach(ViewGroup container) {
+        container.addView(videoView, new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT, Gravity.CENTER));
+        videoView.requestFocus();
+    }
+
+    @Override
+    public View getView() {
+        return videoView.getParent() != null ? videoView : null;
+    }
+
+    @Override
+    public void play() {
+        videoView.start();
+        setPlaying(true);
+    }
+
+    @Override
+    public void pause() {
+        videoView.pause();
+        setPlaying(false);
+    }
+
+    @Override
+    public void seekTo(long positionMs) {
+        videoView.seekTo((int) positionMs);
+    }
+
+    @Override
+    public long getCurrentPosition() {
+        return videoView.getCurrentPosition();
+    }
+
+    @Override
+    public long getDuration() {
+        return videoView.getDuration();
+    }
+
+    @Override
+    public boolean isPlaying() {
+        return videoView.isPlaying();
+    }
+
+    @Override
+    public void release() {
+        listener = null;
+        videoView.stopPlayback();
+    }
+}
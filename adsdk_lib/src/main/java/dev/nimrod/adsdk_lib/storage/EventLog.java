@@ -0,0 +1,378 @@
+package dev.nimrod.adsdk_lib.storage;
+
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped log of opaque records split into fixed-size segment files.
+ * Appends are plain writes into the mapped page cache and never call fsync, so data survives
+ * a process kill but not a power loss. Records are read back in append order starting at the
+ * acknowledged position; segments whose records are all acknowledged are deleted.
+ *
+ * <p>Segment layout: {@code [magic:int][ackedOffset:int]} followed by records of
+ * {@code [length:int][crc32:int][payload]}. A zero length marks the end of written data.
+ */
+public class EventLog implements Closeable {
+    private static final String TAG = "EventLog";
+    private static final int MAGIC = 0x41444C47;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int ACKED_OFFSET_POSITION = 4;
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final File directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private final CRC32 crc = new CRC32();
+    private int pendingCount;
+
+    /**
+     * A run of records read from the log, together with the position that acknowledges them.
+     */
+    public static class Batch {
+        private final List<byte[]> records;
+        private final long segmentId;
+        private final int endOffset;
+
+        Batch(List<byte[]> records, long segmentId, int endOffset) {
+            this.records = records;
+            this.segmentId = segmentId;
+            this.endOffset = endOffset;
+        }
+
+        public List<byte[]> getRecords() {
+            return records;
+        }
+
+        public int size() {
+            return records.size();
+        }
+
+        public boolean isEmpty() {
+            return records.isEmpty();
+        }
+    }
+
+    private static class Segment {
+        final long id;
+        final File file;
+        final RandomAccessFile raf;
+        final MappedByteBuffer buffer;
+        int writeOffset;
+        int ackedOffset;
+        int pendingRecords;
+
+        Segment(long id, File file, RandomAccessFile raf, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.raf = raf;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * Opens the log in the given directory, recovering any segments left by a previous process.
+     *
+     * @param directory   Directory holding the segment files; created if missing
+     * @param segmentSize Size of each segment file in bytes
+     * @param maxSegments Maximum number of segments kept; the oldest is dropped when exceeded
+     * @throws IOException if the directory or a segment cannot be opened
+     */
+    public EventLog(File directory, int segmentSize, int maxSegments) throws IOException {
+        if (segmentSize <= HEADER_SIZE + RECORD_HEADER_SIZE || maxSegments < 1) {
+            throw new IllegalArgumentException("Invalid segment settings");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create log directory: " + directory);
+        }
+        recover();
+    }
+
+    private void recover() throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                Segment segment = openSegment(file);
+                if (segment == null) {
+                    Log.w(TAG, "Dropping unreadable segment " + file.getName());
+                    if (!file.delete()) {
+                        Log.w(TAG, "Could not delete " + file.getName());
+                    }
+                    continue;
+                }
+                scan(segment);
+                segments.addLast(segment);
+                pendingCount += segment.pendingRecords;
+            }
+        }
+        // Compact segments acknowledged before the previous process ended, keeping the newest for appends
+        while (segments.size() > 1 && segments.peekFirst().pendingRecords == 0) {
+            deleteSegment(segments.pollFirst());
+        }
+        if (segments.isEmpty()) {
+            segments.addLast(createSegment(0));
+        }
+        Log.d(TAG, "Recovered " + pendingCount + " pending records in " + segments.size() + " segments");
+    }
+
+    private Segment openSegment(File file) throws IOException {
+        long id;
+        try {
+            id = Long.parseLong(file.getName().substring(0, file.getName().length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (file.length() != segmentSize) {
+            return null;
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        if (buffer.getInt(0) != MAGIC) {
+            raf.close();
+            return null;
+        }
+        Segment segment = new Segment(id, file, raf, buffer);
+        segment.ackedOffset = buffer.getInt(ACKED_OFFSET_POSITION);
+        return segment;
+    }
+
+    /**
+     * Finds the end of valid data and counts unacknowledged records.
+     * A torn or corrupt record ends the segment, and everything after it is erased.
+     */
+    private void scan(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        int offset = HEADER_SIZE;
+        int pending = 0;
+        boolean damaged = false;
+        while (offset + RECORD_HEADER_SIZE <= segmentSize) {
+            int length = buffer.getInt(offset);
+            if (length == 0) {
+                break;
+            }
+            if (length < 0 || offset + RECORD_HEADER_SIZE + length > segmentSize) {
+                damaged = true;
+                break;
+            }
+            if (checksum(buffer, offset + RECORD_HEADER_SIZE, length) != buffer.getInt(offset + 4)) {
+                Log.w(TAG, "Corrupt record in segment " + segment.id + " at " + offset);
+                damaged = true;
+                break;
+            }
+            if (offset >= segment.ackedOffset) {
+                pending++;
+            }
+            offset += RECORD_HEADER_SIZE + length;
+        }
+        if (damaged) {
+            // Appends restart here; records left after it could otherwise line up with a new
+            // record's end and be read back as valid on the next recovery
+            erase(buffer, offset);
+        }
+        segment.writeOffset = offset;
+        if (segment.ackedOffset < HEADER_SIZE || segment.ackedOffset > offset) {
+            segment.ackedOffset = Math.min(Math.max(segment.ackedOffset, HEADER_SIZE), offset);
+        }
+        segment.pendingRecords = pending;
+    }
+
+    private void erase(MappedByteBuffer buffer, int from) {
+        int offset = from;
+        while (offset + Long.BYTES <= segmentSize) {
+            buffer.putLong(offset, 0L);
+            offset += Long.BYTES;
+        }
+        while (offset < segmentSize) {
+            buffer.put(offset++, (byte) 0);
+        }
+    }
+
+    private Segment createSegment(long id) throws IOException {
+        File file = new File(directory, String.format(Locale.US, "%020d%s", id, SEGMENT_SUFFIX));
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(segmentSize);
+        MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(ACKED_OFFSET_POSITION, HEADER_SIZE);
+        Segment segment = new Segment(id, file, raf, buffer);
+        segment.writeOffset = HEADER_SIZE;
+        segment.ackedOffset = HEADER_SIZE;
+        return segment;
+    }
+
+    private int checksum(MappedByteBuffer buffer, int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.limit(offset + length);
+        crc.reset();
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+
+    private int checksum(byte[] payload) {
+        crc.reset();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Appends one record to the end of the log.
+     *
+     * @param payload The record bytes
+     * @throws IOException if a new segment cannot be created
+     */
+    public synchronized void append(byte[] payload) throws IOException {
+        int recordSize = RECORD_HEADER_SIZE + payload.length;
+        if (payload.length == 0 || HEADER_SIZE + recordSize > segmentSize) {
+            throw new IllegalArgumentException("Record size " + payload.length + " does not fit a segment");
+        }
+
+        Segment active = segments.peekLast();
+        if (active.writeOffset + recordSize > segmentSize) {
+            active = createSegment(active.id + 1);
+            segments.addLast(active);
+            if (segments.size() > maxSegments) {
+                Segment dropped = segments.pollFirst();
+                Log.w(TAG, "Log full, dropping " + dropped.pendingRecords + " oldest records");
+                pendingCount -= dropped.pendingRecords;
+                deleteSegment(dropped);
+            }
+        }
+
+        MappedByteBuffer buffer = active.buffer;
+        int offset = active.writeOffset;
+        buffer.putInt(offset + 4, checksum(payload));
+        buffer.position(offset + RECORD_HEADER_SIZE);
+        buffer.put(payload);
+        // Length goes last so a torn write is never read back as a record
+        buffer.putInt(offset, payload.length);
+        active.writeOffset = offset + recordSize;
+        active.pendingRecords++;
+        pendingCount++;
+    }
+
+    /**
+     * Reads up to {@code maxRecords} unacknowledged records, oldest first.
+     * Reading does not consume records; call {@link #acknowledge(Batch)} once they are delivered.
+     *
+     * @param maxRecords Maximum number of records to return
+     * @return The records and their acknowledgement position
+     */
+    public synchronized Batch readPending(int maxRecords) {
+        List<byte[]> records = new ArrayList<>(Math.min(maxRecords, pendingCount));
+        long segmentId = segments.peekFirst().id;
+        int endOffset = segments.peekFirst().ackedOffset;
+
+        for (Segment segment : segments) {
+            int offset = segment.ackedOffset;
+            while (records.size() < maxRecords && offset < segment.writeOffset) {
+                int length = segment.buffer.getInt(offset);
+                byte[] payload = new byte[length];
+                ByteBuffer view = segment.buffer.duplicate();
+                view.position(offset + RECORD_HEADER_SIZE);
+                view.get(payload);
+                records.add(payload);
+                offset += RECORD_HEADER_SIZE + length;
+                segmentId = segment.id;
+                endOffset = offset;
+            }
+            if (records.size() >= maxRecords) {
+                break;
+            }
+        }
+        return new Batch(records, segmentId, endOffset);
+    }
+
+    /**
+     * Marks every record up to the end of the batch as delivered and deletes
+     * segments that no longer hold pending records.
+     *
+     * @param batch A batch previously returned by {@link #readPending(int)}
+     */
+    public synchronized void acknowledge(Batch batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Iterator<Segment> iterator = segments.iterator();
+        while (iterator.hasNext()) {
+            Segment segment = iterator.next();
+            if (segment.id < batch.segmentId) {
+                pendingCount -= segment.pendingRecords;
+                iterator.remove();
+                deleteSegment(segment);
+                continue;
+            }
+            if (segment.id == batch.segmentId && batch.endOffset > segment.ackedOffset) {
+                int acked = countRecords(segment, segment.ackedOffset, batch.endOffset);
+                segment.pendingRecords -= acked;
+                pendingCount -= acked;
+                segment.ackedOffset = batch.endOffset;
+                segment.buffer.putInt(ACKED_OFFSET_POSITION, batch.endOffset);
+
+                boolean sealed = segment != segments.peekLast();
+                if (sealed && segment.pendingRecords == 0) {
+                    iterator.remove();
+                    deleteSegment(segment);
+                }
+            }
+            break;
+        }
+    }
+
+    private int countRecords(Segment segment, int from, int to) {
+        int count = 0;
+        int offset = from;
+        while (offset < to) {
+            offset += RECORD_HEADER_SIZE + segment.buffer.getInt(offset);
+            count++;
+        }
+        return count;
+    }
+
+    public synchronized int getPendingCount() {
+        return pendingCount;
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    private void deleteSegment(Segment segment) {
+        try {
+            segment.raf.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Error closing segment " + segment.id, e);
+        }
+        if (!segment.file.delete()) {
+            Log.w(TAG, "Could not delete segment " + segment.file.getName());
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (Segment segment : segments) {
+            segment.raf.close();
+        }
+        segments.clear();
+    }
+}
@@ -0,0 +1,494 @@
+package dev.nimrod.adsdk_lib.storage;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.CacheControl;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.Okio;
+
+/**
+ * Size-bounded LRU disk cache for ad videos, keyed by video URL.
+ * Files are downloaded to a temporary name and renamed when complete, so a cached file is always
+ * whole. The access order is kept in memory and mirrored in the file modification times, which
+ * restores it after a restart. Concurrent requests for the same URL share one download.
+ *
+ * <p>With {@link #fetchPrefix(String, long, Listener)} only the start of a video is downloaded
+ * using a range request. Such a prefix is stored as {@code <key>.<totalLength>.part}; the
+ * {@link MediaStreamProxy} appends the rest during playback and the file is renamed to its final
+ * name once it is complete.
+ */
+public class MediaCache {
+    private static final String TAG = "MediaCache";
+    private static final String FILE_SUFFIX = ".media";
+    private static final String PART_SUFFIX = ".part";
+    private static final String TEMP_SUFFIX = ".tmp";
+    /** Keeps video downloads out of the HTTP cache; this cache already stores them. */
+    static final CacheControl NO_STORE = new CacheControl.Builder().noStore().build();
+
+    private final File directory;
+    private final long maxBytes;
+    private final OkHttpClient client;
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, List<Listener>> downloads = new HashMap<>();
+    private final Map<String, Call> downloadCalls = new HashMap<>();
+    // Partial entries currently being extended by the proxy; never evicted
+    private final Set<String> appending = new HashSet<>();
+    private long totalBytes;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+    private final AtomicLong bytesDownloaded = new AtomicLong();
+
+    /**
+     * Receives the result of a fetch. Called on a network thread, or on the calling thread
+     * for cache hits.
+     */
+    public interface Listener {
+        void onMediaReady(File file);
+
+        void onMediaFailed(String message);
+    }
+
+    /**
+     * Cached bytes of one video. Instances are immutable snapshots.
+     */
+    static final class Entry {
+        final File file;
+        final long length;
+        final long totalLength;
+
+        Entry(File file, long length, long totalLength) {
+            this.file = file;
+            this.length = length;
+            this.totalLength = totalLength;
+        }
+
+        boolean isComplete() {
+            return length >= totalLength;
+        }
+    }
+
+    /**
+     * Opens the cache in the given directory, keeping files left by a previous process.
+     *
+     * @param directory Directory holding the cached files; created if missing
+     * @param maxBytes  Maximum total size of the cached files
+     * @param client    Client used for downloads
+     * @throws IOException if the directory cannot be created
+     */
+    public MediaCache(File directory, long maxBytes, OkHttpClient client) throws IOException {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Invalid cache size");
+        }
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.client = client;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create cache directory: " + directory);
+        }
+        recover();
+    }
+
+    private synchronized void recover() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(FILE_SUFFIX)) {
+                entries.put(name.substring(0, name.length() - FILE_SUFFIX.length()),
+                        new Entry(file, file.length(), file.length()));
+                totalBytes += file.length();
+            } else if (name.endsWith(PART_SUFFIX) && recoverPart(file)) {
+                totalBytes += file.length();
+            } else if (!file.delete()) {
+                // Interrupted download or unknown file
+                Log.w(TAG, "Could not delete " + name);
+            }
+        }
+        trimToSize();
+        Log.d(TAG, "Recovered " + entries.size() + " cached videos, " + totalBytes + " bytes");
+    }
+
+    private boolean recoverPart(File file) {
+        String[] parts = file.getName().split("\\.");
+        if (parts.length != 3) {
+            return false;
+        }
+        try {
+            long totalLength = Long.parseLong(parts[1]);
+            entries.put(parts[0], new Entry(file, file.length(), totalLength));
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Looks up a completely cached video without downloading it and marks it as recently used.
+     *
+     * @param url The video URL
+     * @return The cached file, or null if the video is not cached or only partially cached
+     */
+    public File getCachedFile(String url) {
+        Entry entry = lookup(key(url));
+        return entry != null && entry.isComplete() ? entry.file : null;
+    }
+
+    /**
+     * Stops the download of the given video if one is running. Its listeners receive
+     * {@link Listener#onMediaFailed(String)} and nothing is stored.
+     *
+     * @param url The video URL
+     * @return true if a download was cancelled
+     */
+    public boolean cancel(String url) {
+        Call call;
+        synchronized (this) {
+            call = downloadCalls.get(key(url));
+        }
+        if (call == null) {
+            return false;
+        }
+        Log.d(TAG, "Cancelling download of " + url);
+        call.cancel();
+        return true;
+    }
+
+    /**
+     * @return Number of videos being downloaded
+     */
+    public synchronized int getDownloadCount() {
+        return downloadCalls.size();
+    }
+
+    /**
+     * @param url The video URL
+     * @return true if at least the start of the video is cached
+     */
+    public boolean isCached(String url) {
+        return lookup(key(url)) != null;
+    }
+
+    synchronized Entry lookup(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.file.isFile()) {
+            entries.remove(key);
+            totalBytes -= entry.length;
+            return null;
+        }
+        if (!entry.file.setLastModified(System.currentTimeMillis())) {
+            Log.w(TAG, "Could not update access time of " + entry.file.getName());
+        }
+        return entry;
+    }
+
+    /**
+     * Makes a video available locally, downloading it if it is not cached yet.
+     *
+     * @param url      The video URL
+     * @param listener Receives the cached file or the failure
+     */
+    public void fetch(String url, Listener listener) {
+        fetch(url, 0, listener);
+    }
+
+    /**
+     * Makes the first {@code prefixBytes} of a video available locally, using a range request.
+     * If the server ignores the range the whole video is cached instead.
+     *
+     * @param url         The video URL
+     * @param prefixBytes Number of bytes needed from the start of the video
+     * @param listener    Receives the cached (possibly partial) file or the failure
+     */
+    public void fetchPrefix(String url, long prefixBytes, Listener listener) {
+        if (prefixBytes <= 0) {
+            throw new IllegalArgumentException("Invalid prefix size");
+        }
+        fetch(url, prefixBytes, listener);
+    }
+
+    private void fetch(String url, long prefixBytes, Listener listener) {
+        String key = key(url);
+        Entry cached = lookup(key);
+        if (cached != null && (cached.isComplete()
+                || (prefixBytes > 0 && cached.length >= Math.min(prefixBytes, cached.totalLength)))) {
+            hitCount.incrementAndGet();
+            bytesSaved.addAndGet(cached.length);
+            Log.d(TAG, "Cache hit for " + url + " (hit rate " + Math.round(getHitRate() * 100) + "%)");
+            listener.onMediaReady(cached.file);
+            return;
+        }
+
+        synchronized (this) {
+            List<Listener> waiting = downloads.get(key);
+            if (waiting != null) {
+                waiting.add(listener);
+                return;
+            }
+            waiting = new ArrayList<>();
+            waiting.add(listener);
+            downloads.put(key, waiting);
+        }
+        missCount.incrementAndGet();
+        Log.d(TAG, "Cache miss for " + url + ", downloading " + (prefixBytes > 0 ? prefixBytes + " bytes" : "all"));
+        download(url, key, prefixBytes);
+    }
+
+    private void download(String url, String key, long prefixBytes) {
+        Request request;
+        try {
+            Request.Builder builder = new Request.Builder().url(url).cacheControl(NO_STORE);
+            if (prefixBytes > 0) {
+                builder.header("Range", "bytes=0-" + (prefixBytes - 1));
+            }
+            request = builder.build();
+        } catch (IllegalArgumentException e) {
+            complete(key, null, "Invalid video URL: " + url);
+            return;
+        }
+        Call downloadCall = client.newCall(request);
+        synchronized (this) {
+            downloadCalls.put(key, downloadCall);
+        }
+        downloadCall.enqueue(new Callback() {
+            @Override
+            public void onResponse(Call call, Response response) {
+                File temp = new File(directory, key + TEMP_SUFFIX);
+                try (ResponseBody body = response.body()) {
+                    if (!response.isSuccessful() || body == null) {
+                        complete(key, null, "Video download failed: " + response.code());
+                        return;
+                    }
+                    long totalLength = response.code() == 206
+                            ? parseTotalLength(response.header("Content-Range")) : -1;
+                    long written;
+                    try (BufferedSink sink = Okio.buffer(Okio.sink(temp))) {
+                        written = sink.writeAll(body.source());
+                    }
+                    if (totalLength < 0) {
+                        // Whole body: the server ignored the range or none was asked for
+                        totalLength = written;
+                    }
+                    bytesDownloaded.addAndGet(written);
+                    File file = put(key, temp, written, totalLength);
+                    complete(key, file, null);
+                } catch (IOException e) {
+                    if (temp.exists() && !temp.delete()) {
+                        Log.w(TAG, "Could not delete " + temp.getName());
+                    }
+                    complete(key, null, "Video download failed: " + e.getMessage());
+                }
+            }
+
+            @Override
+            public void onFailure(Call call, IOException e) {
+                complete(key, null, "Video download failed: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Parses the total length from a {@code Content-Range: bytes start-end/total} header.
+     *
+     * @return The total length, or -1 if it is missing or unknown
+     */
+    static long parseTotalLength(String contentRange) {
+        if (contentRange == null) {
+            return -1;
+        }
+        int slash = contentRange.lastIndexOf('/');
+        try {
+            return slash < 0 ? -1 : Long.parseLong(contentRange.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private synchronized File put(String key, File temp, long length, long totalLength) throws IOException {
+        File file = fileFor(key, length, totalLength);
+        if (!temp.renameTo(file)) {
+            throw new IOException("Cannot rename " + temp.getName());
+        }
+        Entry previous = entries.put(key, new Entry(file, length, totalLength));
+        if (previous != null) {
+            totalBytes -= previous.length;
+            if (!previous.file.equals(file) && !previous.file.delete()) {
+                Log.w(TAG, "Could not delete " + previous.file.getName());
+            }
+        }
+        totalBytes += length;
+        trimToSize();
+        return file;
+    }
+
+    private File fileFor(String key, long length, long totalLength) {
+        return length >= totalLength
+                ? new File(directory, key + FILE_SUFFIX)
+                : new File(directory, key + "." + totalLength + PART_SUFFIX);
+    }
+
+    /**
+     * Claims a partial entry for appending. Only one appender per entry is allowed.
+     *
+     * @return The entry to append to, or null if it is complete, missing or already claimed
+     */
+    synchronized Entry beginAppend(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.isComplete() || !appending.add(key)) {
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Records bytes appended to a claimed entry and releases the claim.
+     * A completed video is renamed to its final name.
+     *
+     * @param key      The entry key
+     * @param appended Number of bytes appended to the file
+     */
+    synchronized void endAppend(String key, long appended) {
+        appending.remove(key);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return;
+        }
+        long length = entry.length + appended;
+        File file = entry.file;
+        if (length >= entry.totalLength) {
+            File complete = fileFor(key, length, entry.totalLength);
+            if (file.renameTo(complete)) {
+                file = complete;
+                Log.d(TAG, "Completed " + complete.getName() + " during playback");
+            } else {
+                Log.w(TAG, "Could not rename " + file.getName());
+            }
+        }
+        entries.put(key, new Entry(file, length, entry.totalLength));
+        totalBytes += appended;
+        bytesDownloaded.addAndGet(appended);
+        trimToSize();
+    }
+
+    /**
+     * Deletes least recently used files until the cache fits its limit.
+     * The most recent file and files being appended are always kept.
+     */
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && entries.size() > 1 && iterator.hasNext()) {
+            Map.Entry<String, Entry> next = iterator.next();
+            if (appending.contains(next.getKey()) || !iterator.hasNext()) {
+                continue;
+            }
+            File file = next.getValue().file;
+            iterator.remove();
+            totalBytes -= next.getValue().length;
+            if (!file.delete()) {
+                Log.w(TAG, "Could not delete " + file.getName());
+            }
+            Log.d(TAG, "Evicted " + file.getName());
+        }
+    }
+
+    private void complete(String key, File file, String error) {
+        List<Listener> listeners;
+        synchronized (this) {
+            listeners = downloads.remove(key);
+            downloadCalls.remove(key);
+        }
+        if (listeners == null) {
+            return;
+        }
+        if (error != null) {
+            Log.e(TAG, error);
+        }
+        for (Listener listener : listeners) {
+            if (file != null) {
+                listener.onMediaReady(file);
+            } else {
+                listener.onMediaFailed(error);
+            }
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return The share of fetches served from disk, between 0 and 1
+     */
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * @return Bytes that did not have to be downloaded again because the video was cached
+     */
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+    public long getBytesDownloaded() {
+        return bytesDownloaded.get();
+    }
+
+    public synchronized long getSize() {
+        return totalBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    static String key(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package dev.nimrod.adsdk_lib.storage;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Loopback HTTP server that lets the video player play partially cached videos.
+ * Bytes already in the {@link MediaCache} are served from disk; the remainder is fetched from the
+ * origin with a range request while the video plays and appended to the cache, so the video is
+ * complete on disk after one full playback. Seeks past the cached prefix are streamed from the
+ * origin without being cached.
+ */
+public class MediaStreamProxy implements Closeable {
+    private static final String TAG = "MediaStreamProxy";
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final MediaCache cache;
+    private final OkHttpClient client;
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor;
+    private final Map<String, String> origins = new ConcurrentHashMap<>();
+
+    /**
+     * Starts the proxy on a free loopback port.
+     *
+     * @param cache  The cache holding video prefixes
+     * @param client Client used to fetch the remainder of videos
+     * @throws IOException if the server socket cannot be opened
+     */
+    public MediaStreamProxy(MediaCache cache, OkHttpClient client) throws IOException {
+        this.cache = cache;
+        this.client = client;
+        this.serverSocket = new ServerSocket(0, 8, InetAddress.getByName("127.0.0.1"));
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "AdSdk-media-proxy");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.execute(this::acceptLoop);
+    }
+
+    /**
+     * Returns the local URL the player should use for a video.
+     *
+     * @param originUrl The video URL on the ad server or CDN
+     * @return A loopback URL served by this proxy
+     */
+    public String getProxyUrl(String originUrl) {
+        String key = MediaCache.key(originUrl);
+        origins.put(key, originUrl);
+        return "http://127.0.0.1:" + serverSocket.getLocalPort() + "/" + key;
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                executor.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    Log.e(TAG, "Accept failed", e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket closing = socket) {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            String requestLine = readLine(in);
+            String range = null;
+            String header;
+            while ((header = readLine(in)) != null && !header.isEmpty()) {
+                if (header.regionMatches(true, 0, "Range:", 0, 6)) {
+                    range = header.substring(6).trim();
+                }
+            }
+            String[] parts = requestLine != null ? requestLine.split(" ") : new String[0];
+            String key = parts.length >= 2 && parts[1].startsWith("/") ? parts[1].substring(1) : "";
+            String originUrl = origins.get(key);
+            OutputStream out = socket.getOutputStream();
+            if (originUrl == null || !("GET".equals(parts[0]) || "HEAD".equals(parts[0]))) {
+                writeStatus(out, "404 Not Found", "Content-Length: 0\r\n");
+                return;
+            }
+            MediaCache.Entry entry = cache.lookup(key);
+            if (entry == null) {
+                relay(out, originUrl, range, "HEAD".equals(parts[0]));
+                return;
+            }
+            serveEntry(out, key, originUrl, entry, range, "HEAD".equals(parts[0]));
+        } catch (IOException e) {
+            // The player closes connections whenever it seeks
+            Log.d(TAG, "Connection closed: " + e.getMessage());
+        }
+    }
+
+    private void serveEntry(OutputStream out, String key, String originUrl, MediaCache.Entry entry,
+                            String range, boolean headOnly) throws IOException {
+        long total = entry.totalLength;
+        long start = 0;
+        long end = total - 1;
+        if (range != null && range.startsWith("bytes=")) {
+            String[] bounds = range.substring(6).split("-", 2);
+            try {
+                start = Long.parseLong(bounds[0].trim());
+                if (bounds.length > 1 && !bounds[1].trim().isEmpty()) {
+                    end = Math.min(end, Long.parseLong(bounds[1].trim()));
+                }
+            } catch (NumberFormatException e) {
+                range = null;
+                start = 0;
+            }
+        }
+        if (start > end) {
+            writeStatus(out, "416 Range Not Satisfiable", "Content-Range: bytes */" + total + "\r\n");
+            return;
+        }
+
+        String headers = "Content-Type: video/mp4\r\nAccept-Ranges: bytes\r\nContent-Length: " + (end - start + 1) + "\r\n";
+        if (range != null) {
+            writeStatus(out, "206 Partial Content", headers
+                    + String.format(Locale.US, "Content-Range: bytes %d-%d/%d\r\n", start, end, total));
+        } else {
+            writeStatus(out, "200 OK", headers);
+        }
+        if (headOnly) {
+            return;
+        }
+
+        long position = start;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        while (position <= end) {
+            MediaCache.Entry current = cache.lookup(key);
+            long cached = current != null ? current.length : 0;
+            if (position < cached) {
+                position = copyFromFile(current, position, Math.min(end + 1, cached), out, buffer);
+            } else {
+                position = streamFromOrigin(key, originUrl, position, end, out, buffer);
+            }
+        }
+        out.flush();
+    }
+
+    private long copyFromFile(MediaCache.Entry entry, long from, long to, OutputStream out, byte[] buffer)
+            throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(entry.file, "r")) {
+            file.seek(from);
+            long position = from;
+            while (position < to) {
+                int read = file.read(buffer, 0, (int) Math.min(buffer.length, to - position));
+                if (read < 0) {
+                    throw new IOException("Cached file shorter than expected");
+                }
+                out.write(buffer, 0, read);
+                position += read;
+            }
+            return position;
+        }
+    }
+
+    /**
+     * Streams {@code [from, end]} from the origin. If the range continues the cached prefix and no
+     * other connection is extending it, the bytes are also appended to the cache.
+     */
+    private long streamFromOrigin(String key, String originUrl, long from, long end, OutputStream out, byte[] buffer)
+            throws IOException {
+        MediaCache.Entry entry = cache.beginAppend(key);
+        boolean append = entry != null && entry.length == from;
+        if (entry != null && !append) {
+            cache.endAppend(key, 0);
+        }
+
+        long position = from;
+        long appended = 0;
+        Request request = new Request.Builder()
+                .url(originUrl)
+                .cacheControl(MediaCache.NO_STORE)
+                .header("Range", "bytes=" + from + "-" + (append ? "" : String.valueOf(end)))
+                .build();
+        try (Response response = client.newCall(request).execute();
+             ResponseBody body = response.body();
+             FileOutputStream sink = append ? new FileOutputStream(entry.file, true) : null) {
+            if (response.code() != 206 || body == null) {
+                throw new IOException("Origin did not honor range request: " + response.code());
+            }
+            InputStream source = body.byteStream();
+            int read;
+            while ((read = source.read(buffer)) != -1) {
+                if (sink != null) {
+                    sink.write(buffer, 0, read);
+                    appended += read;
+                }
+                // Keep caching past the requested end, but only send what was asked for
+                int send = (int) Math.max(0, Math.min(read, end + 1 - position));
+                if (send > 0) {
+                    out.write(buffer, 0, send);
+                }
+                position += read;
+                if (sink == null && position > end) {
+                    break;
+                }
+            }
+        } finally {
+            if (append) {
+                cache.endAppend(key, appended);
+            }
+        }
+        if (position <= end) {
+            throw new IOException("Origin closed the stream early");
+        }
+        return end + 1;
+    }
+
+    /**
+     * Passes a request for an uncached video straight through to the origin.
+     */
+    private void relay(OutputStream out, String originUrl, String range, boolean headOnly) throws IOException {
+        Request.Builder builder = new Request.Builder().url(originUrl).cacheControl(MediaCache.NO_STORE);
+        if (range != null) {
+            builder.header("Range", range);
+        }
+        try (Response response = client.newCall(builder.build()).execute();
+             ResponseBody body = response.body()) {
+            StringBuilder headers = new StringBuilder();
+            for (String name : new String[]{"Content-Type", "Content-Length", "Content-Range", "Accept-Ranges"}) {
+                String value = response.header(name);
+                if (value != null) {
+                    headers.append(name).append(": ").append(value).append("\r\n");
+                }
+            }
+            writeStatus(out, response.code() + " " + response.message(), headers.toString());
+            if (!headOnly && body != null) {
+                InputStream source = body.byteStream();
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = source.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            }
+            out.flush();
+        }
+    }
+
+    private static void writeStatus(OutputStream out, String status, String headers) throws IOException {
+        out.write(("HTTP/1.1 " + status + "\r\n" + headers + "Connection: close\r\n\r\n")
+                .getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1 && c != '\n') {
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return c == -1 && line.length() == 0 ? null : line.toString();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+}
@@ -4,6 +4,7 @@ import android.app.Activity;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
@@ -12,7 +13,6 @@ import android.widget.FrameLayout;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
-import android.widget.VideoView;
 
 import androidx.activity.EdgeToEdge;
 import androidx.appcompat.app.AppCompatActivity;
@@ -20,11 +20,23 @@ import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
+import dev.nimrod.adsdk_lib.controller.AdController;
 import dev.nimrod.adsdk_lib.manager.AdPreloadManager;
 import dev.nimrod.adsdk_lib.util.EventEnum;
 import dev.nimrod.adsdk_lib.R;
 import dev.nimrod.adsdk_lib.manager.AdManager;
+import dev.nimrod.adsdk_lib.manager.AdPlacementRegistry;
+import dev.nimrod.adsdk_lib.manager.AdState;
+import dev.nimrod.adsdk_lib.manager.PlaybackPhase;
 import dev.nimrod.adsdk_lib.model.Ad;
+import dev.nimrod.adsdk_lib.player.AdPlayerEngine;
+import dev.nimrod.adsdk_lib.player.PlaybackMetricsTracker;
+import dev.nimrod.adsdk_lib.player.PlaybackProgressSampler;
+import dev.nimrod.adsdk_lib.player.PlaybackProgressTracker;
+import dev.nimrod.adsdk_lib.player.PlayerEngineFactory;
+import dev.nimrod.adsdk_lib.player.PlayerEngineType;
+import dev.nimrod.adsdk_lib.player.PlayerPrewarmer;
+import dev.nimrod.adsdk_lib.player.VideoViewPlayerEngine;
 
 /**
  * Full-screen activity for displaying video advertisements.
@@ -33,19 +45,31 @@ import dev.nimrod.adsdk_lib.model.Ad;
  */
 public class AdPlayerActivity extends AppCompatActivity {
     private static final String TAG = "AdPlayerActivity";
+    private static final String EXTRA_PLACEMENT_ID = "dev.nimrod.adsdk_lib.PLACEMENT_ID";
+    private static final String EXTRA_SHOW_TIME = "dev.nimrod.adsdk_lib.SHOW_TIME";
 
-    private VideoView videoView;
+    private AdPlayerEngine playerEngine;
     private FrameLayout videoContainer;
     private Button skipButton;
     private Button exitButton;
     private ProgressBar loadingProgressBar;
     private View endCardView;
     private boolean skipped = false;
-    private boolean eventSent = false;
-    private int currentPosition = 0;
+    private long currentPosition = 0;
     private Ad ad;
     private AdManager adManager;
+    private PlaybackMetricsTracker metrics;
+    // Sends the quartile progress events; owned by the impression, so kept across a fallback to
+    // another player engine and a recreation of this activity
+    private PlaybackProgressTracker progressTracker;
+    private PlaybackProgressSampler progressSampler;
     private boolean videoCompleted = false;
+    private boolean videoPrepared = false;
+    // Player state, from which the watch time is split into playing, buffering and paused time
+    private boolean playing = false;
+    private boolean buffering = false;
+    private boolean fallbackUsed = false;
+    private boolean prewarmed = false;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -72,7 +96,6 @@ public class AdPlayerActivity extends AppCompatActivity {
     }
 
     private void findViews() {
-        videoView = findViewById(R.id.ad_player_video);
         videoContainer = findViewById(R.id.video_container);
         skipButton = findViewById(R.id.ad_player_skip_button);
         exitButton = findViewById(R.id.ad_player_exit_button);
@@ -91,10 +114,23 @@ public class AdPlayerActivity extends AppCompatActivity {
     }
 
     private void loadCurrentAd() {
-        // Get AdManager instance
-        adManager = AdManager.getInstance();
+        // Get the AdManager of the placement that launched the player
+        adManager = AdPlacementRegistry.getInstance().get(getIntent().getStringExtra(EXTRA_PLACEMENT_ID));
+        if (adManager == null) {
+            adManager = AdManager.getInstance();
+        }
         // Get ad from AdManager
         ad = adManager.getCurrentAd();
+        metrics = adManager.getPlaybackMetricsTracker();
+        progressTracker = adManager.getPlaybackProgressTracker();
+        if (progressTracker == null) {
+            // No impression to report progress for
+            progressTracker = new PlaybackProgressTracker(milestone -> {
+            });
+        }
+        if (metrics != null) {
+            metrics.onActivityCreated();
+        }
     }
 
     private void handleAd() {
@@ -114,76 +150,21 @@ public class AdPlayerActivity extends AppCompatActivity {
     }
 
     /**
-     * Configures the video player with proper scaling, event listeners, and timing controls.
-     * Handles video preparation, playback start, error handling, and button timing.
+     * Takes over the pre-warmed player of the ad, or creates the configured player engine, and
+     * starts playback once the video is prepared.
+     * Handles video preparation, scaling, error handling, and button timing.
      */
     private void setupVideoPlayer() {
-        if (videoView != null && ad.getVideoUrl() != null) {
+        if (ad.getVideoUrl() != null) {
             try {
-                Uri videoUri = Uri.parse(ad.getVideoUrl());
-                videoView.setVideoURI(videoUri);
-
-                // Set completion listener
-                videoView.setOnCompletionListener(mp -> {
-                    videoCompleted = true;
-                    showEndCard();
-                });
-
-                // Set prepared listener
-                videoView.setOnPreparedListener(mp -> {
-                    loadingProgressBar.setVisibility(View.GONE);
-
-                    // Scale video to fit container
-                    int videoWidth = mp.getVideoWidth();
-                    int videoHeight = mp.getVideoHeight();
-
-                    if (videoWidth > 0 && videoHeight > 0) {
-                        int containerWidth = videoContainer.getWidth();
-                        int containerHeight = videoContainer.getHeight();
-                        float scaleX = (float) containerWidth / videoWidth;
-                        float scaleY = (float) containerHeight / videoHeight;
-                        float scale = Math.min(scaleX, scaleY);
-                        int newWidth = (int) (videoWidth * scale);
-                        int newHeight = (int) (videoHeight * scale);
-
-                        ViewGroup.LayoutParams layoutParams = videoView.getLayoutParams();
-                        layoutParams.width = newWidth;
-                        layoutParams.height = newHeight;
-                        videoView.setLayoutParams(layoutParams);
-                    }
-
-                    // Start playback
-                    mp.start();
-
-                    // Let AdManager start tracking watch time
-                    adManager.startWatchTimeTracking();
-
-                    // Show exit button after exitTime
-                    long exitTimeMs = (long) (ad.getExitTime() * 1000);
-                    if (exitTimeMs > 0) {
-                        videoView.postDelayed(() -> {
-                            if (!isFinishing()) {
-                                exitButton.setAlpha(1f);
-                                exitButton.setVisibility(View.VISIBLE);
-                                exitButton.setTranslationZ(100f);
-                                exitButton.bringToFront();
-                                exitButton.invalidate();
-                            }
-                        }, exitTimeMs);
-                    }
-                });
-
-                // Set error listener
-                videoView.setOnErrorListener((mp, what, extra) -> {
-                    loadingProgressBar.setVisibility(View.GONE);
-                    Log.e(TAG, "Video playback error: " + what + ", " + extra);
-                    Toast.makeText(AdPlayerActivity.this, "Error playing video", Toast.LENGTH_SHORT).show();
-                    finish();
-                    return true;
-                });
-
-                videoView.requestFocus();
-
+                AdPlayerEngine engine = PlayerPrewarmer.getInstance().take(ad);
+                prewarmed = engine != null;
+                if (prewarmed) {
+                    Log.d(TAG, "Using pre-warmed player");
+                    startPlayer(engine, false);
+                } else {
+                    startPlayer(PlayerEngineFactory.create(this, AdController.getInstance().getConfig()), true);
+                }
             } catch (Exception e) {
                 Log.e(TAG, "Error setting video URI", e);
                 loadingProgressBar.setVisibility(View.GONE);
@@ -197,6 +178,197 @@ public class AdPlayerActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * @param engine  The player to show the video with
+     * @param prepare false if the player already prepared the video of the ad
+     */
+    private void startPlayer(AdPlayerEngine engine, boolean prepare) {
+        playerEngine = engine;
+        playing = false;
+        buffering = false;
+        progressSampler = new PlaybackProgressSampler(engine, progressTracker);
+        engine.attach(videoContainer);
+        engine.setListener(new AdPlayerEngine.Listener() {
+            @Override
+            public void onPrepared() {
+                if (metrics != null) {
+                    metrics.onPrepared();
+                }
+                onVideoPrepared();
+            }
+
+            @Override
+            public void onVideoSizeChanged(int width, int height) {
+                scaleVideo(width, height);
+            }
+
+            @Override
+            public void onFirstFrameRendered() {
+                if (metrics != null) {
+                    metrics.onFirstFrame();
+                }
+                long shownAt = getIntent().getLongExtra(EXTRA_SHOW_TIME, 0);
+                if (shownAt > 0) {
+                    Log.d(TAG, "First frame " + (SystemClock.elapsedRealtime() - shownAt)
+                            + " ms after showAd (pre-warmed: " + prewarmed + ")");
+                }
+            }
+
+            @Override
+            public void onBufferingStarted() {
+                if (metrics != null) {
+                    metrics.onRebufferStarted();
+                }
+                loadingProgressBar.setVisibility(View.VISIBLE);
+                buffering = true;
+                reportPlaybackPhase();
+            }
+
+            @Override
+            public void onBufferingEnded() {
+                if (metrics != null) {
+                    metrics.onRebufferEnded();
+                }
+                loadingProgressBar.setVisibility(View.GONE);
+                buffering = false;
+                reportPlaybackPhase();
+            }
+
+            @Override
+            public void onPlayingChanged(boolean isPlaying) {
+                playing = isPlaying;
+                reportPlaybackPhase();
+                if (isPlaying) {
+                    progressSampler.start();
+                } else {
+                    progressSampler.stop();
+                }
+            }
+
+            @Override
+            public void onCompleted() {
+                if (metrics != null) {
+                    metrics.onCompleted();
+                }
+                videoCompleted = true;
+                reportPlaybackPhase();
+                progressSampler.stop();
+                progressTracker.onCompleted();
+                showEndCard();
+            }
+
+            @Override
+            public void onError(String message) {
+                onVideoError(message);
+            }
+        });
+        if (prepare) {
+            engine.prepare(PlayerEngineFactory.resolveVideoUri(AdController.getInstance(), ad.getVideoUrl()));
+        }
+    }
+
+    /**
+     * Tells the AdManager what the player is doing, so only actual playback counts as watch time.
+     */
+    private void reportPlaybackPhase() {
+        PlaybackPhase phase;
+        if (!videoPrepared || videoCompleted) {
+            phase = PlaybackPhase.IDLE;
+        } else if (buffering) {
+            phase = PlaybackPhase.BUFFERING;
+        } else if (playing) {
+            phase = PlaybackPhase.PLAYING;
+        } else {
+            phase = PlaybackPhase.PAUSED;
+        }
+        adManager.setPlaybackPhase(phase);
+    }
+
+    private void onVideoPrepared() {
+        videoPrepared = true;
+        loadingProgressBar.setVisibility(View.GONE);
+
+        // Start playback; watch time is counted from the player's playing state
+        playerEngine.play();
+
+        // Show exit button after exitTime
+        long exitTimeMs = (long) (ad.getExitTime() * 1000);
+        if (exitTimeMs > 0) {
+            videoContainer.postDelayed(() -> {
+                if (!isFinishing()) {
+                    exitButton.setAlpha(1f);
+                    exitButton.setVisibility(View.VISIBLE);
+                    exitButton.setTranslationZ(100f);
+                    exitButton.bringToFront();
+                    exitButton.invalidate();
+                }
+            }, exitTimeMs);
+        }
+    }
+
+    /**
+     * Scales the video view to fit the container while keeping the aspect ratio of the video.
+     */
+    private void scaleVideo(int videoWidth, int videoHeight) {
+        View videoView = playerEngine.getView();
+        if (videoView == null) {
+            return;
+        }
+        int containerWidth = videoContainer.getWidth();
+        int containerHeight = videoContainer.getHeight();
+        if (containerWidth == 0 || containerHeight == 0) {
+            // A pre-warmed player reports its size before the first layout pass
+            videoContainer.post(() -> {
+                if (playerEngine != null) {
+                    scaleVideo(videoWidth, videoHeight);
+                }
+            });
+            return;
+        }
+        float scaleX = (float) containerWidth / videoWidth;
+        float scaleY = (float) containerHeight / videoHeight;
+        float scale = Math.min(scaleX, scaleY);
+        int newWidth = (int) (videoWidth * scale);
+        int newHeight = (int) (videoHeight * scale);
+
+        ViewGroup.LayoutParams layoutParams = videoView.getLayoutParams();
+        layoutParams.width = newWidth;
+        layoutParams.height = newHeight;
+        videoView.setLayoutParams(layoutParams);
+    }
+
+    /**
+     * Retries once with the platform player when Media3 fails before the video could start,
+     * e.g. on a codec or container Media3 does not handle on this device.
+     */
+    private void onVideoError(String message) {
+        Log.e(TAG, "Video playback error: " + message);
+        if (!videoPrepared && !fallbackUsed
+                && AdController.getInstance().getConfig().getPlayerEngine() == PlayerEngineType.MEDIA3) {
+            fallbackUsed = true;
+            Log.d(TAG, "Falling back to VideoView");
+            releasePlayer();
+            startPlayer(new VideoViewPlayerEngine(this), true);
+            return;
+        }
+        loadingProgressBar.setVisibility(View.GONE);
+        Toast.makeText(AdPlayerActivity.this, "Error playing video", Toast.LENGTH_SHORT).show();
+        finish();
+    }
+
+    private void releasePlayer() {
+        if (playerEngine == null) {
+            return;
+        }
+        View videoView = playerEngine.getView();
+        if (videoView != null) {
+            videoContainer.removeView(videoView);
+        }
+        progressSampler.stop();
+        playerEngine.release();
+        playerEngine = null;
+    }
+
     /**
      * Displays the end card overlay after video completion.
      * Shows advertiser information and call-to-action button, dims the video background.
@@ -206,7 +378,10 @@ public class AdPlayerActivity extends AppCompatActivity {
         if (endCardView == null || ad == null) return;
 
         // Dim the video
-        videoView.animate().alpha(0.5f).setDuration(400).start();
+        View videoView = playerEngine != null ? playerEngine.getView() : null;
+        if (videoView != null) {
+            videoView.animate().alpha(0.5f).setDuration(400).start();
+        }
 
         // Show end card
         endCardView.setAlpha(0f);
@@ -252,9 +427,7 @@ public class AdPlayerActivity extends AppCompatActivity {
 
             skipButton.setOnClickListener(v -> {
                 skipped = true;
-                adManager.createEvent(EventEnum.SKIP);
-                eventSent = true;
-                adManager.notifyAdSkipped();
+                adManager.finishAd(AdState.SKIPPED, EventEnum.SKIP);
                 finish();
             });
         }
@@ -270,15 +443,8 @@ public class AdPlayerActivity extends AppCompatActivity {
 
 
             exitButton.setOnClickListener(v -> {
-                if (!eventSent) {
-                    if (videoCompleted) {
-                        adManager.createEvent(EventEnum.VIEW);  // Send VIEW when exiting after completion
-                    } else {
-                        adManager.createEvent(EventEnum.EXIT);  // Send EXIT if not completed
-                    }
-                    eventSent = true;
-                }
-                adManager.notifyAdExited();
+                // VIEW when exiting after completion, EXIT if not completed
+                adManager.finishAd(AdState.EXITED, videoCompleted ? EventEnum.VIEW : EventEnum.EXIT);
                 finish();
             });
         }
@@ -288,48 +454,45 @@ public class AdPlayerActivity extends AppCompatActivity {
      * Launches the ad player activity.
      *
      * @param host      The activity to launch from
-     * @param adManager The ad manager instance (parameter retained for interface consistency)
+     * @param adManager The ad manager of the placement whose ad is shown
      */
     public static void start(Activity host, AdManager adManager) {
         Intent intent = new Intent(host, AdPlayerActivity.class);
+        intent.putExtra(EXTRA_PLACEMENT_ID, adManager.getPlacementId());
+        intent.putExtra(EXTRA_SHOW_TIME, SystemClock.elapsedRealtime());
         host.startActivity(intent);
     }
 
     @Override
     protected void onPause() {
         super.onPause();
-        if (videoView != null && videoView.isPlaying()) {
-            currentPosition = videoView.getCurrentPosition();
-            videoView.pause();
+        if (playerEngine != null && playerEngine.isPlaying()) {
+            currentPosition = playerEngine.getCurrentPosition();
+            playerEngine.pause();
         }
-        adManager.pauseWatchTimeTracking();
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        if (videoView != null && currentPosition > 0 && !videoCompleted) {
-            videoView.seekTo(currentPosition);
-            videoView.start();
+        if (playerEngine != null && currentPosition > 0 && !videoCompleted) {
+            playerEngine.seekTo(currentPosition);
+            playerEngine.play();
         }
-        adManager.resumeWatchTimeTracking();
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
 
-        if (videoView != null) {
-            videoView.stopPlayback();
-        }
+        releasePlayer();
 
-        if (!eventSent && ad != null) {
+        // Rejected by the state machine if a button already ended the ad
+        if (ad != null && !isChangingConfigurations()) {
             if (!videoCompleted) {
-                adManager.createEvent(EventEnum.EXIT);
-                adManager.notifyAdExited();
+                adManager.finishAd(AdState.EXITED, EventEnum.EXIT);
             } else {
-                adManager.createEvent(EventEnum.VIEW);
-                adManager.notifyAdFinished();
+                adManager.finishAd(AdState.COMPLETED, EventEnum.VIEW);
             }
         }
     }
@@ -0,0 +1,120 @@
+package dev.nimrod.adsdk_lib.util;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.os.Bundle;
+import android.util.Log;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tracks whether the host application is in the foreground by counting started activities.
+ * Notifies registered listeners when the last activity stops (app went to background)
+ * and when the first activity starts again.
+ */
+public class AppForegroundTracker implements Application.ActivityLifecycleCallbacks {
+    private static final String TAG = "AppForegroundTracker";
+    private static AppForegroundTracker instance;
+
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private int startedActivities = 0;
+    private boolean inBackground = false;
+    private boolean registered = false;
+
+    /**
+     * Receives foreground/background transitions of the host application.
+     */
+    public interface Listener {
+        void onAppForeground();
+
+        void onAppBackground();
+    }
+
+    private AppForegroundTracker() {
+    }
+
+    public static synchronized AppForegroundTracker getInstance() {
+        if (instance == null) {
+            instance = new AppForegroundTracker();
+        }
+        return instance;
+    }
+
+    /**
+     * Registers the tracker with the application. Safe to call more than once.
+     *
+     * @param context Any context of the host application
+     */
+    public synchronized void register(Context context) {
+        if (registered) {
+            return;
+        }
+        Context appContext = context.getApplicationContext();
+        if (appContext instanceof Application) {
+            ((Application) appContext).registerActivityLifecycleCallbacks(this);
+            registered = true;
+        } else {
+            Log.w(TAG, "Application context unavailable, background detection disabled");
+        }
+    }
+
+    public void addListener(Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public boolean isInForeground() {
+        return startedActivities > 0;
+    }
+
+    @Override
+    public void onActivityStarted(Activity activity) {
+        startedActivities++;
+        if (startedActivities == 1 && inBackground) {
+            inBackground = false;
+            Log.d(TAG, "App moved to foreground");
+            for (Listener listener : listeners) {
+                listener.onAppForeground();
+            }
+        }
+    }
+
+    @Override
+    public void onActivityStopped(Activity activity) {
+        if (startedActivities == 0) {
+            return;
+        }
+        startedActivities--;
+        if (startedActivities == 0 && !activity.isChangingConfigurations()) {
+            inBackground = true;
+            Log.d(TAG, "App moved to background");
+            for (Listener listener : listeners) {
+                listener.onAppBackground();
+            }
+        }
+    }
+
+    @Override
+    public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+    }
+
+    @Override
+    public void onActivityResumed(Activity activity) {
+    }
+
+    @Override
+    public void onActivityPaused(Activity activity) {
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+    }
+
+    @Override
+    public void onActivityDestroyed(Activity activity) {
+    }
+}
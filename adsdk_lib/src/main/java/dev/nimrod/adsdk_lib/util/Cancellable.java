@@ -0,0 +1,13 @@
+package dev.nimrod.adsdk_lib.util;
+
+/**
+ * Handle to asynchronous work that can be stopped before it finishes.
+ * Cancelling work that already finished has no effect. Cancelled work still reports to its
+ * callback, as a failure.
+ */
+public interface Cancellable {
+    Cancellable NONE = () -> {
+    };
+
+    void cancel();
+}
@@ -0,0 +1,38 @@
+package dev.nimrod.adsdk_lib.util;
+
+/**
+ * Cancellable for work made of several steps started one after another, e.g. a request followed
+ * by a fallback request. Each step registers itself with {@link #set(Cancellable)}; a step
+ * registered after {@link #cancel()} is cancelled right away.
+ */
+public class CancellationHandle implements Cancellable {
+    private Cancellable current = Cancellable.NONE;
+    private boolean cancelled;
+
+    public void set(Cancellable step) {
+        synchronized (this) {
+            if (!cancelled) {
+                current = step;
+                return;
+            }
+        }
+        step.cancel();
+    }
+
+    @Override
+    public void cancel() {
+        Cancellable step;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            step = current;
+        }
+        step.cancel();
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+}
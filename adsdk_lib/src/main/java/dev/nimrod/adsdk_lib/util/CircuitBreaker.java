@@ -0,0 +1,113 @@
+package dev.nimrod.adsdk_lib.util;
+
+import android.util.Log;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Stops requests to a failing backend for a while instead of retrying at full rate.
+ * After {@code failureThreshold} consecutive failures the breaker opens and rejects requests.
+ * Once {@code openDurationMs} has passed it lets a single probe through (half-open); the probe's
+ * outcome closes the breaker again or reopens it for another period.
+ */
+public class CircuitBreaker {
+    private static final String TAG = "CircuitBreaker";
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openDurationMs;
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtMs;
+    private boolean probeInFlight;
+
+    /**
+     * @param failureThreshold Consecutive failures that open the breaker
+     * @param openDurationMs   How long the breaker stays open before a probe is allowed
+     * @param clock            Monotonic clock in milliseconds
+     */
+    public CircuitBreaker(int failureThreshold, long openDurationMs, LongSupplier clock) {
+        if (failureThreshold < 1 || openDurationMs < 0) {
+            throw new IllegalArgumentException("Invalid circuit breaker settings");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openDurationMs = openDurationMs;
+        this.clock = clock;
+    }
+
+    /**
+     * Asks to send a request. While half-open only the first caller is allowed, as the probe.
+     *
+     * @return true if the request may be sent
+     */
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (clock.getAsLong() - openedAtMs < openDurationMs) {
+                    return false;
+                }
+                Log.d(TAG, "Half-open, sending probe");
+                state = State.HALF_OPEN;
+                probeInFlight = true;
+                return true;
+            default:
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            Log.d(TAG, "Closed after successful probe");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        probeInFlight = false;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        probeInFlight = false;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            if (state != State.OPEN) {
+                Log.w(TAG, "Opened after " + consecutiveFailures + " consecutive failures");
+            }
+            state = State.OPEN;
+            openedAtMs = clock.getAsLong();
+        }
+    }
+
+    /**
+     * Records a request cancelled by the caller. Says nothing about the backend, so only the
+     * probe slot is released.
+     */
+    public synchronized void onCancelled() {
+        probeInFlight = false;
+    }
+
+    /**
+     * @return Milliseconds until a probe will be allowed, or 0 if requests are allowed now
+     */
+    public synchronized long getMillisUntilProbe() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, openedAtMs + openDurationMs - clock.getAsLong());
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
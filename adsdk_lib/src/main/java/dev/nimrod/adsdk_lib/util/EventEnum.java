@@ -1,10 +1,20 @@
 package dev.nimrod.adsdk_lib.util;
 
+/**
+ * Types of ad interaction events reported to the server.
+ * Ordinals are part of the compact wire format, so new values must be appended at the end.
+ */
 public enum EventEnum {
     VIEW("view"),
     CLICK("click"),
     SKIP("skip"),
-    EXIT("exit");
+    EXIT("exit"),
+    // Progress of the video, each sent once per impression
+    START("start"),
+    FIRST_QUARTILE("first_quartile"),
+    MIDPOINT("midpoint"),
+    THIRD_QUARTILE("third_quartile"),
+    COMPLETE("complete");
 
     private final String value;
 
@@ -0,0 +1,67 @@
+package dev.nimrod.adsdk_lib.util;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Thread-safe formatter for ISO-8601 UTC timestamps with millisecond precision
+ * ({@code yyyy-MM-dd'T'HH:mm:ss.SSS'Z'}).
+ * The date and time up to the second are formatted with java.time once per second and cached;
+ * each call then only copies the cached prefix and appends the milliseconds, allocating one char
+ * array and the result string.
+ */
+public final class IsoTimestamp {
+    private static final DateTimeFormatter SECONDS_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.", Locale.US).withZone(ZoneOffset.UTC);
+
+    private static volatile CachedSecond cached = new CachedSecond(Long.MIN_VALUE, new char[0]);
+
+    private static final class CachedSecond {
+        final long epochSecond;
+        final char[] prefix;
+
+        CachedSecond(long epochSecond, char[] prefix) {
+            this.epochSecond = epochSecond;
+            this.prefix = prefix;
+        }
+    }
+
+    private IsoTimestamp() {
+    }
+
+    /**
+     * @return The current wall-clock time as an ISO-8601 UTC timestamp
+     */
+    public static String now() {
+        return format(System.currentTimeMillis());
+    }
+
+    /**
+     * Formats an epoch time in milliseconds as an ISO-8601 UTC timestamp.
+     *
+     * @param epochMillis Milliseconds since the epoch
+     * @return The formatted timestamp, e.g. {@code 2026-10-17T06:00:00.123Z}
+     */
+    public static String format(long epochMillis) {
+        long epochSecond = Math.floorDiv(epochMillis, 1000L);
+        int millis = (int) Math.floorMod(epochMillis, 1000L);
+
+        CachedSecond current = cached;
+        if (current.epochSecond != epochSecond) {
+            current = new CachedSecond(epochSecond,
+                    SECONDS_FORMAT.format(Instant.ofEpochSecond(epochSecond)).toCharArray());
+            cached = current;
+        }
+
+        int length = current.prefix.length;
+        char[] chars = Arrays.copyOf(current.prefix, length + 4);
+        chars[length] = (char) ('0' + millis / 100);
+        chars[length + 1] = (char) ('0' + millis / 10 % 10);
+        chars[length + 2] = (char) ('0' + millis % 10);
+        chars[length + 3] = 'Z';
+        return new String(chars);
+    }
+}
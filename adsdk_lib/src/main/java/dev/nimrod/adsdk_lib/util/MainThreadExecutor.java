@@ -0,0 +1,36 @@
+package dev.nimrod.adsdk_lib.util;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Runs tasks on the main thread: directly when already there, otherwise posted to the main looper.
+ * Without a main looper, e.g. in plain JVM unit tests, tasks run on the calling thread.
+ */
+public class MainThreadExecutor implements Executor {
+    private static MainThreadExecutor instance;
+
+    private final Looper mainLooper = Looper.getMainLooper();
+    private final Handler handler = new Handler(mainLooper);
+
+    private MainThreadExecutor() {
+    }
+
+    public static synchronized MainThreadExecutor getInstance() {
+        if (instance == null) {
+            instance = new MainThreadExecutor();
+        }
+        return instance;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (mainLooper == null || Looper.myLooper() == mainLooper) {
+            command.run();
+        } else {
+            handler.post(command);
+        }
+    }
+}
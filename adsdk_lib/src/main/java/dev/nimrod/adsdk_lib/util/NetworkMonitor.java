@@ -0,0 +1,105 @@
+package dev.nimrod.adsdk_lib.util;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.util.Log;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Watches the default network and notifies listeners when connectivity returns.
+ * Also tracks whether the default network is metered, e.g. cellular data.
+ * Requires the {@code ACCESS_NETWORK_STATE} permission; without it monitoring is disabled.
+ */
+public class NetworkMonitor {
+    private static final String TAG = "NetworkMonitor";
+    private static NetworkMonitor instance;
+
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean connected = true;
+    // Assume metered until the system says otherwise, so data use stays conservative
+    private volatile boolean metered = true;
+    private boolean registered = false;
+
+    /**
+     * Receives connectivity changes of the default network.
+     */
+    public interface Listener {
+        void onNetworkAvailable();
+    }
+
+    private NetworkMonitor() {
+    }
+
+    public static synchronized NetworkMonitor getInstance() {
+        if (instance == null) {
+            instance = new NetworkMonitor();
+        }
+        return instance;
+    }
+
+    /**
+     * Starts monitoring the default network. Safe to call more than once.
+     *
+     * @param context Any context of the host application
+     */
+    public synchronized void register(Context context) {
+        if (registered) {
+            return;
+        }
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) context.getApplicationContext().getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager == null) {
+            return;
+        }
+        try {
+            connected = connectivityManager.getActiveNetwork() != null;
+            metered = connectivityManager.isActiveNetworkMetered();
+            connectivityManager.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+                @Override
+                public void onAvailable(Network network) {
+                    boolean wasConnected = connected;
+                    connected = true;
+                    if (!wasConnected) {
+                        Log.d(TAG, "Network available");
+                        for (Listener listener : listeners) {
+                            listener.onNetworkAvailable();
+                        }
+                    }
+                }
+
+                @Override
+                public void onCapabilitiesChanged(Network network, NetworkCapabilities capabilities) {
+                    metered = !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+                }
+
+                @Override
+                public void onLost(Network network) {
+                    Log.d(TAG, "Network lost");
+                    connected = false;
+                }
+            });
+            registered = true;
+        } catch (SecurityException e) {
+            Log.w(TAG, "ACCESS_NETWORK_STATE permission missing, network monitoring disabled");
+        }
+    }
+
+    public void addListener(Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public boolean isMetered() {
+        return metered;
+    }
+}
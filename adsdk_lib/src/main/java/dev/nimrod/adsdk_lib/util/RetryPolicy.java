@@ -0,0 +1,123 @@
+package dev.nimrod.adsdk_lib.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+import dev.nimrod.adsdk_lib.config.AdSdkConfig;
+
+/**
+ * Decides when a failed background request is retried.
+ * Delays grow exponentially from {@code initialDelayMs} up to {@code maxDelayMs} and are drawn
+ * with full jitter (uniformly between 0 and the exponential bound) so clients do not retry in
+ * lockstep. After {@code maxAttempts} consecutive failed attempts no further retry is scheduled
+ * until a request succeeds. Server errors also feed a {@link CircuitBreaker}; empty responses
+ * only back off, since they do not mean the backend is unhealthy.
+ */
+public class RetryPolicy {
+    public static final long NO_RETRY = -1;
+
+    private final long initialDelayMs;
+    private final long maxDelayMs;
+    private final int maxAttempts;
+    private final CircuitBreaker circuitBreaker;
+    private final DoubleSupplier random;
+    private int attempts;
+
+    /**
+     * @param initialDelayMs Upper bound of the first delay
+     * @param maxDelayMs     Upper bound of any delay
+     * @param maxAttempts    Consecutive failures after which retrying stops
+     * @param circuitBreaker Breaker fed with server failures
+     * @param random         Source of uniform values in [0, 1) for the jitter
+     */
+    public RetryPolicy(long initialDelayMs, long maxDelayMs, int maxAttempts,
+                       CircuitBreaker circuitBreaker, DoubleSupplier random) {
+        if (initialDelayMs <= 0 || maxDelayMs < initialDelayMs || maxAttempts < 1) {
+            throw new IllegalArgumentException("Invalid retry settings");
+        }
+        this.initialDelayMs = initialDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.maxAttempts = maxAttempts;
+        this.circuitBreaker = circuitBreaker;
+        this.random = random;
+    }
+
+    /**
+     * Creates a policy with the retry and circuit breaker settings of the given configuration.
+     *
+     * @param config The SDK configuration
+     * @param clock  Monotonic clock in milliseconds
+     */
+    public static RetryPolicy fromConfig(AdSdkConfig config, LongSupplier clock) {
+        return new RetryPolicy(config.getRetryInitialDelayMs(), config.getRetryMaxDelayMs(),
+                config.getRetryMaxAttempts(),
+                new CircuitBreaker(config.getCircuitBreakerFailureThreshold(), config.getCircuitBreakerOpenMs(), clock),
+                () -> ThreadLocalRandom.current().nextDouble());
+    }
+
+    /**
+     * @return true if a request may be sent now, see {@link CircuitBreaker#allowRequest()}
+     */
+    public boolean allowRequest() {
+        return circuitBreaker.allowRequest();
+    }
+
+    public synchronized void onSuccess() {
+        attempts = 0;
+        circuitBreaker.onSuccess();
+    }
+
+    /**
+     * Records a failed request, e.g. a network error or a 5xx answer.
+     *
+     * @return Delay before the next attempt in milliseconds, or {@link #NO_RETRY}
+     */
+    public synchronized long onFailure() {
+        circuitBreaker.onFailure();
+        long delay = nextDelay();
+        return delay == NO_RETRY ? NO_RETRY : Math.max(delay, circuitBreaker.getMillisUntilProbe());
+    }
+
+    /**
+     * Records a request that succeeded but returned nothing usable, e.g. no ad available.
+     *
+     * @return Delay before the next attempt in milliseconds, or {@link #NO_RETRY}
+     */
+    public synchronized long onEmptyResponse() {
+        circuitBreaker.onSuccess();
+        return nextDelay();
+    }
+
+    /**
+     * Records a request cancelled by the caller; neither a failure nor a success.
+     */
+    public void onCancelled() {
+        circuitBreaker.onCancelled();
+    }
+
+    private long nextDelay() {
+        if (attempts >= maxAttempts) {
+            return NO_RETRY;
+        }
+        // Cap the shift; the bound reaches maxDelayMs long before 2^30
+        long bound = Math.min(maxDelayMs, initialDelayMs << Math.min(attempts, 30));
+        attempts++;
+        return (long) (random.getAsDouble() * bound);
+    }
+
+    /**
+     * @return Milliseconds until the circuit breaker allows a request, 0 if it is closed
+     */
+    public long getMillisUntilAllowed() {
+        return circuitBreaker.getMillisUntilProbe();
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public synchronized int getAttempts() {
+        return attempts;
+    }
+}
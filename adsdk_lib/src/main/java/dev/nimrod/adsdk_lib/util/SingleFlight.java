@@ -0,0 +1,133 @@
+package dev.nimrod.adsdk_lib.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collapses concurrent requests for the same key into one.
+ * The first caller for a key becomes the leader and performs the request; callers arriving while
+ * it is in flight only register their listener. When the request finishes the leader takes every
+ * registered listener with {@link #complete(Object, Cancellable)} and hands each the result.
+ * Each request carries a {@link CancellationHandle} that is cancelled once every caller has left it.
+ *
+ * @param <K> Request key, e.g. a package name
+ * @param <L> Listener type receiving the result
+ */
+public class SingleFlight<K, L> {
+    private final Map<K, Flight<L>> inFlight = new HashMap<>();
+    private long startedCount;
+    private long coalescedCount;
+
+    /**
+     * Registers a listener for the request with the given key.
+     *
+     * @param key      The request key
+     * @param listener The listener to notify when the request finishes
+     * @return true if the caller is the leader and must start the request
+     */
+    public synchronized boolean join(K key, L listener) {
+        Flight<L> flight = inFlight.get(key);
+        if (flight != null) {
+            flight.listeners.add(listener);
+            coalescedCount++;
+            return false;
+        }
+        flight = new Flight<>();
+        flight.listeners.add(listener);
+        inFlight.put(key, flight);
+        startedCount++;
+        return true;
+    }
+
+    /**
+     * The leader registers the work of its request here right after {@link #join(Object, Object)}.
+     *
+     * @param key The request key
+     * @return Handle of the request in flight, or null if none is
+     */
+    public synchronized CancellationHandle getHandle(K key) {
+        Flight<L> flight = inFlight.get(key);
+        return flight != null ? flight.handle : null;
+    }
+
+    /**
+     * Ends the request with the given key. Callers joining afterwards start a new request.
+     *
+     * @param key    The request key
+     * @param handle The handle of the finished request, so that it cannot end a newer request
+     *               started after every caller left it
+     * @return Every listener still registered for the request, the leader's first
+     */
+    public synchronized List<L> complete(K key, Cancellable handle) {
+        Flight<L> flight = inFlight.get(key);
+        if (flight == null || flight.handle != handle) {
+            return Collections.emptyList();
+        }
+        inFlight.remove(key);
+        return flight.listeners;
+    }
+
+    /**
+     * Unregisters a listener from the request in flight. The request is cancelled and ended
+     * once its last listener leaves.
+     *
+     * @param key      The request key
+     * @param listener The listener to unregister
+     * @return true if the listener was still waiting for the result
+     */
+    public boolean leave(K key, L listener) {
+        Flight<L> flight;
+        synchronized (this) {
+            flight = inFlight.get(key);
+            if (flight == null || !flight.listeners.remove(listener)) {
+                return false;
+            }
+            if (!flight.listeners.isEmpty()) {
+                return true;
+            }
+            inFlight.remove(key);
+        }
+        flight.handle.cancel();
+        return true;
+    }
+
+    /**
+     * Cancels every request in flight. Their listeners stay registered and receive the failure
+     * each request reports when cancelled.
+     */
+    public void cancelAll() {
+        List<Flight<L>> flights;
+        synchronized (this) {
+            flights = new ArrayList<>(inFlight.values());
+        }
+        for (Flight<L> flight : flights) {
+            flight.handle.cancel();
+        }
+    }
+
+    public synchronized boolean isInFlight(K key) {
+        return inFlight.containsKey(key);
+    }
+
+    /**
+     * @return Number of requests actually started
+     */
+    public synchronized long getStartedCount() {
+        return startedCount;
+    }
+
+    /**
+     * @return Number of callers that joined a request in flight instead of starting one
+     */
+    public synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    private static final class Flight<L> {
+        final List<L> listeners = new ArrayList<>(2);
+        final CancellationHandle handle = new CancellationHandle();
+    }
+}
@@ -0,0 +1,56 @@
+package dev.nimrod.adsdk_lib.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import dev.nimrod.adsdk_lib.config.AdSdkConfig;
+import dev.nimrod.adsdk_lib.model.Ad;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Response;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that the shared client keeps one pooled connection across sequential requests.
+ */
+public class AdHttpClientTest {
+    private static final int REQUEST_COUNT = 10;
+    private static final String AD_JSON = "{\"_id\":\"ad-1\",\"name\":\"Test\",\"adDetails\":{\"videoUrl\":\"v.mp4\"}}";
+
+    private MockWebServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void sequentialRequests_reuseSingleConnection() throws Exception {
+        AdHttpClient client = new AdHttpClient(new AdSdkConfig.Builder()
+                .setBaseUrl(server.url("/").toString())
+                .build());
+
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            server.enqueue(new MockResponse().setBody(AD_JSON));
+            Response<Ad> response = client.getApiService().loadRandomAd("dev.test").execute();
+            assertTrue(response.isSuccessful());
+            assertEquals("ad-1", response.body().getId());
+        }
+
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            RecordedRequest request = server.takeRequest();
+            // Sequence number is the index of the request on its connection
+            assertEquals(i, request.getSequenceNumber());
+        }
+        assertEquals(1, client.getOkHttpClient().connectionPool().connectionCount());
+    }
+}
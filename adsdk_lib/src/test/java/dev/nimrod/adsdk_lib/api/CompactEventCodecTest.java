@@ -0,0 +1,195 @@
+package dev.nimrod.adsdk_lib.api;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import dev.nimrod.adsdk_lib.model.Event;
+import dev.nimrod.adsdk_lib.model.ModelTypeAdapters;
+import dev.nimrod.adsdk_lib.model.PlaybackMetrics;
+import dev.nimrod.adsdk_lib.util.EventEnum;
+
+import static org.junit.Assert.*;
+
+public class CompactEventCodecTest {
+    private static final String[] TYPES = {"view", "click", "skip", "exit"};
+    private static final int BENCHMARK_ITERATIONS = 20_000;
+
+    private static List<Event> batch(int size) {
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Event event = new Event()
+                    .setAdId(String.format("65f1c2d3e4a5b6c7d8e9f0%02x", i / 2))
+                    .setPackageName("dev.nimrod.adsdk")
+                    .setEventType(TYPES[i % TYPES.length])
+                    .setWatchDuration(12.345f + i);
+            event.setTimestamp(String.format("2026-10-17T06:%02d:%02d.%03dZ", i / 60, i % 60, i * 7 % 1000));
+            events.add(event);
+        }
+        return events;
+    }
+
+    @Test
+    public void roundTrip_preservesEvents() throws Exception {
+        List<Event> events = batch(20);
+        Event custom = new Event().setAdId("not-hex").setEventType("quartile_custom");
+        custom.setTimestamp("2026-10-17T05:59:59.999Z");
+        events.add(custom);
+
+        List<Event> decoded = CompactEventCodec.decode(
+                CompactEventCodec.gunzip(CompactEventCodec.gzip(CompactEventCodec.encode(events))));
+
+        assertEquals(events.size(), decoded.size());
+        for (int i = 0; i < events.size(); i++) {
+            Event expected = events.get(i);
+            Event actual = decoded.get(i);
+            assertEquals(expected.getAdId(), actual.getAdId());
+            assertEquals(expected.getTimestamp(), actual.getTimestamp());
+            assertEquals(expected.getEventDetails().getPackageName(), actual.getEventDetails().getPackageName());
+            assertEquals(expected.getEventDetails().getEventType(), actual.getEventDetails().getEventType());
+            assertEquals(expected.getEventDetails().getWatchDuration(), actual.getEventDetails().getWatchDuration(), 0.001f);
+        }
+    }
+
+    @Test
+    public void compactBatch_isAtLeastFiveTimesSmallerThanJson() {
+        List<Event> events = batch(10);
+        int jsonBytes = new Gson().toJson(events).getBytes(StandardCharsets.UTF_8).length;
+        int compactBytes = CompactEventCodec.gzip(CompactEventCodec.encode(events)).length;
+
+        assertTrue("compact " + compactBytes + " vs json " + jsonBytes, compactBytes * 5 <= jsonBytes);
+    }
+
+    @Test
+    public void progressEvents_decodeWithDecoderKnowingOnlyTheFirstFourTypes() {
+        List<Event> events = batch(4);
+        String[] progress = {EventEnum.START.getValue(), EventEnum.FIRST_QUARTILE.getValue(),
+                EventEnum.MIDPOINT.getValue(), EventEnum.THIRD_QUARTILE.getValue(), EventEnum.COMPLETE.getValue()};
+        for (String type : progress) {
+            Event event = new Event().setAdId("65f1c2d3e4a5b6c7d8e9f000").setPackageName("dev.nimrod.adsdk")
+                    .setEventType(type);
+            event.setTimestamp("2026-10-17T06:01:00.000Z");
+            events.add(event);
+        }
+
+        // The reference decoder only maps the type codes of view, click, skip and exit in version 1
+        List<Event> decoded = CompactEventCodec.decode(CompactEventCodec.encode(events, CompactEventCodec.VERSION_1));
+
+        assertEquals(events.size(), decoded.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(events.get(i).getEventDetails().getEventType(), decoded.get(i).getEventDetails().getEventType());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_rejectsTypeCodesUnknownToVersionOne() {
+        // version 1, empty dictionary, one event with type code 4
+        CompactEventCodec.decode(new byte[]{1, 0, 1, 0, 0, 0, 0, 4, 0});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_rejectsUnknownVersion() {
+        CompactEventCodec.decode(new byte[]{3, 0, 0, 0});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void versionOne_rejectsPlaybackMetrics() {
+        List<Event> events = batch(2);
+        events.get(1).setPlaybackMetrics(new PlaybackMetrics(40, 200, 250, -1, 2250, 1, 500));
+        CompactEventCodec.encode(events, CompactEventCodec.VERSION_1);
+    }
+
+    @Test
+    public void versionTwo_carriesPlaybackMetricsAndProgressTypeCodes() {
+        List<Event> events = batch(3);
+        events.get(1).setEventType(EventEnum.MIDPOINT.getValue())
+                .setPlaybackMetrics(new PlaybackMetrics(40, 200, 250, -1, 2250, 1, 500));
+
+        byte[] encoded = CompactEventCodec.encode(events);
+        List<Event> decoded = CompactEventCodec.decode(encoded);
+
+        assertEquals(CompactEventCodec.VERSION_2, encoded[0]);
+        assertNull(decoded.get(0).getEventDetails().getPlaybackMetrics());
+        assertEquals(EventEnum.MIDPOINT.getValue(), decoded.get(1).getEventDetails().getEventType());
+        PlaybackMetrics metrics = decoded.get(1).getEventDetails().getPlaybackMetrics();
+        assertEquals(40, metrics.getActivityCreatedMs());
+        assertEquals(200, metrics.getPreparedMs());
+        assertEquals(250, metrics.getFirstFrameMs());
+        assertEquals(PlaybackMetrics.NOT_REACHED, metrics.getCompletedMs());
+        assertEquals(2250, metrics.getEndedMs());
+        assertEquals(1, metrics.getStallCount());
+        assertEquals(500, metrics.getStallDurationMs());
+        // The midpoint is a type code, not a dictionary entry
+        assertFalse(new String(encoded, StandardCharsets.ISO_8859_1).contains(EventEnum.MIDPOINT.getValue()));
+    }
+
+    @Test
+    public void playingTime_isEncodedExactly() {
+        List<Event> events = batch(1);
+        events.get(0).setWatchDuration(7.001f).setWatchTime(7001, 0, 0);
+
+        Event.EventDetails decoded = CompactEventCodec.decode(CompactEventCodec.encode(events)).get(0).getEventDetails();
+        assertEquals(7001, decoded.getPlayingMs());
+        assertEquals(7.001f, decoded.getWatchDuration(), 0.0001f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void versionOne_rejectsBufferingAndPausedTime() {
+        List<Event> events = batch(2);
+        events.get(0).setWatchTime(7000, 1500, 0);
+        CompactEventCodec.encode(events, CompactEventCodec.VERSION_1);
+    }
+
+    @Test
+    public void versionTwo_carriesBufferingAndPausedTime() {
+        List<Event> events = batch(2);
+        events.get(0).setWatchDuration(7f).setWatchTime(7000, 1500, 320);
+
+        Event.EventDetails decoded = CompactEventCodec.decode(CompactEventCodec.encode(events)).get(0).getEventDetails();
+        assertEquals(7000, decoded.getPlayingMs());
+        assertEquals(1500, decoded.getBufferingMs());
+        assertEquals(320, decoded.getPausedMs());
+    }
+
+    /**
+     * Compares the CPU cost of the compact body (encode + gzip) against the JSON body the
+     * same batch is sent as otherwise. Only runs with {@code -Dadsdk.benchmarks=true}
+     * ({@code -Padsdk.benchmarks=true} through Gradle).
+     */
+    @Test
+    public void benchmark_encodeVersusJson() {
+        Assume.assumeTrue(Boolean.getBoolean("adsdk.benchmarks"));
+
+        List<Event> events = batch(50);
+        Gson gson = ModelTypeAdapters.register(new GsonBuilder()).create();
+        Runnable compact = () -> {
+            for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+                CompactEventCodec.gzip(CompactEventCodec.encode(events));
+            }
+        };
+        Runnable json = () -> {
+            for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+                gson.toJson(events).getBytes(StandardCharsets.UTF_8);
+            }
+        };
+        compact.run();
+        json.run();
+
+        long compactNanos = time(compact);
+        long jsonNanos = time(json);
+        System.out.printf("%d-event batch: compact+gzip %d us, JSON %d us%n", events.size(),
+                compactNanos / 1000 / BENCHMARK_ITERATIONS, jsonNanos / 1000 / BENCHMARK_ITERATIONS);
+    }
+
+    private static long time(Runnable work) {
+        long start = System.nanoTime();
+        work.run();
+        return System.nanoTime() - start;
+    }
+}
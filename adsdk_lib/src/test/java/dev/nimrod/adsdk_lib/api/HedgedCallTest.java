@@ -0,0 +1,159 @@
+package dev.nimrod.adsdk_lib.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import dev.nimrod.adsdk_lib.config.AdSdkConfig;
+import dev.nimrod.adsdk_lib.model.Ad;
+import dev.nimrod.adsdk_lib.util.Cancellable;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+import static org.junit.Assert.*;
+
+public class HedgedCallTest {
+    private static final long HEDGE_DELAY_MS = 100;
+
+    private MockWebServer slow;
+    private MockWebServer fast;
+    private AdHttpClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        slow = new MockWebServer();
+        fast = new MockWebServer();
+        slow.start();
+        fast.start();
+        client = new AdHttpClient(new AdSdkConfig.Builder()
+                .setBaseUrl(slow.url("/").toString())
+                .setMirrorBaseUrls(Arrays.asList(fast.url("/").toString()))
+                .setHedgeDelayMs(HEDGE_DELAY_MS)
+                .build());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        slow.shutdown();
+        fast.shutdown();
+    }
+
+    private static MockResponse ad(String id, long delayMs) {
+        return new MockResponse()
+                .setBody("{\"_id\":\"" + id + "\",\"name\":\"Ad\"}")
+                .setBodyDelay(delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private Response<Ad> loadRandomAd() throws Exception {
+        CompletableFuture<Response<Ad>> result = new CompletableFuture<>();
+        client.enqueueHedged(api -> api.loadRandomAd("dev.test"), new Callback<Ad>() {
+            @Override
+            public void onResponse(Call<Ad> call, Response<Ad> response) {
+                result.complete(response);
+            }
+
+            @Override
+            public void onFailure(Call<Ad> call, Throwable throwable) {
+                result.completeExceptionally(throwable);
+            }
+        });
+        return result.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void slowEndpoint_isHedgedAndLoses() throws Exception {
+        slow.enqueue(ad("slow", 2000));
+        fast.enqueue(ad("fast", 0));
+
+        long start = System.nanoTime();
+        Response<Ad> response = loadRandomAd();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals("fast", response.body().getId());
+        assertEquals(1, slow.getRequestCount());
+        assertEquals(1, fast.getRequestCount());
+        assertTrue("took " + elapsedMs + "ms", elapsedMs < 1500);
+    }
+
+    @Test
+    public void fasterEndpoint_isRankedFirstAndNotHedged() throws Exception {
+        slow.enqueue(ad("slow", 2000));
+        fast.enqueue(ad("fast", 0));
+        loadRandomAd();
+
+        fast.enqueue(ad("fast2", 0));
+        assertEquals("fast2", loadRandomAd().body().getId());
+
+        assertEquals(fast.url("/").toString(), client.getRankedEndpoints().get(0).getBaseUrl());
+        assertEquals(1, slow.getRequestCount());
+        assertEquals(2, fast.getRequestCount());
+    }
+
+    @Test
+    public void failedEndpoint_failsOverImmediately() throws Exception {
+        slow.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+        fast.enqueue(ad("fast", 0));
+
+        assertEquals("fast", loadRandomAd().body().getId());
+    }
+
+    @Test
+    public void serverErrorEverywhere_isReported() throws Exception {
+        slow.enqueue(new MockResponse().setResponseCode(503));
+        fast.enqueue(new MockResponse().setResponseCode(503));
+
+        assertEquals(503, loadRandomAd().code());
+    }
+
+    @Test
+    public void percentile_needsEnoughSamples() {
+        AdEndpoint endpoint = new AdEndpoint("https://a.test/", null);
+        for (int i = 1; i < 20; i++) {
+            endpoint.recordSuccess(i * 10);
+        }
+        assertEquals(-1, endpoint.getLatencyPercentile(0.95));
+
+        for (int i = 20; i <= 100; i++) {
+            endpoint.recordSuccess(i * 10);
+        }
+        // Window keeps the last 64 samples: 370..1000 ms
+        assertEquals(970, endpoint.getLatencyPercentile(0.95));
+    }
+
+    @Test
+    public void cancel_stopsEveryAttemptAndReportsFailure() throws Exception {
+        slow.enqueue(ad("slow", 2000));
+        fast.enqueue(ad("fast", 2000));
+        CompletableFuture<Throwable> failure = new CompletableFuture<>();
+
+        Cancellable call = client.enqueueHedged(api -> api.loadRandomAd("dev.test"), new Callback<Ad>() {
+            @Override
+            public void onResponse(Call<Ad> call, Response<Ad> response) {
+                failure.completeExceptionally(new AssertionError("answered after cancel"));
+            }
+
+            @Override
+            public void onFailure(Call<Ad> call, Throwable throwable) {
+                failure.complete(throwable);
+            }
+        });
+        fast.takeRequest();
+        call.cancel();
+
+        assertNotNull(failure.get(1, TimeUnit.SECONDS));
+        // The dispatcher drops a call right after its callback returns
+        long deadline = System.currentTimeMillis() + 1000;
+        while (client.getInFlightCallCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, client.getInFlightCallCount());
+    }
+}
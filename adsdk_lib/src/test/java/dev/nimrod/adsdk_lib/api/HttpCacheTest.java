@@ -0,0 +1,105 @@
+package dev.nimrod.adsdk_lib.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import dev.nimrod.adsdk_lib.config.AdSdkConfig;
+import dev.nimrod.adsdk_lib.model.Ad;
+import okhttp3.CacheControl;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.*;
+
+public class HttpCacheTest {
+    private static final String AD = "{\"_id\":\"ad1\",\"name\":\"Ad\"}";
+
+    private MockWebServer server;
+    private AdHttpClient client;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        client = new AdHttpClient(new AdSdkConfig.Builder()
+                .setBaseUrl(server.url("/").toString())
+                .build(), folder.newFolder());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    private Ad loadRandomAd() throws Exception {
+        return client.getApiService().loadRandomAd("dev.test").execute().body();
+    }
+
+    @Test
+    public void freshResponse_isServedFromDisk() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "max-age=60").setBody(AD));
+
+        assertEquals("ad1", loadRandomAd().getId());
+        assertEquals("ad1", loadRandomAd().getId());
+
+        assertEquals(1, server.getRequestCount());
+        HttpCacheStats stats = client.getHttpCacheStats();
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(0, stats.getRevalidationCount());
+    }
+
+    @Test
+    public void staleResponse_isRevalidatedWithETag() throws Exception {
+        server.enqueue(new MockResponse()
+                .setHeader("Cache-Control", "no-cache")
+                .setHeader("ETag", "\"v1\"")
+                .setBody(AD));
+        server.enqueue(new MockResponse().setResponseCode(304));
+
+        assertEquals("ad1", loadRandomAd().getId());
+        assertEquals("ad1", loadRandomAd().getId());
+
+        server.takeRequest();
+        assertEquals("\"v1\"", server.takeRequest().getHeader("If-None-Match"));
+        HttpCacheStats stats = client.getHttpCacheStats();
+        assertEquals(0, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(1, stats.getRevalidationCount());
+        assertEquals(1, stats.getNotModifiedCount());
+        assertEquals(0.5, stats.getHitRate(), 0.001);
+    }
+
+    @Test
+    public void noStoreRequest_bypassesCacheAndStats() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "max-age=60").setBody("video"));
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "max-age=60").setBody("video"));
+        Request request = new Request.Builder()
+                .url(server.url("/video.mp4"))
+                .cacheControl(new CacheControl.Builder().noStore().build())
+                .build();
+
+        for (int i = 0; i < 2; i++) {
+            try (Response response = client.getOkHttpClient().newCall(request).execute()) {
+                assertEquals("video", response.body().string());
+            }
+        }
+
+        assertEquals(2, server.getRequestCount());
+        assertEquals(0, client.getHttpCacheStats().getMissCount());
+        assertEquals(0, client.getHttpCacheStats().getSize());
+    }
+
+    @Test
+    public void clientWithoutDirectory_hasNoCache() {
+        assertNull(new AdHttpClient(AdSdkConfig.defaults()).getHttpCacheStats());
+    }
+}
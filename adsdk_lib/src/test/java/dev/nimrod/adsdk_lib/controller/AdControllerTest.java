@@ -0,0 +1,199 @@
+package dev.nimrod.adsdk_lib.controller;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import dev.nimrod.adsdk_lib.api.AdHttpClient;
+import dev.nimrod.adsdk_lib.callback.AdCallback;
+import dev.nimrod.adsdk_lib.config.AdSdkConfig;
+import dev.nimrod.adsdk_lib.model.Ad;
+import dev.nimrod.adsdk_lib.util.Cancellable;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.*;
+
+public class AdControllerTest {
+    private static final String AD = "{\"_id\":\"ad1\",\"name\":\"Ad\",\"adDetails\":{\"videoUrl\":\"https://cdn.test/v.mp4\"}}";
+
+    private MockWebServer server;
+    private AdHttpClient client;
+    private AdController controller;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        client = new AdHttpClient(new AdSdkConfig.Builder()
+                .setBaseUrl(server.url("/").toString())
+                .build());
+        controller = new AdController(client);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    private static AdCallback collect(List<Ad> ads, CountDownLatch done) {
+        return collect(ads, new CopyOnWriteArrayList<>(), done);
+    }
+
+    private static AdCallback collect(List<Ad> ads, List<String> errors, CountDownLatch done) {
+        return new AdCallback() {
+            @Override
+            public void onAdAvailable(Ad ad) {
+                ads.add(ad);
+                done.countDown();
+            }
+
+            @Override
+            public void onAdFinished() {
+            }
+
+            @Override
+            public void onAdSkipped() {
+            }
+
+            @Override
+            public void onAdExited() {
+            }
+
+            @Override
+            public void onNoAvailable(Ad ad) {
+                done.countDown();
+            }
+
+            @Override
+            public void onError(String message) {
+                errors.add(message);
+                done.countDown();
+            }
+        };
+    }
+
+    @Test
+    public void concurrentRequests_forSamePackage_shareOneCall() throws Exception {
+        server.enqueue(new MockResponse().setBody(AD).setHeadersDelay(200, TimeUnit.MILLISECONDS));
+        List<Ad> ads = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+
+        for (int i = 0; i < 3; i++) {
+            controller.initRandomAd("dev.test", collect(ads, done));
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, server.getRequestCount());
+        assertEquals(3, ads.size());
+        assertSame(ads.get(0), ads.get(2));
+        assertEquals(1, controller.getAdRequestCount());
+        assertEquals(2, controller.getCoalescedAdRequestCount());
+    }
+
+    @Test
+    public void differentPackages_areNotCoalesced() throws Exception {
+        server.enqueue(new MockResponse().setBody(AD).setHeadersDelay(200, TimeUnit.MILLISECONDS));
+        server.enqueue(new MockResponse().setBody(AD).setHeadersDelay(200, TimeUnit.MILLISECONDS));
+        List<Ad> ads = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(2);
+
+        controller.initRandomAd("dev.one", collect(ads, done));
+        controller.initRandomAd("dev.two", collect(ads, done));
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, server.getRequestCount());
+        assertEquals(0, controller.getCoalescedAdRequestCount());
+    }
+
+    @Test
+    public void requestAfterCompletion_startsNewCall() throws Exception {
+        server.enqueue(new MockResponse().setBody(AD));
+        server.enqueue(new MockResponse().setBody(AD));
+        List<Ad> ads = new CopyOnWriteArrayList<>();
+
+        CountDownLatch first = new CountDownLatch(1);
+        controller.initRandomAd("dev.test", collect(ads, first));
+        assertTrue(first.await(5, TimeUnit.SECONDS));
+        CountDownLatch second = new CountDownLatch(1);
+        controller.initRandomAd("dev.test", collect(ads, second));
+        assertTrue(second.await(5, TimeUnit.SECONDS));
+
+        assertEquals(2, server.getRequestCount());
+        assertEquals(2, controller.getAdRequestCount());
+    }
+
+    private void awaitNoCallInFlight() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (client.getInFlightCallCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, client.getInFlightCallCount());
+    }
+
+    @Test
+    public void withdrawingOneCaller_keepsTheSharedCall() throws Exception {
+        server.enqueue(new MockResponse().setBody(AD).setHeadersDelay(200, TimeUnit.MILLISECONDS));
+        List<Ad> ads = new CopyOnWriteArrayList<>();
+        List<String> errors = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(2);
+
+        Cancellable first = controller.initRandomAd("dev.test", collect(ads, errors, done));
+        controller.initRandomAd("dev.test", collect(ads, errors, done));
+        first.cancel();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, ads.size());
+        assertEquals(1, errors.size());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void withdrawingEveryCaller_cancelsTheCall() throws Exception {
+        server.enqueue(new MockResponse().setBody(AD).setHeadersDelay(5, TimeUnit.SECONDS));
+        List<Ad> ads = new CopyOnWriteArrayList<>();
+        List<String> errors = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(2);
+
+        Cancellable first = controller.initRandomAd("dev.test", collect(ads, errors, done));
+        Cancellable second = controller.initRandomAd("dev.test", collect(ads, errors, done));
+        server.takeRequest();
+        first.cancel();
+        second.cancel();
+
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertEquals(2, errors.size());
+        awaitNoCallInFlight();
+        assertTrue(ads.isEmpty());
+        assertEquals(1, controller.getAdRequestCount());
+    }
+
+    @Test
+    public void cancelAdRequests_failsWaitingCallers() throws Exception {
+        server.enqueue(new MockResponse().setBody(AD).setHeadersDelay(5, TimeUnit.SECONDS));
+        server.enqueue(new MockResponse().setBody(AD));
+        List<Ad> ads = new CopyOnWriteArrayList<>();
+        List<String> errors = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(2);
+
+        controller.initRandomAd("dev.test", collect(ads, errors, done));
+        controller.initRandomAd("dev.test", collect(ads, errors, done));
+        server.takeRequest();
+        controller.cancelAdRequests();
+
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertEquals(2, errors.size());
+        awaitNoCallInFlight();
+
+        // The key is free again once the cancelled call reported
+        CountDownLatch next = new CountDownLatch(1);
+        controller.initRandomAd("dev.test", collect(ads, next));
+        assertTrue(next.await(5, TimeUnit.SECONDS));
+        assertEquals(1, ads.size());
+    }
+}
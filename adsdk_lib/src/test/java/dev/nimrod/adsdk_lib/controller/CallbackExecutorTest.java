@@ -0,0 +1,164 @@
+package dev.nimrod.adsdk_lib.controller;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dev.nimrod.adsdk_lib.api.AdHttpClient;
+import dev.nimrod.adsdk_lib.callback.AdCallback;
+import dev.nimrod.adsdk_lib.callback.AdListCallback;
+import dev.nimrod.adsdk_lib.callback.DispatchingAdCallback;
+import dev.nimrod.adsdk_lib.config.AdSdkConfig;
+import dev.nimrod.adsdk_lib.model.Ad;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.*;
+
+public class CallbackExecutorTest {
+    private static final int AD_COUNT = 20_000;
+
+    private MockWebServer server;
+    private ExecutorService network;
+    private final Set<Thread> networkThreads = ConcurrentHashMap.newKeySet();
+    private ExecutorService main;
+    private Thread mainThread;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        network = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable);
+            networkThreads.add(thread);
+            return thread;
+        });
+        // Stands in for the app's main thread
+        main = Executors.newSingleThreadExecutor(runnable -> {
+            mainThread = new Thread(runnable, "test-main");
+            return mainThread;
+        });
+        main.submit(() -> { }).get();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+        network.shutdownNow();
+        main.shutdownNow();
+    }
+
+    private static String batchJson() {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < AD_COUNT; i++) {
+            body.append(i == 0 ? "" : ",")
+                    .append("{\"_id\":\"ad").append(i).append("\",\"name\":\"Ad ").append(i)
+                    .append("\",\"adDetails\":{\"videoUrl\":\"https://cdn.test/").append(i)
+                    .append(".mp4\",\"skipTime\":5,\"exitTime\":10}}");
+        }
+        return body.append(']').toString();
+    }
+
+    private static boolean isParsing(StackTraceElement[] stack) {
+        for (StackTraceElement frame : stack) {
+            if (frame.getClassName().startsWith("dev.nimrod.adsdk_lib.model.ModelTypeAdapters")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void parsing_neverRunsOnMainThread() throws Exception {
+        server.enqueue(new MockResponse().setBody(batchJson()));
+        AdController controller = new AdController(new AdHttpClient(new AdSdkConfig.Builder()
+                .setBaseUrl(server.url("/").toString())
+                .setNetworkExecutor(network)
+                .setCallbackExecutor(main)
+                .build()));
+
+        // Samples the stacks of the main and network threads while the response is parsed
+        AtomicBoolean sampling = new AtomicBoolean(true);
+        AtomicInteger mainParseSamples = new AtomicInteger();
+        AtomicInteger networkParseSamples = new AtomicInteger();
+        Thread sampler = new Thread(() -> {
+            while (sampling.get()) {
+                Thread.getAllStackTraces().forEach((thread, stack) -> {
+                    if (thread == mainThread && isParsing(stack)) {
+                        mainParseSamples.incrementAndGet();
+                    } else if (networkThreads.contains(thread) && isParsing(stack)) {
+                        networkParseSamples.incrementAndGet();
+                    }
+                });
+            }
+        });
+        sampler.start();
+
+        CompletableFuture<Thread> deliveredOn = new CompletableFuture<>();
+        CompletableFuture<Thread> handledOn = new CompletableFuture<>();
+        AdCallback app = DispatchingAdCallback.wrap(new AdCallback() {
+            @Override
+            public void onAdAvailable(Ad ad) {
+                deliveredOn.complete(Thread.currentThread());
+            }
+
+            @Override
+            public void onAdFinished() {
+            }
+
+            @Override
+            public void onAdSkipped() {
+            }
+
+            @Override
+            public void onAdExited() {
+            }
+
+            @Override
+            public void onNoAvailable(Ad ad) {
+                deliveredOn.completeExceptionally(new AssertionError("no ad"));
+            }
+
+            @Override
+            public void onError(String message) {
+                deliveredOn.completeExceptionally(new AssertionError(message));
+            }
+        }, controller.getCallbackExecutor());
+        controller.loadAds("dev.test", AD_COUNT, new AdListCallback() {
+            @Override
+            public void onAdsAvailable(List<Ad> ads) {
+                handledOn.complete(Thread.currentThread());
+                app.onAdAvailable(ads.get(0));
+            }
+
+            @Override
+            public void onNoAvailable() {
+                app.onNoAvailable(null);
+            }
+
+            @Override
+            public void onError(String message) {
+                app.onError(message);
+            }
+        });
+
+        Thread delivered = deliveredOn.get(10, TimeUnit.SECONDS);
+        sampling.set(false);
+        sampler.join();
+
+        assertSame(mainThread, delivered);
+        assertTrue(networkThreads.contains(handledOn.get()));
+        assertTrue("sampler never saw parsing", networkParseSamples.get() > 0);
+        assertEquals(0, mainParseSamples.get());
+    }
+}
@@ -0,0 +1,281 @@
+package dev.nimrod.adsdk_lib.controller;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import dev.nimrod.adsdk_lib.api.AdHttpClient;
+import dev.nimrod.adsdk_lib.api.CompactEventCodec;
+import dev.nimrod.adsdk_lib.api.EventEncodingNegotiator;
+import dev.nimrod.adsdk_lib.config.AdSdkConfig;
+import dev.nimrod.adsdk_lib.model.Event;
+import dev.nimrod.adsdk_lib.model.PlaybackMetrics;
+import dev.nimrod.adsdk_lib.storage.EventLog;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+public class EventBatcherTest {
+    private MockWebServer server;
+    private ScheduledExecutorService scheduler;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    private AdHttpClient client(int maxBatchSize, long maxBatchAgeMs) {
+        return new AdHttpClient(new AdSdkConfig.Builder()
+                .setBaseUrl(server.url("/").toString())
+                .setMaxEventBatchSize(maxBatchSize)
+                .setMaxEventBatchAgeMs(maxBatchAgeMs)
+                .build());
+    }
+
+    private AdHttpClient fastRetryClient(boolean batching) {
+        return new AdHttpClient(new AdSdkConfig.Builder()
+                .setBaseUrl(server.url("/").toString())
+                .setEventBatchingEnabled(batching)
+                .setMaxEventBatchSize(2)
+                .setMaxEventBatchAgeMs(60_000)
+                .setRetryInitialDelayMs(50)
+                .setRetryMaxDelayMs(100)
+                .build());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        scheduler.shutdownNow();
+        server.shutdown();
+    }
+
+    private static Event event(String type) {
+        return new Event().setAdId("ad-1").setPackageName("dev.test").setEventType(type);
+    }
+
+    @Test
+    public void sizeLimit_flushesOneBatchRequest() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200));
+        EventBatcher batcher = new EventBatcher(client(3, 60_000), scheduler, null);
+
+        batcher.enqueue(event("view"));
+        batcher.enqueue(event("click"));
+        assertNull(server.takeRequest(200, TimeUnit.MILLISECONDS));
+        batcher.enqueue(event("exit"));
+
+        RecordedRequest request = server.takeRequest(5, TimeUnit.SECONDS);
+        assertEquals("/ad_event/batch", request.getPath());
+        JsonArray body = JsonParser.parseString(request.getBody().readUtf8()).getAsJsonArray();
+        assertEquals(3, body.size());
+        assertEquals("view", body.get(0).getAsJsonObject()
+                .getAsJsonObject("eventDetails").get("eventType").getAsString());
+        assertEquals(0, batcher.getPendingCount());
+    }
+
+    @Test
+    public void ageLimit_flushesPartialBatch() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200));
+        EventBatcher batcher = new EventBatcher(client(10, 100), scheduler, null);
+
+        batcher.enqueue(event("view"));
+
+        RecordedRequest request = server.takeRequest(5, TimeUnit.SECONDS);
+        assertEquals("/ad_event/batch", request.getPath());
+        assertEquals(1, JsonParser.parseString(request.getBody().readUtf8()).getAsJsonArray().size());
+    }
+
+    @Test
+    public void durableLog_replaysEventsAfterServerError() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(200));
+        EventLog log = new EventLog(folder.newFolder(), 64 * 1024, 4);
+        EventBatcher batcher = new EventBatcher(client(2, 60_000), scheduler, log);
+
+        batcher.enqueue(event("view"));
+        batcher.enqueue(event("click"));
+        server.takeRequest(5, TimeUnit.SECONDS);
+        assertEquals(2, batcher.getPendingCount());
+
+        // Flushes are skipped while the failed batch is still completing
+        RecordedRequest retry = null;
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (retry == null && System.currentTimeMillis() < deadline) {
+            batcher.flush();
+            retry = server.takeRequest(50, TimeUnit.MILLISECONDS);
+        }
+        JsonArray body = JsonParser.parseString(retry.getBody().readUtf8()).getAsJsonArray();
+        assertEquals(2, body.size());
+        assertEquals("view", body.get(0).getAsJsonObject()
+                .getAsJsonObject("eventDetails").get("eventType").getAsString());
+        waitForPending(batcher, 0);
+        log.close();
+    }
+
+    private static void waitForPending(EventBatcher batcher, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (batcher.getPendingCount() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, batcher.getPendingCount());
+    }
+
+    @Test
+    public void advertisedCompactEncoding_isUsedAndFallsBackToJsonOnRejection() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200)
+                .setHeader(EventEncodingNegotiator.HEADER, EventEncodingNegotiator.COMPACT_V1));
+        server.enqueue(new MockResponse().setResponseCode(200));
+        server.enqueue(new MockResponse().setResponseCode(415));
+        server.enqueue(new MockResponse().setResponseCode(200));
+        AdHttpClient client = client(2, 60_000);
+        EventBatcher batcher = new EventBatcher(client, scheduler, null);
+
+        batcher.enqueue(event("view"));
+        batcher.enqueue(event("click"));
+        RecordedRequest first = server.takeRequest(5, TimeUnit.SECONDS);
+        assertTrue(first.getHeader("Content-Type").startsWith("application/json"));
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!client.getEventEncodingNegotiator().useCompactEncoding() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        batcher.enqueue(event("view"));
+        batcher.enqueue(event("exit"));
+        RecordedRequest compact = server.takeRequest(5, TimeUnit.SECONDS);
+        assertEquals(CompactEventCodec.MEDIA_TYPE, compact.getHeader("Content-Type"));
+        List<Event> decoded = CompactEventCodec.decode(compact.getBody().readByteArray());
+        assertEquals("exit", decoded.get(1).getEventDetails().getEventType());
+
+        batcher.enqueue(event("view"));
+        batcher.enqueue(event("click"));
+        assertEquals(CompactEventCodec.MEDIA_TYPE, server.takeRequest(5, TimeUnit.SECONDS).getHeader("Content-Type"));
+        RecordedRequest retried = server.takeRequest(5, TimeUnit.SECONDS);
+        assertTrue(retried.getHeader("Content-Type").startsWith("application/json"));
+    }
+
+    @Test
+    public void compactV2_sendsPlaybackMetricsThatV1SendsAsJson() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200)
+                .setHeader(EventEncodingNegotiator.HEADER, EventEncodingNegotiator.COMPACT_V1));
+        server.enqueue(new MockResponse().setResponseCode(200)
+                .setHeader(EventEncodingNegotiator.HEADER, EventEncodingNegotiator.COMPACT_V1 + ", "
+                        + EventEncodingNegotiator.COMPACT_V2));
+        server.enqueue(new MockResponse().setResponseCode(200));
+        AdHttpClient client = client(1, 60_000);
+        EventBatcher batcher = new EventBatcher(client, scheduler, null);
+        PlaybackMetrics metrics = new PlaybackMetrics(40, 200, 250, 2200, 2250, 0, 0);
+
+        batcher.enqueue(event("view"));
+        server.takeRequest(5, TimeUnit.SECONDS);
+        awaitCompactVersion(client, CompactEventCodec.VERSION_1);
+        batcher.enqueue(event("exit").setPlaybackMetrics(metrics));
+        assertTrue(server.takeRequest(5, TimeUnit.SECONDS).getHeader("Content-Type").startsWith("application/json"));
+
+        awaitCompactVersion(client, CompactEventCodec.VERSION_2);
+        batcher.enqueue(event("exit").setPlaybackMetrics(metrics));
+        RecordedRequest compact = server.takeRequest(5, TimeUnit.SECONDS);
+        assertEquals(CompactEventCodec.MEDIA_TYPE, compact.getHeader("Content-Type"));
+        Event decoded = CompactEventCodec.decode(compact.getBody().readByteArray()).get(0);
+        assertEquals(250, decoded.getEventDetails().getPlaybackMetrics().getFirstFrameMs());
+    }
+
+    private static void awaitCompactVersion(AdHttpClient client, int version) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (client.getEventEncodingNegotiator().getCompactVersion() != version
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(version, client.getEventEncodingNegotiator().getCompactVersion());
+    }
+
+    @Test
+    public void unsupportedBatchEndpoint_fallsBackToSingleEvents() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(404));
+        server.enqueue(new MockResponse().setResponseCode(200));
+        server.enqueue(new MockResponse().setResponseCode(200));
+        EventBatcher batcher = new EventBatcher(client(2, 60_000), scheduler, null);
+
+        batcher.enqueue(event("view"));
+        batcher.enqueue(event("click"));
+
+        assertEquals("/ad_event/batch", server.takeRequest(5, TimeUnit.SECONDS).getPath());
+        assertEquals("/ad_event", server.takeRequest(5, TimeUnit.SECONDS).getPath());
+        assertEquals("/ad_event", server.takeRequest(5, TimeUnit.SECONDS).getPath());
+    }
+
+    @Test
+    public void durableLog_skipsRecordsThatCannotBeDecoded() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200));
+        EventLog log = new EventLog(folder.newFolder(), 64 * 1024, 4);
+        log.append("{\"adId\":".getBytes(StandardCharsets.UTF_8));
+        log.append("null".getBytes(StandardCharsets.UTF_8));
+        EventBatcher batcher = new EventBatcher(client(2, 60_000), scheduler, log);
+
+        batcher.enqueue(event("view"));
+        batcher.enqueue(event("click"));
+
+        RecordedRequest request = server.takeRequest(5, TimeUnit.SECONDS);
+        assertNotNull(request);
+        JsonArray body = JsonParser.parseString(request.getBody().readUtf8()).getAsJsonArray();
+        assertEquals(2, body.size());
+        assertEquals("view", body.get(0).getAsJsonObject()
+                .getAsJsonObject("eventDetails").get("eventType").getAsString());
+        waitForPending(batcher, 0);
+        log.close();
+    }
+
+    @Test
+    public void durableLog_retriesFailedBatchWithoutNewTrigger() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(200));
+        EventLog log = new EventLog(folder.newFolder(), 64 * 1024, 4);
+        EventBatcher batcher = new EventBatcher(fastRetryClient(true), scheduler, log);
+
+        batcher.enqueue(event("view"));
+        batcher.enqueue(event("click"));
+
+        // No further enqueue or flush: the backoff alone resends the batch
+        assertNotNull(server.takeRequest(5, TimeUnit.SECONDS));
+        RecordedRequest retry = server.takeRequest(5, TimeUnit.SECONDS);
+        assertNotNull(retry);
+        assertEquals(2, JsonParser.parseString(retry.getBody().readUtf8()).getAsJsonArray().size());
+        waitForPending(batcher, 0);
+        log.close();
+    }
+
+    @Test
+    public void batchingDisabled_stillDeliversThroughTheLog() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(200));
+        EventLog log = new EventLog(folder.newFolder(), 64 * 1024, 4);
+        EventBatcher batcher = new EventBatcher(fastRetryClient(false), scheduler, log);
+
+        batcher.enqueue(event("view"));
+
+        assertEquals("/ad_event", server.takeRequest(5, TimeUnit.SECONDS).getPath());
+        RecordedRequest retry = server.takeRequest(5, TimeUnit.SECONDS);
+        assertNotNull(retry);
+        assertEquals("/ad_event", retry.getPath());
+        assertEquals("view", JsonParser.parseString(retry.getBody().readUtf8()).getAsJsonObject()
+                .getAsJsonObject("eventDetails").get("eventType").getAsString());
+        waitForPending(batcher, 0);
+        log.close();
+    }
+}
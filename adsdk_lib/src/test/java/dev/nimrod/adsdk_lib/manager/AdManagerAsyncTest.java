@@ -0,0 +1,206 @@
+package dev.nimrod.adsdk_lib.manager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import dev.nimrod.adsdk_lib.api.AdHttpClient;
+import dev.nimrod.adsdk_lib.config.AdSdkConfig;
+import dev.nimrod.adsdk_lib.controller.AdController;
+import dev.nimrod.adsdk_lib.model.Ad;
+import dev.nimrod.adsdk_lib.util.EventEnum;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.*;
+
+public class AdManagerAsyncTest {
+    private MockWebServer server;
+    private AdHttpClient client;
+    private AdManager manager;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        client = new AdHttpClient(new AdSdkConfig.Builder()
+                .setBaseUrl(server.url("/").toString())
+                .setEventBatchingEnabled(false)
+                .build());
+        AdController controller = new AdController(client);
+        AdPreloadManager preloadManager = new AdPreloadManager(controller,
+                new AdPreloadPool(1, 60_000, System::currentTimeMillis));
+        manager = new AdManager(controller, preloadManager, System::currentTimeMillis);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    private void initialize() {
+        // Paused so that no background preload competes with the request under test
+        manager.getPreloadManager().pause();
+        manager.setPackageName("dev.test");
+    }
+
+    /**
+     * A response that outlasts the tests' timeouts but ends before the server's 5 s shutdown wait.
+     */
+    private static MockResponse slowAd() {
+        return ad("slow").setBodyDelay(3, TimeUnit.SECONDS);
+    }
+
+    private static MockResponse ad(String id) {
+        return new MockResponse().setBody("{\"_id\":\"" + id + "\",\"name\":\"Ad\"}");
+    }
+
+    private static MockResponse preload(String id) {
+        return new MockResponse().setBody("[{\"_id\":\"" + id + "\",\"name\":\"Ad\"}]");
+    }
+
+    private void awaitNoCallsInFlight() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (client.getInFlightCallCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, client.getInFlightCallCount());
+    }
+
+    private static Throwable failureOf(CompletableFuture<?> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+        throw new AssertionError("future did not fail");
+    }
+
+    @Test
+    public void loadAdAsync_completesWithLoadedAd() throws Exception {
+        initialize();
+        server.enqueue(ad("a1"));
+
+        Ad ad = manager.loadAdAsync(0).get(5, TimeUnit.SECONDS);
+
+        assertEquals("a1", ad.getId());
+        assertEquals(AdState.LOADED, manager.getState());
+    }
+
+    @Test
+    public void loadAdAsync_reportsNoFill() throws Exception {
+        initialize();
+        server.enqueue(new MockResponse().setResponseCode(204));
+
+        assertTrue(failureOf(manager.loadAdAsync(0)) instanceof AdLoadException);
+        assertEquals(AdState.IDLE, manager.getState());
+    }
+
+    @Test
+    public void loadAdAsync_failsBeforeInit() throws Exception {
+        assertTrue(failureOf(manager.loadAdAsync(0)) instanceof AdLoadException);
+        assertEquals(0, server.getRequestCount());
+    }
+
+    @Test
+    public void loadAdAsync_joinsPreloadInFlight() throws Exception {
+        server.enqueue(preload("preloaded").setBodyDelay(300, TimeUnit.MILLISECONDS));
+        // A request of its own would get no fill
+        server.enqueue(new MockResponse().setResponseCode(204));
+        manager.setPackageName("dev.test");
+
+        Ad ad = manager.loadAdAsync(0).get(5, TimeUnit.SECONDS);
+
+        assertEquals("preloaded", ad.getId());
+    }
+
+    @Test
+    public void cancellingJoinedLoad_keepsThePreloadRunning() throws Exception {
+        server.enqueue(preload("preloaded").setBodyDelay(300, TimeUnit.MILLISECONDS));
+        server.enqueue(new MockResponse().setResponseCode(204));
+        manager.setPackageName("dev.test");
+
+        CompletableFuture<Ad> future = manager.loadAdAsync(0);
+        assertTrue(future.cancel(true));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (manager.getPreloadManager().getPreloadedAdCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("preloaded", manager.getPreloadManager().peekPreloadedAd().getId());
+        assertEquals(AdState.IDLE, manager.getState());
+    }
+
+    @Test
+    public void cancel_cancelsHttpCall() throws Exception {
+        initialize();
+        server.enqueue(slowAd());
+
+        CompletableFuture<Ad> future = manager.loadAdAsync(0);
+        server.takeRequest();
+        assertTrue(future.cancel(true));
+
+        awaitNoCallsInFlight();
+        assertEquals(AdState.IDLE, manager.getState());
+    }
+
+    @Test
+    public void timeout_failsAndCancelsHttpCall() throws Exception {
+        initialize();
+        server.enqueue(slowAd());
+
+        long start = System.nanoTime();
+        Throwable failure = failureOf(manager.loadAdAsync(200));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(failure instanceof TimeoutException);
+        assertTrue("took " + elapsedMs + "ms", elapsedMs < 2000);
+        awaitNoCallsInFlight();
+    }
+
+    @Test
+    public void showAdAsync_completesWithOutcome() throws Exception {
+        manager.setLoadedAd(new Ad().setId("a1"));
+
+        CompletableFuture<AdState> outcome = manager.showAdAsync(null, 0);
+        assertEquals(AdState.SHOWING, manager.getState());
+        assertFalse(outcome.isDone());
+
+        manager.finishAd(AdState.SKIPPED, EventEnum.SKIP);
+        assertEquals(AdState.SKIPPED, outcome.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void showAdAsync_loadsAdFirst() throws Exception {
+        initialize();
+        server.enqueue(ad("a1"));
+
+        CompletableFuture<AdState> outcome = manager.showAdAsync(null, 0);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (manager.getState() != AdState.SHOWING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("a1", manager.getCurrentAd().getId());
+
+        manager.finishAd(AdState.COMPLETED, EventEnum.VIEW);
+        assertEquals(AdState.COMPLETED, outcome.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void showAdAsync_cancelDuringLoad_cancelsHttpCall() throws Exception {
+        initialize();
+        server.enqueue(slowAd());
+
+        CompletableFuture<AdState> outcome = manager.showAdAsync(null, 0);
+        server.takeRequest();
+        outcome.cancel(true);
+
+        awaitNoCallsInFlight();
+        assertEquals(AdState.IDLE, manager.getState());
+    }
+}
@@ -0,0 +1,269 @@
+package dev.nimrod.adsdk_lib.manager;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import dev.nimrod.adsdk_lib.api.AdHttpClient;
+import dev.nimrod.adsdk_lib.callback.AdCallback;
+import dev.nimrod.adsdk_lib.config.AdSdkConfig;
+import dev.nimrod.adsdk_lib.controller.AdController;
+import dev.nimrod.adsdk_lib.model.Ad;
+import dev.nimrod.adsdk_lib.player.PlaybackProgressTracker;
+import dev.nimrod.adsdk_lib.util.EventEnum;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+public class AdManagerStateTest {
+    private MockWebServer server;
+    private AdManager manager;
+    private final AtomicLong clock = new AtomicLong(1000);
+    private final AtomicInteger terminalCallbacks = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        AdController controller = new AdController(new AdHttpClient(new AdSdkConfig.Builder()
+                .setBaseUrl(server.url("/").toString())
+                .setEventBatchingEnabled(false)
+                .build()));
+        manager = new AdManager(controller,
+                new AdPreloadManager(controller, new AdPreloadPool(1, 60_000, clock::get)), clock::get);
+        manager.setUserCallback(new AdCallback() {
+            @Override
+            public void onAdAvailable(Ad ad) {
+            }
+
+            @Override
+            public void onAdFinished() {
+                terminalCallbacks.incrementAndGet();
+            }
+
+            @Override
+            public void onAdSkipped() {
+                terminalCallbacks.incrementAndGet();
+            }
+
+            @Override
+            public void onAdExited() {
+                terminalCallbacks.incrementAndGet();
+            }
+
+            @Override
+            public void onNoAvailable(Ad ad) {
+            }
+
+            @Override
+            public void onError(String message) {
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    private static Ad ad(String id) {
+        Ad ad = new Ad();
+        ad.setId(id);
+        return ad;
+    }
+
+    @Test
+    public void lifecycle_followsLegalTransitions() {
+        assertEquals(AdState.IDLE, manager.getState());
+        assertTrue(manager.setLoadedAd(ad("a1")));
+        assertEquals(AdState.LOADED, manager.getState());
+        assertTrue(manager.startAdDisplay(null));
+        assertEquals("a1", manager.getCurrentAd().getId());
+
+        manager.startWatchTimeTracking();
+        clock.addAndGet(3000);
+        manager.pauseWatchTimeTracking();
+        clock.addAndGet(10_000);
+        manager.resumeWatchTimeTracking();
+        clock.addAndGet(2000);
+        assertEquals(5f, manager.getWatchDuration(), 0.001f);
+
+        assertTrue(manager.finishAd(AdState.COMPLETED, EventEnum.VIEW));
+        assertEquals(AdState.COMPLETED, manager.getState());
+        assertNull(manager.getCurrentAd());
+        // Watch time is frozen by the terminal transition
+        clock.addAndGet(2000);
+        assertEquals(5f, manager.getWatchDuration(), 0.001f);
+
+        assertTrue(manager.setLoadedAd(ad("a2")));
+        assertEquals(AdState.LOADED, manager.getState());
+    }
+
+    @Test
+    public void watchTime_countsOnlyPlayback() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse();
+            }
+        });
+        manager.setLoadedAd(ad("a1"));
+        manager.startAdDisplay(null);
+
+        clock.addAndGet(500);
+        manager.setPlaybackPhase(PlaybackPhase.PLAYING);
+        clock.addAndGet(4000);
+        manager.setPlaybackPhase(PlaybackPhase.BUFFERING);
+        clock.addAndGet(1500);
+        manager.setPlaybackPhase(PlaybackPhase.PLAYING);
+        clock.addAndGet(2000);
+        manager.setPlaybackPhase(PlaybackPhase.PAUSED);
+        clock.addAndGet(30_000);
+        manager.setPlaybackPhase(PlaybackPhase.PLAYING);
+        clock.addAndGet(1000);
+        manager.setPlaybackPhase(PlaybackPhase.IDLE);
+        clock.addAndGet(3000);
+        assertEquals(7f, manager.getWatchDuration(), 0.001f);
+        assertTrue(manager.finishAd(AdState.COMPLETED, EventEnum.VIEW));
+
+        RecordedRequest request;
+        do {
+            request = server.takeRequest(5, TimeUnit.SECONDS);
+            assertNotNull(request);
+        } while (!request.getPath().startsWith("/ad_event"));
+        JsonObject details = JsonParser.parseString(request.getBody().readUtf8())
+                .getAsJsonObject().getAsJsonObject("eventDetails");
+        assertEquals(7f, details.get("watchDuration").getAsFloat(), 0.001f);
+        assertEquals(7000, details.get("playingMs").getAsLong());
+        assertEquals(1500, details.get("bufferingMs").getAsLong());
+        assertEquals(30_000, details.get("pausedMs").getAsLong());
+    }
+
+    @Test
+    public void recreatedPlayer_doesNotRepeatProgressMilestones() throws Exception {
+        List<String> sent = new CopyOnWriteArrayList<>();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (request.getPath().startsWith("/ad_event")) {
+                    sent.add(JsonParser.parseString(request.getBody().readUtf8()).getAsJsonObject()
+                            .getAsJsonObject("eventDetails").get("eventType").getAsString());
+                }
+                return new MockResponse();
+            }
+        });
+        manager.setLoadedAd(ad("a1"));
+        manager.startAdDisplay(null);
+
+        PlaybackProgressTracker first = manager.getPlaybackProgressTracker();
+        first.onPosition(0, 8000);
+        first.onPosition(2500, 8000);
+        // Rotation: the new activity instance plays the same impression from the start again
+        PlaybackProgressTracker recreated = manager.getPlaybackProgressTracker();
+        assertSame(first, recreated);
+        recreated.onPosition(0, 8000);
+        recreated.onPosition(2500, 8000);
+        recreated.onPosition(4100, 8000);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sent.size() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        // Sent concurrently, so compared regardless of order
+        assertEquals(new HashSet<>(List.of(EventEnum.START.getValue(), EventEnum.FIRST_QUARTILE.getValue(),
+                EventEnum.MIDPOINT.getValue())), new HashSet<>(sent));
+        assertEquals(3, sent.size());
+
+        assertTrue(manager.finishAd(AdState.COMPLETED, EventEnum.VIEW));
+        assertNull(manager.getPlaybackProgressTracker());
+    }
+
+    @Test
+    public void illegalTransitions_areRejected() {
+        assertFalse(manager.startAdDisplay(null));
+        assertFalse(manager.finishAd(AdState.SKIPPED, EventEnum.SKIP));
+
+        manager.setLoadedAd(ad("a1"));
+        assertFalse(manager.finishAd(AdState.EXITED, EventEnum.EXIT));
+        manager.startAdDisplay(null);
+        assertFalse(manager.setLoadedAd(ad("a2")));
+        assertFalse(manager.startAdDisplay(null));
+        assertEquals("a1", manager.getCurrentAd().getId());
+
+        assertTrue(manager.finishAd(AdState.SKIPPED, EventEnum.SKIP));
+        assertFalse(manager.finishAd(AdState.EXITED, EventEnum.EXIT));
+        assertEquals(AdState.SKIPPED, manager.getState());
+        assertEquals(1, terminalCallbacks.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void finishAd_requiresTerminalState() {
+        manager.finishAd(AdState.SHOWING, EventEnum.VIEW);
+    }
+
+    @Test
+    public void racingTerminalEvents_areEmittedOnce() throws Exception {
+        int rounds = 200;
+        int threads = 4;
+        AdState[] outcomes = {AdState.COMPLETED, AdState.SKIPPED, AdState.EXITED, AdState.EXITED};
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        AtomicInteger wins = new AtomicInteger();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse();
+            }
+        });
+        try {
+            for (int round = 0; round < rounds; round++) {
+                manager.setLoadedAd(ad("ad" + round));
+                manager.startAdDisplay(null);
+                CountDownLatch start = new CountDownLatch(1);
+                Future<?>[] racers = new Future<?>[threads];
+                for (int t = 0; t < threads; t++) {
+                    AdState outcome = outcomes[t];
+                    racers[t] = pool.submit(() -> {
+                        start.await();
+                        if (manager.finishAd(outcome, EventEnum.VIEW)) {
+                            wins.incrementAndGet();
+                        }
+                        return null;
+                    });
+                }
+                start.countDown();
+                for (Future<?> racer : racers) {
+                    racer.get(5, TimeUnit.SECONDS);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(rounds, wins.get());
+        assertEquals(rounds, terminalCallbacks.get());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.getRequestCount() < rounds && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        assertEquals(rounds, server.getRequestCount());
+    }
+}
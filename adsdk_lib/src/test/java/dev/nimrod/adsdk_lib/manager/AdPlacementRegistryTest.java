@@ -0,0 +1,144 @@
+package dev.nimrod.adsdk_lib.manager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dev.nimrod.adsdk_lib.api.AdHttpClient;
+import dev.nimrod.adsdk_lib.config.AdSdkConfig;
+import dev.nimrod.adsdk_lib.controller.AdController;
+import dev.nimrod.adsdk_lib.model.Ad;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+public class AdPlacementRegistryTest {
+    private static final int DEFAULT_DEPTH = 3;
+
+    private MockWebServer server;
+    private final AtomicInteger nextId = new AtomicInteger();
+    private AdPlacementRegistry registry;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (request.getPath().startsWith("/ads/random")) {
+                    return new MockResponse().setBody(adJson());
+                }
+                int count = Integer.parseInt(request.getRequestUrl().queryParameter("count"));
+                StringBuilder body = new StringBuilder("[");
+                for (int i = 0; i < count; i++) {
+                    body.append(i == 0 ? "" : ",").append(adJson());
+                }
+                return new MockResponse().setBody(body.append(']').toString());
+            }
+        });
+        server.start();
+        AdController controller = new AdController(new AdHttpClient(new AdSdkConfig.Builder()
+                .setBaseUrl(server.url("/").toString())
+                .setPreloadDepth(DEFAULT_DEPTH)
+                .build()));
+        AdManager defaultManager = new AdManager(controller, new AdPreloadManager(controller,
+                new AdPreloadPool(DEFAULT_DEPTH, 60_000, System::currentTimeMillis)), System::currentTimeMillis);
+        registry = new AdPlacementRegistry(controller, defaultManager, System::currentTimeMillis);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    private String adJson() {
+        return "{\"_id\":\"ad" + nextId.incrementAndGet() + "\",\"name\":\"Ad\"}";
+    }
+
+    private static void awaitReady(AdManager manager, int count) throws InterruptedException {
+        AdPreloadManager preloadManager = manager.getPreloadManager();
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((preloadManager.getPreloadedAdCount() < count || preloadManager.isLoading())
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, preloadManager.getPreloadedAdCount());
+    }
+
+    private static Set<String> drain(AdManager manager) {
+        Set<String> ids = new HashSet<>();
+        Ad ad;
+        while ((ad = manager.getPreloadManager().getPreloadedAd()) != null) {
+            ids.add(ad.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void placements_keepTheirOwnDepthAndState() throws Exception {
+        AdManager rewarded = registry.register("rewarded", 2, null);
+        AdManager interstitial = registry.register("interstitial", 5, null);
+        assertEquals(0, server.getRequestCount());
+
+        registry.setPackageName("dev.test");
+        AdManager standard = registry.get(AdPlacementRegistry.DEFAULT_PLACEMENT);
+        awaitReady(rewarded, 2);
+        awaitReady(interstitial, 5);
+        awaitReady(standard, DEFAULT_DEPTH);
+
+        rewarded.checkAdDisplay(null);
+        assertEquals(AdState.SHOWING, rewarded.getState());
+        assertEquals(AdState.IDLE, interstitial.getState());
+        assertTrue(interstitial.isAdReady());
+        awaitReady(rewarded, 2);
+
+        // No ad is held by two placements
+        Set<String> ids = new HashSet<>(drain(rewarded));
+        ids.add(rewarded.getCurrentAd().getId());
+        int total = ids.size();
+        Set<String> interstitialIds = drain(interstitial);
+        ids.addAll(interstitialIds);
+        assertEquals(total + interstitialIds.size(), ids.size());
+    }
+
+    @Test
+    public void lookup_returnsRegisteredManager() {
+        AdManager rewarded = registry.register("rewarded", 2, null);
+
+        assertSame(rewarded, registry.get("rewarded"));
+        assertSame(rewarded, registry.register("rewarded", 7, null));
+        assertEquals("rewarded", rewarded.getPlacementId());
+        assertNull(registry.get("unknown"));
+        assertNull(registry.get(null));
+        assertEquals(2, registry.getPlacementCount());
+    }
+
+    @Test
+    public void registeringLater_startsPreloadingImmediately() throws Exception {
+        registry.setPackageName("dev.test");
+
+        awaitReady(registry.register("late", 2, null), 2);
+    }
+
+    @Test
+    public void manyPlacements_addNoThreads() {
+        int threadsBefore = Thread.activeCount();
+        for (int i = 0; i < 50; i++) {
+            registry.register("placement" + i, 1, null);
+        }
+        assertEquals(51, registry.getPlacementCount());
+        assertEquals(threadsBefore, Thread.activeCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeDepth_isRejected() {
+        registry.register("bad", -1, null);
+    }
+}
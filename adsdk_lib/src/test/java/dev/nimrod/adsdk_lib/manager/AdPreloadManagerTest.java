@@ -0,0 +1,294 @@
+package dev.nimrod.adsdk_lib.manager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dev.nimrod.adsdk_lib.api.AdHttpClient;
+import dev.nimrod.adsdk_lib.callback.AdCallback;
+import dev.nimrod.adsdk_lib.callback.AdListCallback;
+import dev.nimrod.adsdk_lib.config.AdSdkConfig;
+import dev.nimrod.adsdk_lib.controller.AdController;
+import dev.nimrod.adsdk_lib.model.Ad;
+import dev.nimrod.adsdk_lib.storage.MediaCache;
+import dev.nimrod.adsdk_lib.util.Cancellable;
+import okhttp3.OkHttpClient;
+import okio.Buffer;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+public class AdPreloadManagerTest {
+    private static final int DEPTH = 4;
+
+    private MockWebServer server;
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    private String adJson() {
+        return "{\"_id\":\"ad" + nextId.incrementAndGet() + "\",\"name\":\"Ad\","
+                + "\"adDetails\":{\"videoUrl\":\"https://cdn.test/v.mp4\",\"skipTime\":5,\"exitTime\":10}}";
+    }
+
+    private void serve(boolean bulkSupported) {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                if (path.startsWith("/ads/batch")) {
+                    if (!bulkSupported) {
+                        return new MockResponse().setResponseCode(404);
+                    }
+                    int count = Integer.parseInt(request.getRequestUrl().queryParameter("count"));
+                    StringBuilder body = new StringBuilder("[");
+                    for (int i = 0; i < count; i++) {
+                        body.append(i == 0 ? "" : ",").append(adJson());
+                    }
+                    return new MockResponse().setBody(body.append(']').toString());
+                }
+                if (path.startsWith("/ads/random")) {
+                    return new MockResponse().setBody(adJson());
+                }
+                return new MockResponse().setResponseCode(404);
+            }
+        });
+    }
+
+    private AdPreloadManager manager(AdController controller) {
+        return new AdPreloadManager(controller, new AdPreloadPool(DEPTH, 60_000, System::currentTimeMillis));
+    }
+
+    private AdController controller() {
+        return new AdController(new AdHttpClient(new AdSdkConfig.Builder()
+                .setBaseUrl(server.url("/").toString())
+                .setPreloadDepth(DEPTH)
+                .build()));
+    }
+
+    private static void awaitPoolSize(AdPreloadManager manager, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (manager.getPreloadedAdCount() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(size, manager.getPreloadedAdCount());
+    }
+
+    @Test
+    public void bulkEndpoint_fillsPoolInOneRoundTrip() throws Exception {
+        serve(true);
+        AdPreloadManager manager = manager(controller());
+
+        manager.initialize("dev.test");
+        awaitPoolSize(manager, DEPTH);
+
+        assertEquals(1, server.getRequestCount());
+        assertTrue(server.takeRequest().getPath().startsWith("/ads/batch?packageName=dev.test&count=" + DEPTH));
+    }
+
+    @Test
+    public void missingBulkEndpoint_fallsBackToSingleAds() throws Exception {
+        serve(false);
+        AdController controller = controller();
+        AdPreloadManager manager = manager(controller);
+
+        manager.initialize("dev.test");
+        awaitPoolSize(manager, DEPTH);
+
+        // One probe of the bulk endpoint, then one request per ad
+        assertEquals(1 + DEPTH, server.getRequestCount());
+        assertFalse(controller.isBulkLoadSupported());
+
+        // Later refills go straight to ads/random
+        assertNotNull(manager.getPreloadedAd());
+        awaitPoolSize(manager, DEPTH);
+        assertEquals(2 + DEPTH, server.getRequestCount());
+    }
+
+    @Test
+    public void coldStart_directRequestJoinsPreloadInFlight() throws Exception {
+        serve(true);
+        AdPreloadManager manager = manager(controller());
+        CompletableFuture<Ad> direct = new CompletableFuture<>();
+
+        manager.initialize("dev.test");
+        assertTrue(manager.awaitPreloadedAd(new AdCallback() {
+            @Override
+            public void onAdAvailable(Ad ad) {
+                direct.complete(ad);
+            }
+
+            @Override
+            public void onAdFinished() {
+            }
+
+            @Override
+            public void onAdSkipped() {
+            }
+
+            @Override
+            public void onAdExited() {
+            }
+
+            @Override
+            public void onNoAvailable(Ad ad) {
+                direct.completeExceptionally(new AssertionError("no ad"));
+            }
+
+            @Override
+            public void onError(String message) {
+                direct.completeExceptionally(new AssertionError(message));
+            }
+        }));
+
+        assertEquals("ad1", direct.get(5, TimeUnit.SECONDS).getId());
+        // The joined ad skipped the pool, so a refill follows; no duplicate direct request was sent
+        awaitPoolSize(manager, DEPTH);
+        assertEquals("/ads/batch?packageName=dev.test&count=" + DEPTH, server.takeRequest().getPath());
+        assertEquals("/ads/random?packageName=dev.test", server.takeRequest().getPath());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void idleManager_doesNotAcceptWaiters() {
+        AdPreloadManager manager = manager(controller());
+
+        assertFalse(manager.awaitPreloadedAd(null));
+    }
+
+    @Test
+    public void bulkEndpoint_roundTripsSaved() throws Exception {
+        serve(true);
+        AdPreloadManager bulk = manager(controller());
+        bulk.initialize("dev.test");
+        awaitPoolSize(bulk, DEPTH);
+        int bulkRequests = server.getRequestCount();
+
+        serve(false);
+        AdPreloadManager fallback = manager(controller());
+        fallback.initialize("dev.test");
+        awaitPoolSize(fallback, DEPTH);
+        int singleRequests = server.getRequestCount() - bulkRequests - 1;
+
+        assertEquals(DEPTH - 1, singleRequests - bulkRequests);
+    }
+
+    @Test
+    public void pause_cancelsLoadInFlight_andResumeRefills() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            private final AtomicInteger calls = new AtomicInteger();
+
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                int count = Integer.parseInt(request.getRequestUrl().queryParameter("count"));
+                StringBuilder body = new StringBuilder("[");
+                for (int i = 0; i < count; i++) {
+                    body.append(i == 0 ? "" : ",").append(adJson());
+                }
+                MockResponse response = new MockResponse().setBody(body.append(']').toString());
+                // The first load hangs until the app goes to background
+                return calls.getAndIncrement() == 0 ? response.setBodyDelay(5, TimeUnit.SECONDS) : response;
+            }
+        });
+        AdHttpClient client = new AdHttpClient(new AdSdkConfig.Builder()
+                .setBaseUrl(server.url("/").toString())
+                .setPreloadDepth(DEPTH)
+                .build());
+        AdPreloadManager manager = manager(new AdController(client));
+
+        manager.initialize("dev.test");
+        server.takeRequest();
+        manager.pause();
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (manager.isLoading() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse("load still in flight", manager.isLoading());
+        while (client.getInFlightCallCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, client.getInFlightCallCount());
+        assertEquals(0, manager.getPreloadedAdCount());
+        manager.preloadNextAd();
+        assertEquals(1, server.getRequestCount());
+
+        manager.resume();
+        awaitPoolSize(manager, DEPTH);
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void adsAnsweredAfterPause_waitForResumeToDownloadTheirVideos() throws Exception {
+        File directory = Files.createTempDirectory("media").toFile();
+        MediaCache mediaCache = new MediaCache(directory, 1 << 20, new OkHttpClient());
+        List<AdListCallback> pending = new ArrayList<>();
+        // The response races the pause: cancelling the request does not stop its callback
+        AdController controller = new AdController(new AdHttpClient(new AdSdkConfig.Builder()
+                .setBaseUrl(server.url("/").toString())
+                .setPreloadDepth(DEPTH)
+                .build())) {
+            @Override
+            public MediaCache getMediaCache() {
+                return mediaCache;
+            }
+
+            @Override
+            public Cancellable loadAds(String packageName, int count, AdListCallback callback) {
+                pending.add(callback);
+                return Cancellable.NONE;
+            }
+        };
+        AdPreloadManager manager = manager(controller);
+
+        manager.initialize("dev.test");
+        assertEquals(1, pending.size());
+        manager.pause();
+        List<Ad> ads = new ArrayList<>();
+        for (int i = 0; i < DEPTH; i++) {
+            Ad ad = new Ad();
+            ad.setId("ad" + i);
+            ad.setVideoUrl(server.url("/v" + i + ".mp4").toString());
+            ads.add(ad);
+        }
+        pending.get(0).onAdsAvailable(ads);
+
+        assertEquals(0, mediaCache.getDownloadCount());
+        assertEquals(0, server.getRequestCount());
+        // Not ready without their videos
+        assertEquals(0, manager.getPreloadedAdCount());
+        assertFalse(manager.isLoading());
+
+        for (int i = 0; i < DEPTH; i++) {
+            server.enqueue(new MockResponse().setBody(new Buffer().write(new byte[1024])));
+        }
+        manager.resume();
+        awaitPoolSize(manager, DEPTH);
+        assertEquals(DEPTH, server.getRequestCount());
+        for (Ad ad : ads) {
+            assertTrue(mediaCache.isCached(ad.getVideoUrl()));
+        }
+        // The ads answered during pause filled the pool without a new ad request
+        assertEquals(1, pending.size());
+    }
+}
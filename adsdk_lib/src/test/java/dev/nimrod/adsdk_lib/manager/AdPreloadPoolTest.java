@@ -0,0 +1,79 @@
+package dev.nimrod.adsdk_lib.manager;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import dev.nimrod.adsdk_lib.model.Ad;
+
+import static org.junit.Assert.*;
+
+public class AdPreloadPoolTest {
+    private final AtomicLong now = new AtomicLong(1_000);
+    private final AdPreloadPool pool = new AdPreloadPool(3, 100, now::get);
+
+    private static Ad ad(String id) {
+        return new Ad().setId(id);
+    }
+
+    @Test
+    public void ads_areServedInFifoOrder() {
+        pool.offer(ad("a"));
+        pool.offer(ad("b"));
+        pool.offer(ad("c"));
+
+        assertEquals("a", pool.poll().getId());
+        assertEquals("b", pool.poll().getId());
+        assertEquals("c", pool.poll().getId());
+        assertNull(pool.poll());
+        assertFalse(pool.hasReady());
+    }
+
+    @Test
+    public void pool_isBoundedByCapacity() {
+        assertTrue(pool.offer(ad("a")));
+        assertTrue(pool.offer(ad("b")));
+        assertTrue(pool.offer(ad("c")));
+        assertFalse(pool.offer(ad("d")));
+        assertTrue(pool.isFull());
+        assertEquals(3, pool.size());
+    }
+
+    @Test
+    public void expiredAds_areEvicted() {
+        pool.offer(ad("old"));
+        now.addAndGet(60);
+        pool.offer(ad("new"));
+        assertEquals(40, pool.getMillisUntilNextExpiry());
+
+        now.addAndGet(40);
+        assertTrue(pool.hasReady());
+        assertEquals(1, pool.size());
+        assertEquals("new", pool.poll().getId());
+    }
+
+    @Test
+    public void peek_returnsNextAdWithoutRemovingIt() {
+        pool.offer(ad("old"));
+        now.addAndGet(60);
+        pool.offer(ad("new"));
+
+        assertEquals("old", pool.peek().getId());
+        assertEquals(2, pool.size());
+        now.addAndGet(40);
+        assertEquals("new", pool.peek().getId());
+        assertEquals("new", pool.poll().getId());
+        assertNull(pool.peek());
+    }
+
+    @Test
+    public void evictExpired_reportsEvictedCount() {
+        pool.offer(ad("a"));
+        pool.offer(ad("b"));
+        now.addAndGet(100);
+
+        assertEquals(2, pool.evictExpired());
+        assertEquals(0, pool.size());
+        assertEquals(-1, pool.getMillisUntilNextExpiry());
+    }
+}
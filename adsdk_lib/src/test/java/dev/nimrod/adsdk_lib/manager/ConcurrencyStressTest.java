@@ -0,0 +1,331 @@
+package dev.nimrod.adsdk_lib.manager;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import dev.nimrod.adsdk_lib.api.AdHttpClient;
+import dev.nimrod.adsdk_lib.callback.AdCallback;
+import dev.nimrod.adsdk_lib.config.AdSdkConfig;
+import dev.nimrod.adsdk_lib.controller.AdController;
+import dev.nimrod.adsdk_lib.model.Ad;
+import dev.nimrod.adsdk_lib.util.EventEnum;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+/**
+ * Hammers the preload pool and the ad lifecycle from many threads against a local server and
+ * checks that no ad is lost or served twice, that every shown ad reports exactly one final event,
+ * and that the watch time is never observed half updated.
+ */
+public class ConcurrencyStressTest {
+    private static final int DEPTH = 4;
+    private static final int THREADS = 8;
+    private static final long RUN_MS = 1500;
+
+    private MockWebServer server;
+    private final AtomicInteger nextId = new AtomicInteger();
+    // Every ad the server handed out, and the final events it received per ad
+    private final Set<String> issued = ConcurrentHashMap.newKeySet();
+    private final Map<String, AtomicInteger> events = new ConcurrentHashMap<>();
+    private final AtomicInteger finalEvents = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Float> eventWatchSeconds = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                if (path.startsWith("/ads/batch")) {
+                    int count = Integer.parseInt(request.getRequestUrl().queryParameter("count"));
+                    StringBuilder body = new StringBuilder("[");
+                    for (int i = 0; i < count; i++) {
+                        body.append(i == 0 ? "" : ",").append(adJson());
+                    }
+                    return new MockResponse().setBody(body.append(']').toString());
+                }
+                if (path.startsWith("/ad_event")) {
+                    JsonObject event = JsonParser.parseString(request.getBody().readUtf8()).getAsJsonObject();
+                    JsonObject details = event.getAsJsonObject("eventDetails");
+                    // Clicks may be sent any number of times; only the final event must be unique
+                    if (!EventEnum.CLICK.getValue().equals(details.get("eventType").getAsString())) {
+                        events.computeIfAbsent(event.get("adId").getAsString(), id -> new AtomicInteger())
+                                .incrementAndGet();
+                        finalEvents.incrementAndGet();
+                    }
+                    eventWatchSeconds.add(details.get("watchDuration").getAsFloat());
+                    return new MockResponse();
+                }
+                return new MockResponse().setResponseCode(404);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    private String adJson() {
+        String id = "ad" + nextId.incrementAndGet();
+        issued.add(id);
+        return "{\"_id\":\"" + id + "\",\"name\":\"Ad\",\"adDetails\":{\"skipTime\":5,\"exitTime\":10}}";
+    }
+
+    private AdController controller() {
+        return new AdController(new AdHttpClient(new AdSdkConfig.Builder()
+                .setBaseUrl(server.url("/").toString())
+                .setPreloadDepth(DEPTH)
+                .setEventBatchingEnabled(false)
+                .build()));
+    }
+
+    /**
+     * Runs the given actions round-robin on {@link #THREADS} threads, all starting at once,
+     * for {@link #RUN_MS} milliseconds.
+     */
+    private void hammer(Runnable... actions) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        List<Future<?>> workers = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                Runnable action = actions[t % actions.length];
+                workers.add(pool.submit(() -> {
+                    start.await();
+                    long end = System.currentTimeMillis() + RUN_MS;
+                    while (System.currentTimeMillis() < end) {
+                        action.run();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get(RUN_MS + 5000, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits until the preload manager has refilled its pool and stopped loading.
+     */
+    private static void awaitQuiet(AdPreloadManager manager, AdPreloadPool pool) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((manager.isLoading() || !pool.isFull()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse("preload never settled", manager.isLoading());
+    }
+
+    private static List<String> drain(AdPreloadPool pool) {
+        List<String> ids = new ArrayList<>();
+        Ad ad;
+        while ((ad = pool.poll()) != null) {
+            ids.add(ad.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Every issued ad must be accounted for exactly once.
+     */
+    private void assertEachAdOnce(List<String> accounted) {
+        Set<String> unique = new HashSet<>(accounted);
+        assertEquals("ads served twice", accounted.size(), unique.size());
+        Set<String> lost = new HashSet<>(issued);
+        lost.removeAll(unique);
+        assertEquals("ads lost", Collections.emptySet(), lost);
+        assertEquals(issued, unique);
+    }
+
+    @Test
+    public void preloadPool_concurrentConsumers_serveEachAdOnce() throws Exception {
+        AdPreloadPool pool = new AdPreloadPool(DEPTH, 60_000, System::currentTimeMillis);
+        AdPreloadManager manager = new AdPreloadManager(controller(), pool);
+        ConcurrentLinkedQueue<String> served = new ConcurrentLinkedQueue<>();
+        manager.initialize("dev.test");
+
+        hammer(() -> {
+            Ad ad = manager.getPreloadedAd();
+            if (ad != null) {
+                served.add(ad.getId());
+            }
+        }, manager::preloadNextAd, () -> {
+            if (manager.hasPreloadedAd() && manager.getPreloadedAdCount() < 0) {
+                errors.add("negative pool size");
+            }
+        }, () -> {
+            // Hands back an ad it took, as the lifecycle does when it cannot show one
+            Ad ad = manager.getPreloadedAd();
+            if (ad != null) {
+                manager.restoreAd(ad);
+            }
+        });
+
+        awaitQuiet(manager, pool);
+        List<String> accounted = new ArrayList<>(served);
+        accounted.addAll(drain(pool));
+        assertEachAdOnce(accounted);
+        assertTrue(errors.toString(), errors.isEmpty());
+    }
+
+    @Test
+    public void adManager_concurrentShowFinishAndWatch_reportsEachAdOnce() throws Exception {
+        AdController controller = controller();
+        AdPreloadPool pool = new AdPreloadPool(DEPTH, 60_000, System::currentTimeMillis);
+        AdPreloadManager preloadManager = new AdPreloadManager(controller, pool);
+        AtomicLong clock = new AtomicLong();
+        AdManager manager = new AdManager(controller, preloadManager, clock::get);
+        AtomicInteger finished = new AtomicInteger();
+        AtomicInteger callbacks = new AtomicInteger();
+        manager.setUserCallback(new CountingCallback(callbacks));
+        manager.setPackageName("dev.test");
+
+        EventEnum[] endings = {EventEnum.VIEW, EventEnum.SKIP, EventEnum.EXIT};
+        AdState[] outcomes = {AdState.COMPLETED, AdState.SKIPPED, AdState.EXITED};
+        hammer(() -> manager.checkAdDisplay(null), () -> {
+            int i = ThreadLocalRandom.current().nextInt(outcomes.length);
+            if (manager.finishAd(outcomes[i], endings[i])) {
+                finished.incrementAndGet();
+            }
+        }, () -> {
+            clock.addAndGet(ThreadLocalRandom.current().nextInt(5));
+            switch (ThreadLocalRandom.current().nextInt(3)) {
+                case 0:
+                    manager.startWatchTimeTracking();
+                    break;
+                case 1:
+                    manager.pauseWatchTimeTracking();
+                    break;
+                default:
+                    manager.resumeWatchTimeTracking();
+                    break;
+            }
+        }, () -> {
+            float seconds = manager.getWatchDuration();
+            if (seconds < 0 || seconds * 1000 > clock.get()) {
+                errors.add("watch time out of range: " + seconds + "s at " + clock.get() + "ms");
+            }
+            manager.createEvent(EventEnum.CLICK);
+        });
+
+        if (manager.finishAd(AdState.EXITED, EventEnum.EXIT)) {
+            finished.incrementAndGet();
+        }
+        awaitQuiet(preloadManager, pool);
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (finalEvents.get() < finished.get() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // Give duplicates, if any, time to arrive
+        Thread.sleep(200);
+
+        assertEquals(finished.get(), finalEvents.get());
+        List<String> accounted = new ArrayList<>();
+        events.forEach((id, count) -> {
+            for (int i = 0; i < count.get(); i++) {
+                accounted.add(id);
+            }
+        });
+        accounted.addAll(drain(pool));
+        Ad loaded = manager.getCurrentAd();
+        if (loaded != null) {
+            accounted.add(loaded.getId());
+        }
+        assertEachAdOnce(accounted);
+        assertEquals(finished.get(), callbacks.get());
+        assertTrue(errors.toString(), errors.isEmpty());
+        for (float seconds : eventWatchSeconds) {
+            assertTrue("event watch time " + seconds, seconds >= 0 && seconds * 1000 <= clock.get());
+        }
+    }
+
+    @Test
+    public void controllerSingleton_isCreatedOnce() throws Exception {
+        Set<AdController> instances = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                workers.add(pool.submit(() -> {
+                    start.await();
+                    instances.add(AdController.getInstance());
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, instances.size());
+    }
+
+    private static final class CountingCallback implements AdCallback {
+        private final AtomicInteger terminal;
+
+        CountingCallback(AtomicInteger terminal) {
+            this.terminal = terminal;
+        }
+
+        @Override
+        public void onAdAvailable(Ad ad) {
+        }
+
+        @Override
+        public void onAdFinished() {
+            terminal.incrementAndGet();
+        }
+
+        @Override
+        public void onAdSkipped() {
+            terminal.incrementAndGet();
+        }
+
+        @Override
+        public void onAdExited() {
+            terminal.incrementAndGet();
+        }
+
+        @Override
+        public void onNoAvailable(Ad ad) {
+        }
+
+        @Override
+        public void onError(String message) {
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package dev.nimrod.adsdk_lib.manager;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class WatchTimeAccountantTest {
+    private static final long START_NS = TimeUnit.HOURS.toNanos(1);
+
+    private static long at(long ms) {
+        return START_NS + TimeUnit.MILLISECONDS.toNanos(ms);
+    }
+
+    @Test
+    public void idle_countsNothing() {
+        WatchTimeAccountant watch = WatchTimeAccountant.IDLE;
+        assertEquals(PlaybackPhase.IDLE, watch.getPhase());
+        assertEquals(0, watch.getPlayingMs(at(10_000)));
+        assertEquals(0, watch.getBufferingMs(at(10_000)));
+        assertEquals(0, watch.getPausedMs(at(10_000)));
+    }
+
+    @Test
+    public void segments_addUpPerPhase() {
+        WatchTimeAccountant watch = WatchTimeAccountant.IDLE
+                .enter(PlaybackPhase.PLAYING, at(0))
+                .enter(PlaybackPhase.BUFFERING, at(3000))
+                .enter(PlaybackPhase.PLAYING, at(3400))
+                .enter(PlaybackPhase.PAUSED, at(5000))
+                .enter(PlaybackPhase.BUFFERING, at(9000))
+                .enter(PlaybackPhase.PLAYING, at(9100));
+
+        // The open playing segment counts up to now
+        assertEquals(PlaybackPhase.PLAYING, watch.getPhase());
+        assertEquals(5500, watch.getPlayingMs(at(10_000)));
+        assertEquals(500, watch.getBufferingMs(at(10_000)));
+        assertEquals(4000, watch.getPausedMs(at(10_000)));
+
+        WatchTimeAccountant ended = watch.enter(PlaybackPhase.IDLE, at(11_000));
+        assertEquals(6500, ended.getPlayingMs(at(60_000)));
+        assertEquals(500, ended.getBufferingMs(at(60_000)));
+        assertEquals(4000, ended.getPausedMs(at(60_000)));
+    }
+
+    @Test
+    public void samePhase_keepsTheOpenSegment() {
+        WatchTimeAccountant playing = WatchTimeAccountant.IDLE.enter(PlaybackPhase.PLAYING, at(0));
+        assertSame(playing, playing.enter(PlaybackPhase.PLAYING, at(5000)));
+        assertEquals(8000, playing.getPlayingMs(at(8000)));
+    }
+
+    @Test
+    public void nanosecondSegments_doNotLosePrecision() {
+        // A thousand 1.5 ms segments would lose 0.5 ms each if rounded to milliseconds
+        WatchTimeAccountant watch = WatchTimeAccountant.IDLE;
+        long now = START_NS;
+        for (int i = 0; i < 1000; i++) {
+            watch = watch.enter(PlaybackPhase.PLAYING, now);
+            now += 1_500_000;
+            watch = watch.enter(PlaybackPhase.PAUSED, now);
+            now += 1_000_000;
+        }
+        assertEquals(1500, watch.getPlayingMs(now));
+        assertEquals(1000, watch.getPausedMs(now));
+    }
+
+    @Test
+    public void clockGoingBackwards_countsNoNegativeTime() {
+        WatchTimeAccountant watch = WatchTimeAccountant.IDLE.enter(PlaybackPhase.PLAYING, at(1000));
+        assertEquals(0, watch.getPlayingMs(at(500)));
+    }
+}
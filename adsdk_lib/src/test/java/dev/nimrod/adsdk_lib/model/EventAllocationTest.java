@@ -0,0 +1,90 @@
+package dev.nimrod.adsdk_lib.model;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import dev.nimrod.adsdk_lib.api.AdHttpClient;
+import dev.nimrod.adsdk_lib.config.AdSdkConfig;
+import dev.nimrod.adsdk_lib.controller.AdController;
+import dev.nimrod.adsdk_lib.controller.EventBatcher;
+import dev.nimrod.adsdk_lib.storage.EventLog;
+import dev.nimrod.adsdk_lib.util.IsoTimestamp;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the per-event allocation budget of the durable send path on the host JVM:
+ * building the event as {@link AdController#sendAdEvent} does, serializing it and
+ * appending it to the {@link EventLog} outbox.
+ */
+public class EventAllocationTest {
+    // Event + EventDetails + timestamp string, plus the Gson writer, JSON string and UTF-8 record bytes;
+    // about 1.8 KB on a HotSpot JVM
+    private static final long BYTES_PER_EVENT_BUDGET = 2560;
+    private static final int EVENTS = 20_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void isoTimestamp_matchesSimpleDateFormat() {
+        SimpleDateFormat legacy = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        legacy.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        long[] samples = {0L, 999L, 1_000L, 1_760_680_800_123L, 1_760_680_800_999L, 1_760_680_801_005L, -1L};
+        for (long millis : samples) {
+            assertEquals(legacy.format(new Date(millis)), IsoTimestamp.format(millis));
+        }
+    }
+
+    @Test
+    public void durableEnqueue_staysWithinAllocationBudget() throws Exception {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        // Every event stays in the outbox, so no batch is sent while measuring
+        AdHttpClient client = new AdHttpClient(new AdSdkConfig.Builder()
+                .setBaseUrl("http://localhost/")
+                .setMaxEventBatchSize(3 * EVENTS)
+                .setMaxEventBatchAgeMs(600_000)
+                .build());
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try (EventLog log = new EventLog(folder.newFolder(), 16 * 1024 * 1024, 4)) {
+            EventBatcher batcher = new EventBatcher(client, scheduler, log);
+            send(batcher);
+
+            long threadId = Thread.currentThread().getId();
+            long before = threads.getThreadAllocatedBytes(threadId);
+            send(batcher);
+            long perEvent = (threads.getThreadAllocatedBytes(threadId) - before) / EVENTS;
+
+            assertEquals(2 * EVENTS, log.getPendingCount());
+            assertTrue(perEvent + " bytes/event exceeds budget", perEvent <= BYTES_PER_EVENT_BUDGET);
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private static void send(EventBatcher batcher) {
+        for (int i = 0; i < EVENTS; i++) {
+            batcher.enqueue(new Event()
+                    .setAdId("65f1c2d3e4a5b6c7d8e9f001")
+                    .setPackageName("dev.nimrod.adsdk")
+                    .setEventType("view")
+                    .setWatchDuration(i / 1000f)
+                    .setWatchTime(i, 0, 0));
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package dev.nimrod.adsdk_lib.model;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ModelTypeAdaptersTest {
+    private static final String AD_JSON = "{\"_id\":\"65f1c2d3e4a5b6c7d8e9f001\",\"performerName\":\"Acme\","
+            + "\"name\":\"Spring sale\",\"adDetails\":{\"videoUrl\":\"https://cdn.test/a.mp4\","
+            + "\"targetUrl\":\"https://acme.test\",\"budget\":\"100\",\"skipTime\":5,\"exitTime\":10.5},"
+            + "\"unknownField\":{\"nested\":[1,2,3]},\"performerEmail\":\"ads@acme.test\"}";
+    private static final int WARM_ITERATIONS = 50_000;
+
+    private final Gson reflective = new GsonBuilder().setLenient().create();
+    private final Gson streaming = ModelTypeAdapters.register(new GsonBuilder()).setLenient().create();
+
+    private static Event sampleEvent() {
+        Event event = new Event()
+                .setAdId("65f1c2d3e4a5b6c7d8e9f001")
+                .setPackageName("dev.nimrod.adsdk")
+                .setEventType("view")
+                .setWatchDuration(12.345f);
+        event.setTimestamp("2026-10-17T06:00:00.123Z");
+        return event;
+    }
+
+    @Test
+    public void ad_roundTripsLikeReflectiveAdapter() {
+        Ad expected = reflective.fromJson(AD_JSON, Ad.class);
+        Ad actual = streaming.fromJson(AD_JSON, Ad.class);
+
+        assertEquals(expected.toString(), actual.toString());
+        assertEquals(reflective.toJson(expected), streaming.toJson(actual));
+    }
+
+    @Test
+    public void adWithNullDetails_matchesReflectiveAdapter() {
+        String json = "{\"_id\":\"1\",\"adDetails\":null}";
+        assertEquals(reflective.fromJson(json, Ad.class).toString(), streaming.fromJson(json, Ad.class).toString());
+        Ad ad = new Ad().setId("1").setAdDetails(null);
+        assertEquals(reflective.toJson(ad), streaming.toJson(ad));
+    }
+
+    @Test
+    public void event_serializesLikeReflectiveAdapter() {
+        Event event = sampleEvent();
+        String json = streaming.toJson(event);
+
+        assertEquals(reflective.toJson(event), json);
+        assertEquals(event.toString(), streaming.fromJson(json, Event.class).toString());
+    }
+
+    @Test
+    public void eventWithPlaybackMetrics_roundTrips() {
+        Event event = sampleEvent().setPlaybackMetrics(new PlaybackMetrics(40, 200, 250, -1, 2250, 1, 500));
+
+        String json = streaming.toJson(event);
+        assertTrue(json, json.contains("\"startupLatencyMs\":250"));
+        assertTrue(json, json.contains("\"stallRatio\":0.25"));
+        PlaybackMetrics metrics = streaming.fromJson(json, Event.class).getEventDetails().getPlaybackMetrics();
+        assertEquals(event.getEventDetails().getPlaybackMetrics().toString(), metrics.toString());
+        assertFalse(streaming.toJson(sampleEvent()).contains("playbackMetrics"));
+    }
+
+    /**
+     * Compares first-use and warm cost of both adapters. Only runs with
+     * {@code -Dadsdk.benchmarks=true} ({@code -Padsdk.benchmarks=true} through Gradle).
+     */
+    @Test
+    public void benchmark_streamingVersusReflective() {
+        Assume.assumeTrue(Boolean.getBoolean("adsdk.benchmarks"));
+
+        long reflectiveCold = time(() -> new GsonBuilder().setLenient().create().fromJson(AD_JSON, Ad.class));
+        long streamingCold = time(() -> ModelTypeAdapters.register(new GsonBuilder()).setLenient().create()
+                .fromJson(AD_JSON, Ad.class));
+
+        Event event = sampleEvent();
+        long reflectiveWarm = time(() -> {
+            for (int i = 0; i < WARM_ITERATIONS; i++) {
+                reflective.fromJson(AD_JSON, Ad.class);
+                reflective.toJson(event);
+            }
+        });
+        long streamingWarm = time(() -> {
+            for (int i = 0; i < WARM_ITERATIONS; i++) {
+                streaming.fromJson(AD_JSON, Ad.class);
+                streaming.toJson(event);
+            }
+        });
+
+        System.out.printf("First use: reflective %d us, streaming %d us%n", reflectiveCold / 1000, streamingCold / 1000);
+        System.out.printf("%d parse+serialize: reflective %d ms, streaming %d ms%n",
+                WARM_ITERATIONS, reflectiveWarm / 1_000_000, streamingWarm / 1_000_000);
+    }
+
+    private static long time(Runnable work) {
+        long start = System.nanoTime();
+        work.run();
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,109 @@
+package dev.nimrod.adsdk_lib.player;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import dev.nimrod.adsdk_lib.model.PlaybackMetrics;
+
+import static org.junit.Assert.*;
+
+public class PlaybackMetricsTrackerTest {
+    private final AtomicLong nowNs = new AtomicLong(TimeUnit.SECONDS.toNanos(1000));
+    private final PlaybackMetricsTracker tracker = new PlaybackMetricsTracker(nowNs::get);
+
+    private void advanceMs(long ms) {
+        nowNs.addAndGet(TimeUnit.MILLISECONDS.toNanos(ms));
+    }
+
+    @Test
+    public void phases_areMeasuredFromShowAd() {
+        advanceMs(40);
+        tracker.onActivityCreated();
+        advanceMs(160);
+        tracker.onPrepared();
+        advanceMs(50);
+        tracker.onFirstFrame();
+        advanceMs(10_000);
+        tracker.onCompleted();
+        advanceMs(750);
+        tracker.onEnded();
+
+        PlaybackMetrics metrics = tracker.snapshot();
+        assertEquals(40, metrics.getActivityCreatedMs());
+        assertEquals(200, metrics.getPreparedMs());
+        assertEquals(250, metrics.getFirstFrameMs());
+        assertEquals(250, metrics.getStartupLatencyMs());
+        assertEquals(10_250, metrics.getCompletedMs());
+        assertEquals(11_000, metrics.getEndedMs());
+        assertEquals(0, metrics.getStallCount());
+        assertEquals(0f, metrics.getStallRatio(), 0f);
+    }
+
+    @Test
+    public void phases_countOnlyTheFirstTime() {
+        advanceMs(100);
+        tracker.onFirstFrame();
+        advanceMs(100);
+        tracker.onFirstFrame();
+        tracker.onEnded();
+        advanceMs(100);
+        tracker.onEnded();
+
+        PlaybackMetrics metrics = tracker.snapshot();
+        assertEquals(100, metrics.getFirstFrameMs());
+        assertEquals(200, metrics.getEndedMs());
+    }
+
+    @Test
+    public void stalls_addUpToTheStallRatio() {
+        tracker.onFirstFrame();
+        advanceMs(1000);
+        tracker.onRebufferStarted();
+        advanceMs(300);
+        tracker.onRebufferEnded();
+        advanceMs(1000);
+        tracker.onRebufferStarted();
+        advanceMs(700);
+        tracker.onRebufferEnded();
+        advanceMs(7000);
+        tracker.onEnded();
+
+        PlaybackMetrics metrics = tracker.snapshot();
+        assertEquals(2, metrics.getStallCount());
+        assertEquals(1000, metrics.getStallDurationMs());
+        assertEquals(0.1f, metrics.getStallRatio(), 0.0001f);
+    }
+
+    @Test
+    public void openStall_countsUntilTheEnd() {
+        tracker.onFirstFrame();
+        advanceMs(500);
+        tracker.onRebufferStarted();
+        advanceMs(200);
+        assertEquals(200, tracker.snapshot().getStallDurationMs());
+
+        advanceMs(300);
+        tracker.onEnded();
+        advanceMs(5000);
+        PlaybackMetrics metrics = tracker.snapshot();
+        assertEquals(1, metrics.getStallCount());
+        assertEquals(500, metrics.getStallDurationMs());
+        assertEquals(0.5f, metrics.getStallRatio(), 0.0001f);
+    }
+
+    @Test
+    public void abandonedBeforeFirstFrame_hasNoStartupLatency() {
+        advanceMs(30);
+        tracker.onActivityCreated();
+        advanceMs(2000);
+        tracker.onEnded();
+
+        PlaybackMetrics metrics = tracker.snapshot();
+        assertEquals(PlaybackMetrics.NOT_REACHED, metrics.getPreparedMs());
+        assertEquals(PlaybackMetrics.NOT_REACHED, metrics.getStartupLatencyMs());
+        assertEquals(2030, metrics.getEndedMs());
+        assertEquals(0f, metrics.getStallRatio(), 0f);
+    }
+}
@@ -0,0 +1,96 @@
+package dev.nimrod.adsdk_lib.player;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import dev.nimrod.adsdk_lib.util.EventEnum;
+
+import static org.junit.Assert.*;
+
+public class PlaybackProgressTrackerTest {
+    private static final long DURATION_MS = 30_000;
+    private static final int SAMPLES = 1_000_000;
+
+    private final List<EventEnum> milestones = new ArrayList<>();
+    private final PlaybackProgressTracker tracker = new PlaybackProgressTracker(milestones::add);
+
+    @Test
+    public void milestones_areReportedOnceInOrder() {
+        for (long position = 0; position <= DURATION_MS; position += 100) {
+            tracker.onPosition(position, DURATION_MS);
+        }
+        tracker.onCompleted();
+
+        assertEquals(Arrays.asList(EventEnum.START, EventEnum.FIRST_QUARTILE, EventEnum.MIDPOINT,
+                EventEnum.THIRD_QUARTILE, EventEnum.COMPLETE), milestones);
+        assertTrue(tracker.isFinished());
+    }
+
+    @Test
+    public void quartiles_followThePositionNotTheTime() {
+        tracker.onPosition(0, DURATION_MS);
+        // Paused just before the first quartile, however long
+        for (int i = 0; i < 1000; i++) {
+            tracker.onPosition(7499, DURATION_MS);
+        }
+        assertEquals(Arrays.asList(EventEnum.START), milestones);
+
+        tracker.onPosition(7500, DURATION_MS);
+        assertEquals(EventEnum.FIRST_QUARTILE, milestones.get(milestones.size() - 1));
+    }
+
+    @Test
+    public void seeking_neitherRepeatsNorSkipsMilestones() {
+        tracker.onPosition(16_000, DURATION_MS);
+        assertEquals(Arrays.asList(EventEnum.START, EventEnum.FIRST_QUARTILE, EventEnum.MIDPOINT), milestones);
+
+        // Back to the start, e.g. restoring the position after the app was in the background
+        tracker.onPosition(1000, DURATION_MS);
+        tracker.onPosition(16_100, DURATION_MS);
+        assertEquals(3, milestones.size());
+        assertFalse(tracker.isFinished());
+    }
+
+    @Test
+    public void unknownDuration_reportsTheRestOnCompletion() {
+        tracker.onPosition(5000, 0);
+        tracker.onPosition(20_000, -1);
+        assertEquals(Arrays.asList(EventEnum.START), milestones);
+
+        tracker.onCompleted();
+        tracker.onCompleted();
+        assertEquals(5, milestones.size());
+        assertEquals(EventEnum.COMPLETE, milestones.get(4));
+    }
+
+    @Test
+    public void sampling_doesNotAllocate() {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        PlaybackProgressTracker quiet = new PlaybackProgressTracker(milestone -> {
+        });
+        quiet.onPosition(0, Long.MAX_VALUE / 8);
+        sample(quiet, 100_000);
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        sample(quiet, SAMPLES);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        // A few bytes of measuring overhead, far from one object per sample
+        assertTrue(allocated + " bytes for " + SAMPLES + " samples", allocated < 1024);
+    }
+
+    private static void sample(PlaybackProgressTracker tracker, int samples) {
+        for (int i = 0; i < samples; i++) {
+            tracker.onPosition(i, Long.MAX_VALUE / 8);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package dev.nimrod.adsdk_lib.player;
+
+import org.junit.Test;
+
+import dev.nimrod.adsdk_lib.config.AdSdkConfig;
+
+import static org.junit.Assert.*;
+
+public class PlayerEngineFactoryTest {
+
+    @Test
+    public void inferMimeType_detectsManifests() {
+        assertEquals(PlayerEngineFactory.MIME_TYPE_HLS,
+                PlayerEngineFactory.inferMimeType("https://cdn.test/ad/master.m3u8"));
+        assertEquals(PlayerEngineFactory.MIME_TYPE_HLS,
+                PlayerEngineFactory.inferMimeType("https://cdn.test/ad/MASTER.M3U8?token=a.mp4"));
+        assertEquals(PlayerEngineFactory.MIME_TYPE_DASH,
+                PlayerEngineFactory.inferMimeType("https://cdn.test/ad/manifest.mpd#t=5"));
+    }
+
+    @Test
+    public void inferMimeType_leavesProgressiveVideosToThePlayer() {
+        assertNull(PlayerEngineFactory.inferMimeType("https://cdn.test/ad.mp4"));
+        assertNull(PlayerEngineFactory.inferMimeType("https://cdn.test/ad.mp4?format=m3u8"));
+        assertNull(PlayerEngineFactory.inferMimeType("file:///data/cache/ad_media/abc"));
+        assertNull(PlayerEngineFactory.inferMimeType(null));
+        assertFalse(PlayerEngineFactory.isAdaptiveStream("https://cdn.test/ad.webm"));
+        assertTrue(PlayerEngineFactory.isAdaptiveStream("https://cdn.test/ad.m3u8"));
+    }
+
+    @Test
+    public void config_defaultsToMedia3() {
+        AdSdkConfig config = AdSdkConfig.defaults();
+        assertEquals(PlayerEngineType.MEDIA3, config.getPlayerEngine());
+        assertTrue(config.getPlayerBufferForPlaybackMs() <= config.getPlayerMinBufferMs());
+        assertTrue(config.getPlayerBufferForPlaybackMs() <= config.getPlayerBufferForPlaybackAfterRebufferMs());
+        assertTrue(config.getPlayerBufferForPlaybackAfterRebufferMs() <= config.getPlayerMinBufferMs());
+        assertTrue(config.getPlayerMinBufferMs() <= config.getPlayerMaxBufferMs());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void config_rejectsMinBufferAboveMax() {
+        new AdSdkConfig.Builder()
+                .setPlayerMinBufferMs(20_000)
+                .setPlayerMaxBufferMs(10_000)
+                .build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void config_rejectsPlaybackBufferAboveMin() {
+        new AdSdkConfig.Builder()
+                .setPlayerBufferForPlaybackMs(5000)
+                .setPlayerMinBufferMs(2000)
+                .build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void config_rejectsRebufferThresholdAboveMin() {
+        new AdSdkConfig.Builder()
+                .setPlayerBufferForPlaybackAfterRebufferMs(5000)
+                .setPlayerMinBufferMs(4000)
+                .build();
+    }
+}
@@ -0,0 +1,170 @@
+package dev.nimrod.adsdk_lib.storage;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class EventLogTest {
+    private static final int SEGMENT_SIZE = 64 * 1024;
+    private static final int MANY_RECORDS = 50_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] record(int i) {
+        return ("{\"adId\":\"ad-" + i + "\",\"eventDetails\":{\"eventType\":\"view\"}}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void pendingRecords_surviveReopenInOrder() throws Exception {
+        File dir = folder.newFolder();
+        EventLog log = new EventLog(dir, SEGMENT_SIZE, 16);
+        for (int i = 0; i < 5; i++) {
+            log.append(record(i));
+        }
+        log.acknowledge(log.readPending(2));
+        log.close();
+
+        EventLog reopened = new EventLog(dir, SEGMENT_SIZE, 16);
+        assertEquals(3, reopened.getPendingCount());
+        EventLog.Batch batch = reopened.readPending(10);
+        assertEquals(3, batch.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(text(record(i + 2)), text(batch.getRecords().get(i)));
+        }
+        reopened.close();
+    }
+
+    @Test
+    public void acknowledgedSegments_areCompacted() throws Exception {
+        File dir = folder.newFolder();
+        EventLog log = new EventLog(dir, 1024, 16);
+        for (int i = 0; i < 100; i++) {
+            log.append(record(i));
+        }
+        assertTrue(log.getSegmentCount() > 1);
+
+        log.acknowledge(log.readPending(100));
+        assertEquals(0, log.getPendingCount());
+        assertEquals(1, log.getSegmentCount());
+        assertEquals(1, dir.listFiles().length);
+        log.close();
+    }
+
+    @Test
+    public void corruptRecord_doesNotResurrectLaterRecords() throws Exception {
+        File dir = folder.newFolder();
+        EventLog log = new EventLog(dir, SEGMENT_SIZE, 16);
+        for (int i = 0; i < 3; i++) {
+            log.append(record(i));
+        }
+        log.close();
+
+        // Flip a payload byte of the second record; all three records have the same size
+        int recordSize = 8 + record(0).length;
+        try (RandomAccessFile file = new RandomAccessFile(dir.listFiles()[0], "rw")) {
+            long position = 8 + recordSize + 8;
+            file.seek(position);
+            int value = file.read();
+            file.seek(position);
+            file.write(value ^ 0xFF);
+        }
+
+        EventLog recovered = new EventLog(dir, SEGMENT_SIZE, 16);
+        assertEquals(1, recovered.getPendingCount());
+        // Ends exactly where the third record started
+        recovered.append(record(5));
+        recovered.close();
+
+        EventLog reopened = new EventLog(dir, SEGMENT_SIZE, 16);
+        EventLog.Batch batch = reopened.readPending(10);
+        assertEquals(2, batch.size());
+        assertEquals(text(record(0)), text(batch.getRecords().get(0)));
+        assertEquals(text(record(5)), text(batch.getRecords().get(1)));
+        reopened.close();
+    }
+
+    @Test
+    public void fullLog_dropsOldestSegment() throws Exception {
+        EventLog log = new EventLog(folder.newFolder(), 1024, 2);
+        for (int i = 0; i < 100; i++) {
+            log.append(record(i));
+        }
+        assertEquals(2, log.getSegmentCount());
+        EventLog.Batch batch = log.readPending(100);
+        assertEquals(log.getPendingCount(), batch.size());
+        assertEquals(text(record(99)), text(batch.getRecords().get(batch.size() - 1)));
+        log.close();
+    }
+
+    @Test
+    public void manyRecords_replayInAppendOrder() throws Exception {
+        EventLog log = new EventLog(folder.newFolder(), SEGMENT_SIZE, 1024);
+        byte[][] records = new byte[MANY_RECORDS][];
+        for (int i = 0; i < MANY_RECORDS; i++) {
+            records[i] = record(i);
+        }
+
+        for (byte[] record : records) {
+            log.append(record);
+        }
+
+        int replayed = 0;
+        while (log.getPendingCount() > 0) {
+            EventLog.Batch batch = log.readPending(100);
+            assertEquals(text(records[replayed]), text(batch.getRecords().get(0)));
+            replayed += batch.size();
+            log.acknowledge(batch);
+        }
+        log.close();
+
+        assertEquals(MANY_RECORDS, replayed);
+    }
+
+    /**
+     * Reports append and replay throughput. Only runs with {@code -Dadsdk.benchmarks=true}
+     * ({@code -Padsdk.benchmarks=true} through Gradle).
+     */
+    @Test
+    public void benchmark_appendAndReplayThroughput() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("adsdk.benchmarks"));
+
+        EventLog log = new EventLog(folder.newFolder(), SEGMENT_SIZE, 1024);
+        byte[][] records = new byte[MANY_RECORDS][];
+        for (int i = 0; i < MANY_RECORDS; i++) {
+            records[i] = record(i);
+        }
+
+        long appendStart = System.nanoTime();
+        for (byte[] record : records) {
+            log.append(record);
+        }
+        long appendNanos = System.nanoTime() - appendStart;
+
+        long replayStart = System.nanoTime();
+        int replayed = 0;
+        while (log.getPendingCount() > 0) {
+            EventLog.Batch batch = log.readPending(100);
+            replayed += batch.size();
+            log.acknowledge(batch);
+        }
+        long replayNanos = System.nanoTime() - replayStart;
+        log.close();
+
+        assertEquals(MANY_RECORDS, replayed);
+        System.out.printf("EventLog append: %.0f records/s, replay: %.0f records/s%n",
+                MANY_RECORDS * 1e9 / appendNanos, MANY_RECORDS * 1e9 / replayNanos);
+    }
+}
@@ -0,0 +1,170 @@
+package dev.nimrod.adsdk_lib.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
+
+import static org.junit.Assert.*;
+
+public class MediaCacheTest {
+    private static final int VIDEO_SIZE = 64 * 1024;
+
+    private MockWebServer server;
+    private final OkHttpClient client = new OkHttpClient();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    private static MockResponse video() {
+        return new MockResponse().setBody(new Buffer().write(new byte[VIDEO_SIZE]));
+    }
+
+    private static File fetch(MediaCache cache, String url) throws Exception {
+        CompletableFuture<File> result = new CompletableFuture<>();
+        cache.fetch(url, new MediaCache.Listener() {
+            @Override
+            public void onMediaReady(File file) {
+                result.complete(file);
+            }
+
+            @Override
+            public void onMediaFailed(String message) {
+                result.completeExceptionally(new AssertionError(message));
+            }
+        });
+        return result.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void secondFetch_isServedFromDisk() throws Exception {
+        server.enqueue(video());
+        MediaCache cache = new MediaCache(folder.newFolder(), 1024 * 1024, client);
+        String url = server.url("/v1.mp4").toString();
+
+        File first = fetch(cache, url);
+        File second = fetch(cache, url);
+
+        assertEquals(first, second);
+        assertEquals(VIDEO_SIZE, second.length());
+        assertEquals(1, server.getRequestCount());
+        assertEquals(0.5, cache.getHitRate(), 0.001);
+        assertEquals(VIDEO_SIZE, cache.getBytesSaved());
+        assertEquals(first, cache.getCachedFile(url));
+    }
+
+    @Test
+    public void exceedingLimit_evictsLeastRecentlyUsed() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(video());
+        }
+        MediaCache cache = new MediaCache(folder.newFolder(), 2 * VIDEO_SIZE, client);
+        String a = server.url("/a.mp4").toString();
+        String b = server.url("/b.mp4").toString();
+        String c = server.url("/c.mp4").toString();
+
+        fetch(cache, a);
+        fetch(cache, b);
+        assertNotNull(cache.getCachedFile(a));
+        fetch(cache, c);
+
+        assertNotNull(cache.getCachedFile(a));
+        assertNull(cache.getCachedFile(b));
+        assertNotNull(cache.getCachedFile(c));
+        assertEquals(2 * VIDEO_SIZE, cache.getSize());
+    }
+
+    @Test
+    public void reopening_keepsCachedFiles() throws Exception {
+        server.enqueue(video());
+        File directory = folder.newFolder();
+        String url = server.url("/v1.mp4").toString();
+        fetch(new MediaCache(directory, 1024 * 1024, client), url);
+
+        MediaCache reopened = new MediaCache(directory, 1024 * 1024, client);
+        fetch(reopened, url);
+
+        assertEquals(1, server.getRequestCount());
+        assertEquals(1, reopened.getHitCount());
+        assertEquals(1, reopened.getEntryCount());
+    }
+
+    @Test
+    public void failedDownload_isNotCached() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(404));
+        MediaCache cache = new MediaCache(folder.newFolder(), 1024 * 1024, client);
+        String url = server.url("/missing.mp4").toString();
+
+        try {
+            fetch(cache, url);
+            fail("Expected the download to fail");
+        } catch (Exception expected) {
+            assertTrue(expected.getCause() instanceof AssertionError);
+        }
+        assertNull(cache.getCachedFile(url));
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    public void replayedAds_reportBytesSaved() throws Exception {
+        server.enqueue(video());
+        server.enqueue(video());
+        MediaCache cache = new MediaCache(folder.newFolder(), 1024 * 1024, client);
+        String[] rotation = {server.url("/a.mp4").toString(), server.url("/b.mp4").toString()};
+
+        for (int i = 0; i < 10; i++) {
+            fetch(cache, rotation[i % rotation.length]);
+        }
+
+        assertEquals(2, server.getRequestCount());
+        assertEquals(8L * VIDEO_SIZE, cache.getBytesSaved());
+    }
+
+    @Test
+    public void cancel_stopsDownloadAndStoresNothing() throws Exception {
+        server.enqueue(video().setBodyDelay(2, TimeUnit.SECONDS));
+        MediaCache cache = new MediaCache(folder.newFolder(), 1024 * 1024, client);
+        String url = server.url("/v1.mp4").toString();
+        CompletableFuture<String> failure = new CompletableFuture<>();
+
+        cache.fetch(url, new MediaCache.Listener() {
+            @Override
+            public void onMediaReady(File file) {
+                failure.completeExceptionally(new AssertionError("download was not cancelled"));
+            }
+
+            @Override
+            public void onMediaFailed(String message) {
+                failure.complete(message);
+            }
+        });
+        server.takeRequest();
+
+        assertTrue(cache.cancel(url));
+        assertNotNull(failure.get(1, TimeUnit.SECONDS));
+        assertFalse(cache.isCached(url));
+        assertEquals(0, cache.getDownloadCount());
+        assertFalse(cache.cancel(url));
+    }
+}
@@ -0,0 +1,156 @@
+package dev.nimrod.adsdk_lib.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import static org.junit.Assert.*;
+
+public class MediaStreamProxyTest {
+    private static final int VIDEO_SIZE = 256 * 1024;
+    private static final int PREFIX = 64 * 1024;
+
+    private final byte[] video = new byte[VIDEO_SIZE];
+    private final OkHttpClient client = new OkHttpClient();
+    private MockWebServer server;
+    private MediaCache cache;
+    private MediaStreamProxy proxy;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        for (int i = 0; i < video.length; i++) {
+            video[i] = (byte) (i * 31);
+        }
+        server = new MockWebServer();
+        // Serves the video and honors single "bytes=start-[end]" ranges
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String range = request.getHeader("Range");
+                if (range == null) {
+                    return new MockResponse().setBody(new Buffer().write(video));
+                }
+                String[] bounds = range.substring("bytes=".length()).split("-", 2);
+                int start = Integer.parseInt(bounds[0]);
+                int end = bounds[1].isEmpty() ? VIDEO_SIZE - 1 : Math.min(VIDEO_SIZE - 1, Integer.parseInt(bounds[1]));
+                return new MockResponse()
+                        .setResponseCode(206)
+                        .setHeader("Content-Range", "bytes " + start + "-" + end + "/" + VIDEO_SIZE)
+                        .setBody(new Buffer().write(Arrays.copyOfRange(video, start, end + 1)));
+            }
+        });
+        server.start();
+        cache = new MediaCache(folder.newFolder(), 1024 * 1024, client);
+        proxy = new MediaStreamProxy(cache, client);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        proxy.close();
+        server.shutdown();
+    }
+
+    private static File fetchPrefix(MediaCache cache, String url, long bytes) throws Exception {
+        CompletableFuture<File> result = new CompletableFuture<>();
+        cache.fetchPrefix(url, bytes, new MediaCache.Listener() {
+            @Override
+            public void onMediaReady(File file) {
+                result.complete(file);
+            }
+
+            @Override
+            public void onMediaFailed(String message) {
+                result.completeExceptionally(new AssertionError(message));
+            }
+        });
+        return result.get(5, TimeUnit.SECONDS);
+    }
+
+    private byte[] get(String url, String range) throws Exception {
+        Request.Builder request = new Request.Builder().url(url);
+        if (range != null) {
+            request.header("Range", range);
+        }
+        try (Response response = client.newCall(request.build()).execute()) {
+            assertEquals(range != null ? 206 : 200, response.code());
+            return response.body().bytes();
+        }
+    }
+
+    @Test
+    public void prefetch_downloadsOnlyThePrefix() throws Exception {
+        String url = server.url("/video.mp4").toString();
+
+        File part = fetchPrefix(cache, url, PREFIX);
+
+        assertEquals("bytes=0-" + (PREFIX - 1), server.takeRequest().getHeader("Range"));
+        assertEquals(PREFIX, part.length());
+        assertTrue(cache.isCached(url));
+        assertNull(cache.getCachedFile(url));
+    }
+
+    @Test
+    public void playback_servesPrefixFromDiskAndCachesTheRest() throws Exception {
+        String url = server.url("/video.mp4").toString();
+        fetchPrefix(cache, url, PREFIX);
+        server.takeRequest();
+
+        byte[] played = get(proxy.getProxyUrl(url), null);
+
+        assertArrayEquals(video, played);
+        assertEquals("bytes=" + PREFIX + "-", server.takeRequest().getHeader("Range"));
+        // The proxy records the appended bytes right after the last byte was sent
+        File complete = null;
+        long deadline = System.currentTimeMillis() + 5000;
+        while (complete == null && System.currentTimeMillis() < deadline) {
+            complete = cache.getCachedFile(url);
+            Thread.sleep(10);
+        }
+        assertNotNull(complete);
+        assertEquals(VIDEO_SIZE, complete.length());
+    }
+
+    @Test
+    public void rangeInsidePrefix_isServedWithoutOrigin() throws Exception {
+        String url = server.url("/video.mp4").toString();
+        fetchPrefix(cache, url, PREFIX);
+        int before = server.getRequestCount();
+
+        byte[] bytes = get(proxy.getProxyUrl(url), "bytes=1000-2999");
+
+        assertArrayEquals(Arrays.copyOfRange(video, 1000, 3000), bytes);
+        assertEquals(before, server.getRequestCount());
+    }
+
+    @Test
+    public void seekPastPrefix_streamsWithoutCaching() throws Exception {
+        String url = server.url("/video.mp4").toString();
+        fetchPrefix(cache, url, PREFIX);
+
+        int start = VIDEO_SIZE - 1000;
+        byte[] bytes = get(proxy.getProxyUrl(url), "bytes=" + start + "-");
+
+        assertArrayEquals(Arrays.copyOfRange(video, start, VIDEO_SIZE), bytes);
+        assertNull(cache.getCachedFile(url));
+        assertEquals(PREFIX, cache.getSize());
+    }
+}
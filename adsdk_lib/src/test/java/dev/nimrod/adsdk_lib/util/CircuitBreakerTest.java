@@ -0,0 +1,79 @@
+package dev.nimrod.adsdk_lib.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class CircuitBreakerTest {
+    private final AtomicLong now = new AtomicLong(1_000);
+    private final CircuitBreaker breaker = new CircuitBreaker(3, 10_000, now::get);
+
+    private void fail(int times) {
+        for (int i = 0; i < times; i++) {
+            assertTrue(breaker.allowRequest());
+            breaker.onFailure();
+        }
+    }
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        fail(2);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        fail(1);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+        assertEquals(10_000, breaker.getMillisUntilProbe());
+    }
+
+    @Test
+    public void successResetsFailureCount() {
+        fail(2);
+        breaker.onSuccess();
+        fail(2);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void halfOpen_allowsSingleProbe() {
+        fail(3);
+        now.addAndGet(9_999);
+        assertFalse(breaker.allowRequest());
+
+        now.addAndGet(1);
+
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void successfulProbe_closes() {
+        fail(3);
+        now.addAndGet(10_000);
+        assertTrue(breaker.allowRequest());
+
+        breaker.onSuccess();
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void failedProbe_reopensForAnotherPeriod() {
+        fail(3);
+        now.addAndGet(10_000);
+        assertTrue(breaker.allowRequest());
+
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+        assertEquals(10_000, breaker.getMillisUntilProbe());
+    }
+}
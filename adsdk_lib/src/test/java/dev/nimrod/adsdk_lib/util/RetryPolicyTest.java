@@ -0,0 +1,104 @@
+package dev.nimrod.adsdk_lib.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class RetryPolicyTest {
+    private final AtomicLong now = new AtomicLong();
+
+    private RetryPolicy policy(double jitter, int maxAttempts) {
+        return new RetryPolicy(1_000, 30_000, maxAttempts,
+                new CircuitBreaker(100, 60_000, now::get), () -> jitter);
+    }
+
+    @Test
+    public void delayBound_growsExponentiallyUpToMax() {
+        // Jitter just below 1 exposes the exponential bound
+        RetryPolicy retry = policy(0.999_999, 10);
+        long[] expected = {1_000, 2_000, 4_000, 8_000, 16_000, 30_000, 30_000};
+
+        for (long bound : expected) {
+            assertEquals(bound - 1, retry.onEmptyResponse(), 1);
+        }
+    }
+
+    @Test
+    public void fullJitter_scalesDelayByRandomValue() {
+        assertEquals(0, policy(0, 10).onFailure());
+        RetryPolicy half = policy(0.5, 10);
+        assertEquals(500, half.onFailure());
+        assertEquals(1_000, half.onFailure());
+        assertEquals(2_000, half.onFailure());
+    }
+
+    @Test
+    public void budgetExhausted_stopsRetrying() {
+        RetryPolicy retry = policy(0.5, 3);
+        for (int i = 0; i < 3; i++) {
+            assertNotEquals(RetryPolicy.NO_RETRY, retry.onEmptyResponse());
+        }
+
+        assertEquals(RetryPolicy.NO_RETRY, retry.onEmptyResponse());
+    }
+
+    @Test
+    public void success_resetsBackoff() {
+        RetryPolicy retry = policy(0.5, 3);
+        retry.onFailure();
+        retry.onFailure();
+        retry.onFailure();
+
+        retry.onSuccess();
+
+        assertEquals(0, retry.getAttempts());
+        assertEquals(500, retry.onFailure());
+    }
+
+    @Test
+    public void openBreaker_delaysRetryUntilProbe() {
+        RetryPolicy retry = new RetryPolicy(1_000, 30_000, 10,
+                new CircuitBreaker(2, 60_000, now::get), () -> 0.5);
+        assertEquals(500, retry.onFailure());
+
+        long delay = retry.onFailure();
+
+        assertEquals(60_000, delay);
+        assertFalse(retry.allowRequest());
+        now.addAndGet(delay);
+        assertTrue(retry.allowRequest());
+    }
+
+    @Test
+    public void emptyResponses_doNotOpenBreaker() {
+        RetryPolicy retry = new RetryPolicy(1_000, 30_000, 10,
+                new CircuitBreaker(2, 60_000, now::get), () -> 0.5);
+
+        retry.onEmptyResponse();
+        retry.onEmptyResponse();
+        retry.onEmptyResponse();
+
+        assertEquals(CircuitBreaker.State.CLOSED, retry.getCircuitBreaker().getState());
+        assertTrue(retry.allowRequest());
+    }
+
+    @Test
+    public void simulatedOutage_requestRateDropsWithBackoffAndBreaker() {
+        RetryPolicy retry = new RetryPolicy(1_000, 60_000, 1_000,
+                new CircuitBreaker(5, 60_000, now::get), () -> 0.5);
+        int requests = 0;
+        // Ten minutes of a backend that fails every request
+        while (now.get() < 10 * 60 * 1000) {
+            if (retry.allowRequest()) {
+                requests++;
+                now.addAndGet(retry.onFailure());
+            } else {
+                now.addAndGet(retry.getMillisUntilAllowed());
+            }
+        }
+
+        assertTrue(requests < 20);
+    }
+}